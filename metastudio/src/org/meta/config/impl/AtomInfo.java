@@ -27,6 +27,12 @@ import org.w3c.dom.*;
  * .. and an observer pattern for notifying the registered classes of the 
  *    changes at runtime.
  *
+ * Each atom symbol is also given an element code (see getElementCode()),
+ * a small int that Atom keeps, with which the properties can be looked up
+ * from plain arrays rather than from the tables. These arrays are made 
+ * again from the tables whenever a property is changed through AtomInfo, so 
+ * the tables should not be changed directly.
+ *
  * @author  V.Ganesh
  * @version 2.0 (Part of MeTA v2.0)
  */
@@ -76,6 +82,15 @@ public class AtomInfo implements Configuration {
     /** Utility field used by event firing mechanism. */
     private EventListenerList<AtomInfoChangeListener> listenerList =  null;        
     
+    /** the element codes of the atom symbols, and the symbols of the codes */
+    private static final HashMap<String, Integer> elementCodes 
+                               = new HashMap<String, Integer>(DEFAULT_TABLE_SIZE);
+    private static final ArrayList<String> elementSymbols
+                               = new ArrayList<String>(DEFAULT_TABLE_SIZE);
+    
+    /** the properties indexed by element code, null if to be made again */
+    private volatile ElementTable elementTable;
+    
     /** Creates a new instance of AtomInfo */
     public AtomInfo() {                
         nameTable           = new Hashtable<String, String>(DEFAULT_TABLE_SIZE);
@@ -170,6 +185,8 @@ public class AtomInfo implements Configuration {
         weakBondAngleTable.put(symbol, originalWeakBondAngleTable.get(symbol));
         colorTable.put(symbol, originalColorTable.get(symbol));
         
+        clearElementTable();
+        
         AtomInfoChangeEvent changeEvent = new AtomInfoChangeEvent(this);
         
         changeEvent.setChangeType(AtomInfoChangeEvent.ALL_CANGED);        
@@ -230,6 +247,8 @@ public class AtomInfo implements Configuration {
             // read in user XML config file 
             // and override the settings
             saveUser();
+            
+            clearElementTable();
         } catch (Exception e) {
             throw new PropertyVetoException("Exception in "
                               + "AtomInfo.setParameter()" + e.toString(), null);
@@ -516,6 +535,8 @@ public class AtomInfo implements Configuration {
         doubleBondOverlapTable.put(key, new Double(ap.getDoubleBondOverlap()));
         colorTable.put(key, ap.getColor());
         
+        clearElementTable();
+        
         // fire the event!
         fireAtomInfoChangeListenerAtomInfoChanged(changeEvent);
     }
@@ -593,6 +614,7 @@ public class AtomInfo implements Configuration {
     public void setAtomicNumberTable(
                                Hashtable<String, Integer> atomicNumberTable) {
         this.atomicNumberTable = atomicNumberTable;
+        clearElementTable();
     }
     
     /** Getter for property atomicWeightTable.
@@ -610,6 +632,7 @@ public class AtomInfo implements Configuration {
     public void setAtomicWeightTable(
                                Hashtable<String, Double> atomicWeightTable) {
         this.atomicWeightTable = atomicWeightTable;
+        clearElementTable();
     }
     
     /** Getter for property covalentRadiusTable.
@@ -627,6 +650,7 @@ public class AtomInfo implements Configuration {
     public void setCovalentRadiusTable(
                                 Hashtable<String, Double> covalentRadiusTable) {
         this.covalentRadiusTable = covalentRadiusTable;
+        clearElementTable();
     }
     
     /** Getter for property vdwRadiusTable.
@@ -643,6 +667,7 @@ public class AtomInfo implements Configuration {
      */
     public void setVdwRadiusTable(Hashtable<String, Double> vdwRadiusTable) {
         this.vdwRadiusTable = vdwRadiusTable;
+        clearElementTable();
     }
     
     /** Getter for property defaultValencyTable.
@@ -660,6 +685,7 @@ public class AtomInfo implements Configuration {
     public void setDefaultValencyTable(
                                Hashtable<String, Integer> defaultValencyTable) {
         this.defaultValencyTable = defaultValencyTable;
+        clearElementTable();
     }
     
     /** Getter for property weakBondAngleTable.
@@ -677,6 +703,7 @@ public class AtomInfo implements Configuration {
     public void setWeakBondAngleTable(
                                 Hashtable<String, Double> weakBondAngleTable) {
         this.weakBondAngleTable = weakBondAngleTable;
+        clearElementTable();
     }
     
     /** Getter for property doubleBondOverlap.
@@ -695,6 +722,7 @@ public class AtomInfo implements Configuration {
     public void setDoubleBondOverlapTable(
                              Hashtable<String, Double> doubleBondOverlapTable) {
         this.doubleBondOverlapTable = doubleBondOverlapTable;
+        clearElementTable();
     }
     
     /** Getter for property colorTable.
@@ -711,6 +739,7 @@ public class AtomInfo implements Configuration {
      */
     public void setColorTable(Hashtable<String, Color> colorTable) {
         this.colorTable = colorTable;
+        clearElementTable();
     }   
     
     /** Registers AtomInfoChangeListener to receive events.
@@ -800,6 +829,8 @@ public class AtomInfo implements Configuration {
         
         atomicNumberTable.put(symbol, new Integer(atomicNumber));
         
+        clearElementTable();
+        
         changeEvent.setNewValue(new Integer(atomicNumber));
         
         fireAtomInfoChangeListenerAtomInfoChanged(changeEvent);
@@ -832,6 +863,8 @@ public class AtomInfo implements Configuration {
         
         atomicWeightTable.put(symbol, new Double(atomicWeight));
         
+        clearElementTable();
+        
         changeEvent.setNewValue(new Double(atomicWeight));
         
         fireAtomInfoChangeListenerAtomInfoChanged(changeEvent);
@@ -864,6 +897,8 @@ public class AtomInfo implements Configuration {
         
         defaultValencyTable.put(symbol, new Integer(defaultValency));
         
+        clearElementTable();
+        
         changeEvent.setNewValue(new Integer(defaultValency));
         
         fireAtomInfoChangeListenerAtomInfoChanged(changeEvent);
@@ -896,6 +931,8 @@ public class AtomInfo implements Configuration {
         
         covalentRadiusTable.put(symbol, new Double(covalentRadius));
         
+        clearElementTable();
+        
         changeEvent.setNewValue(new Double(covalentRadius));
         
         fireAtomInfoChangeListenerAtomInfoChanged(changeEvent);
@@ -928,6 +965,8 @@ public class AtomInfo implements Configuration {
         
         vdwRadiusTable.put(symbol, new Double(vdwRadius));
         
+        clearElementTable();
+        
         changeEvent.setNewValue(new Double(vdwRadius));
         
         fireAtomInfoChangeListenerAtomInfoChanged(changeEvent);
@@ -960,6 +999,8 @@ public class AtomInfo implements Configuration {
         
         weakBondAngleTable.put(symbol, new Double(weakBondAngle));
         
+        clearElementTable();
+        
         changeEvent.setNewValue(new Double(weakBondAngle));
         
         fireAtomInfoChangeListenerAtomInfoChanged(changeEvent);
@@ -1028,6 +1069,8 @@ public class AtomInfo implements Configuration {
         
         colorTable.put(symbol, color);
         
+        clearElementTable();
+        
         changeEvent.setNewValue(color);
         
         fireAtomInfoChangeListenerAtomInfoChanged(changeEvent);
@@ -1060,8 +1103,208 @@ public class AtomInfo implements Configuration {
         
         doubleBondOverlapTable.put(symbol, new Double(doubleBondOverlap));
         
+        clearElementTable();
+        
         changeEvent.setNewValue(new Double(doubleBondOverlap));
         
         fireAtomInfoChangeListenerAtomInfoChanged(changeEvent);
     }
+    
+    /**
+     * Get the element code of an atom symbol, a small int standing for the
+     * symbol, with which the atom properties can be looked up faster. A new
+     * code is given to a symbol the first time it is seen, and the codes
+     * are the same for all instances of AtomInfo.
+     *
+     * @param symbol - the atom symbol, IUPAC name!
+     * @return the element code of the symbol
+     */
+    public static synchronized int getElementCode(String symbol) {
+        Integer elementCode = elementCodes.get(symbol);
+        
+        if (elementCode == null) {
+            elementCode = elementSymbols.size();
+            
+            elementCodes.put(symbol, elementCode);
+            elementSymbols.add(symbol);
+        } // end if
+        
+        return elementCode;
+    }
+    
+    /**
+     * Get the atom symbol of an element code
+     *
+     * @param elementCode the element code, from getElementCode()
+     * @return symbol - the atom symbol, IUPAC name!
+     */
+    public static synchronized String getElementSymbol(int elementCode) {
+        return elementSymbols.get(elementCode);
+    }
+    
+    /**
+     * The atom properties of all the element codes given so far, in arrays
+     * indexed by the element code. For symbols not in the tables, the
+     * values of "X" are used, as in the getters by symbol.
+     */
+    private class ElementTable {
+        private int [] atomicNumbers, defaultValencies;
+        private double [] atomicWeights, covalentRadii, vdwRadii,
+                          weakBondAngles, doubleBondOverlaps;
+        private Color [] colors;
+        
+        public ElementTable() {
+            String [] symbols;
+            
+            synchronized(AtomInfo.class) {
+                symbols = elementSymbols.toArray(new String[0]);
+            } // end of synchronized block
+            
+            int noOfCodes = symbols.length;
+            
+            atomicNumbers      = new int[noOfCodes];
+            defaultValencies   = new int[noOfCodes];
+            atomicWeights      = new double[noOfCodes];
+            covalentRadii      = new double[noOfCodes];
+            vdwRadii           = new double[noOfCodes];
+            weakBondAngles     = new double[noOfCodes];
+            doubleBondOverlaps = new double[noOfCodes];
+            colors             = new Color[noOfCodes];
+            
+            for(int i=0; i<noOfCodes; i++) {
+                atomicNumbers[i]    = intValue(atomicNumberTable, symbols[i]);
+                defaultValencies[i] = intValue(defaultValencyTable, symbols[i]);
+                atomicWeights[i]    = doubleValue(atomicWeightTable, 
+                                                  symbols[i]);
+                covalentRadii[i]    = doubleValue(covalentRadiusTable, 
+                                                  symbols[i]);
+                vdwRadii[i]         = doubleValue(vdwRadiusTable, symbols[i]);
+                weakBondAngles[i]   = doubleValue(weakBondAngleTable, 
+                                                  symbols[i]);
+                doubleBondOverlaps[i] = doubleValue(doubleBondOverlapTable,
+                                                    symbols[i]);
+                colors[i]           = value(colorTable, symbols[i]);
+            } // end for
+        }
+        
+        /** the value of a symbol, or that of "X" if it is not there */
+        private <T> T value(Hashtable<String, T> table, String symbol) {
+            T theValue = table.get(symbol);
+            
+            return (theValue == null) ? table.get("X") : theValue;
+        }
+        
+        private int intValue(Hashtable<String, Integer> table, String symbol) {
+            Integer theValue = value(table, symbol);
+            
+            return (theValue == null) ? 0 : theValue;
+        }
+        
+        private double doubleValue(Hashtable<String, Double> table, 
+                                   String symbol) {
+            Double theValue = value(table, symbol);
+            
+            return (theValue == null) ? 0.0 : theValue;
+        }
+    } // end of inner class ElementTable
+    
+    /**
+     * Get the properties by element code, made again from the tables if
+     * they were changed or a new code was given since they were last made.
+     */
+    private ElementTable getElementTable(int elementCode) {
+        ElementTable table = elementTable;
+        
+        if (table == null || elementCode >= table.colors.length) {
+            synchronized(this) {
+                table = elementTable;
+                
+                if (table == null || elementCode >= table.colors.length) {
+                    table = elementTable = new ElementTable();
+                } // end if
+            } // end of synchronized block
+        } // end if
+        
+        return table;
+    }
+    
+    /**
+     * The tables have changed, so the properties by element code have to
+     * be made again.
+     */
+    private synchronized void clearElementTable() {
+        elementTable = null;
+    }
+    
+    /** 
+     * Getter for property atomicNumber.
+     * @param elementCode - the element code of the atom (see getElementCode())
+     * @return Value of property atomicNumber for the specified element
+     */
+    public int getAtomicNumber(int elementCode) {
+        return getElementTable(elementCode).atomicNumbers[elementCode];
+    }
+    
+    /** 
+     * Getter for property atomicWeight.
+     * @param elementCode - the element code of the atom (see getElementCode())
+     * @return Value of property atomicWeight for the specified element
+     */
+    public double getAtomicWeight(int elementCode) {
+        return getElementTable(elementCode).atomicWeights[elementCode];
+    }
+    
+    /** 
+     * Getter for property defaultValency.
+     * @param elementCode - the element code of the atom (see getElementCode())
+     * @return Value of property defaultValency for the specified element
+     */
+    public int getDefaultValency(int elementCode) {
+        return getElementTable(elementCode).defaultValencies[elementCode];
+    }
+    
+    /** 
+     * Getter for property covalentRadius.
+     * @param elementCode - the element code of the atom (see getElementCode())
+     * @return Value of property covalentRadius for the specified element
+     */
+    public double getCovalentRadius(int elementCode) {
+        return getElementTable(elementCode).covalentRadii[elementCode];
+    }
+    
+    /** 
+     * Getter for property vdwRadius.
+     * @param elementCode - the element code of the atom (see getElementCode())
+     * @return Value of property vdwRadius for the specified element
+     */
+    public double getVdwRadius(int elementCode) {
+        return getElementTable(elementCode).vdwRadii[elementCode];
+    }
+    
+    /** 
+     * Getter for property weakBondAngle.
+     * @param elementCode - the element code of the atom (see getElementCode())
+     * @return Value of property weakBondAngle for the specified element
+     */
+    public double getWeakBondAngle(int elementCode) {
+        return getElementTable(elementCode).weakBondAngles[elementCode];
+    }
+    
+    /** 
+     * Getter for property doubleBondOverlap.
+     * @param elementCode - the element code of the atom (see getElementCode())
+     * @return Value of property doubleBondOverlap for the specified element
+     */
+    public double getDoubleBondOverlap(int elementCode) {
+        return getElementTable(elementCode).doubleBondOverlaps[elementCode];
+    }
+    
+    /** 
+     * Getter for property color.
+     * @param elementCode - the element code of the atom (see getElementCode())
+     * @return Value of property color for the specified element
+     */
+    public Color getColor(int elementCode) {
+        return getElementTable(elementCode).colors[elementCode];
+    }
 } // end of class AtomInfo
@@ -77,7 +77,7 @@ public class FragmentImpl extends Fragment {
     protected int getDegreeOfFragmentAtom(FragmentAtom fa) {
         int degree = 0;
         
-        Set<Integer> atoms = fa.getAkaAtom().getConnectedList().keySet();
+        Set<Integer> atoms = fa.getAkaAtom().getConnections().keySet();
         
         for(Integer atm : atoms) {
             if (contains(parentMolecule.getAtom(atm))) {
@@ -104,7 +104,7 @@ public class FragmentImpl extends Fragment {
         dummyAtomList.clear();
         
         for(FragmentAtom ba : boundaryAtomList) {
-            Set<Integer> atoms = ba.getAkaAtom().getConnectedList().keySet();
+            Set<Integer> atoms = ba.getAkaAtom().getConnections().keySet();
             
             for(Integer atm : atoms) {
                 
@@ -175,7 +175,7 @@ public class FragmentImpl extends Fragment {
             
             degreeOfAka = 0;
             
-            for(Integer atm : fa.getAkaAtom().getConnectedList().keySet()) {
+            for(Integer atm : fa.getAkaAtom().getConnections().keySet()) {
               if ((fa.getAkaAtom().getConnectivity(atm) != BondType.NO_BOND)
                && (fa.getAkaAtom().getConnectivity(atm) != BondType.WEAK_BOND)){
                   degreeOfAka++;
@@ -532,9 +532,9 @@ public class FragmentImpl extends Fragment {
             
             if (ai.getAtomicNumber(akaAtom.getSymbol()) <= 6) {
                 nBonds = ai.getDefaultValency(akaAtom.getSymbol())
-                            - akaAtom.getConnectedList().size();
+                            - akaAtom.getDegree();
             } else {                
-                nBonds = akaAtom.getConnectedList().size()
+                nBonds = akaAtom.getDegree()
                             - ai.getDefaultValency(akaAtom.getSymbol());
             } // end if
             
@@ -9,6 +9,9 @@ package org.meta.math;
 import java.text.DecimalFormat;
 import org.meta.math.la.Diagonalizer;
 import org.meta.math.la.DiagonalizerFactory;
+import org.meta.parallel.AbstractSimpleParallelTask;
+import org.meta.parallel.SimpleParallelTask;
+import org.meta.parallel.SimpleParallelTaskExecuter;
 
 /**
  * A general NxM real matrix.
@@ -117,27 +120,198 @@ public class Matrix implements Cloneable {
     }
     
     /**
-     * Simple matrix multiplication of two matrices: this * b
+     * Matrix multiplication of two matrices: this * b. <br>
+     * The product is formed a block at a time with all inner loops
+     * running along rows, and is shared among the available processors
+     * for larger matrices.
      * 
      * @param b the matrix to which to multiply
      * @return the result Cij = Sum(Aik*Bkj)
      */
     public Matrix mul(Matrix b) {
         Matrix c = new Matrix(rowCount, b.columnCount);
-        
-        int i, j, k;        
-        double cij;
+
+        product(MUL, this, b, c, false);
+
+        return c;
+    }
+
+    /**
+     * Matrix multiplication of two matrices into a preallocated matrix:
+     * c = this * b. This avoids allocating a new result matrix, when a
+     * product is formed repeatedly.
+     *
+     * @param b the matrix to which to multiply
+     * @param c the matrix into which the result is stored, whose previous
+     *        contents are overwritten
+     */
+    public void mul(Matrix b, Matrix c) {
+        c.makeZero();
+
+        product(MUL, this, b, c, false);
+    }
+
+    /**
+     * Matrix multiplication of the transpose of this matrix with another
+     * matrix: this' * b, without forming the transpose
+     *
+     * @param b the matrix to which to multiply
+     * @return the result Cij = Sum(Aki*Bkj)
+     */
+    public Matrix transposeMul(Matrix b) {
+        Matrix c = new Matrix(columnCount, b.columnCount);
+
+        product(TRANSPOSE_MUL, this, b, c, false);
+
+        return c;
+    }
+
+    /**
+     * Matrix multiplication of this matrix with the transpose of another
+     * matrix: this * b', without forming the transpose
+     *
+     * @param b the matrix whose transpose is to be multiplied
+     * @return the result Cij = Sum(Aik*Bjk)
+     */
+    public Matrix mulTranspose(Matrix b) {
+        Matrix c = new Matrix(rowCount, b.rowCount);
+
+        product(MUL_TRANSPOSE, this, b, c, false);
+
+        return c;
+    }
+
+    /**
+     * Symmetric rank-k product: this' * this. Only the upper triangle is
+     * computed, and then copied to the lower one.
+     *
+     * @return the symmetric result Cij = Sum(Aki*Akj)
+     */
+    public Matrix symmetricRankK() {
+        Matrix c = new Matrix(columnCount, columnCount);
+
+        product(TRANSPOSE_MUL, this, this, c, true);
+
+        double [][] cm = c.matrix;
+        for(int i=0; i<columnCount; i++) {
+            for(int j=0; j<i; j++) {
+                cm[i][j] = cm[j][i];
+            } // end for
+        } // end for
+
+        return c;
+    }
+
+    /**
+     * Tr(this * b), without forming the product. Only valid if the product
+     * is a square matrix.
+     *
+     * @param b the matrix to which to multiply
+     * @return the trace of the product, Sum(Aik*Bki)
+     */
+    public double traceOfProduct(Matrix b) {
+        double tr = 0.0;
+        double [] ai;
+        double [][] bm = b.matrix;
+        int i, k;
+
         for(i=0; i<rowCount; i++) {
-            for(j=0; j<b.columnCount; j++) {
-                cij = 0.0;
-                for(k=0; k<b.rowCount; k++) {
-                    cij += matrix[i][k] * b.matrix[k][j];
+            ai = matrix[i];
+            for(k=0; k<columnCount; k++) {
+                tr += ai[k] * bm[k][i];
+            } // end for
+        } // end for
+
+        return tr;
+    }
+
+    /** the kinds of products computed by product() */
+    private static final int MUL = 0, TRANSPOSE_MUL = 1, MUL_TRANSPOSE = 2;
+
+    /** block sizes, in the inner (k) and column (j) dimensions */
+    private static final int K_BLOCK = 64, J_BLOCK = 256;
+
+    /** number of multiply-adds beyond which a product is done in parallel */
+    private static final long PARALLEL_THRESHOLD = 1L << 21;
+
+    /**
+     * Form the product c = op(a) * op(b), in parallel if it is large
+     * enough
+     */
+    private static void product(int kind, Matrix a, Matrix b, Matrix c,
+                                boolean upperOnly) {
+        int inner = (kind == TRANSPOSE_MUL) ? a.rowCount : a.columnCount;
+        long work = (long) c.rowCount * c.columnCount * inner;
+
+        if (work < PARALLEL_THRESHOLD) {
+            product(kind, a.matrix, b.matrix, c.matrix, 0, c.rowCount,
+                    inner, c.columnCount, upperOnly);
+            return;
+        } // end if
+
+        SimpleParallelTaskExecuter pTaskExecuter
+                                   = new SimpleParallelTaskExecuter();
+
+        MatrixProductThread pThread
+                   = new MatrixProductThread(kind, a, b, c, upperOnly);
+        pThread.setTaskName("MatrixProduct Thread");
+        pThread.setTotalItems(c.rowCount);
+
+        pTaskExecuter.execute(pThread);
+    }
+
+    /**
+     * Form the rows [startRow, endRow) of the product c = op(a) * op(b),
+     * c is assumed to be zero.
+     */
+    private static void product(int kind, double [][] a, double [][] b,
+                                double [][] c, int startRow, int endRow,
+                                int inner, int columns, boolean upperOnly) {
+        int i, j, k, kk, jj, kEnd, jEnd, jStart;
+        double aik, cij;
+        double [] ai, bk, ci;
+
+        if (kind == MUL_TRANSPOSE) {
+            // rows of a dotted with rows of b
+            for(i=startRow; i<endRow; i++) {
+                ai = a[i];
+                ci = c[i];
+
+                for(j=(upperOnly ? i : 0); j<columns; j++) {
+                    bk  = b[j];
+                    cij = 0.0;
+                    for(k=0; k<inner; k++) cij += ai[k] * bk[k];
+                    ci[j] = cij;
+                } // end for
+            } // end for
+
+            return;
+        } // end if
+
+        // c(i, :) += a(i, k) * b(k, :), a block of k and j at a time
+        for(kk=0; kk<inner; kk+=K_BLOCK) {
+            kEnd = Math.min(kk+K_BLOCK, inner);
+
+            for(jj=0; jj<columns; jj+=J_BLOCK) {
+                jEnd = Math.min(jj+J_BLOCK, columns);
+
+                for(i=startRow; i<endRow; i++) {
+                    jStart = upperOnly ? Math.max(i, jj) : jj;
+                    if (jStart >= jEnd) continue;
+
+                    ci = c[i];
+                    ai = (kind == MUL) ? a[i] : null;
+
+                    for(k=kk; k<kEnd; k++) {
+                        aik = (kind == MUL) ? ai[k] : a[k][i];
+                        if (aik == 0.0) continue;
+
+                        bk = b[k];
+                        for(j=jStart; j<jEnd; j++) ci[j] += aik * bk[j];
+                    } // end for
                 } // end for
-                c.matrix[i][j] = cij;
             } // end for
         } // end for
-        
-        return c;
     }
 
     /**
@@ -200,7 +374,7 @@ public class Matrix implements Cloneable {
      * @return XAX'
      */
     public Matrix similarityTransform(Matrix x) {
-        return x.mul(this).mul(x.transpose());
+        return x.mul(this).mulTranspose(x);
     }
     
     /**
@@ -210,7 +384,7 @@ public class Matrix implements Cloneable {
      * @return X'AX
      */
     public Matrix similarityTransformT(Matrix x) {
-        return x.transpose().mul(this).mul(x);
+        return x.transposeMul(this).mul(x);
     }
     
     /**
@@ -561,4 +735,55 @@ public class Matrix implements Cloneable {
 
         return res;
     }
+
+    /**
+     * Class encapsulating the way to form matrix products in a way
+     * useful for utilizing multi core (processor) systems. Each task
+     * computes a block of rows of the product.
+     */
+    protected static class MatrixProductThread
+                     extends AbstractSimpleParallelTask {
+
+        private int kind;
+        private Matrix a, b, c;
+        private boolean upperOnly;
+
+        public MatrixProductThread(int kind, Matrix a, Matrix b, Matrix c,
+                                   boolean upperOnly) {
+            this.kind      = kind;
+            this.a         = a;
+            this.b         = b;
+            this.c         = c;
+            this.upperOnly = upperOnly;
+
+            setTaskName("MatrixProduct Thread");
+        }
+
+        public MatrixProductThread(int kind, Matrix a, Matrix b, Matrix c,
+                                   boolean upperOnly,
+                                   int startRow, int endRow) {
+            this(kind, a, b, c, upperOnly);
+
+            this.startItem = startRow;
+            this.endItem   = endRow;
+        }
+
+        /**
+         * Overridden run()
+         */
+        @Override
+        public void run() {
+            int inner = (kind == TRANSPOSE_MUL) ? a.rowCount : a.columnCount;
+
+            product(kind, a.matrix, b.matrix, c.matrix, startItem, endItem,
+                    inner, c.columnCount, upperOnly);
+        }
+
+        /** Overridden init() */
+        @Override
+        public SimpleParallelTask init(int startItem, int endItem) {
+            return new MatrixProductThread(kind, a, b, c, upperOnly,
+                                           startItem, endItem);
+        }
+    } // end of class MatrixProductThread
 } // end of class
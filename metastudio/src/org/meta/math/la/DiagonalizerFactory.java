@@ -25,7 +25,7 @@ public class DiagonalizerFactory {
     
     /** Creates a new instance of DiagonalizerFactory */
     private DiagonalizerFactory() {
-        defaultDiagonalizer = new JacobiDiagonalizer();                
+        defaultDiagonalizer = new HouseholderDiagonalizer();
     }
     
     /**
@@ -59,6 +59,8 @@ public class DiagonalizerFactory {
     public Diagonalizer getDiagonalizer(DiagonalizerType dt) {
         if (dt.equals(DiagonalizerType.JACOBI)) {
             return new JacobiDiagonalizer();
+        } else if (dt.equals(DiagonalizerType.HOUSEHOLDER)) {
+            return new HouseholderDiagonalizer();
         } else {
             throw new UnsupportedOperationException("Diagonalizer not " +
                                                 "supported : " + dt.toString());
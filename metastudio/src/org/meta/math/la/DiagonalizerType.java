@@ -7,7 +7,8 @@
 package org.meta.math.la;
 
 /**
- * Specifies the diagonalizer types, like <code>JACOBI</code> etc.
+ * Specifies the diagonalizer types, like <code>JACOBI</code>,
+ * <code>HOUSEHOLDER</code> etc.
  *
  * @author  V.Ganesh
  * @version 2.0 (Part of MeTA v2.0)
@@ -23,6 +24,12 @@ public final class DiagonalizerType {
      * The Jacobi method
      */
     public static final DiagonalizerType JACOBI = new DiagonalizerType(1);
+
+    /**
+     * Householder reduction followed by the QL method
+     */
+    public static final DiagonalizerType HOUSEHOLDER
+                                         = new DiagonalizerType(2);
     
     /** Creates a new instance of DiagonalizerType */
     private DiagonalizerType(int type) {
@@ -47,6 +54,8 @@ public final class DiagonalizerType {
         
         if (this.equals(JACOBI)) {
             description = "Jacobi Diagonalization Method";
+        } else if (this.equals(HOUSEHOLDER)) {
+            description = "Householder-QL Diagonalization Method";
         } else {
             description = "No description available";
         } // end if
@@ -0,0 +1,312 @@
+/*
+ * HouseholderDiagonalizer.java
+ *
+ * Created on 18/10/2026
+ */
+
+package org.meta.math.la;
+
+import org.meta.math.Matrix;
+
+/**
+ * Diagonalization of a real symmetric matrix by Householder reduction to
+ * tridiagonal form, followed by the QL algorithm with implicit shifts on
+ * the tridiagonal matrix. Both steps take O(N<SUP>3</SUP>) operations, but
+ * unlike the Jacobi method there are no repeated sweeps over the full
+ * matrix, which makes this much faster for larger matrices. <br>
+ * Based on the tred2 and tql2 routines of EISPACK, also described in
+ * <i>Numerical Recipes, sections <b>11.2</b> and <b>11.3</b></i>.
+ * The transformations are stored transposed, so that all inner loops run
+ * along rows of the matrix.
+ *
+ * @author  V.Ganesh
+ * @version 2.0 (Part of MeTA v2.0)
+ */
+public class HouseholderDiagonalizer extends Diagonalizer {
+
+    // the transpose of the accumulated transformations, finally the
+    // eigen vectors, one per row
+    private double [][] w;
+
+    // the diagonal and sub diagonal of the tridiagonal matrix
+    private double [] d, e;
+
+    /** Creates a new instance of HouseholderDiagonalizer */
+    public HouseholderDiagonalizer() {
+        super();
+    }
+
+    /**
+     * the diagonalization method, for the matrix A
+     *
+     * @param matrix - the matrix that is to be diagonalized
+     */
+    @Override
+    public void diagonalize(Matrix matrix) {
+        eigenVectors = (Matrix) matrix.clone();
+        w = eigenVectors.getMatrix();
+
+        int n = w.length;
+
+        d = new double[n];
+        e = new double[n];
+
+        tridiagonalize(n);
+        diagonalizeTridiagonal(n);
+
+        eigenValues = d;
+
+        // sort the eigen value in ascending order, if requested
+        if (eigenSort) sortEigenValues();
+
+        w = null;
+        d = e = null;
+    }
+
+    /**
+     * Householder reduction to tridiagonal form, accumulating the
+     * transformations in w
+     */
+    private void tridiagonalize(int n) {
+        int i, j, k;
+        double scale, f, g, h, hh;
+        double [] wi, wj;
+
+        for(j=0; j<n; j++) d[j] = w[j][n-1];
+
+        for(i=n-1; i>0; i--) {
+            wi = w[i];
+
+            // scale to avoid under/overflow
+            scale = h = 0.0;
+            for(k=0; k<i; k++) scale += Math.abs(d[k]);
+
+            if (scale == 0.0) {
+                e[i] = d[i-1];
+
+                for(j=0; j<i; j++) {
+                    d[j] = w[j][i-1];
+                    w[j][i] = 0.0;
+                    wi[j]   = 0.0;
+                } // end for
+            } else {
+                // generate the Householder vector
+                for(k=0; k<i; k++) {
+                    d[k] /= scale;
+                    h += d[k] * d[k];
+                } // end for
+
+                f = d[i-1];
+                g = Math.sqrt(h);
+                if (f > 0) g = -g;
+
+                e[i]   = scale * g;
+                h     -= f * g;
+                d[i-1] = f - g;
+
+                for(j=0; j<i; j++) e[j] = 0.0;
+
+                // apply similarity transformation to the remaining columns
+                for(j=0; j<i; j++) {
+                    wj = w[j];
+                    f  = d[j];
+                    wi[j] = f;
+                    g  = e[j] + wj[j] * f;
+
+                    for(k=j+1; k<i; k++) {
+                        g    += wj[k] * d[k];
+                        e[k] += wj[k] * f;
+                    } // end for
+
+                    e[j] = g;
+                } // end for
+
+                f = 0.0;
+                for(j=0; j<i; j++) {
+                    e[j] /= h;
+                    f += e[j] * d[j];
+                } // end for
+
+                hh = f / (h + h);
+                for(j=0; j<i; j++) e[j] -= hh * d[j];
+
+                for(j=0; j<i; j++) {
+                    wj = w[j];
+                    f  = d[j];
+                    g  = e[j];
+
+                    for(k=j; k<i; k++) wj[k] -= (f * e[k] + g * d[k]);
+
+                    d[j]  = wj[i-1];
+                    wj[i] = 0.0;
+                } // end for
+            } // end if
+
+            d[i] = h;
+        } // end for
+
+        // accumulate the transformations
+        double [] wi1;
+        for(i=0; i<n-1; i++) {
+            wi  = w[i];
+            wi1 = w[i+1];
+
+            wi[n-1] = wi[i];
+            wi[i]   = 1.0;
+            h       = d[i+1];
+
+            if (h != 0.0) {
+                for(k=0; k<=i; k++) d[k] = wi1[k] / h;
+
+                for(j=0; j<=i; j++) {
+                    wj = w[j];
+
+                    g = 0.0;
+                    for(k=0; k<=i; k++) g += wi1[k] * wj[k];
+                    for(k=0; k<=i; k++) wj[k] -= g * d[k];
+                } // end for
+            } // end if
+
+            for(k=0; k<=i; k++) wi1[k] = 0.0;
+        } // end for
+
+        for(j=0; j<n; j++) {
+            d[j] = w[j][n-1];
+            w[j][n-1] = 0.0;
+        } // end for
+
+        w[n-1][n-1] = 1.0;
+        e[0] = 0.0;
+    }
+
+    /**
+     * QL algorithm with implicit shifts, for the tridiagonal matrix in
+     * d and e, rotating the eigen vectors in w
+     */
+    private void diagonalizeTridiagonal(int n) {
+        int i, k, l, m, iter;
+        double f, g, h, p, r, s, s2, c, c2, c3, el1, dl1, tst1, wk;
+        double [] wi, wi1;
+        final double eps = Math.ulp(1.0);
+
+        for(i=1; i<n; i++) e[i-1] = e[i];
+        e[n-1] = 0.0;
+
+        f = tst1 = 0.0;
+        for(l=0; l<n; l++) {
+            // find small sub diagonal element
+            tst1 = Math.max(tst1, Math.abs(d[l]) + Math.abs(e[l]));
+            m = l;
+            while(m < n) {
+                if (Math.abs(e[m]) <= eps*tst1) break;
+                m++;
+            } // end while
+
+            // if m == l, d[l] is an eigen value, else iterate
+            if (m > l) {
+                iter = 0;
+
+                do {
+                    iter++;
+
+                    // compute implicit shift
+                    g = d[l];
+                    p = (d[l+1] - g) / (2.0 * e[l]);
+                    r = hypot(p, 1.0);
+                    if (p < 0) r = -r;
+
+                    d[l]   = e[l] / (p + r);
+                    d[l+1] = e[l] * (p + r);
+                    dl1    = d[l+1];
+                    h      = g - d[l];
+
+                    for(i=l+2; i<n; i++) d[i] -= h;
+                    f += h;
+
+                    // implicit QL transformation
+                    p   = d[m];
+                    c   = c2 = c3 = 1.0;
+                    el1 = e[l+1];
+                    s   = s2 = 0.0;
+
+                    for(i=m-1; i>=l; i--) {
+                        c3 = c2;
+                        c2 = c;
+                        s2 = s;
+                        g  = c * e[i];
+                        h  = c * p;
+                        r  = hypot(p, e[i]);
+                        e[i+1] = s * r;
+                        s  = e[i] / r;
+                        c  = p / r;
+                        p  = c * d[i] - s * g;
+                        d[i+1] = h + s * (c * g + s * d[i]);
+
+                        // rotate the eigen vectors
+                        wi  = w[i];
+                        wi1 = w[i+1];
+                        for(k=0; k<n; k++) {
+                            wk     = wi1[k];
+                            wi1[k] = s * wi[k] + c * wk;
+                            wi[k]  = c * wi[k] - s * wk;
+                        } // end for
+                    } // end for
+
+                    p    = -s * s2 * c3 * el1 * e[l] / dl1;
+                    e[l] = s * p;
+                    d[l] = c * p;
+
+                    // check for convergence
+                } while((Math.abs(e[l]) > eps*tst1)
+                        && (iter < maximumIteration));
+            } // end if
+
+            d[l] += f;
+            e[l]  = 0.0;
+        } // end for
+    }
+
+    /** sqrt(a^2 + b^2) without under/overflow */
+    private static double hypot(double a, double b) {
+        double absA = Math.abs(a), absB = Math.abs(b), t;
+
+        if (absA > absB) {
+            t = absB / absA;
+            return absA * Math.sqrt(1.0 + t*t);
+        } else if (absB != 0.0) {
+            t = absA / absB;
+            return absB * Math.sqrt(1.0 + t*t);
+        } else {
+            return 0.0;
+        } // end if
+    }
+
+    /**
+     * Sort the eigenvalues in ascending order as well as eigenvectors
+     * using simple selection sort. As the eigen vectors are rows, only
+     * the row references need to be swapped.
+     */
+    private void sortEigenValues() {
+        int i, j, k;
+        double p;
+        double [] row;
+        int n = eigenValues.length;
+
+        for(i=0; i<n-1; i++) {
+            p = eigenValues[k=i];
+
+            for(j=i+1; j<n; j++) {
+                if (eigenValues[j] < p) p = eigenValues[k=j];
+            } // end for
+
+            if (k != i) { // swap
+                eigenValues[k] = eigenValues[i];
+                eigenValues[i] = p;
+
+                row  = w[i];
+                w[i] = w[k];
+                w[k] = row;
+            } // end if
+        } // end for
+    }
+} // end of class HouseholderDiagonalizer
@@ -1,7 +1,7 @@
 package org.meta.math.mm;
 
 import java.io.IOException;
-import java.util.Hashtable;
+import java.util.Map;
 import org.meta.math.geom.Point3D;
 import org.meta.common.Utility;
 import org.meta.config.charmm.AngleParameters;
@@ -227,7 +227,7 @@ public class CharmmForceFieldMethod extends MMEnergyMethod {
         double inversionTerm = 0.0;
         if (atomI.isInvertible()) {
             Integer[] bondedAtoms = new Integer[3];
-            bondedAtoms = atomI.getAtom().getConnectedList().keySet().toArray(
+            bondedAtoms = atomI.getAtom().getConnections().keySet().toArray(
                     bondedAtoms);
             CharmmAtom atomJ = atoms[bondedAtoms[0].intValue()];
             CharmmAtom atomK = atoms[bondedAtoms[1].intValue()];
@@ -329,8 +329,8 @@ public class CharmmForceFieldMethod extends MMEnergyMethod {
 
     private CharmmAtom createCharmmAtom(int i) {
         Atom atomI = (Atom) molecule.getAtom(i);
-        final int atomicNumber = atomInfo.getAtomicNumber(atomI.getSymbol());
-        final double atomicWeight = atomInfo.getAtomicWeight(atomI.getSymbol());
+        final int atomicNumber = atomInfo.getAtomicNumber(atomI.getElementCode());
+        final double atomicWeight = atomInfo.getAtomicWeight(atomI.getElementCode());
         return new CharmmAtom(atomI, atomicNumber, atomicWeight, atomI.
                 getAtomCenter(), getCharmmAtomType(atomI, atomicNumber));
     }
@@ -402,7 +402,7 @@ public class CharmmForceFieldMethod extends MMEnergyMethod {
      */
     private int getNumberConnected(Atom atom, String atomType, BondType bondType) {
         int numConnected = 0;
-        Hashtable<Integer, BondType> connectedList = atom.getConnectedList();
+        Map<Integer, BondType> connectedList = atom.getConnections();
         for (Integer atomIndex : connectedList.keySet()) {
             Atom atomJ = molecule.getAtom(atomIndex);
             if (atomJ.getSymbol().equals(atomType) &&
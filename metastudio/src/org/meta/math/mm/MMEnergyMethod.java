@@ -1,8 +1,8 @@
 package org.meta.math.mm;
 
 import java.util.ArrayList;
-import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.Map;
 import org.meta.math.geom.Point3D;
 import org.meta.config.impl.AtomInfo;
 import org.meta.math.MathUtil;
@@ -244,7 +244,7 @@ public abstract class MMEnergyMethod implements OptimizerFunction {
      */
     private OneThreePairing get13Connection(int i, int k) {
         Atom atomI = molecule.getAtom(i);
-        Hashtable<Integer, BondType> connectedI = atomI.getConnectedList();
+        Map<Integer, BondType> connectedI = atomI.getConnections();
         Iterator<Integer> iter = connectedI.keySet().iterator();
         while (iter.hasNext()) {
             Integer atomIndex = iter.next();
@@ -264,14 +264,14 @@ public abstract class MMEnergyMethod implements OptimizerFunction {
      */
     private OneFourPairing get14Connection(int i, int l) {
         Atom atomI = molecule.getAtom(i);
-        Hashtable<Integer, BondType> connectedI = atomI.getConnectedList();
+        Map<Integer, BondType> connectedI = atomI.getConnections();
         Iterator<Integer> iterI = connectedI.keySet().iterator();
         while (iterI.hasNext()) {
             Integer j = iterI.next();
             if (connectedI.get(j).isStrongBond()) {
                 Atom atomJ = molecule.getAtom(j);
-                Hashtable<Integer, BondType> connectedJ =
-                        atomJ.getConnectedList();
+                Map<Integer, BondType> connectedJ =
+                        atomJ.getConnections();
                 Iterator<Integer> iterJ = connectedJ.keySet().iterator();
                 while (iterJ.hasNext()) {
                     Integer k = iterJ.next();
@@ -139,8 +139,8 @@ public class UniversalForceFieldMethod extends MMEnergyMethod {
         final UffCoordinationParameters coordinationParamsI =
                 paramsI.getCoordinationParams(coordination.
                 getUffGeometrySpecification());
-        final int atomicNumber = atomInfo.getAtomicNumber(atomI.getSymbol());
-        final double atomicWeight = atomInfo.getAtomicWeight(atomI.getSymbol());
+        final int atomicNumber = atomInfo.getAtomicNumber(atomI.getElementCode());
+        final double atomicWeight = atomInfo.getAtomicWeight(atomI.getElementCode());
         final UffAtom uffAtomI = new UffAtom(atomI, atomI.getAtomCenter(),
                 paramsI, coordination,
                 coordinationParamsI, atomicNumber, atomicWeight);
@@ -368,7 +368,7 @@ public class UniversalForceFieldMethod extends MMEnergyMethod {
         double inversionTerm = 0.0;
         if (atomI.isInvertible()) {
             Integer[] bondedAtoms = new Integer[3];
-            bondedAtoms = atomI.getAtom().getConnectedList().keySet().toArray(
+            bondedAtoms = atomI.getAtom().getConnections().keySet().toArray(
                     bondedAtoms);
             UffAtom atomJ = atoms[bondedAtoms[0].intValue()];
             UffAtom atomK = atoms[bondedAtoms[1].intValue()];
@@ -552,7 +552,7 @@ public class UniversalForceFieldMethod extends MMEnergyMethod {
                 return Coordination.Single;
             case 2:
                 Integer[] bonded2 = new Integer[2];
-                bonded2 = atom.getConnectedList().keySet().toArray(
+                bonded2 = atom.getConnections().keySet().toArray(
                         bonded2);
                 Atom atomA = molecule.getAtom(bonded2[0].intValue());
                 Atom atomB = molecule.getAtom(bonded2[1].intValue());
@@ -567,7 +567,7 @@ public class UniversalForceFieldMethod extends MMEnergyMethod {
                 }
             case 3:
                 Integer[] bonded3 = new Integer[3];
-                bonded3 = atom.getConnectedList().keySet().toArray(
+                bonded3 = atom.getConnections().keySet().toArray(
                         bonded3);
                 Atom atomC = molecule.getAtom(bonded3[0].intValue());
                 Atom atomD = molecule.getAtom(bonded3[1].intValue());
@@ -584,7 +584,7 @@ public class UniversalForceFieldMethod extends MMEnergyMethod {
                 }
             case 4:
                 Integer[] bonded4 = new Integer[4];
-                bonded4 = atom.getConnectedList().keySet().toArray(
+                bonded4 = atom.getConnections().keySet().toArray(
                         bonded4);
                 Atom atomE = molecule.getAtom(bonded4[0].intValue());
                 Atom atomF = molecule.getAtom(bonded4[1].intValue());
@@ -12,6 +12,7 @@ import org.meta.math.qm.basis.BasisReader;
 import org.meta.math.qm.basis.BasisSet;
 import org.meta.math.qm.basis.ContractedGaussian;
 import org.meta.math.qm.basis.Orbital;
+import org.meta.math.qm.basis.PackedBasisFunctions;
 import org.meta.math.qm.basis.Power;
 import org.meta.math.qm.basis.PowerList;
 import org.meta.math.qm.basis.ShellList;
@@ -36,9 +37,17 @@ public class BasisFunctions {
 
     private ShellList shellList;
 
+    private PackedBasisFunctions packedBasisFunctions;
+
     private Molecule molecule;
 
     private MoleculeStateChangeListener molStateChangeListener;
+
+    /** the atom property name for the atom centered basis functions */
+    private String atomPropertyName;
+
+    /** the default atom property name, used by the orbital basis */
+    public static final String DEFAULT_ATOM_PROPERTY = "basisFunctions";
     
     /** 
      * Creates a new instance of BasisFunctions 
@@ -48,6 +57,23 @@ public class BasisFunctions {
      */
     public BasisFunctions(Molecule molecule, String basisName) 
                                              throws Exception {
+        this(molecule, basisName, DEFAULT_ATOM_PROPERTY);
+    }
+
+    /**
+     * Creates a new instance of BasisFunctions, saving the basis functions
+     * centered on each atom under a given atom property name. This allows
+     * more than one basis (like an auxiliary basis) for the same molecule.
+     *
+     * @param molecule the Molecule whose basis function is requested
+     * @param basisName the name of the basis set (like sto3g)
+     * @param atomPropertyName the name of the user defined atom property
+     *        under which the atom centered basis functions are saved
+     */
+    public BasisFunctions(Molecule molecule, String basisName,
+                          String atomPropertyName) throws Exception {
+        this.atomPropertyName = atomPropertyName;
+
         // initialize the basis functions
         getBasisFunctions(molecule, basisName);
         this.basisName = basisName;
@@ -108,6 +134,17 @@ public class BasisFunctions {
         return this.shellList;
     }
 
+    /**
+     * Get the structure of arrays copy of the basis functions, meant for
+     * the inner loops of integral evaluations. This is rebuilt along with
+     * the basis functions when the molecule changes.
+     *
+     * @return the packed basis functions
+     */
+    public PackedBasisFunctions getPackedBasisFunctions() {
+        return this.packedBasisFunctions;
+    }
+
     /**
      * Getter for property basisFunctions.
      *
@@ -163,10 +200,10 @@ public class BasisFunctions {
             // this atom as a user defined property of the atom
             try {
               atom.addUserDefinedAtomProperty(
-                new UserDefinedAtomProperty("basisFunctions", atomicFunctions));
+                new UserDefinedAtomProperty(atomPropertyName, atomicFunctions));
             } catch(UnsupportedOperationException e) {
                 UserDefinedAtomProperty up =
-                        atom.getUserDefinedAtomProperty("basisFunctions");
+                        atom.getUserDefinedAtomProperty(atomPropertyName);
                 up.setValue(atomicFunctions);
             } // end of try .. catch block
         } // end while
@@ -175,7 +212,7 @@ public class BasisFunctions {
     }
 
     /**
-     * Initialize the shell list
+     * Initialize the shell list, and the packed basis functions
      */
     private void initShellList() {
         shellList = new ShellList();
@@ -183,12 +220,23 @@ public class BasisFunctions {
         for(ContractedGaussian cg:basisFunctions) {
             shellList.addShellPrimitive(cg);
         } // end for
+
+        packedBasisFunctions = new PackedBasisFunctions(basisFunctions,
+                                          shellList.getCenteredShells());
+    }
+
+    /**
+     * Stop following the changes to the molecule. These basis functions
+     * are no longer updated after this call.
+     */
+    public void dispose() {
+        molecule.removeMoleculeStateChangeListener(molStateChangeListener);
     }
 
     @Override
     protected void finalize() throws Throwable {
         super.finalize();
 
-        molecule.removeMoleculeStateChangeListener(molStateChangeListener);
+        dispose();
     }
 } // end of class BasisFunctions
@@ -0,0 +1,382 @@
+/*
+ * BatchSCF.java
+ *
+ * Created on 18/10/2026
+ */
+
+package org.meta.math.qm;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import org.meta.common.EventListenerList;
+import org.meta.math.qm.event.BatchSCFEvent;
+import org.meta.math.qm.basis.AtomicBasis;
+import org.meta.math.qm.basis.BasisReader;
+import org.meta.math.qm.basis.BasisSet;
+import org.meta.math.qm.basis.Orbital;
+import org.meta.math.qm.basis.Power;
+import org.meta.math.qm.basis.PowerList;
+import org.meta.math.qm.event.BatchSCFEventListener;
+import org.meta.molecule.Atom;
+import org.meta.molecule.Molecule;
+import org.meta.parallel.SimpleParallelTaskExecuter;
+
+/**
+ * Runs the SCF of a number of molecules, at the same level of theory,
+ * concurrently on the worker threads shared by all the parallel tasks
+ * (see SimpleParallelTaskExecuter). <br>
+ *
+ * Molecules with at least largeMoleculeThreshold basis functions are run
+ * one after the other on the calling thread, each using all the workers
+ * for its integrals and Fock builds. The rest are run one per worker, with
+ * each SCF being sequential, which avoids the overhead of splitting small
+ * jobs. The basis functions of a molecule are made only when its SCF is
+ * run, and are let go of when it is over. The energy of each molecule is
+ * reported to the BatchSCFEventListeners as soon as it is known.
+ *
+ * @author  V.Ganesh
+ * @version 2.0 (Part of MeTA v2.0)
+ */
+public class BatchSCF {
+
+    /** the default number of basis functions of a large molecule */
+    public static final int DEFAULT_LARGE_MOLECULE_THRESHOLD = 150;
+
+    private String basisName;
+
+    private SCFType scfType;
+
+    private double energyTolerance;
+
+    private int maxIteration;
+
+    private int largeMoleculeThreshold;
+
+    private EventListenerList<BatchSCFEventListener> listenerList = null;
+
+    /**
+     * Creates a new instance of BatchSCF
+     *
+     * @param basisName the basis set for all the molecules (say "sto-3g")
+     * @param scfType the SCF method for all the molecules
+     */
+    public BatchSCF(String basisName, SCFType scfType) {
+        this.basisName = basisName;
+        this.scfType   = scfType;
+
+        energyTolerance        = 0.0;
+        maxIteration           = 0;
+        largeMoleculeThreshold = DEFAULT_LARGE_MOLECULE_THRESHOLD;
+    }
+
+    /**
+     * Run the SCF for all the molecules, and wait for them to be over.
+     *
+     * @param molecules the molecules to be computed
+     * @return the final energies, in the order of the molecules, NaN for
+     *         the ones that could not be computed
+     */
+    public double [] scf(List<Molecule> molecules) {
+        int noOfMolecules = molecules.size();
+        double [] energies = new double[noOfMolecules];
+        ArrayList<Integer> largeMolecules = new ArrayList<Integer>();
+        ArrayList<Future<?>> smallMolecules = new ArrayList<Future<?>>();
+
+        // count the basis functions first, to know which molecules
+        // are large
+        BasisSet basis = null;
+        HashMap<String, Integer> atomicBasisSizes
+                                   = new HashMap<String, Integer>();
+        int noOfBasisFunctions;
+
+        try {
+            basis = BasisReader.getInstance().readBasis(basisName);
+        } catch (Exception ignored) {
+            System.err.println("Unable to read basis " + basisName
+                               + " : " + ignored);
+        } // end of try .. catch block
+
+        for(int i=0; i<noOfMolecules; i++) {
+            energies[i] = Double.NaN;
+
+            try {
+                noOfBasisFunctions = getNumberOfBasisFunctions(
+                               molecules.get(i), basis, atomicBasisSizes);
+            } catch (Exception ignored) {
+                System.err.println("Unable to set up basis for "
+                                   + molecules.get(i) + " : " + ignored);
+                fireMoleculeCompleted(i, molecules.get(i), null, false);
+                continue;
+            } // end of try .. catch block
+
+            if (noOfBasisFunctions >= largeMoleculeThreshold) {
+                largeMolecules.add(i);
+            } else {
+                smallMolecules.add(SimpleParallelTaskExecuter.getSharedPool()
+                   .submit(new MoleculeSCF(i, molecules.get(i), energies,
+                                           true)));
+            } // end if
+        } // end for
+
+        // the large ones use all the workers, along with the small ones
+        for(int i : largeMolecules) {
+            new MoleculeSCF(i, molecules.get(i), energies, false).run();
+        } // end for
+
+        for(Future<?> smallMolecule : smallMolecules) {
+            try {
+                smallMolecule.get();
+            } catch (ExecutionException ignored) {
+                System.err.println("Error from BatchSCF : "
+                                   + ignored.getCause().toString());
+            } catch (InterruptedException ignored) {
+                System.err.println("Error from BatchSCF : "
+                                   + ignored.toString());
+                Thread.currentThread().interrupt();
+                break;
+            } // end of try .. catch block
+        } // end for
+
+        return energies;
+    }
+
+    /**
+     * The number of basis functions of a molecule, without making them
+     *
+     * @param molecule the molecule
+     * @param basis the basis set, null if it could not be read
+     * @param atomicBasisSizes the number of basis functions of the atoms
+     *        counted so far, by symbol
+     * @return the number of basis functions
+     * @throws Exception if the basis is not there for all the atoms
+     */
+    private int getNumberOfBasisFunctions(Molecule molecule, BasisSet basis,
+                        HashMap<String, Integer> atomicBasisSizes)
+                                                     throws Exception {
+        if (basis == null) {
+            throw new Exception("Basis " + basisName + " is not available");
+        } // end if
+
+        Iterator<Atom> atoms = molecule.getAtoms();
+        int noOfBasisFunctions = 0;
+        Integer atomicBasisSize;
+        Atom atom;
+
+        while(atoms.hasNext()) {
+            atom = atoms.next();
+            atomicBasisSize = atomicBasisSizes.get(atom.getSymbol());
+
+            if (atomicBasisSize == null) {
+                AtomicBasis atomicBasis
+                                = basis.getAtomicBasis(atom.getSymbol());
+                int size = 0;
+
+                for(Orbital orbital : atomicBasis.getOrbitals()) {
+                    Iterator<Power> powers = PowerList.getInstance()
+                                             .getPowerList(orbital.getType());
+
+                    while(powers.hasNext()) {
+                        powers.next();
+                        size++;
+                    } // end while
+                } // end for
+
+                atomicBasisSize = size;
+                atomicBasisSizes.put(atom.getSymbol(), atomicBasisSize);
+            } // end if
+
+            noOfBasisFunctions += atomicBasisSize;
+        } // end while
+
+        return noOfBasisFunctions;
+    }
+
+    /**
+     * The SCF of one molecule of the batch
+     */
+    private class MoleculeSCF implements Runnable {
+        private int moleculeIndex;
+        private Molecule molecule;
+        private double [] energies;
+        private boolean sequential;
+
+        public MoleculeSCF(int moleculeIndex, Molecule molecule,
+                           double [] energies, boolean sequential) {
+            this.moleculeIndex = moleculeIndex;
+            this.molecule      = molecule;
+            this.energies      = energies;
+            this.sequential    = sequential;
+        }
+
+        @Override
+        public void run() {
+            int parallelism = SimpleParallelTaskExecuter.getLocalParallelism();
+            BasisFunctions bfs = null;
+            SCFMethod scfm = null;
+            boolean converged = false;
+
+            if (sequential) SimpleParallelTaskExecuter.setLocalParallelism(1);
+
+            try {
+                bfs = new BasisFunctions(molecule, basisName);
+
+                OneElectronIntegrals oneEI
+                              = new OneElectronIntegrals(bfs, molecule);
+                TwoElectronIntegrals twoEI = new TwoElectronIntegrals(bfs,
+                              scfType.equals(SCFType.HARTREE_FOCK_DIRECT));
+
+                scfm = SCFMethodFactory.getInstance().getSCFMethod(molecule,
+                                                     oneEI, twoEI, scfType);
+                if (energyTolerance > 0.0) {
+                    scfm.setEnergyTolerance(energyTolerance);
+                } // end if
+                if (maxIteration > 0) scfm.setMaxIteration(maxIteration);
+
+                scfm.scf();
+
+                energies[moleculeIndex] = scfm.getEnergy();
+                converged = scfm.isConverged();
+            } catch (Exception ignored) {
+                System.err.println("SCF failed for " + molecule + " : "
+                                   + ignored.toString());
+            } finally {
+                SimpleParallelTaskExecuter.setLocalParallelism(parallelism);
+
+                // stop following the molecule
+                if (bfs != null) bfs.dispose();
+            } // end of try .. catch block
+
+            fireMoleculeCompleted(moleculeIndex, molecule, scfm, converged);
+        }
+    } // end of inner class MoleculeSCF
+
+    /**
+     * Registers BatchSCFEventListener to receive events.
+     * @param listener The listener to register.
+     */
+    public synchronized void addBatchSCFEventListener(
+                                           BatchSCFEventListener listener) {
+        if (listenerList == null ) {
+            listenerList = new EventListenerList<BatchSCFEventListener>();
+        }
+        listenerList.add(BatchSCFEventListener.class, listener);
+    }
+
+    /**
+     * Removes BatchSCFEventListener from the list of listeners.
+     * @param listener The listener to remove.
+     */
+    public synchronized void removeBatchSCFEventListener(
+                                           BatchSCFEventListener listener) {
+        listenerList.remove(BatchSCFEventListener.class, listener);
+    }
+
+    /**
+     * Notifies all registered listeners about the completion of a
+     * molecule, one molecule at a time.
+     */
+    private synchronized void fireMoleculeCompleted(int moleculeIndex,
+                                    Molecule molecule, SCFMethod scfm,
+                                    boolean converged) {
+        if (listenerList == null) return;
+
+        BatchSCFEvent event = new BatchSCFEvent(this);
+
+        event.setMoleculeIndex(moleculeIndex);
+        event.setMolecule(molecule);
+        event.setSCFMethod(scfm);
+        event.setConverged(converged);
+        event.setType(converged ? BatchSCFEvent.CONVERGED_EVENT
+                                : BatchSCFEvent.FAILED_CONVERGENCE_EVENT);
+        event.setCurrentEnergy(scfm == null ? Double.NaN : scfm.getEnergy());
+        event.setCurrentIteration(scfm == null ? 0 : scfm.getScfIteration());
+
+        Object[] listeners = listenerList.getListenerList();
+
+        for(Object listener : listeners) {
+            ((BatchSCFEventListener)listener).moleculeCompleted(event);
+        } // end for
+    }
+
+    /**
+     * Get the value of basisName
+     *
+     * @return the value of basisName
+     */
+    public String getBasisName() {
+        return basisName;
+    }
+
+    /**
+     * Get the value of scfType
+     *
+     * @return the value of scfType
+     */
+    public SCFType getSCFType() {
+        return scfType;
+    }
+
+    /**
+     * Get the value of energyTolerance
+     *
+     * @return the value of energyTolerance, 0 for the default of the SCF
+     *         method
+     */
+    public double getEnergyTolerance() {
+        return energyTolerance;
+    }
+
+    /**
+     * Set the value of energyTolerance
+     *
+     * @param energyTolerance new value of energyTolerance, 0 for the
+     *        default of the SCF method
+     */
+    public void setEnergyTolerance(double energyTolerance) {
+        this.energyTolerance = energyTolerance;
+    }
+
+    /**
+     * Get the value of maxIteration
+     *
+     * @return the value of maxIteration, 0 for the default of the SCF
+     *         method
+     */
+    public int getMaxIteration() {
+        return maxIteration;
+    }
+
+    /**
+     * Set the value of maxIteration
+     *
+     * @param maxIteration new value of maxIteration, 0 for the default of
+     *        the SCF method
+     */
+    public void setMaxIteration(int maxIteration) {
+        this.maxIteration = maxIteration;
+    }
+
+    /**
+     * Get the value of largeMoleculeThreshold
+     *
+     * @return the number of basis functions from which a molecule is run
+     *         with all the workers
+     */
+    public int getLargeMoleculeThreshold() {
+        return largeMoleculeThreshold;
+    }
+
+    /**
+     * Set the value of largeMoleculeThreshold
+     *
+     * @param largeMoleculeThreshold the number of basis functions from which
+     *        a molecule is run with all the workers
+     */
+    public void setLargeMoleculeThreshold(int largeMoleculeThreshold) {
+        this.largeMoleculeThreshold = largeMoleculeThreshold;
+    }
+} // end of class BatchSCF
@@ -6,41 +6,182 @@
 
 package org.meta.math.qm;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
 import java.util.ArrayList;
 import org.meta.math.Matrix;
 import org.meta.math.Vector;
-import org.meta.math.la.GaussianElimination;
-import org.meta.math.la.exception.SingularMatrixException;
 
 /**
  * DIIS (Direct Inversion of ierative subspaces) proposed by Peter Pualay for
  * HF convergence acceleration.
  *
+ * The subspace is a ring buffer of at most maxSubspaceSize Fock matrices and
+ * error (FPS - SPF) matrices, the oldest being replaced once it is full. The
+ * Fock matrices are kept as their lower triangle, and the antisymmetric
+ * error matrices as their strict lower triangle, on or off heap; the error
+ * matrices optionally in single precision. The matrix of error dot products
+ * is updated a row at a time, so each step costs O(k n^2) for a subspace of
+ * k vectors. The small DIIS equations are solved with partial pivoting.
+ *
  * @author  V.Ganesh
  * @version 2.0 (Part of MeTA v2.0)
  */
 public class DIISFockExtrapolator implements FockExtrapolator {
 
-    private ArrayList<Fock> fockMatrixList;
-    private ArrayList<Vector> errorMatrixList;
+    /** the kinds of storage for the subspace vectors */
+    public static enum StorageType {
+        /** on heap, in double precision */
+        DOUBLE,
+        /** on heap, the error vectors in single precision */
+        FLOAT,
+        /** off heap (direct buffers), in double precision */
+        OFF_HEAP
+    }
+
+    /** the default largest number of vectors in the subspace */
+    public static final int DEFAULT_MAX_SUBSPACE_SIZE = 8;
+
+    private int maxSubspaceSize = DEFAULT_MAX_SUBSPACE_SIZE;
+
+    private StorageType storageType = StorageType.DOUBLE;
+
+    /** the subspace Fock matrices and error vectors */
+    private SubspaceVectors fockVectors, errorVectors;
+
+    /** the error dot products, indexed by the ring buffer slots */
+    private double [][] errorProducts;
+
+    /** the augmented DIIS equations and their solution */
+    private double [][] aMatrix;
+    private double [] solVec;
+
+    /** pivots smaller than this make the DIIS equations singular */
+    private static final double SINGULARITY_THRESHOLD = 1.0e-14;
+
+    /** the number of vectors in the subspace, and the next slot to use */
+    private int subspaceSize, nextSlot;
+
+    /** the number of basis functions, and the work space for them */
+    private int noOfBasisFunctions;
+    private Matrix fp, fps;
+    private double [] packedFock, packedError;
 
     private int diisStep = 0;
 
     private boolean diisStarted = false;
 
-    private Fock oldFock = null;
     /** Initialize this interpolator */
     @Override
     public void init() {
-        fockMatrixList  = new ArrayList<Fock>();
-        errorMatrixList = new ArrayList<Vector>();
+        fockVectors  = errorVectors = null;
+        fp = fps     = null;
+        noOfBasisFunctions = 0;
+
+        subspaceSize = nextSlot = 0;
 
         diisStep = 0;
 
         errorThreshold = 0.1;
         diisStarted = false;
+    }
+
+    /**
+     * Initialize this interpolator with the subspace of an earlier run at
+     * the same geometry, so that the extrapolation starts right away. Only
+     * the last maxSubspaceSize entries are kept.
+     *
+     * @param fockMatrices the Fock matrices of the earlier iterations
+     * @param errorVectors the corresponding (flattened) error matrices
+     */
+    public void init(ArrayList<Fock> fockMatrices,
+                     ArrayList<Vector> errorVectors) {
+        init();
+
+        if (fockMatrices.isEmpty()) return;
+
+        allocate(fockMatrices.get(0).getRowCount());
+
+        int n = noOfBasisFunctions;
+        int first = Math.max(0, fockMatrices.size() - maxSubspaceSize);
+        int i, j, ij;
+
+        for(int k=first; k<fockMatrices.size(); k++) {
+            double [] error = errorVectors.get(k).getVector();
+
+            for(i=0, ij=0; i<n; i++) {
+                for(j=0; j<i; j++, ij++) packedError[ij] = error[i*n+j];
+            } // end for
+
+            pack(fockMatrices.get(k).getMatrix(), packedFock);
+            add(packedFock, packedError);
+        } // end for
+
+        diisStarted = true;
+    }
+
+    /** allocate the subspace and the work space for n basis functions */
+    private void allocate(int n) {
+        noOfBasisFunctions = n;
+
+        fp  = new Matrix(n);
+        fps = new Matrix(n);
+        packedFock  = new double[n*(n+1)/2];
+        packedError = new double[n*(n-1)/2];
+
+        // the error vectors only decide the coefficients, so single
+        // precision is enough for them, but not for the Fock matrices
+        fockVectors  = newSubspaceVectors(packedFock.length,
+                          storageType == StorageType.FLOAT ? StorageType.DOUBLE
+                                                           : storageType);
+        errorVectors = newSubspaceVectors(packedError.length, storageType);
+
+        errorProducts = new double[maxSubspaceSize][maxSubspaceSize];
+        aMatrix = new double[maxSubspaceSize+1][maxSubspaceSize+2];
+        solVec  = new double[maxSubspaceSize+1];
+        subspaceSize  = nextSlot = 0;
+    }
+
+    /** the subspace vectors in a given storage type */
+    private SubspaceVectors newSubspaceVectors(int length, StorageType type) {
+        switch(type) {
+            case FLOAT:
+                return new FloatSubspaceVectors(maxSubspaceSize, length);
+            case OFF_HEAP:
+                return new OffHeapSubspaceVectors(maxSubspaceSize, length);
+            default:
+                return new DoubleSubspaceVectors(maxSubspaceSize, length);
+        } // end of switch .. case block
+    }
+
+    /** the lower triangle of a symmetric matrix */
+    private static void pack(double [][] a, double [] packed) {
+        int i, j, ij = 0;
+
+        for(i=0; i<a.length; i++) {
+            for(j=0; j<=i; j++) packed[ij++] = a[i][j];
+        } // end for
+    }
+
+    /**
+     * Add a Fock matrix and its error vector to the subspace, replacing the
+     * oldest if it is full, and update the error dot products
+     */
+    private void add(double [] fock, double [] error) {
+        int slot = nextSlot;
+
+        fockVectors.put(slot, fock);
+        errorVectors.put(slot, error);
+
+        nextSlot = (nextSlot + 1) % maxSubspaceSize;
+        subspaceSize = Math.min(subspaceSize + 1, maxSubspaceSize);
 
-        oldFock = null;
+        // the full antisymmetric matrices have each element twice
+        for(int i=0; i<subspaceSize; i++) {
+            errorProducts[slot][i] = errorProducts[i][slot]
+                                   = 2.0 * errorVectors.dot(i, error);
+        } // end for
     }
 
     /** Get the next exrapolated fock matrix
@@ -52,93 +193,184 @@ public class DIISFockExtrapolator implements FockExtrapolator {
      */
     @Override
     public Fock next(Fock currentFock, Overlap overlap, Density density) {
-        Fock newFock = new Fock(((Matrix) currentFock.clone()).getMatrix());
-        double [][] newFockMat = newFock.getMatrix();
+        int n = currentFock.getRowCount();
+        if (n != noOfBasisFunctions) allocate(n);
+
+        // F, P and S are symmetric, so SPF = (FPS)'
+        currentFock.mul(density, fp);
+        fp.mul(overlap, fps);
 
-        Matrix FPS = currentFock.mul(density).mul(overlap);
-        Matrix SPF = overlap.mul(density).mul(currentFock);
+        double [][] fpsMat = fps.getMatrix();
+        double mxerr = 0.0;
+        int i, j, ij;
 
-        Vector errorMatrix = new Vector(FPS.sub(SPF));
-        double mxerr = errorMatrix.maxNorm();
+        for(i=0, ij=0; i<n; i++) {
+            for(j=0; j<i; j++, ij++) {
+                packedError[ij] = fpsMat[i][j] - fpsMat[j][i];
+                mxerr = Math.max(mxerr, Math.abs(packedError[ij]));
+            } // end for
+        } // end for
 
         if (mxerr < errorThreshold && !diisStarted) {
             System.out.println("Starting DIIS...");
             diisStarted = true;
         } // end if
 
-        if (!diisStarted) {
-            if (oldFock == null) {
-                oldFock = currentFock;
+        if (!diisStarted) return currentFock;
+
+        pack(currentFock.getMatrix(), packedFock);
+        add(packedFock, packedError);
+
+        // set up A x = B to be solved, in the order of the slots, with
+        // the error products scaled by the largest of them
+        int N1 = subspaceSize + 1;
+        double scale = 0.0;
+
+        for (i = 0; i < subspaceSize; i++) {
+            scale = Math.max(scale, errorProducts[i][i]);
+        } // end for
+        if (scale == 0.0) scale = 1.0;
+
+        for (i = 0; i < subspaceSize; i++) {
+            for (j = 0; j < subspaceSize; j++) {
+                aMatrix[i][j] = errorProducts[i][j] / scale;
+            } // end for
+
+            aMatrix[subspaceSize][i] = aMatrix[i][subspaceSize] = -1.0;
+            aMatrix[i][N1] = 0.0;
+        } // end for
 
-                return currentFock;
-            } else {
-                newFockMat = oldFock.mul(0.5).add(currentFock.mul(0.5)).getMatrix();
-                oldFock = currentFock;
+        aMatrix[subspaceSize][subspaceSize] = 0.0;
+        aMatrix[subspaceSize][N1] = -1.0;
 
-                return newFock;
-            } // end if
+        if (!solve(N1)) {
+            // no solution could be found, so return the current Fock as is
+            diisStep++;
+            return currentFock;
         } // end if
-        
-        errorMatrixList.add(errorMatrix);
-        fockMatrixList.add(currentFock);
 
-        newFock.makeZero();
+        // the extrapolated Fock matrix, sum_i c_i F_i
+        java.util.Arrays.fill(packedFock, 0.0);
+        for (i = 0; i < subspaceSize; i++) {
+            fockVectors.addTo(i, solVec[i], packedFock);
+        } // end for
+
+        Fock newFock = new Fock(n);
+        double [][] newFockMat = newFock.getMatrix();
+
+        for(i=0, ij=0; i<n; i++) {
+            for(j=0; j<=i; j++, ij++) {
+                newFockMat[i][j] = newFockMat[j][i] = packedFock[ij];
+            } // end for
+        } // end for
+
+        diisStep++;
+
+        return newFock;
+    }
+
+    /**
+     * Solve the N1 x N1 system held in aMatrix, augmented with its right
+     * hand side, by Gaussian elimination with partial pivoting. The solution
+     * is left in solVec.
+     *
+     * @return false if the system is (numerically) singular
+     */
+    private boolean solve(int N1) {
+        int i, j, k;
+
+        for (k = 0; k < N1; k++) {
+            int pivot = k;
 
-        int noOfIterations = errorMatrixList.size();
-        int N1 = noOfIterations + 1;
+            for (i = k+1; i < N1; i++) {
+                if (Math.abs(aMatrix[i][k]) > Math.abs(aMatrix[pivot][k]))
+                    pivot = i;
+            } // end for
 
-        Matrix A = new Matrix(N1);
-        Vector B = new Vector(N1);
+            if (Math.abs(aMatrix[pivot][k]) < SINGULARITY_THRESHOLD)
+                return false;
 
-        double[][] aMatrix = A.getMatrix();
-        double[] bVector = B.getVector();
+            double [] row = aMatrix[pivot];
+            aMatrix[pivot] = aMatrix[k];
+            aMatrix[k] = row;
 
-        // set up A x = B to be solved
-        for (int i = 0; i < noOfIterations; i++) {
-            for (int j = 0; j < noOfIterations; j++) {
-                aMatrix[i][j] = errorMatrixList.get(i).dot(errorMatrixList.get(j));
+            for (i = k+1; i < N1; i++) {
+                double m = aMatrix[i][k] / row[k];
+
+                for (j = k; j <= N1; j++) aMatrix[i][j] -= m * row[j];
             } // end for
         } // end for
 
-        for (int i = 0; i < noOfIterations; i++) {
-            aMatrix[noOfIterations][i] = aMatrix[i][noOfIterations] = -1.0;
-            bVector[i] = 0.0;
+        for (k = N1-1; k >= 0; k--) {
+            double sum = aMatrix[k][N1];
+
+            for (j = k+1; j < N1; j++) sum -= aMatrix[k][j] * solVec[j];
+
+            solVec[k] = sum / aMatrix[k][k];
         } // end for
 
-        aMatrix[noOfIterations][noOfIterations] = 0.0;
-        bVector[noOfIterations] = -1.0;
+        return true;
+    }
+
+    /**
+     * Get the Fock matrices of the current subspace, oldest first
+     *
+     * @return the subspace Fock matrices
+     */
+    public ArrayList<Fock> getFockMatrixList() {
+        ArrayList<Fock> fockMatrices = new ArrayList<Fock>();
+        int n = noOfBasisFunctions;
+        int i, j, ij;
+
+        for(int k=0; k<subspaceSize; k++) {
+            fockVectors.get(oldestSlot(k), packedFock);
+
+            Fock fock = new Fock(n);
+            double [][] f = fock.getMatrix();
+
+            for(i=0, ij=0; i<n; i++) {
+                for(j=0; j<=i; j++, ij++) f[i][j] = f[j][i] = packedFock[ij];
+            } // end for
 
-        GaussianElimination gele = new GaussianElimination();
-        gele.setMatrixA(A);
-        gele.setVectorX(B);
-        try {
-            gele.findSolution();
-            double[] solVec = gele.getVectorX().getVector();
+            fockMatrices.add(fock);
+        } // end for
 
-            // System.out.println("Sol found: " + gele.getVectorX());
+        return fockMatrices;
+    }
 
-            for (int i = 0; i < noOfIterations; i++) {
-                double[][] prevFockMat = fockMatrixList.get(i).getMatrix();
-                for (int j = 0; j < newFockMat.length; j++) {
-                    for (int k = 0; k < newFockMat.length; k++) {
-                        newFockMat[j][k] += solVec[i] * prevFockMat[j][k];
-                    } // end for
+    /**
+     * Get the (flattened) error matrices of the current subspace, oldest
+     * first
+     *
+     * @return the subspace error vectors
+     */
+    public ArrayList<Vector> getErrorMatrixList() {
+        ArrayList<Vector> errors = new ArrayList<Vector>();
+        int n = noOfBasisFunctions;
+        int i, j, ij;
+
+        for(int k=0; k<subspaceSize; k++) {
+            errorVectors.get(oldestSlot(k), packedError);
+
+            double [] e = new double[n*n];
+            for(i=0, ij=0; i<n; i++) {
+                for(j=0; j<i; j++, ij++) {
+                    e[i*n+j] = packedError[ij];
+                    e[j*n+i] = -packedError[ij];
                 } // end for
             } // end for
 
-            oldFock = currentFock;
-        } catch (SingularMatrixException ignored) {
-            // System.out.println("No sol: " + diisStep);
-            // ignored.printStackTrace();
+            errors.add(new Vector(e));
+        } // end for
 
-            // no solution could be found, so return the current Fock as is
-            diisStep++;
-            return currentFock;
-        } // end of try .. catch block
+        return errors;
+    }
 
-        diisStep++;
+    /** the slot of the k th oldest vector of the subspace */
+    private int oldestSlot(int k) {
+        int oldest = (subspaceSize < maxSubspaceSize) ? 0 : nextSlot;
 
-        return newFock;
+        return (oldest + k) % maxSubspaceSize;
     }
 
     protected double errorThreshold;
@@ -160,4 +392,189 @@ public class DIISFockExtrapolator implements FockExtrapolator {
     public void setErrorThreshold(double errorThreshold) {
         this.errorThreshold = errorThreshold;
     }
+
+    /**
+     * Get the value of maxSubspaceSize
+     *
+     * @return the value of maxSubspaceSize
+     */
+    public int getMaxSubspaceSize() {
+        return maxSubspaceSize;
+    }
+
+    /**
+     * Set the value of maxSubspaceSize, the number of vectors kept in the
+     * subspace. Takes effect from the next call to init().
+     *
+     * @param maxSubspaceSize new value of maxSubspaceSize
+     */
+    public void setMaxSubspaceSize(int maxSubspaceSize) {
+        if (maxSubspaceSize < 1)
+            throw new IllegalArgumentException("Invalid subspace size: "
+                                               + maxSubspaceSize);
+
+        this.maxSubspaceSize = maxSubspaceSize;
+    }
+
+    /**
+     * Get the value of storageType
+     *
+     * @return the value of storageType
+     */
+    public StorageType getStorageType() {
+        return storageType;
+    }
+
+    /**
+     * Set the value of storageType, the storage used for the subspace
+     * vectors. Takes effect from the next call to init().
+     *
+     * @param storageType new value of storageType
+     */
+    public void setStorageType(StorageType storageType) {
+        this.storageType = storageType;
+    }
+
+    /** A fixed number of equal length vectors, held in slots */
+    private static abstract class SubspaceVectors {
+        protected int length;
+
+        /** store a vector in a slot */
+        abstract void put(int slot, double [] v);
+
+        /** read the vector in a slot */
+        abstract void get(int slot, double [] v);
+
+        /** dot product of the vector in a slot with another vector */
+        abstract double dot(int slot, double [] v);
+
+        /** target += a * (the vector in a slot) */
+        abstract void addTo(int slot, double a, double [] target);
+    }
+
+    /** subspace vectors in double precision arrays */
+    private static class DoubleSubspaceVectors extends SubspaceVectors {
+        private double [][] vectors;
+
+        DoubleSubspaceVectors(int slots, int length) {
+            this.length  = length;
+            this.vectors = new double[slots][length];
+        }
+
+        @Override
+        void put(int slot, double [] v) {
+            System.arraycopy(v, 0, vectors[slot], 0, length);
+        }
+
+        @Override
+        void get(int slot, double [] v) {
+            System.arraycopy(vectors[slot], 0, v, 0, length);
+        }
+
+        @Override
+        double dot(int slot, double [] v) {
+            double [] s = vectors[slot];
+            double sum = 0.0;
+
+            for(int i=0; i<length; i++) sum += s[i] * v[i];
+
+            return sum;
+        }
+
+        @Override
+        void addTo(int slot, double a, double [] target) {
+            double [] s = vectors[slot];
+
+            for(int i=0; i<length; i++) target[i] += a * s[i];
+        }
+    }
+
+    /** subspace vectors in single precision arrays, at half the memory */
+    private static class FloatSubspaceVectors extends SubspaceVectors {
+        private float [][] vectors;
+
+        FloatSubspaceVectors(int slots, int length) {
+            this.length  = length;
+            this.vectors = new float[slots][length];
+        }
+
+        @Override
+        void put(int slot, double [] v) {
+            float [] s = vectors[slot];
+
+            for(int i=0; i<length; i++) s[i] = (float) v[i];
+        }
+
+        @Override
+        void get(int slot, double [] v) {
+            float [] s = vectors[slot];
+
+            for(int i=0; i<length; i++) v[i] = s[i];
+        }
+
+        @Override
+        double dot(int slot, double [] v) {
+            float [] s = vectors[slot];
+            double sum = 0.0;
+
+            for(int i=0; i<length; i++) sum += s[i] * v[i];
+
+            return sum;
+        }
+
+        @Override
+        void addTo(int slot, double a, double [] target) {
+            float [] s = vectors[slot];
+
+            for(int i=0; i<length; i++) target[i] += a * s[i];
+        }
+    }
+
+    /** subspace vectors in direct buffers, outside of the Java heap */
+    private static class OffHeapSubspaceVectors extends SubspaceVectors {
+        private DoubleBuffer [] vectors;
+
+        OffHeapSubspaceVectors(int slots, int length) {
+            this.length  = length;
+            this.vectors = new DoubleBuffer[slots];
+
+            for(int i=0; i<slots; i++) {
+                vectors[i] = ByteBuffer.allocateDirect(8*length)
+                               .order(ByteOrder.nativeOrder()).asDoubleBuffer();
+            } // end for
+        }
+
+        @Override
+        void put(int slot, double [] v) {
+            DoubleBuffer s = vectors[slot];
+
+            s.clear();
+            s.put(v, 0, length);
+        }
+
+        @Override
+        void get(int slot, double [] v) {
+            DoubleBuffer s = vectors[slot];
+
+            s.clear();
+            s.get(v, 0, length);
+        }
+
+        @Override
+        double dot(int slot, double [] v) {
+            DoubleBuffer s = vectors[slot];
+            double sum = 0.0;
+
+            for(int i=0; i<length; i++) sum += s.get(i) * v[i];
+
+            return sum;
+        }
+
+        @Override
+        void addTo(int slot, double a, double [] target) {
+            DoubleBuffer s = vectors[slot];
+
+            for(int i=0; i<length; i++) target[i] += a * s.get(i);
+        }
+    }
 }
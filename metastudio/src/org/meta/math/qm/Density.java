@@ -74,6 +74,6 @@ public class Density extends Matrix {
             for(j=0; j<c.length; j++)
                 d[i][j] = c[i][j];
 
-        this.setMatrix(dVector.transpose().mul(dVector).getMatrix());
+        this.setMatrix(dVector.symmetricRankK().getMatrix());
     }
 }
@@ -0,0 +1,549 @@
+/*
+ * DensityFittedCoulomb.java
+ *
+ * Created on 18/10/2026
+ */
+
+package org.meta.math.qm;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.meta.math.geom.Point3D;
+import org.meta.math.la.exception.SingularMatrixException;
+import org.meta.math.qm.basis.ContractedGaussian;
+import org.meta.math.qm.basis.Power;
+import org.meta.math.qm.basis.Shell;
+import org.meta.math.qm.integral.Integrals;
+import org.meta.math.qm.integral.ShellPair;
+import org.meta.parallel.AbstractSimpleParallelTask;
+import org.meta.parallel.SimpleParallelTask;
+import org.meta.parallel.SimpleParallelTaskExecuter;
+
+/**
+ * Resolution of the identity (density fitting) approximation to the
+ * Coulomb matrix: <br>
+ *
+ * J(ij) = sum_PQ (ij|P) [V^-1](PQ) sum_kl (Q|kl) D(kl)
+ *
+ * where P, Q are the functions of an auxiliary basis and V(PQ) = (P|Q) is
+ * the Coulomb metric. With the Cholesky factorization V = L L', the three
+ * centre integrals are fitted once, C(Q, ij) = sum_P [L^-1](QP) (ij|P), so
+ * that each Coulomb build is two matrix vector products with C,
+ * d(Q) = sum_ij C(Q, ij) D(ij) and J(ij) = sum_Q C(Q, ij) d(Q), at a cost of
+ * N^2 N_aux rather than the N^4 of the exact Coulomb matrix. <br>
+ *
+ * The fitted integrals take 8 N (N+1)/2 N_aux bytes. The three centre and
+ * two centre integrals are evaluated as four centre integrals in which
+ * one (or two) of the functions is the unit s function, exp(0 r^2) = 1.
+ *
+ * @author  V.Ganesh
+ * @version 2.0 (Part of MeTA v2.0)
+ */
+public class DensityFittedCoulomb {
+
+    private TwoElectronIntegrals twoEI;
+
+    private BasisFunctions auxiliaryBasis;
+
+    private int noOfBasisFunctions, noOfPairs, noOfAuxiliaryFunctions;
+
+    /** the auxiliary shells, each paired with the unit s function */
+    private ArrayList<ShellPair> auxiliaryShellPairs;
+    private int [][] auxiliaryShellIndices;
+
+    /**
+     * the metric, and later its Cholesky factor (lower triangle), and the
+     * three centre integrals, later the fitted ones, [Q][ij] with ij the
+     * lower triangle index of i >= j
+     */
+    private double [][] metric, fittedIntegrals;
+
+    private double screeningThreshold;
+
+    private AtomicInteger nextAuxiliaryShell;
+
+    /** the work vectors of the Coulomb builds */
+    private double [] packedDensity, fittedDensity, packedCoulomb;
+
+    /**
+     * Creates a new instance of DensityFittedCoulomb, and computes the
+     * fitted three centre integrals
+     *
+     * @param twoEI the 2E integrals, of which the shell pairs and Schwarz
+     *        bounds of the (orbital) basis functions are used
+     * @param auxiliaryBasis the auxiliary basis functions
+     * @throws SingularMatrixException if the auxiliary basis is (nearly)
+     *         linearly dependent, so that the metric can not be factored
+     */
+    public DensityFittedCoulomb(TwoElectronIntegrals twoEI,
+                                BasisFunctions auxiliaryBasis)
+                                throws SingularMatrixException {
+        this.twoEI          = twoEI;
+        this.auxiliaryBasis = auxiliaryBasis;
+
+        screeningThreshold = twoEI.getScreeningThreshold();
+
+        int [][] shellIndices = twoEI.getShellIndices();
+        for(int [] indices : shellIndices) {
+            for(int i : indices) {
+                noOfBasisFunctions = Math.max(noOfBasisFunctions, i+1);
+            } // end for
+        } // end for
+        noOfPairs = noOfBasisFunctions * (noOfBasisFunctions+1) / 2;
+
+        makeAuxiliaryShellPairs();
+
+        metric          = new double[noOfAuxiliaryFunctions][];
+        fittedIntegrals = new double[noOfAuxiliaryFunctions][];
+
+        packedDensity = new double[noOfPairs];
+        packedCoulomb = new double[noOfPairs];
+        fittedDensity = new double[noOfAuxiliaryFunctions];
+
+        computeIntegrals();
+        factorMetric();
+        fitIntegrals();
+
+        metric = null;
+    }
+
+    /**
+     * Pair each centered shell of the auxiliary basis with the unit s
+     * function at its center
+     */
+    private void makeAuxiliaryShellPairs() {
+        ArrayList<Shell> shells = auxiliaryBasis.getShellList()
+                                                .getCenteredShells();
+
+        auxiliaryShellPairs   = new ArrayList<ShellPair>(shells.size());
+        auxiliaryShellIndices = new int[shells.size()][];
+
+        for(int s=0; s<shells.size(); s++) {
+            Shell shell = shells.get(s);
+            int n = shell.getNumberOfShellPrimitives();
+
+            auxiliaryShellIndices[s] = new int[n];
+            for(int i=0; i<n; i++) {
+                auxiliaryShellIndices[s][i]
+                                     = shell.getShellPrimitive(i).getIndex();
+            } // end for
+
+            auxiliaryShellPairs.add(new ShellPair(shell,
+                              unitShell(shell.getShellPrimitive(0)
+                                             .getOrigin())));
+        } // end for
+
+        noOfAuxiliaryFunctions = auxiliaryBasis.getBasisFunctions().size();
+    }
+
+    /** the shell of the unit s function at a center */
+    private static Shell unitShell(Point3D center) {
+        ContractedGaussian unit = new ContractedGaussian(center,
+                                                         new Power(0, 0, 0));
+        unit.addPrimitive(0.0, 1.0);
+
+        ArrayList<Double> primNorms = new ArrayList<Double>(1);
+        primNorms.add(1.0);
+        unit.setPrimNorms(primNorms);
+        unit.setNormalization(1.0);
+
+        Shell shell = new Shell(0);
+        shell.addShellPrimitive(unit);
+
+        return shell;
+    }
+
+    /**
+     * Compute the metric and the three centre integrals in parallel, the
+     * auxiliary shells being handed out dynamically
+     */
+    private void computeIntegrals() {
+        SimpleParallelTaskExecuter pTaskExecuter
+                                   = new SimpleParallelTaskExecuter();
+        int noOfShells = auxiliaryShellPairs.size();
+
+        nextAuxiliaryShell = new AtomicInteger(noOfShells);
+
+        ThreeCenterIntegralsThread tThread = new ThreeCenterIntegralsThread();
+        tThread.setTaskName("ThreeCenterIntegralsThread Thread");
+        tThread.setTotalItems(noOfShells);
+
+        pTaskExecuter.execute(tThread);
+
+        nextAuxiliaryShell = null;
+    }
+
+    /**
+     * Compute (P|Q) for Q <= P and (ij|P) of the auxiliary shells taken
+     * from nextAuxiliaryShell, till none are left. The (ij|P) are screened
+     * with |(ij|P)| <= sqrt((ij|ij)) sqrt((P|P)).
+     */
+    private void computeAuxiliaryShells() {
+        ArrayList<ShellPair> shellPairs = twoEI.getShellPairs();
+        double [] shellPairBounds = twoEI.getShellPairBounds();
+        int [][] shellIndices = twoEI.getShellIndices();
+        int noOfShells = shellIndices.length;
+
+        int maxShellSize = 0, maxAuxiliaryShellSize = 0;
+        for(int [] indices : shellIndices)
+            maxShellSize = Math.max(maxShellSize, indices.length);
+        for(int [] indices : auxiliaryShellIndices)
+            maxAuxiliaryShellSize = Math.max(maxAuxiliaryShellSize,
+                                             indices.length);
+
+        double [] integrals = new double[Math.max(
+                                  maxShellSize*maxShellSize,
+                                  maxAuxiliaryShellSize)
+                                  * maxAuxiliaryShellSize];
+
+        int s, t, a, b, ab, i, j, ii, jj, pp, qq, np, na, nb, idx;
+        int [] ip, iq, ia, ib;
+
+        while((s = nextAuxiliaryShell.decrementAndGet()) >= 0) {
+            ShellPair pPair = auxiliaryShellPairs.get(s);
+            ip = auxiliaryShellIndices[s];
+            np = ip.length;
+
+            for(pp=0; pp<np; pp++) {
+                metric[ip[pp]] = new double[ip[pp]+1];
+                fittedIntegrals[ip[pp]] = new double[noOfPairs];
+            } // end for
+
+            // the metric, (P|Q) for Q <= P
+            double pBound = 0.0;
+
+            for(t=0; t<=s; t++) {
+                iq = auxiliaryShellIndices[t];
+
+                Integrals.coulomb(pPair, auxiliaryShellPairs.get(t),
+                                  integrals);
+
+                for(pp=0, idx=0; pp<np; pp++) {
+                    for(qq=0; qq<iq.length; qq++, idx++) {
+                        if (iq[qq] > ip[pp]) continue;
+
+                        metric[ip[pp]][iq[qq]] = integrals[idx];
+                    } // end for
+                } // end for
+            } // end for
+
+            for(pp=0; pp<np; pp++) {
+                pBound = Math.max(pBound, metric[ip[pp]][ip[pp]]);
+            } // end for
+            pBound = Math.sqrt(pBound);
+
+            // the three centre integrals, (ij|P) for i >= j
+            for(a=0, ab=0; a<noOfShells; a++) {
+                ia = shellIndices[a];
+                na = ia.length;
+
+                for(b=0; b<=a; b++, ab++) {
+                    if (shellPairBounds[ab] * pBound < screeningThreshold)
+                        continue;
+
+                    ib = shellIndices[b];
+                    nb = ib.length;
+
+                    Integrals.coulomb(shellPairs.get(ab), pPair, integrals);
+
+                    for(ii=0, idx=0; ii<na; ii++) {
+                        i = ia[ii];
+
+                        for(jj=0; jj<nb; jj++) {
+                            j = ib[jj];
+
+                            if (a == b && j > i) { idx += np; continue; }
+
+                            int ij = (i >= j) ? i*(i+1)/2 + j
+                                              : j*(j+1)/2 + i;
+
+                            for(pp=0; pp<np; pp++, idx++) {
+                                fittedIntegrals[ip[pp]][ij] = integrals[idx];
+                            } // end for
+                        } // end for
+                    } // end for
+                } // end for
+            } // end for
+        } // end while
+    }
+
+    /**
+     * Cholesky factorization of the metric, V = L L', in place
+     */
+    private void factorMetric() throws SingularMatrixException {
+        int i, j, k;
+        double sum;
+
+        for(i=0; i<noOfAuxiliaryFunctions; i++) {
+            double [] li = metric[i];
+
+            for(j=0; j<=i; j++) {
+                double [] lj = metric[j];
+
+                sum = li[j];
+                for(k=0; k<j; k++) sum -= li[k] * lj[k];
+
+                if (i == j) {
+                    if (sum <= 0.0)
+                        throw new SingularMatrixException("Auxiliary basis "
+                              + "metric is not positive definite at " + i);
+
+                    li[i] = Math.sqrt(sum);
+                } else {
+                    li[j] = sum / lj[j];
+                } // end if
+            } // end for
+        } // end for
+    }
+
+    /**
+     * Fit the three centre integrals, C = L^-1 (ij|P), by forward
+     * substitution, in parallel over blocks of pairs ij
+     */
+    private void fitIntegrals() {
+        SimpleParallelTaskExecuter pTaskExecuter
+                                   = new SimpleParallelTaskExecuter();
+
+        FittingThread fThread = new FittingThread();
+        fThread.setTaskName("FittingThread Thread");
+        fThread.setTotalItems(noOfPairs);
+
+        pTaskExecuter.execute(fThread);
+    }
+
+    /** forward substitution for the pairs startPair .. endPair-1 */
+    private void fitIntegrals(int startPair, int endPair) {
+        int p, q, ij;
+
+        for(q=0; q<noOfAuxiliaryFunctions; q++) {
+            double [] lq = metric[q];
+            double [] cq = fittedIntegrals[q];
+
+            for(p=0; p<q; p++) {
+                double lqp = lq[p];
+                double [] cp = fittedIntegrals[p];
+
+                if (lqp == 0.0) continue;
+
+                for(ij=startPair; ij<endPair; ij++) cq[ij] -= lqp * cp[ij];
+            } // end for
+
+            double scale = 1.0 / lq[q];
+            for(ij=startPair; ij<endPair; ij++) cq[ij] *= scale;
+        } // end for
+    }
+
+    /**
+     * Add a multiple of the density fitted Coulomb matrix of a density to
+     * a matrix, g += factor J(D).
+     *
+     * @param density the (symmetric) density matrix
+     * @param gMatrix the matrix to be added to
+     * @param factor the multiple of the Coulomb matrix to be added
+     */
+    public synchronized void addCoulomb(Density density, double [][] gMatrix,
+                                        double factor) {
+        double [][] dMatrix = density.getMatrix();
+        int i, j, ij;
+
+        // the off diagonal elements stand for both ij and ji
+        for(i=0, ij=0; i<noOfBasisFunctions; i++) {
+            for(j=0; j<i; j++, ij++) packedDensity[ij] = 2.0 * dMatrix[i][j];
+            packedDensity[ij++] = dMatrix[i][i];
+        } // end for
+
+        SimpleParallelTaskExecuter pTaskExecuter
+                                   = new SimpleParallelTaskExecuter();
+
+        // d = C D
+        AuxiliaryContractionThread aThread = new AuxiliaryContractionThread();
+        aThread.setTaskName("AuxiliaryContractionThread Thread");
+        aThread.setTotalItems(noOfAuxiliaryFunctions);
+
+        pTaskExecuter.execute(aThread);
+
+        // J = C' d
+        PairContractionThread pThread = new PairContractionThread();
+        pThread.setTaskName("PairContractionThread Thread");
+        pThread.setTotalItems(noOfPairs);
+
+        pTaskExecuter.execute(pThread);
+
+        for(i=0, ij=0; i<noOfBasisFunctions; i++) {
+            for(j=0; j<=i; j++, ij++) {
+                double value = factor * packedCoulomb[ij];
+
+                gMatrix[i][j] += value;
+                if (i != j) gMatrix[j][i] += value;
+            } // end for
+        } // end for
+    }
+
+    /**
+     * Get the value of noOfAuxiliaryFunctions
+     *
+     * @return the number of auxiliary basis functions
+     */
+    public int getNumberOfAuxiliaryFunctions() {
+        return noOfAuxiliaryFunctions;
+    }
+
+    /**
+     * Get the value of auxiliaryBasis
+     *
+     * @return the value of auxiliaryBasis
+     */
+    public BasisFunctions getAuxiliaryBasis() {
+        return auxiliaryBasis;
+    }
+
+    /**
+     * Computes the metric and three centre integrals of the auxiliary
+     * shells, which are handed out dynamically.
+     */
+    protected class ThreeCenterIntegralsThread
+              extends AbstractSimpleParallelTask {
+
+        public ThreeCenterIntegralsThread() { }
+
+        public ThreeCenterIntegralsThread(int startItem, int endItem) {
+            this.startItem = startItem;
+            this.endItem   = endItem;
+
+            setTaskName("ThreeCenterIntegralsThread Thread");
+        }
+
+        /**
+         * Overridden run()
+         */
+        @Override
+        public void run() {
+            if (startItem >= endItem) return;
+
+            computeAuxiliaryShells();
+        }
+
+        /** Overridden init() */
+        @Override
+        public SimpleParallelTask init(int startItem, int endItem) {
+            return new ThreeCenterIntegralsThread(startItem, endItem);
+        }
+    }
+
+    /**
+     * Fits the three centre integrals of a block of pairs ij.
+     */
+    protected class FittingThread extends AbstractSimpleParallelTask {
+
+        public FittingThread() { }
+
+        public FittingThread(int startItem, int endItem) {
+            this.startItem = startItem;
+            this.endItem   = endItem;
+
+            setTaskName("FittingThread Thread");
+        }
+
+        /**
+         * Overridden run()
+         */
+        @Override
+        public void run() {
+            if (startItem >= endItem) return;
+
+            fitIntegrals(startItem, endItem);
+        }
+
+        /** Overridden init() */
+        @Override
+        public SimpleParallelTask init(int startItem, int endItem) {
+            return new FittingThread(startItem, endItem);
+        }
+    }
+
+    /**
+     * Contracts the fitted integrals with the density, d = C D, for a
+     * block of auxiliary functions.
+     */
+    protected class AuxiliaryContractionThread
+              extends AbstractSimpleParallelTask {
+
+        public AuxiliaryContractionThread() { }
+
+        public AuxiliaryContractionThread(int startItem, int endItem) {
+            this.startItem = startItem;
+            this.endItem   = endItem;
+
+            setTaskName("AuxiliaryContractionThread Thread");
+        }
+
+        /**
+         * Overridden run()
+         */
+        @Override
+        public void run() {
+            if (startItem >= endItem) return;
+
+            for(int q=startItem; q<endItem; q++) {
+                double [] cq = fittedIntegrals[q];
+                double sum = 0.0;
+
+                for(int ij=0; ij<noOfPairs; ij++) {
+                    sum += cq[ij] * packedDensity[ij];
+                } // end for
+
+                fittedDensity[q] = sum;
+            } // end for
+        }
+
+        /** Overridden init() */
+        @Override
+        public SimpleParallelTask init(int startItem, int endItem) {
+            return new AuxiliaryContractionThread(startItem, endItem);
+        }
+    }
+
+    /**
+     * Contracts the fitted integrals with the fitted density, J = C' d, for
+     * a block of pairs ij.
+     */
+    protected class PairContractionThread
+              extends AbstractSimpleParallelTask {
+
+        public PairContractionThread() { }
+
+        public PairContractionThread(int startItem, int endItem) {
+            this.startItem = startItem;
+            this.endItem   = endItem;
+
+            setTaskName("PairContractionThread Thread");
+        }
+
+        /**
+         * Overridden run()
+         */
+        @Override
+        public void run() {
+            if (startItem >= endItem) return;
+
+            int ij;
+
+            for(ij=startItem; ij<endItem; ij++) packedCoulomb[ij] = 0.0;
+
+            for(int q=0; q<noOfAuxiliaryFunctions; q++) {
+                double [] cq = fittedIntegrals[q];
+                double dq = fittedDensity[q];
+
+                for(ij=startItem; ij<endItem; ij++) {
+                    packedCoulomb[ij] += cq[ij] * dq;
+                } // end for
+            } // end for
+        }
+
+        /** Overridden init() */
+        @Override
+        public SimpleParallelTask init(int startItem, int endItem) {
+            return new PairContractionThread(startItem, endItem);
+        }
+    }
+} // end of class DensityFittedCoulomb
@@ -5,10 +5,16 @@
  */
 package org.meta.math.qm;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.meta.math.Matrix;
 import org.meta.math.Vector;
+import org.meta.math.qm.integral.Integrals;
 import org.meta.math.qm.integral.IntegralsUtil;
+import org.meta.math.qm.integral.ShellPair;
+import org.meta.math.qm.integral.TwoElectronIntegralStore;
 import org.meta.parallel.AbstractSimpleParallelTask;
 import org.meta.parallel.SimpleParallelTask;
 import org.meta.parallel.SimpleParallelTaskExecuter;
@@ -51,6 +57,63 @@ public class GMatrix extends Matrix {
 
     private TwoElectronIntegrals twoEI;
     private Density density;
+
+    /**
+     * the density fitted Coulomb matrix, if set only the exchange part is
+     * formed from the 2E integrals
+     */
+    private DensityFittedCoulomb densityFittedCoulomb;
+
+    /**
+     * Get the value of densityFittedCoulomb
+     *
+     * @return the value of densityFittedCoulomb
+     */
+    public DensityFittedCoulomb getDensityFittedCoulomb() {
+        return densityFittedCoulomb;
+    }
+
+    /**
+     * Set the value of densityFittedCoulomb. If set, the Coulomb part of
+     * the GMatrix is formed with the density fitting approximation, and only
+     * the exchange part with the 2E integrals.
+     *
+     * @param densityFittedCoulomb new value of densityFittedCoulomb, null
+     *        for the exact Coulomb matrix
+     */
+    public void setDensityFittedCoulomb(
+                               DensityFittedCoulomb densityFittedCoulomb) {
+        this.densityFittedCoulomb = densityFittedCoulomb;
+    }
+
+    /**
+     * the threshold below which a shell quartet, weighted by the largest
+     * density change it multiplies, is neglected in incremental builds
+     */
+    private double densityScreeningThreshold
+                        = TwoElectronIntegrals.DEFAULT_SCREENING_THRESHOLD;
+
+    /**
+     * Get the value of densityScreeningThreshold
+     *
+     * @return the value of densityScreeningThreshold
+     */
+    public double getDensityScreeningThreshold() {
+        return densityScreeningThreshold;
+    }
+
+    /**
+     * Set the value of densityScreeningThreshold. In computeIncremental(),
+     * shell quartets whose Schwarz bound times the largest deltaD element
+     * they multiply is below this are neglected. The plain Schwarz
+     * screening still uses the threshold of the TwoElectronIntegrals.
+     *
+     * @param densityScreeningThreshold new value of densityScreeningThreshold
+     */
+    public void setDensityScreeningThreshold(
+                                     double densityScreeningThreshold) {
+        this.densityScreeningThreshold = densityScreeningThreshold;
+    }
     
     /**
      * Form the GMatrix from two electron integrals and the density matrix.
@@ -68,6 +131,36 @@ public class GMatrix extends Matrix {
             makeGMatrixDirect();
         else 
             makeGMatrix();
+
+        if (densityFittedCoulomb != null)
+            densityFittedCoulomb.addCoulomb(density, getMatrix(), 2.0);
+    }
+
+    /**
+     * Incrementally update the GMatrix for a change in the density matrix,
+     * G(D + deltaD) = G(D) + G(deltaD), where the current contents of
+     * this GMatrix are G(D). The integrals are always computed on the fly,
+     * and are additionally screened by the largest deltaD element they
+     * multiply (see setDensityScreeningThreshold()), so that the builds
+     * get cheaper as the SCF converges.
+     *
+     * @param twoEI the 2E integrals
+     * @param deltaDensity the change in the Density matrix
+     */
+    public void computeIncremental(TwoElectronIntegrals twoEI,
+                                   Density deltaDensity) {
+        this.twoEI   = twoEI;
+        this.density = deltaDensity;
+
+        incremental = true;
+        try {
+            makeGMatrixDirect();
+        } finally {
+            incremental = false;
+        } // end try .. finally
+
+        if (densityFittedCoulomb != null)
+            densityFittedCoulomb.addCoulomb(deltaDensity, getMatrix(), 2.0);
     }
 
     /**
@@ -82,6 +175,12 @@ public class GMatrix extends Matrix {
             return;
         } // end if
 
+        // stream over the integrals, if they are on disk
+        if (twoEI.isOnDisk() && twoEI.getIntegralStore() != null) {
+            makeGMatrixFromStore();
+            return;
+        } // end if
+
         int noOfBasisFunctions = density.getRowCount();
         Matrix theGMatrix  = this;
         Vector densityOneD = new Vector(density); // form 1D vector of density
@@ -91,6 +190,9 @@ public class GMatrix extends Matrix {
         double [] ints = twoEI.getTwoEIntegrals();
         double [] temp = tempVector.getVector();
 
+        // only exchange, if the Coulomb part is density fitted
+        double jFactor = (densityFittedCoulomb == null) ? 2.0 : 0.0;
+
         int i, j, k, l, kl, indexJ, indexK1, indexK2;
         for(i=0; i<noOfBasisFunctions; i++) {
             for(j=0; j<i+1; j++) {
@@ -103,7 +205,7 @@ public class GMatrix extends Matrix {
                         indexJ   = IntegralsUtil.ijkl2intindex(i, j, k, l);
                         indexK1  = IntegralsUtil.ijkl2intindex(i, k, j, l);
                         indexK2  = IntegralsUtil.ijkl2intindex(i, l, k, j);
-                        temp[kl] = 2.0*ints[indexJ] - 0.5*ints[indexK1]
+                        temp[kl] = jFactor*ints[indexJ] - 0.5*ints[indexK1]
                                    - 0.5*ints[indexK2];
                         kl++;
                     } // end l loop
@@ -122,49 +224,132 @@ public class GMatrix extends Matrix {
      * a precalculated storage.
      */
     protected void makeGMatrixDirect() {
+        // shell pairs and Schwarz bounds for screening,
+        // (re)computed only if required
+        shellPairBounds    = twoEI.getShellPairBounds();
+        shellPairs         = twoEI.getShellPairs();
+        shellIndices       = twoEI.getShellIndices();
+        screeningThreshold = twoEI.getScreeningThreshold();
+        noOfSkippedIntegrals = 0;
+
+        if (incremental) makeShellDensityMaxima();
+
+        // the shell pairs are handed out one at a time, the most
+        // expensive ones (largest ab, which pair with the most cd) first
+        int noOfShellPairs = shellPairs.size();
+        nextShellPair = new AtomicInteger(noOfShellPairs);
+
+        formGMatrix(noOfShellPairs);
+
+        nextShellPair      = null;
+        shellDensityMaxima = null;
+    }
+
+    /**
+     * Make the G matrix <br>
+     * i.e. Form the 2J-K integrals corresponding to a density matrix
+     *
+     * This streams over the integrals held in a TwoElectronIntegralStore,
+     * the segments of which are handed out to the threads one at a time.
+     */
+    protected void makeGMatrixFromStore() {
+        integralStore = twoEI.getIntegralStore();
+        noOfSkippedIntegrals = 0;
+
+        int noOfSegments = integralStore.getNumberOfSegments();
+        nextSegment = new AtomicInteger(noOfSegments);
+
+        formGMatrix(noOfSegments);
+
+        integralStore = null;
+        nextSegment   = null;
+    }
+
+    /**
+     * Form the GMatrix in parallel, each thread accumulating into its own
+     * partial GMatrix, and then sum up the partial GMatrices.
+     *
+     * @param totalItems the number of work items, that are shared
+     *        dynamically among the threads
+     */
+    private void formGMatrix(int totalItems) {
         SimpleParallelTaskExecuter pTaskExecuter
                                    = new SimpleParallelTaskExecuter();
 
-        // allocate memory for partial GMatrices
-        partialGMatrixList = new ArrayList<GMatrix>();
-
-        // start the threads
+        // start the threads, each with its own partial GMatrix
         GMatrixFormationThread tThread
                    = new GMatrixFormationThread();
         tThread.setTaskName("GMatrixFormationThread Thread");
-        tThread.setTotalItems(density.getRowCount());
+        tThread.setTotalItems(totalItems);
 
         pTaskExecuter.execute(tThread);
 
-        if (partialGMatrixList.size() > 0) {
-            // collect the result and sum the partial contributions
-            this.makeZero();
-            double [][] gMatrix = this.getMatrix();
-            int N = this.getRowCount();
+        // collect the partial contributions
+        partialGMatrixList = new ArrayList<double [][]>();
+
+        Iterator<SimpleParallelTask> taskList = pTaskExecuter.getTaskList();
+        while(taskList.hasNext()) {
+            GMatrixFormationThread task
+                         = (GMatrixFormationThread) taskList.next();
+
+            if (task.getPartialGMatrix() == null) continue;
+
+            partialGMatrixList.add(task.getPartialGMatrix());
+            noOfSkippedIntegrals += task.getNumberOfSkippedIntegrals();
+        } // end while
+
+        // and sum them up, in parallel over the rows
+        GMatrixReductionThread rThread = new GMatrixReductionThread();
+        rThread.setTaskName("GMatrixReductionThread Thread");
+        rThread.setTotalItems(this.getRowCount());
 
-            // sum up the partial results
-            for(GMatrix pgMat : partialGMatrixList) {
-                double [][] pgm = pgMat.getMatrix();
+        pTaskExecuter.execute(rThread);
 
-                for(int i=0; i<N; i++) {
-                    for(int j=0; j<N; j++) {
-                        gMatrix[i][j] += pgm[i][j];
+        partialGMatrixList = null;
+    }
+
+    /**
+     * Make the largest absolute density element for every pair of shells,
+     * used for density weighted screening
+     */
+    private void makeShellDensityMaxima() {
+        double [][] dMatrix = density.getMatrix();
+        int noOfShells = shellIndices.length;
+        int a, b, i, j;
+        double dMax;
+        int [] ia, ib;
+
+        shellDensityMaxima = new double[noOfShells][noOfShells];
+
+        for(a=0; a<noOfShells; a++) {
+            ia = shellIndices[a];
+            for(b=0; b<=a; b++) {
+                ib = shellIndices[b];
+
+                dMax = 0.0;
+                for(i=0; i<ia.length; i++) {
+                    for(j=0; j<ib.length; j++) {
+                        dMax = Math.max(dMax, Math.abs(dMatrix[ia[i]][ib[j]]));
                     } // end for
                 } // end for
-            } // end for
 
-            // half the elements
-            for(int i=0; i<N; i++) {
-                for(int j=0; j<N; j++) {
-                    gMatrix[i][j] *= 0.5;
-                } // end for
+                shellDensityMaxima[a][b] = shellDensityMaxima[b][a] = dMax;
             } // end for
-        } // end if
+        } // end for
+    }
 
-        // enable garbage collection
-        partialGMatrixList.clear();
-        partialGMatrixList = null;
-        System.gc();
+    /**
+     * The largest density element (weighted by its use in 2J-K) that any
+     * of the integrals in shell quartet (ab|cd) multiplies
+     */
+    private double getShellQuartetDensityWeight(int a, int b, int c, int d) {
+        double [] da = shellDensityMaxima[a], db = shellDensityMaxima[b];
+
+        double coulomb  = Math.max(da[b], shellDensityMaxima[c][d]);
+        double exchange = Math.max(Math.max(da[c], da[d]),
+                                   Math.max(db[c], db[d]));
+
+        return Math.max(2.0*coulomb, 0.5*exchange);
     }
 
     /** function to facilitate mulithreaded direct formation of GMatrix */
@@ -211,80 +396,226 @@ public class GMatrix extends Matrix {
         } // end i loop
     }
 
-    private ArrayList<GMatrix> partialGMatrixList;
+    private ArrayList<double [][]> partialGMatrixList;
+
+    /** are we forming G for a density change, to be added to this? */
+    private boolean incremental = false;
+
+    /** largest absolute density elements of shell pairs (incremental) */
+    private double [][] shellDensityMaxima;
+
+    /** the integral store, when forming GMatrix from disk */
+    private TwoElectronIntegralStore integralStore;
+
+    /** the next store segment (counting down) to be taken up by a thread */
+    private AtomicInteger nextSegment;
+
+    /** the next shell pair (counting down) to be taken up by a thread */
+    private AtomicInteger nextShellPair;
+
+    private double [] shellPairBounds;
+    private ArrayList<ShellPair> shellPairs;
+    private int [][] shellIndices;
+    private double screeningThreshold;
+
+    /** number of integrals skipped by screening in the last direct build */
+    private long noOfSkippedIntegrals;
+
+    /**
+     * Get the number of symmetry unique integrals that were skipped by
+     * Schwarz screening in the last direct formation of this GMatrix
+     *
+     * @return the number of skipped integrals
+     */
+    public long getNumberOfSkippedIntegrals() {
+        return noOfSkippedIntegrals;
+    }
     
-    /** function to facilitate mulithreaded direct formation of GMatrix */
-    private void makeGMatrixDirect(int startBasisFunction, int endBasisFunction) {
-        int noOfBasisFunctions = density.getRowCount();
-        GMatrix theGMatrix  = new GMatrix(noOfBasisFunctions);
-        theGMatrix.makeZero();
-        
-        double [][] gMatrix = theGMatrix.getMatrix();
+    /**
+     * function to facilitate mulithreaded direct formation of GMatrix,
+     * shell pairs are taken from nextShellPair till none are left.
+     *
+     * @param gMatrix the partial GMatrix to accumulate into
+     * @return number of integrals skipped by screening
+     */
+    private long makeGMatrixDirect(double [][] gMatrix) {
         double [][] dMatrix = density.getMatrix();
         
-        int i, j, k, l, m, ij, kl;
-        int [] idx, jdx, kdx, ldx;
-        idx = new int[8];
+        int a, b, c, d, ab, cd, na, nb, nc, nd, idx;
+        int i, j, k, l, ij, kl, ii, jj, kk, ll;
+        int [] ia, ib, ic, id;
+        int [] idx8, jdx, kdx, ldx;
+        idx8 = new int[8];
         jdx = new int[8];
         kdx = new int[8];
         ldx = new int[8];
         boolean [] validIdx = new boolean[8];
         validIdx[0] = true;
         
-        double twoEIntVal, twoEIntVal2, twoEIntValHalf;
-        for(i=startBasisFunction; i<endBasisFunction; i++) {
-            idx[0] = i; jdx[1] = i; jdx[2] = i; idx[3] = i;
-            kdx[4] = i; ldx[5] = i; kdx[6] = i; ldx[7] = i;
-            for(j=0; j<(i+1); j++) {
-                ij = i * (i+1) / 2+j;
-                jdx[0] = j; idx[1] = j; idx[2] = j; jdx[3] = j;
-                ldx[4] = j; kdx[5] = j; ldx[6] = j; kdx[7] = j;
-                for(k=0; k<noOfBasisFunctions; k++) {
-                    kdx[0] = k; kdx[1] = k; ldx[2] = k; ldx[3] = k;
-                    jdx[4] = k; jdx[5] = k; idx[6] = k; idx[7] = k;
-                    for(l=0; l<(k+1); l++) {
-                        kl = k * (k+1) / 2+l;
-                        if (ij >= kl) {
-                            twoEIntVal     = twoEI.compute2E(i, j, k, l);
-                            twoEIntVal2    = twoEIntVal + twoEIntVal;
-                            twoEIntValHalf = 0.5 * twoEIntVal;
-
-                            setGMatrixElements(gMatrix, dMatrix, i, j, k, l,
-                                               twoEIntVal2, twoEIntValHalf);
-
-                            // special case
-                            if ((i|j|k|l) == 0) continue;
-
-                            // else this is symmetry unique integral, so need to
-                            // use this value for all 8 combinations
-                            // (if unique)
-                            ldx[0] = l; ldx[1] = l; kdx[2] = l; kdx[3] = l;
-                            idx[4] = l; idx[5] = l; jdx[6] = l; jdx[7] = l;
-                            validIdx[1] = true; validIdx[2] = true;
-                            validIdx[3] = true; validIdx[4] = true;
-                            validIdx[5] = true; validIdx[6] = true;
-                            validIdx[7] = true;
-
-                            // filter unique elements
-                            filterUniqueElements(idx, jdx, kdx, ldx, validIdx);
-
-                            // and evaluate them
-                            for(m=1; m<8; m++) {
-                                if (validIdx[m]) {
-                                    setGMatrixElements(gMatrix, dMatrix, 
-                                               idx[m], jdx[m], kdx[m], ldx[m],
-                                               twoEIntVal2, twoEIntValHalf);
-                                } // end if
-                            } // end for
-                        } // end if
-                    } // end l loop
-                } // end k loop
-            } // end j loop
-        } // end i loop
-
-        partialGMatrixList.add(theGMatrix);
+        double [] integrals
+                      = new double[twoEI.getMaximumShellQuartetSize()];
+        double abBound, abcdBound;
+        long skipped = 0;
+        ShellPair abPair;
+
+        // we only need a >= b, c >= d, and ab >= cd
+        while((ab = nextShellPair.decrementAndGet()) >= 0) {
+            a = (int) ((Math.sqrt(8.0*ab + 1.0) - 1.0) / 2.0);
+            while(a * (a+1) / 2 > ab) a--;
+            while((a+1) * (a+2) / 2 <= ab) a++;
+            b = ab - a * (a+1) / 2;
+
+            ia = shellIndices[a];
+            na = ia.length;
+            ib = shellIndices[b];
+            nb = ib.length;
+            abPair  = shellPairs.get(ab);
+            abBound = shellPairBounds[ab];
+
+            // cd <= ab also ensures that c <= a
+            for(c=0, cd=0; cd<=ab; c++) {
+                ic = shellIndices[c];
+                nc = ic.length;
+
+                for(d=0; d<=c; d++, cd++) {
+                    if (cd > ab) break;
+
+                    id = shellIndices[d];
+                    nd = id.length;
+
+                    // Schwarz screening: |(ab|cd)| <= Q(ab) Q(cd), and
+                    // for incremental builds also weigh in the density
+                    abcdBound = abBound*shellPairBounds[cd];
+                    if (abcdBound < screeningThreshold
+                        || (incremental && abcdBound
+                              * getShellQuartetDensityWeight(a, b, c, d)
+                                        < densityScreeningThreshold)) {
+                        skipped += TwoElectronIntegrals
+                                     .getNumberOfUniqueIntegrals(a, b, c,
+                                                  d, na, nb, nc, nd);
+                        continue;
+                    } // end if
+
+                    Integrals.coulomb(abPair, shellPairs.get(cd),
+                                      integrals);
+
+                    idx = 0;
+                    for(ii=0; ii<na; ii++) {
+                      i = ia[ii];
+                      for(jj=0; jj<nb; jj++) {
+                        j = ib[jj];
+                        if (j > i) { idx += nc*nd; continue; }
+                        ij = i * (i+1) / 2+j;
+
+                        for(kk=0; kk<nc; kk++) {
+                          k = ic[kk];
+                          for(ll=0; ll<nd; ll++, idx++) {
+                            l = id[ll];
+                            if (l > k) continue;
+                            kl = k * (k+1) / 2+l;
+                            if (ab == cd && kl > ij) continue;
+
+                            addIntegralContributions(gMatrix, dMatrix,
+                                    i, j, k, l, integrals[idx],
+                                    idx8, jdx, kdx, ldx, validIdx);
+                          } // end ll loop
+                        } // end kk loop
+                      } // end jj loop
+                    } // end ii loop
+                } // end d loop
+            } // end c loop
+        } // end while
+
+        return skipped;
     }
     
+    /**
+     * function to facilitate mulithreaded formation of GMatrix from the
+     * integral store, segments are taken from nextSegment till none are left.
+     *
+     * @param gMatrix the partial GMatrix to accumulate into
+     */
+    private void makeGMatrixFromStore(double [][] gMatrix) {
+        double [][] dMatrix = density.getMatrix();
+
+        int [] idx8 = new int[8], jdx = new int[8],
+               kdx  = new int[8], ldx = new int[8];
+        boolean [] validIdx = new boolean[8];
+        validIdx[0] = true;
+
+        int segment;
+        long label;
+        ByteBuffer records;
+
+        while((segment = nextSegment.decrementAndGet()) >= 0) {
+            records = integralStore.getSegment(segment);
+
+            while(records.remaining() >= TwoElectronIntegralStore.RECORD_SIZE) {
+                label = records.getLong();
+
+                addIntegralContributions(gMatrix, dMatrix,
+                        TwoElectronIntegralStore.getI(label),
+                        TwoElectronIntegralStore.getJ(label),
+                        TwoElectronIntegralStore.getK(label),
+                        TwoElectronIntegralStore.getL(label),
+                        records.getDouble(), idx8, jdx, kdx, ldx, validIdx);
+            } // end while
+        } // end while
+    }
+
+    /**
+     * Add the contributions of a symmetry unique integral (ij|kl) to the
+     * GMatrix, for all the (unique) 8 combinations of its indices
+     */
+    private void addIntegralContributions(double [][] gMatrix,
+                                          double [][] dMatrix,
+                                          int i, int j, int k, int l,
+                                          double twoEIntVal,
+                                          int [] idx8, int [] jdx,
+                                          int [] kdx, int [] ldx,
+                                          boolean [] validIdx) {
+        double twoEIntVal2    = twoEIntVal + twoEIntVal;
+        double twoEIntValHalf = 0.5 * twoEIntVal;
+
+        idx8[0] = i; jdx[1] = i; jdx[2] = i;
+        idx8[3] = i; kdx[4] = i; ldx[5] = i;
+        kdx[6] = i; ldx[7] = i;
+        jdx[0] = j; idx8[1] = j; idx8[2] = j;
+        jdx[3] = j; ldx[4] = j; kdx[5] = j;
+        ldx[6] = j; kdx[7] = j;
+        kdx[0] = k; kdx[1] = k; ldx[2] = k;
+        ldx[3] = k; jdx[4] = k; jdx[5] = k;
+        idx8[6] = k; idx8[7] = k;
+
+        setGMatrixElements(gMatrix, dMatrix, i, j, k, l,
+                           twoEIntVal2, twoEIntValHalf);
+
+        // special case
+        if ((i|j|k|l) == 0) return;
+
+        // else this is symmetry unique integral, so need to use this
+        // value for all 8 combinations (if unique)
+        ldx[0] = l; ldx[1] = l; kdx[2] = l;
+        kdx[3] = l; idx8[4] = l; idx8[5] = l;
+        jdx[6] = l; jdx[7] = l;
+        validIdx[1] = true; validIdx[2] = true;
+        validIdx[3] = true; validIdx[4] = true;
+        validIdx[5] = true; validIdx[6] = true;
+        validIdx[7] = true;
+
+        // filter unique elements
+        filterUniqueElements(idx8, jdx, kdx, ldx, validIdx);
+
+        // and evaluate them
+        for(int m=1; m<8; m++) {
+            if (validIdx[m]) {
+                setGMatrixElements(gMatrix, dMatrix,
+                                   idx8[m], jdx[m], kdx[m], ldx[m],
+                                   twoEIntVal2, twoEIntValHalf);
+            } // end if
+        } // end for
+    }
+
     /** find unique elements and mark the onces that are not */
     private void filterUniqueElements(int [] idx, int [] jdx,
                                       int [] kdx, int [] ldx,
@@ -304,8 +635,11 @@ public class GMatrix extends Matrix {
     private void setGMatrixElements(double [][] gMatrix, double [][] dMatrix,
                                     int i, int j, int k, int l,
                                     double twoEIntVal2, double twoEIntValHalf) {
-        gMatrix[i][j] += dMatrix[k][l] * twoEIntVal2;
-        gMatrix[k][l] += dMatrix[i][j] * twoEIntVal2;
+        // only exchange, if the Coulomb part is density fitted
+        if (densityFittedCoulomb == null) {
+            gMatrix[i][j] += dMatrix[k][l] * twoEIntVal2;
+            gMatrix[k][l] += dMatrix[i][j] * twoEIntVal2;
+        } // end if
         gMatrix[i][k] -= dMatrix[j][l] * twoEIntValHalf;
         gMatrix[i][l] -= dMatrix[j][k] * twoEIntValHalf;
         gMatrix[j][k] -= dMatrix[i][l] * twoEIntValHalf;
@@ -313,91 +647,85 @@ public class GMatrix extends Matrix {
     }
 
     /**
-     * Compute GMatrix partial derivative for an atom index.
-     *
-     * @param atomIndex the atom index with respect to which the derivative are
-     *                  to be evaluated
-     * @param scfMethod the reference to the SCFMethod
-     * @return three element array of GMatrix elements represeting partial
-     *               derivatives with respect to x, y and z of atom position
+     * Class encapsulating the way for forming GMatrix  in a way
+     * useful for utilizing multi core (processor) systems.
+     * The item range given to a task is only used to decide whether it
+     * takes part, the shell pairs are handed out dynamically. Each task
+     * accumulates into its own partial GMatrix, so no locking is needed.
      */
-    public ArrayList<GMatrix> computeDerivative(int atomIndex, SCFMethod scfMethod) {
-        ArrayList<GMatrix> gDer = new ArrayList<GMatrix>(3);
+    protected class GMatrixFormationThread
+              extends AbstractSimpleParallelTask {
+
+        private double [][] partialGMatrix;
+        private long noOfSkippedIntegrals;
+
+        public GMatrixFormationThread() { }
         
-        scfMethod.getTwoEI().compute2EDerivatives(atomIndex, scfMethod);
-        ArrayList<double []> twoEDers = scfMethod.getTwoEI().getTwoEDer();
-        double [] d2IntsDxa = twoEDers.get(0);
-        double [] d2IntsDya = twoEDers.get(1);
-        double [] d2IntsDza = twoEDers.get(2);
+        public GMatrixFormationThread(int startItem, int endItem) {
+            this.startItem = startItem;
+            this.endItem   = endItem;
+            
+            setTaskName("GMatrixFormationThread Thread");
+        }
 
-        density = scfMethod.getDensity();
-        int noOfBasisFunctions = density.getRowCount();
-        Vector densityOneD = new Vector(density); // form 1D vector of density
+        /**
+         * Overridden run()
+         */
+        @Override
+        public void run() {
+            if (startItem >= endItem) return;
 
-        GMatrix gdx = new GMatrix(noOfBasisFunctions);
-        GMatrix gdy = new GMatrix(noOfBasisFunctions);
-        GMatrix gdz = new GMatrix(noOfBasisFunctions);
+            int noOfBasisFunctions = density.getRowCount();
 
-        Vector xvec = new Vector(noOfBasisFunctions*noOfBasisFunctions);
-        Vector yvec = new Vector(noOfBasisFunctions*noOfBasisFunctions);
-        Vector zvec = new Vector(noOfBasisFunctions*noOfBasisFunctions);
+            partialGMatrix = new double[noOfBasisFunctions][noOfBasisFunctions];
 
-        int i, j, k, l, kl, indexJ, indexK1, indexK2;
-        for(i=0; i<noOfBasisFunctions; i++) {
-            for(j=0; j<i+1; j++) {
-                kl = 0;
-                xvec.makeZero();
-                yvec.makeZero();
-                zvec.makeZero();
-                double [] xtemp = xvec.getVector();
-                double [] ytemp = xvec.getVector();
-                double [] ztemp = xvec.getVector();
-                for(k=0; k<noOfBasisFunctions; k++) {
-                    for(l=0; l<noOfBasisFunctions; l++) {
-                        indexJ  = IntegralsUtil.ijkl2intindex(i,j,k,l);
-                        indexK1 = IntegralsUtil.ijkl2intindex(i,k,j,l);
-                        indexK2 = IntegralsUtil.ijkl2intindex(i,l,k,j);
-
-                        xtemp[kl] = 2.*d2IntsDxa[indexJ]-0.5*d2IntsDxa[indexK1]
-                                    -0.5*d2IntsDxa[indexK2];
-                        ytemp[kl] = 2.*d2IntsDya[indexJ]-0.5*d2IntsDya[indexK1]
-                                    -0.5*d2IntsDya[indexK2];
-                        ztemp[kl] = 2.*d2IntsDza[indexJ]-0.5*d2IntsDza[indexK1]
-                                    -0.5*d2IntsDza[indexK2];
-                        kl++;
-                    } // end for
-                } // end for
+            if (integralStore != null)
+                makeGMatrixFromStore(partialGMatrix);
+            else
+                noOfSkippedIntegrals = makeGMatrixDirect(partialGMatrix);
+        }
 
-                gdx.matrix[i][j] = gdx.matrix[j][i] = xvec.dot(densityOneD);
-                gdy.matrix[i][j] = gdy.matrix[j][i] = yvec.dot(densityOneD);
-                gdz.matrix[i][j] = gdz.matrix[j][i] = zvec.dot(densityOneD);
-            } // end for
-        } // end for
-        
-        gDer.add(gdx);
-        gDer.add(gdy);
-        gDer.add(gdz);
-        
-        return gDer;
+        /** Overridden init() */
+        @Override
+        public SimpleParallelTask init(int startItem, int endItem) {
+            return new GMatrixFormationThread(startItem, endItem);
+        }
+
+        /**
+         * Get the partial GMatrix accumulated by this task, null if the
+         * task did not take part
+         *
+         * @return the partial GMatrix
+         */
+        public double [][] getPartialGMatrix() {
+            return partialGMatrix;
+        }
+
+        /**
+         * Get the number of integrals skipped by this task
+         *
+         * @return the number of skipped integrals
+         */
+        public long getNumberOfSkippedIntegrals() {
+            return noOfSkippedIntegrals;
+        }
     }
 
     /**
-     * Class encapsulating the way for forming GMatrix  in a way
-     * useful for utilizing multi core (processor) systems.
+     * Sums up the partial GMatrices (and halves the result) in parallel,
+     * each task taking care of a block of rows. For incremental builds
+     * the result is added to the current contents.
      */
-    protected class GMatrixFormationThread
+    protected class GMatrixReductionThread
               extends AbstractSimpleParallelTask {
 
-        private int startBasisFunction, endBasisFunction;
+        public GMatrixReductionThread() { }
 
-        public GMatrixFormationThread() { }
-        
-        public GMatrixFormationThread(int startBasisFunction,
-                                           int endBasisFunction) {
-            this.startBasisFunction = startBasisFunction;
-            this.endBasisFunction   = endBasisFunction;
-            
-            setTaskName("GMatrixFormationThread Thread");
+        public GMatrixReductionThread(int startRow, int endRow) {
+            this.startItem = startRow;
+            this.endItem   = endRow;
+
+            setTaskName("GMatrixReductionThread Thread");
         }
 
         /**
@@ -405,13 +733,35 @@ public class GMatrix extends Matrix {
          */
         @Override
         public void run() {
-            makeGMatrixDirect(startBasisFunction, endBasisFunction);
+            double [][] gMatrix = getMatrix();
+            int N = getColumnCount();
+            int i, j;
+            double [] gRow, pgRow;
+
+            double [] sum = new double[N];
+
+            for(i=startItem; i<endItem; i++) {
+                gRow = gMatrix[i];
+                for(j=0; j<N; j++) sum[j] = 0.0;
+
+                for(double [][] pgm : partialGMatrixList) {
+                    pgRow = pgm[i];
+                    for(j=0; j<N; j++) sum[j] += pgRow[j];
+                } // end for
+
+                // half the elements
+                if (incremental) {
+                    for(j=0; j<N; j++) gRow[j] += 0.5 * sum[j];
+                } else {
+                    for(j=0; j<N; j++) gRow[j] = 0.5 * sum[j];
+                } // end if
+            } // end for
         }
 
         /** Overridden init() */
         @Override
         public SimpleParallelTask init(int startItem, int endItem) {
-            return new GMatrixFormationThread(startItem, endItem);
+            return new GMatrixReductionThread(startItem, endItem);
         }
     }
 }
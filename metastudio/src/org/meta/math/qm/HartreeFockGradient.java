@@ -0,0 +1,554 @@
+/*
+ * HartreeFockGradient.java
+ *
+ * Created on 18/10/2026
+ */
+
+package org.meta.math.qm;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.meta.config.impl.AtomInfo;
+import org.meta.math.Vector3D;
+import org.meta.math.geom.Point3D;
+import org.meta.math.qm.basis.ContractedGaussian;
+import org.meta.math.qm.basis.Shell;
+import org.meta.math.qm.integral.Integrals;
+import org.meta.math.qm.integral.ShellPair;
+import org.meta.molecule.Atom;
+import org.meta.molecule.Molecule;
+import org.meta.parallel.AbstractSimpleParallelTask;
+import org.meta.parallel.SimpleParallelTask;
+import org.meta.parallel.SimpleParallelTaskExecuter;
+
+/**
+ * Analytic gradient of the closed shell Hartree-Fock energy with respect
+ * to the coordinates of all the atoms, based on Appendix C of Modern
+ * Quantum Chemistry by Szabo and Ostlund:
+ *
+ * <pre>
+ *   dE/dX = 2 sum D_ij H_ij^X - 2 sum W_ij S_ij^X
+ *           + sum D_ij D_kl [2(ij|kl)^X - (ik|jl)^X] + V_nn^X
+ * </pre>
+ *
+ * where D is the density matrix (of the occupied MOs, without the factor
+ * of two) and W the energy weighted density matrix, sum e_a c_a c_a' over
+ * the occupied MOs.
+ *
+ * The gradient is evaluated for all the atoms in one pass. The two
+ * electron part visits each symmetry unique, Schwarz screened shell quartet
+ * once, forms its derivative integrals w.r.t all the four centers and
+ * contracts them with the density right away, so no derivative integrals
+ * are ever stored. Like the direct GMatrix build, the shell pairs are
+ * handed out dynamically to the threads, each of which accumulates into
+ * its own partial gradient.
+ *
+ * @author  V.Ganesh
+ * @version 2.0 (Part of MeTA v2.0)
+ */
+public class HartreeFockGradient {
+
+    /** Creates a new instance of HartreeFockGradient */
+    public HartreeFockGradient() {
+    }
+
+    private double [] gradient;
+
+    private double [][] dMatrix, wMatrix;
+
+    private ArrayList<ContractedGaussian> bfs;
+    private int [] bfAtoms, shellAtoms;
+
+    private Point3D [] atomCenters;
+    private double [] atomicNumbers;
+
+    private ArrayList<ShellPair> shellPairs;
+    private double [] shellPairBounds;
+    private int [][] shellIndices;
+    private double [][] shellDensityMaxima;
+    private double screeningThreshold;
+    private int maximumShellQuartetSize;
+
+    /** the next basis function (counting down) to be taken up by a thread */
+    private AtomicInteger nextBasisFunction;
+
+    /** the next shell pair (counting down) to be taken up by a thread */
+    private AtomicInteger nextShellPair;
+
+    /**
+     * Compute the energy gradient w.r.t. the coordinates of all the atoms,
+     * for a converged SCF. Note that this method in no way checks if the
+     * SCF was performed prior to calling it.
+     *
+     * @param scfMethod the instance of the SCF method
+     * @return the gradient, dE/dx, dE/dy and dE/dz of each atom in turn,
+     *         in atomic units
+     */
+    public double [] compute(SCFMethod scfMethod) {
+        Molecule mol = scfMethod.getMolecule();
+        int noOfAtoms = mol.getNumberOfAtoms();
+
+        gradient = new double[3*noOfAtoms];
+
+        setUp(scfMethod);
+
+        computeNuclearDerivative();
+
+        SimpleParallelTaskExecuter pTaskExecuter
+                                   = new SimpleParallelTaskExecuter();
+
+        // one electron terms, one basis function row at a time
+        nextBasisFunction = new AtomicInteger(bfs.size());
+
+        OneElectronGradientThread oThread = new OneElectronGradientThread();
+        oThread.setTaskName("OneElectronGradientThread Thread");
+        oThread.setTotalItems(bfs.size());
+
+        pTaskExecuter.execute(oThread);
+        collectPartialGradients(pTaskExecuter.getTaskList());
+
+        // two electron terms, one shell pair at a time, the most
+        // expensive ones (largest ab, which pair with the most cd) first
+        nextShellPair = new AtomicInteger(shellPairs.size());
+
+        TwoElectronGradientThread tThread = new TwoElectronGradientThread();
+        tThread.setTaskName("TwoElectronGradientThread Thread");
+        tThread.setTotalItems(shellPairs.size());
+
+        pTaskExecuter.execute(tThread);
+        collectPartialGradients(pTaskExecuter.getTaskList());
+
+        nextBasisFunction = nextShellPair = null;
+        dMatrix = wMatrix = shellDensityMaxima = null;
+
+        return gradient;
+    }
+
+    /**
+     * Get the gradient computed in the last call to compute()
+     *
+     * @return the gradient, dE/dx, dE/dy and dE/dz of each atom in turn
+     */
+    public double [] getGradient() {
+        return gradient;
+    }
+
+    /**
+     * Get the gradient of a single atom, computed in the last call to
+     * compute()
+     *
+     * @param atomIndex the index of the atom in the molecule
+     * @return the gradient w.r.t the position of the atom
+     */
+    public Vector3D getGradient(int atomIndex) {
+        return new Vector3D(gradient[3*atomIndex], gradient[3*atomIndex+1],
+                            gradient[3*atomIndex+2]);
+    }
+
+    /** set up the matrices and basis data shared by all the threads */
+    private void setUp(SCFMethod scfMethod) {
+        Molecule mol = scfMethod.getMolecule();
+        TwoElectronIntegrals twoEI = scfMethod.getTwoEI();
+        int noOfAtoms = mol.getNumberOfAtoms();
+
+        // atom positions in the molecule, to which gradients are added
+        IdentityHashMap<Atom, Integer> atomPositions
+                                      = new IdentityHashMap<Atom, Integer>();
+        AtomInfo ai = AtomInfo.getInstance();
+
+        atomCenters   = new Point3D[noOfAtoms];
+        atomicNumbers = new double[noOfAtoms];
+        for(int i=0; i<noOfAtoms; i++) {
+            Atom atom = mol.getAtom(i);
+
+            atomPositions.put(atom, i);
+            atomCenters[i]   = atom.getAtomCenterInAU();
+            atomicNumbers[i] = ai.getAtomicNumber(atom.getElementCode());
+        } // end for
+
+        bfs = scfMethod.getOneEI().getBasisFunctions().getBasisFunctions();
+        bfAtoms = new int[bfs.size()];
+        for(int i=0; i<bfAtoms.length; i++) {
+            bfAtoms[i] = atomPositions.get(bfs.get(i).getCenteredAtom());
+        } // end for
+
+        shellPairs         = twoEI.getShellPairs();
+        shellPairBounds    = twoEI.getShellPairBounds();
+        shellIndices       = twoEI.getShellIndices();
+        screeningThreshold = twoEI.getScreeningThreshold();
+        maximumShellQuartetSize = twoEI.getMaximumShellQuartetSize();
+
+        ArrayList<Shell> shells = twoEI.getShells();
+        shellAtoms = new int[shells.size()];
+        for(int i=0; i<shellAtoms.length; i++) {
+            shellAtoms[i] = atomPositions.get(
+                         shells.get(i).getShellPrimitive(0).getCenteredAtom());
+        } // end for
+
+        dMatrix = scfMethod.getDensity().getMatrix();
+        wMatrix = makeEnergyWeightedDensity(scfMethod);
+
+        makeShellDensityMaxima();
+    }
+
+    /**
+     * Make the energy weighted density matrix, W = sum e_a c_a c_a' over
+     * the occupied MOs
+     */
+    private double [][] makeEnergyWeightedDensity(SCFMethod scfMethod) {
+        double [][] c = scfMethod.getMos().getMatrix();
+        double [] orbE = scfMethod.getOrbE();
+        int noOfOccupancies = scfMethod.getMolecule().getNumberOfElectrons()/2;
+        int n = c[0].length;
+        int i, j, a;
+        double [] ca, wi;
+        double eci;
+
+        double [][] w = new double[n][n];
+
+        for(a=0; a<noOfOccupancies; a++) {
+            ca = c[a];
+            for(i=0; i<n; i++) {
+                wi  = w[i];
+                eci = orbE[a] * ca[i];
+                for(j=0; j<=i; j++) wi[j] += eci * ca[j];
+            } // end for
+        } // end for
+
+        for(i=0; i<n; i++) {
+            for(j=0; j<i; j++) w[j][i] = w[i][j];
+        } // end for
+
+        return w;
+    }
+
+    /**
+     * Make the largest absolute density element for every pair of shells,
+     * used for density weighted screening
+     */
+    private void makeShellDensityMaxima() {
+        int noOfShells = shellIndices.length;
+        int a, b, i, j;
+        double dMax;
+        int [] ia, ib;
+
+        shellDensityMaxima = new double[noOfShells][noOfShells];
+
+        for(a=0; a<noOfShells; a++) {
+            ia = shellIndices[a];
+            for(b=0; b<=a; b++) {
+                ib = shellIndices[b];
+
+                dMax = 0.0;
+                for(i=0; i<ia.length; i++) {
+                    for(j=0; j<ib.length; j++) {
+                        dMax = Math.max(dMax, Math.abs(dMatrix[ia[i]][ib[j]]));
+                    } // end for
+                } // end for
+
+                shellDensityMaxima[a][b] = shellDensityMaxima[b][a] = dMax;
+            } // end for
+        } // end for
+    }
+
+    /**
+     * The largest density product that any of the derivative integrals in
+     * shell quartet (ab|cd) is weighed with
+     */
+    private double getShellQuartetDensityWeight(int a, int b, int c, int d) {
+        double [] da = shellDensityMaxima[a], db = shellDensityMaxima[b];
+
+        return 2.0 * da[b] * shellDensityMaxima[c][d]
+               + 0.5 * (da[c] * db[d] + da[d] * db[c]);
+    }
+
+    /** Compute the nuclear repulsion contribution */
+    private void computeNuclearDerivative() {
+        int noOfAtoms = atomCenters.length;
+        int i, j;
+        double nDer, dx, dy, dz;
+        Point3D a, b;
+
+        for(i=0; i<noOfAtoms; i++) {
+            a = atomCenters[i];
+
+            for(j=0; j<i; j++) {
+                b = atomCenters[j];
+
+                nDer = atomicNumbers[i] * atomicNumbers[j]
+                       / Math.pow(a.distanceSquaredFrom(b), 1.5);
+
+                dx = nDer * (b.getX() - a.getX());
+                dy = nDer * (b.getY() - a.getY());
+                dz = nDer * (b.getZ() - a.getZ());
+
+                gradient[3*i]   += dx; gradient[3*i+1] += dy;
+                gradient[3*i+2] += dz;
+                gradient[3*j]   -= dx; gradient[3*j+1] -= dy;
+                gradient[3*j+2] -= dz;
+            } // end for
+        } // end for
+    }
+
+    /** add up the partial gradients of the tasks that took part */
+    private void collectPartialGradients(Iterator<SimpleParallelTask> tasks) {
+        while(tasks.hasNext()) {
+            double [] partialGradient
+                    = ((GradientThread) tasks.next()).getPartialGradient();
+
+            if (partialGradient == null) continue;
+
+            for(int i=0; i<gradient.length; i++)
+                gradient[i] += partialGradient[i];
+        } // end while
+    }
+
+    /**
+     * The one electron contributions, basis function rows are taken from
+     * nextBasisFunction till none are left.
+     *
+     * @param grad the partial gradient to accumulate into
+     */
+    private void computeOneElectronDerivative(double [] grad) {
+        int noOfAtoms = atomCenters.length;
+        int i, j, c, ia, ja;
+        double dij, wij, factor;
+        ContractedGaussian cgi, cgj;
+        Vector3D iDer, jDer;
+
+        while((i = nextBasisFunction.decrementAndGet()) >= 0) {
+            cgi = bfs.get(i);
+            ia  = 3 * bfAtoms[i];
+
+            for(j=0; j<=i; j++) {
+                cgj = bfs.get(j);
+                ja  = 3 * bfAtoms[j];
+
+                factor = (i == j) ? 2.0 : 4.0;
+                dij    = factor * dMatrix[i][j];
+                wij    = factor * wMatrix[i][j];
+
+                // overlap and kinetic energy depend only on the relative
+                // position of the two centers
+                if (ia != ja) {
+                    iDer = cgi.kineticGradient(cgj).mul(dij)
+                              .add(cgi.overlapGradient(cgj).mul(-wij));
+
+                    addTo(grad, ia, iDer, 1.0);
+                    addTo(grad, ja, iDer, -1.0);
+                } // end if
+
+                // attraction to each of the nuclei, the derivative w.r.t
+                // the nucleus is from translational invariance
+                for(c=0; c<noOfAtoms; c++) {
+                    if (ia == ja && ia == 3*c) continue;
+
+                    iDer = cgi.nuclearGradient(cgj, atomCenters[c])
+                              .mul(atomicNumbers[c] * dij);
+                    jDer = cgj.nuclearGradient(cgi, atomCenters[c])
+                              .mul(atomicNumbers[c] * dij);
+
+                    addTo(grad, ia, iDer, 1.0);
+                    addTo(grad, ja, jDer, 1.0);
+                    addTo(grad, 3*c, iDer.add(jDer), -1.0);
+                } // end for
+            } // end for
+        } // end while
+    }
+
+    /** add a scaled vector to the gradient elements starting at idx */
+    private static void addTo(double [] grad, int idx, Vector3D v,
+                              double scale) {
+        grad[idx]   += scale * v.getI();
+        grad[idx+1] += scale * v.getJ();
+        grad[idx+2] += scale * v.getK();
+    }
+
+    /**
+     * The two electron contributions, shell pairs are taken from
+     * nextShellPair till none are left. Each unique integral is weighed
+     * by its degeneracy.
+     *
+     * @param grad the partial gradient to accumulate into
+     */
+    private void computeTwoElectronDerivative(double [] grad) {
+        int a, b, c, d, ab, cd, na, nb, nc, nd, idx, t, x, o;
+        int i, j, k, l, ij, kl, ii, jj, kk, ll;
+        int [] ia, ib, ic, id;
+        int [] atoms = new int[4];
+        double abBound, w, degeneracy;
+        double [] di, dj;
+        ShellPair abPair;
+
+        double [] derivatives = new double[12 * maximumShellQuartetSize];
+
+        // we only need a >= b, c >= d, and ab >= cd
+        while((ab = nextShellPair.decrementAndGet()) >= 0) {
+            a = (int) ((Math.sqrt(8.0*ab + 1.0) - 1.0) / 2.0);
+            while(a * (a+1) / 2 > ab) a--;
+            while((a+1) * (a+2) / 2 <= ab) a++;
+            b = ab - a * (a+1) / 2;
+
+            ia = shellIndices[a];
+            na = ia.length;
+            ib = shellIndices[b];
+            nb = ib.length;
+            abPair  = shellPairs.get(ab);
+            abBound = shellPairBounds[ab];
+
+            atoms[0] = 3 * shellAtoms[a];
+            atoms[1] = 3 * shellAtoms[b];
+
+            // cd <= ab also ensures that c <= a
+            for(c=0, cd=0; cd<=ab; c++) {
+                ic = shellIndices[c];
+                nc = ic.length;
+                atoms[2] = 3 * shellAtoms[c];
+
+                for(d=0; d<=c && cd<=ab; d++, cd++) {
+                    atoms[3] = 3 * shellAtoms[d];
+
+                    // quartets on a single atom do not depend on its
+                    // position
+                    if (atoms[0] == atoms[1] && atoms[1] == atoms[2]
+                        && atoms[2] == atoms[3]) continue;
+
+                    // Schwarz screening, weighed with the density
+                    if (abBound * shellPairBounds[cd]
+                         * getShellQuartetDensityWeight(a, b, c, d)
+                                               < screeningThreshold)
+                        continue;
+
+                    id = shellIndices[d];
+                    nd = id.length;
+
+                    Integrals.coulombDerivative(abPair, shellPairs.get(cd),
+                                                derivatives);
+
+                    idx = 0;
+                    for(ii=0; ii<na; ii++) {
+                      i  = ia[ii];
+                      di = dMatrix[i];
+                      for(jj=0; jj<nb; jj++) {
+                        j = ib[jj];
+                        if (j > i) { idx += nc*nd; continue; }
+                        ij = i * (i+1) / 2+j;
+                        dj = dMatrix[j];
+
+                        for(kk=0; kk<nc; kk++) {
+                          k = ic[kk];
+                          for(ll=0; ll<nd; ll++, idx++) {
+                            l = id[ll];
+                            if (l > k) continue;
+                            kl = k * (k+1) / 2+l;
+                            if (ab == cd && kl > ij) continue;
+
+                            degeneracy = ((i == j) ? 1.0 : 2.0)
+                                         * ((k == l) ? 1.0 : 2.0)
+                                         * ((ij == kl) ? 1.0 : 2.0);
+
+                            w = degeneracy * (2.0 * di[j] * dMatrix[k][l]
+                                 - 0.5 * (di[k] * dj[l] + di[l] * dj[k]));
+
+                            for(t=0, o=12*idx; t<4; t++) {
+                              for(x=0; x<3; x++, o++) {
+                                grad[atoms[t]+x] += w * derivatives[o];
+                              } // end for
+                            } // end for
+                          } // end ll loop
+                        } // end kk loop
+                      } // end jj loop
+                    } // end ii loop
+                } // end d loop
+            } // end c loop
+        } // end while
+    }
+
+    /**
+     * Common part of the gradient tasks, each of which accumulates into
+     * its own partial gradient, so no locking is needed. The item range
+     * given to a task is only used to decide whether it takes part, the
+     * work is handed out dynamically.
+     */
+    protected abstract class GradientThread
+              extends AbstractSimpleParallelTask {
+
+        protected double [] partialGradient;
+
+        /**
+         * Get the partial gradient accumulated by this task, null if the
+         * task did not take part
+         *
+         * @return the partial gradient
+         */
+        public double [] getPartialGradient() {
+            return partialGradient;
+        }
+    }
+
+    /**
+     * Computes the one electron contributions in parallel
+     */
+    protected class OneElectronGradientThread extends GradientThread {
+
+        public OneElectronGradientThread() { }
+
+        public OneElectronGradientThread(int startItem, int endItem) {
+            this.startItem = startItem;
+            this.endItem   = endItem;
+
+            setTaskName("OneElectronGradientThread Thread");
+        }
+
+        /**
+         * Overridden run()
+         */
+        @Override
+        public void run() {
+            if (startItem >= endItem) return;
+
+            partialGradient = new double[gradient.length];
+            computeOneElectronDerivative(partialGradient);
+        }
+
+        /** Overridden init() */
+        @Override
+        public SimpleParallelTask init(int startItem, int endItem) {
+            return new OneElectronGradientThread(startItem, endItem);
+        }
+    }
+
+    /**
+     * Computes the two electron contributions in parallel
+     */
+    protected class TwoElectronGradientThread extends GradientThread {
+
+        public TwoElectronGradientThread() { }
+
+        public TwoElectronGradientThread(int startItem, int endItem) {
+            this.startItem = startItem;
+            this.endItem   = endItem;
+
+            setTaskName("TwoElectronGradientThread Thread");
+        }
+
+        /**
+         * Overridden run()
+         */
+        @Override
+        public void run() {
+            if (startItem >= endItem) return;
+
+            partialGradient = new double[gradient.length];
+            computeTwoElectronDerivative(partialGradient);
+        }
+
+        /** Overridden init() */
+        @Override
+        public SimpleParallelTask init(int startItem, int endItem) {
+            return new TwoElectronGradientThread(startItem, endItem);
+        }
+    }
+} // end of class HartreeFockGradient
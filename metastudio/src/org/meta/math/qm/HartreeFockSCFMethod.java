@@ -6,7 +6,8 @@
 
 package org.meta.math.qm;
 
-
+import java.io.File;
+import java.io.IOException;
 import org.meta.math.Matrix;
 import org.meta.math.Vector3D;
 import org.meta.math.qm.event.SCFEvent;
@@ -26,6 +27,70 @@ public class HartreeFockSCFMethod extends SCFMethod {
     protected SCFEvent scfEvent;
 
     private SCFType scfType;
+
+    /**
+     * For direct SCF, build G incrementally from the change in density
+     * between iterations?
+     */
+    private boolean incrementalFockBuild = true;
+
+    /**
+     * Number of iterations after which G is rebuilt from the full density
+     * in an incremental direct SCF, to control accumulation of errors
+     */
+    private int fullFockBuildInterval = DEFAULT_FULL_FOCK_BUILD_INTERVAL;
+
+    private static final int DEFAULT_FULL_FOCK_BUILD_INTERVAL = 8;
+
+    /**
+     * the density weighted screening threshold of incremental G builds,
+     * as a fraction of the energy tolerance
+     */
+    private static final double DENSITY_SCREENING_FACTOR = 1.0e-2;
+
+    /** the extrapolator of the last scf() */
+    private FockExtrapolator diis;
+
+    /** the storage of the DIIS subspace vectors */
+    private DIISFockExtrapolator.StorageType diisStorageType
+                                 = DIISFockExtrapolator.StorageType.DOUBLE;
+
+    /** the number of Fock matrices kept in the DIIS subspace */
+    private int diisMaxSubspaceSize
+                          = DIISFockExtrapolator.DEFAULT_MAX_SUBSPACE_SIZE;
+
+    /** the checkpoint from which the next scf() starts, if any */
+    private SCFCheckpoint restartCheckpoint;
+
+    /**
+     * the checkpoint file, read (if present) at the start of scf() and
+     * written at the end of it
+     */
+    private File checkpointFile;
+
+    /**
+     * Should the integrals be saved in the checkpoint file? Only in core
+     * integrals are saved.
+     */
+    private boolean checkpointIntegrals = false;
+
+    /**
+     * Should evaluate() start from the MOs of the previous geometry, rather
+     * than from the core Hamiltonian guess?
+     */
+    private boolean reuseDensity = true;
+
+    /**
+     * the auxiliary basis for the density fitted Coulomb matrix, null for
+     * the exact Coulomb matrix
+     */
+    private String auxiliaryBasisName;
+
+    /**
+     * the auxiliary basis functions, made once and kept up to date with
+     * the molecule by BasisFunctions itself
+     */
+    private BasisFunctions auxiliaryBasis;
     
     /** Creates a new instance of HartreeFockSCFMethod */
     public HartreeFockSCFMethod(Molecule molecule, OneElectronIntegrals oneEI, 
@@ -62,32 +127,91 @@ public class HartreeFockSCFMethod extends SCFMethod {
         HCore hCore = oneEI.getHCore();
         Overlap overlap = oneEI.getOverlap();
         
-        boolean converged = false;
+        converged = false;
         double oldEnergy = 0.0; 
         double nuclearEnergy = nuclearEnergy();
         double eOne, eTwo;
         
         // init memory for the matrices
         gMatrix = new GMatrix(hCore.getRowCount());
+        if (auxiliaryBasisName != null) {
+            gMatrix.setDensityFittedCoulomb(makeDensityFittedCoulomb());
+        } // end if
         mos = new MolecularOrbitals(hCore.getRowCount());
         density = new Density(hCore.getRowCount());
         fock = new Fock(hCore.getRowCount());
 
-        // compute initial MOs
-        mos.compute(hCore, overlap);
-
-        FockExtrapolator diis = new DIISFockExtrapolator();
+        DIISFockExtrapolator diisExtrapolator = new DIISFockExtrapolator();
+        diisExtrapolator.setStorageType(diisStorageType);
+        diisExtrapolator.setMaxSubspaceSize(diisMaxSubspaceSize);
 
+        diis = diisExtrapolator;
         diis.init();
+
+        // compute initial MOs, from the restart checkpoint if there is one
+        SCFCheckpoint restart = getRestart();
+        boolean restarted = (restart != null
+                             && restart.isCompatible(molecule,
+                                             oneEI.getBasisFunctions()));
+
+        // along with the 2E integrals, if they were saved at this geometry
+        // and have not been computed (TwoElectronIntegrals made with
+        // onTheFly = true)
+        if (restarted && scfType == SCFType.HARTREE_FOCK
+            && twoEI.isOnTheFly() && twoEI.getTwoEIntegrals() == null
+            && restart.restoreTwoEIntegrals(twoEI, molecule)) {
+            twoEI.setOnTheFly(false);
+        } // end if
+
+        if (restarted) {
+            mos = restart.getMolecularOrbitals();
+
+            // the energy and DIIS subspace are only valid at the same
+            // geometry
+            if (restart.isSameGeometry(molecule)) {
+                oldEnergy = restart.getEnergy();
+
+                diisExtrapolator.init(restart.getDIISFockMatrices(),
+                                      restart.getDIISErrorVectors());
+            } else {
+                mos.orthonormalize(overlap);
+            } // end if
+        } else {
+            mos.compute(hCore, overlap);
+        } // end if
+
+        // density of the last full or incremental G build
+        Matrix previousDensity = null;
+        boolean incremental = incrementalFockBuild
+                              && (scfType == SCFType.HARTREE_FOCK_DIRECT);
+        boolean fullBuild, forceFullBuild = false;
+
+        gMatrix.setDensityScreeningThreshold(
+                              energyTolerance * DENSITY_SCREENING_FACTOR);
         
         // start the SCF cycle
         for(scfIteration=0; scfIteration<maxIteration; scfIteration++) {
             // make or guess density
-            density.compute(this, guessInitialDM && (scfIteration == 0),
+            density.compute(this, guessInitialDM && !restarted
+                                  && (scfIteration == 0),
                             densityGuesser, noOfOccupancies, mos);
             
-            // make the G matrix
-            gMatrix.compute(scfType, twoEI, density);
+            // make the G matrix, either afresh or by updating the
+            // previous one with G of the density change
+            fullBuild = !incremental || previousDensity == null
+                        || forceFullBuild
+                        || (scfIteration % fullFockBuildInterval) == 0;
+
+            if (fullBuild) {
+                gMatrix.compute(scfType, twoEI, density);
+            } else {
+                gMatrix.computeIncremental(twoEI,
+                    new Density(density.sub(previousDensity).getMatrix()));
+            } // end if
+
+            forceFullBuild = false;
+
+            if (incremental) previousDensity = (Matrix) density.clone();
             
             // make fock matrix
             fock.compute(hCore, gMatrix);
@@ -99,8 +223,8 @@ public class HartreeFockSCFMethod extends SCFMethod {
             mos.compute(fock, overlap);
          
             // compute the total energy at this point
-            eOne = density.mul(hCore).trace();
-            eTwo = density.mul(fock).trace();
+            eOne = density.traceOfProduct(hCore);
+            eTwo = density.traceOfProduct(fock);
             
             energy = eOne + eTwo + nuclearEnergy;
                         
@@ -110,14 +234,20 @@ public class HartreeFockSCFMethod extends SCFMethod {
             scfEvent.setCurrentEnergy(energy);
             fireSCFEventListenerScfEventOccured(scfEvent);
             
-            // ckeck for convergence
+            // ckeck for convergence, which is accepted only on a G built
+            // from the full density, as the incrementally updated one
+            // carries the errors accumulated since the last full build
             if (Math.abs(energy - oldEnergy) < energyTolerance) {
-                converged = true;
-                scfEvent.setType(SCFEvent.CONVERGED_EVENT);
-                scfEvent.setCurrentIteration(scfIteration);
-                scfEvent.setCurrentEnergy(energy);
-                fireSCFEventListenerScfEventOccured(scfEvent);
-                break;
+                if (!fullBuild) {
+                    forceFullBuild = true;
+                } else {
+                    converged = true;
+                    scfEvent.setType(SCFEvent.CONVERGED_EVENT);
+                    scfEvent.setCurrentIteration(scfIteration);
+                    scfEvent.setCurrentEnergy(energy);
+                    fireSCFEventListenerScfEventOccured(scfEvent);
+                    break;
+                } // end if
             } // end if
             
             oldEnergy = energy;
@@ -130,21 +260,295 @@ public class HartreeFockSCFMethod extends SCFMethod {
             scfEvent.setCurrentEnergy(energy);
             fireSCFEventListenerScfEventOccured(scfEvent);
         } // end if
+
+        if (checkpointFile != null) writeCheckpoint();
     }   
 
+    /**
+     * The density fitted Coulomb matrix with the auxiliary basis, null (for
+     * the exact Coulomb matrix) if it can not be made
+     */
+    private DensityFittedCoulomb makeDensityFittedCoulomb() {
+        try {
+            if (auxiliaryBasis == null) {
+                auxiliaryBasis = new BasisFunctions(molecule,
+                                  auxiliaryBasisName, "auxiliaryBasisFunctions");
+            } // end if
+
+            return new DensityFittedCoulomb(twoEI, auxiliaryBasis);
+        } catch (Exception ignored) {
+            System.err.println("Unable to set up density fitting, using "
+                               + "exact Coulomb: " + ignored.toString());
+
+            return null;
+        } // end of try .. catch block
+    }
+
+    /**
+     * The checkpoint to restart from: the one set by setRestartCheckpoint(),
+     * else the one in the checkpoint file, if it exists. A checkpoint set by
+     * setRestartCheckpoint() is used only once.
+     */
+    private SCFCheckpoint getRestart() {
+        SCFCheckpoint restart = restartCheckpoint;
+        restartCheckpoint = null;
+
+        if (restart == null && checkpointFile != null
+            && checkpointFile.exists()) {
+            try {
+                restart = SCFCheckpoint.read(checkpointFile);
+            } catch (IOException ignored) {
+                System.err.println("Unable to read SCF checkpoint: "
+                                   + ignored.toString());
+            } // end of try .. catch block
+        } // end if
+
+        return restart;
+    }
+
+    /** write the current state to the checkpoint file */
+    private void writeCheckpoint() {
+        SCFCheckpoint checkpoint = getCheckpoint();
+
+        if (checkpointIntegrals) {
+            checkpoint.setTwoEIntegrals(twoEI.getTwoEIntegrals());
+        } // end if
+
+        try {
+            checkpoint.write(checkpointFile);
+        } catch (IOException ignored) {
+            System.err.println("Unable to write SCF checkpoint: "
+                               + ignored.toString());
+        } // end of try .. catch block
+    }
+
+    /**
+     * Get a checkpoint of the current state of this SCF: density, MOs,
+     * orbital energies and the DIIS subspace
+     *
+     * @return the checkpoint, which can be used to restart a later SCF
+     */
+    public SCFCheckpoint getCheckpoint() {
+        SCFCheckpoint checkpoint = new SCFCheckpoint(this);
+
+        if (diis instanceof DIISFockExtrapolator) {
+            DIISFockExtrapolator d = (DIISFockExtrapolator) diis;
+
+            checkpoint.setDIISSubspace(d.getFockMatrixList(),
+                                       d.getErrorMatrixList());
+        } // end if
+
+        return checkpoint;
+    }
+
+    /**
+     * Get the value of restartCheckpoint
+     *
+     * @return the value of restartCheckpoint
+     */
+    public SCFCheckpoint getRestartCheckpoint() {
+        return restartCheckpoint;
+    }
+
+    /**
+     * Set the value of restartCheckpoint, the checkpoint from which the
+     * next call to scf() starts. It is used only once, and ignored if it
+     * is not for the same number of basis functions.
+     *
+     * @param restartCheckpoint new value of restartCheckpoint
+     */
+    public void setRestartCheckpoint(SCFCheckpoint restartCheckpoint) {
+        this.restartCheckpoint = restartCheckpoint;
+    }
+
+    /**
+     * Get the value of checkpointFile
+     *
+     * @return the value of checkpointFile
+     */
+    public File getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    /**
+     * Set the value of checkpointFile. If set, scf() restarts from this
+     * file if it exists, and saves its final state to it.
+     *
+     * @param checkpointFile new value of checkpointFile, null for none
+     */
+    public void setCheckpointFile(File checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * Get the value of checkpointIntegrals
+     *
+     * @return the value of checkpointIntegrals
+     */
+    public boolean isCheckpointIntegrals() {
+        return checkpointIntegrals;
+    }
+
+    /**
+     * Set the value of checkpointIntegrals. If true, the in core two
+     * electron integrals are saved in the checkpoint file as well. A
+     * conventional scf() restarting at the same geometry then uses them,
+     * instead of computing the integrals, provided its TwoElectronIntegrals
+     * was made with onTheFly = true (so that none were computed up front).
+     *
+     * @param checkpointIntegrals new value of checkpointIntegrals
+     */
+    public void setCheckpointIntegrals(boolean checkpointIntegrals) {
+        this.checkpointIntegrals = checkpointIntegrals;
+    }
+
+    /**
+     * Get the value of reuseDensity
+     *
+     * @return the value of reuseDensity
+     */
+    public boolean isReuseDensity() {
+        return reuseDensity;
+    }
+
+    /**
+     * Set the value of reuseDensity. If true, each evaluate() starts from
+     * the MOs of the previous geometry.
+     *
+     * @param reuseDensity new value of reuseDensity
+     */
+    public void setReuseDensity(boolean reuseDensity) {
+        this.reuseDensity = reuseDensity;
+    }
+
+    /**
+     * Get the value of auxiliaryBasisName
+     *
+     * @return the value of auxiliaryBasisName
+     */
+    public String getAuxiliaryBasisName() {
+        return auxiliaryBasisName;
+    }
+
+    /**
+     * Set the value of auxiliaryBasisName. If set, the Coulomb matrix is
+     * formed with the density fitting (RI-J) approximation in this
+     * auxiliary basis (read through BasisReader), and only the exchange
+     * matrix from the 2E integrals. Gradients still use the exact integrals.
+     *
+     * @param auxiliaryBasisName new value of auxiliaryBasisName, null for
+     *        the exact Coulomb matrix
+     */
+    public void setAuxiliaryBasisName(String auxiliaryBasisName) {
+        if (auxiliaryBasis != null
+            && !auxiliaryBasis.getBasisName().equals(auxiliaryBasisName)) {
+            auxiliaryBasis.dispose();
+            auxiliaryBasis = null;
+        } // end if
+
+        this.auxiliaryBasisName = auxiliaryBasisName;
+    }
+
+    /**
+     * Get the value of incrementalFockBuild
+     *
+     * @return the value of incrementalFockBuild
+     */
+    public boolean isIncrementalFockBuild() {
+        return incrementalFockBuild;
+    }
+
+    /**
+     * Set the value of incrementalFockBuild, only used for direct SCF
+     *
+     * @param incrementalFockBuild new value of incrementalFockBuild
+     */
+    public void setIncrementalFockBuild(boolean incrementalFockBuild) {
+        this.incrementalFockBuild = incrementalFockBuild;
+    }
+
+    /**
+     * Get the value of fullFockBuildInterval
+     *
+     * @return the value of fullFockBuildInterval
+     */
+    public int getFullFockBuildInterval() {
+        return fullFockBuildInterval;
+    }
+
+    /**
+     * Set the value of fullFockBuildInterval
+     *
+     * @param fullFockBuildInterval new value of fullFockBuildInterval
+     */
+    public void setFullFockBuildInterval(int fullFockBuildInterval) {
+        if (fullFockBuildInterval < 1)
+            throw new IllegalArgumentException("Invalid full Fock build "
+                                     + "interval: " + fullFockBuildInterval);
+
+        this.fullFockBuildInterval = fullFockBuildInterval;
+    }
+
+    /**
+     * Get the value of diisStorageType
+     *
+     * @return the value of diisStorageType
+     */
+    public DIISFockExtrapolator.StorageType getDIISStorageType() {
+        return diisStorageType;
+    }
+
+    /**
+     * Set the value of diisStorageType, the storage used for the DIIS
+     * subspace vectors from the next call to scf(). FLOAT and OFF_HEAP
+     * bring down the memory (or Java heap) used by the subspace of large
+     * molecules.
+     *
+     * @param diisStorageType new value of diisStorageType
+     */
+    public void setDIISStorageType(
+                           DIISFockExtrapolator.StorageType diisStorageType) {
+        this.diisStorageType = diisStorageType;
+    }
+
+    /**
+     * Get the value of diisMaxSubspaceSize
+     *
+     * @return the value of diisMaxSubspaceSize
+     */
+    public int getDIISMaxSubspaceSize() {
+        return diisMaxSubspaceSize;
+    }
+
+    /**
+     * Set the value of diisMaxSubspaceSize, the number of Fock matrices
+     * kept in the DIIS subspace from the next call to scf()
+     *
+     * @param diisMaxSubspaceSize new value of diisMaxSubspaceSize
+     */
+    public void setDIISMaxSubspaceSize(int diisMaxSubspaceSize) {
+        if (diisMaxSubspaceSize < 1)
+            throw new IllegalArgumentException("Invalid subspace size: "
+                                               + diisMaxSubspaceSize);
+
+        this.diisMaxSubspaceSize = diisMaxSubspaceSize;
+    }
+
     private boolean isDetivativeComputed = false;
 
     /**
      * This gradient (or Force) calculation is based on Appendix C of
      * Mordern Quantum Chemistry by Szabo and Ostland, which describes
-     * computing analytic gradients and geometry optimization.
+     * computing analytic gradients and geometry optimization. The gradient
+     * of all the atoms is evaluated in a single pass over the integrals.
      */
     private void computeForce() {
-        Force hfForce = new HartreeFockForce();
+        HartreeFockGradient hfGradient = new HartreeFockGradient();
+        hfGradient.compute(this);
 
         for(int i=0; i<molecule.getNumberOfAtoms(); i++) {
             Atom atom = molecule.getAtom(i);
-            Vector3D force = hfForce.computeForce(atom.getIndex(), this);
+            Vector3D force = hfGradient.getGradient(i).mul(-1);
 
             UserDefinedAtomProperty atmForce
                     = atom.getUserDefinedAtomProperty("force");
@@ -167,6 +571,11 @@ public class HartreeFockSCFMethod extends SCFMethod {
      */
     @Override
     public double evaluate(double[] variables) {
+        // start from the MOs of the previous geometry
+        if (reuseDensity && mos != null && restartCheckpoint == null) {
+            restartCheckpoint = new SCFCheckpoint(this);
+        } // end if
+
         molecule.resetAtomCoordinates(variables, false);
 
         // perform scf, and return energy
@@ -94,6 +94,19 @@ public class MolecularOrbitals extends Matrix {
         compute((Matrix) fock, overlap);
     }
 
+    /**
+     * Orthonormalize these MOs in the metric of an Overlap matrix, as needed
+     * when reusing the MOs of a different geometry. The symmetric (Lowdin)
+     * scheme, C' = (C S C^T)^-1/2 C, is used as it changes the MOs least.
+     *
+     * @param overlap the Overlap matrix
+     */
+    public void orthonormalize(Overlap overlap) {
+        Matrix mos = this.mul(overlap).mul(this.transpose());
+
+        this.setMatrix(mos.symmetricOrthogonalization().mul(this).getMatrix());
+    }
+
     /** The actual computation is irrelavant of the type of matrix */
     private void compute(Matrix theMat, Overlap overlap) {
         Matrix x = overlap.getSHalf();
@@ -7,10 +7,16 @@
 package org.meta.math.qm;
 
 
-import org.meta.math.Vector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.meta.math.qm.event.SCFEvent;
-import org.meta.math.qm.integral.IntegralsUtil;
+import org.meta.math.qm.integral.Integrals;
+import org.meta.math.qm.integral.ShellPair;
 import org.meta.molecule.Molecule;
+import org.meta.parallel.AbstractSimpleParallelTask;
+import org.meta.parallel.SimpleParallelTask;
+import org.meta.parallel.SimpleParallelTaskExecuter;
 
 /**
  * Moller Plesset Perturbation Theory as an extension of HF method.
@@ -29,16 +35,19 @@ public class MollerPlessetSCFMethod extends HartreeFockSCFMethod {
     private int mpLevel;
     
     /**
-     * transformed MO integrals
+     * The memory (in bytes) that the integral transformation may use, which
+     * decides the number of occupied orbitals transformed in one batch
      */
-    protected double [] moInts;
-    
+    private long transformationMemory;
+
     /** Creates a new instance of MollerPlessetSCFMethod */
     public MollerPlessetSCFMethod(Molecule molecule, OneElectronIntegrals oneEI, 
                                   TwoElectronIntegrals twoEI) {
         super(molecule, oneEI, twoEI);
         
         mpLevel = 2; // second level correction (MP2) is default        
+
+        transformationMemory = Runtime.getRuntime().maxMemory() / 4;
     }
     
     /**
@@ -50,34 +59,8 @@ public class MollerPlessetSCFMethod extends HartreeFockSCFMethod {
         // first do the HF-SCF procedure
         super.scf();
         
-        // transform AO -> MO ints
-        transformAOIntsToMOInts();
-        
         // now compute MP2 energy and then compute the total energy
-        int noOfBasisFunctions = mos.getRowCount();        
-        int noOfElectrons = molecule.getNumberOfElectrons();
-        int noOfOccupancies = noOfElectrons / 2;
-        int noOfVirtualOrbitals = noOfBasisFunctions - noOfOccupancies;
-        int noOfUnOccupied  = noOfOccupancies + noOfVirtualOrbitals;
-        int a, b, r, s;
-        
-        double mp2Energy = 0.0;
-        double arbs, asbr;
-        double [] orbE = mos.getOrbitalEnergies();
-        
-        for(a=0; a<noOfOccupancies; a++) {
-            for(b=0; b<noOfOccupancies; b++) {
-                for(r=noOfOccupancies; r<noOfUnOccupied; r++) {
-                    for(s=noOfOccupancies; s<noOfUnOccupied; s++) {
-                        arbs = moInts[IntegralsUtil.ijkl2intindex(a, r, b, s)];
-                        asbr = moInts[IntegralsUtil.ijkl2intindex(a, s, b, r)];
-                        
-                        mp2Energy += arbs * (2.0 * arbs - asbr) /
-                                     (orbE[a] + orbE[b] - orbE[r] - orbE[s]);
-                    } // end s
-                } // end r
-            } // end b
-        } // end a
+        double mp2Energy = computeMP2Energy();
         
         System.out.println(mp2Energy);
         
@@ -88,103 +71,406 @@ public class MollerPlessetSCFMethod extends HartreeFockSCFMethod {
         scfEvent.setCurrentEnergy(energy);
         fireSCFEventListenerScfEventOccured(scfEvent);
     }
-    
+
+    /** the MO coefficients (one MO per row) and orbital energies */
+    private double [][] moCoefficients;
+    private double [] orbitalEnergies;
+
+    private int noOfBasisFunctions, noOfOccupancies, noOfVirtualOrbitals;
+    private int noOfPairs;
+
     /**
-     * O(N^5) 4-index transformation of the two-electron integrals.
-     * Only transform the ones needed for MP2, which reduces the
-     * scaling to O(nN^4), where n are the occs (<<N).
+     * the half transformed integrals (a nu|lambda sigma) of the current
+     * batch of occupied orbitals, indexed [a - batchStart][lambda sigma][nu]
+     * where lambda >= sigma is packed as lambda*(lambda+1)/2+sigma
      */
-    protected void transformAOIntsToMOInts() {
-        // Start with (mu,nu|sigma,eta)
-        // Unpack AOints and transform sigma -> b
-        int mu, nu, sigma, eta, a, b, i, j;
-        
-        int noOfBasisFunctions = mos.getRowCount();
-        int noOfMOS = mos.getColumnCount();
-        int noOfElectrons = molecule.getNumberOfElectrons();
-        int noOfOccupancies = noOfElectrons / 2;
-        
-        Vector tempVector = new Vector(noOfBasisFunctions);
-        double [] tempvec = tempVector.getVector();
-        double [] aoints  = twoEI.getTwoEIntegrals();
-        
-        double [][][][] temp = 
-          new double[noOfBasisFunctions][noOfBasisFunctions]
-                    [noOfOccupancies][noOfBasisFunctions];
-        
-        for(mu=0; mu<noOfBasisFunctions; mu++) {
-            for(nu=0; nu<noOfBasisFunctions; nu++) {
-                for(eta=0; eta<noOfBasisFunctions; eta++) {
-                    for(b=0; b<noOfOccupancies; b++) {                        
-                        for(sigma=0; sigma<noOfBasisFunctions; sigma++) {
-                            tempvec[sigma] = 
-                            aoints[IntegralsUtil.ijkl2intindex(mu, nu, sigma, eta)];
-                        } // end sigma
-                        
-                        temp[mu][nu][b][eta] 
-                                = mos.getRowVector(b).dot(tempVector);
-                    } // end b
-                } // end eta
-            } // end nu
-        } // end mu
-        
-        double [][][][] temp2 = 
-          new double[noOfOccupancies][noOfBasisFunctions]
-                    [noOfOccupancies][noOfBasisFunctions];
-        
-        for(nu=0; nu<noOfBasisFunctions; nu++) {
-            for(eta=0; eta<noOfBasisFunctions; eta++) {
-                for(b=0; b<noOfOccupancies; b++) {
-                    for(a=0; a<noOfOccupancies; a++) {  
-                        for(i=0; i<noOfBasisFunctions; i++) {
-                            tempvec[i] = temp[i][nu][b][eta];
-                        } // end i
-                        
-                        temp2[a][nu][b][eta] 
-                                = mos.getRowVector(a).dot(tempVector);
-                    } // end a
-                } // end b
-            } // end eta
-        } // end nu
-        
-        temp = new double[noOfBasisFunctions][noOfBasisFunctions]
-                         [noOfOccupancies][noOfBasisFunctions];
-        
-        for(a=0; a<noOfOccupancies; a++) {
-            for(nu=0; nu<noOfBasisFunctions; nu++) {
-                for(b=0; b<noOfOccupancies; b++) {
-                    for(j=0; j<noOfMOS; j++) {  
-                        for(i=0; i<noOfBasisFunctions; i++) {
-                            tempvec[i] = temp2[a][nu][b][i];
-                        } // end i
-                        
-                        temp[a][nu][b][j] = mos.getRowVector(j).dot(tempVector);
-                    } // end a
-                } // end b
-            } // end eta
-        } // end nu
-        
-        temp2 = null;
-        
-        moInts = new double[aoints.length];
-        
-        // Transform mu -> i and repack integrals
-        for(a=0; a<noOfOccupancies; a++) {
-            for(j=0; j<noOfMOS; j++) {
-                for(b=0; b<noOfOccupancies; b++) {
-                    for(i=0; i<noOfMOS; i++) {  
-                        for(sigma=0; sigma<noOfBasisFunctions; sigma++) {
-                            tempvec[sigma] = temp[a][sigma][b][j];
-                        } // end sigma
-                        
-                        moInts[IntegralsUtil.ijkl2intindex(a, i, b, j)]
-                                = mos.getRowVector(i).dot(tempVector);
-                    } // end i
-                } // end b
-            } // end j
-        } // end a
-        
-        temp = null;
+    private double [][][] halfTransformed;
+    private int batchStart, batchEnd;
+
+    /** the in core AO integrals, null if they are to be computed */
+    private double [] aoIntegrals;
+
+    private ArrayList<ShellPair> shellPairs;
+    private double [] shellPairBounds;
+    private int [][] shellIndices;
+    private double screeningThreshold;
+
+    /** the next ket shell pair (counting down) to be taken up by a thread */
+    private AtomicInteger nextShellPair;
+
+    /** the next occupied orbital (counting down) to be taken up */
+    private AtomicInteger nextOccupied;
+
+    /**
+     * Compute the MP2 correlation energy,
+     * sum (ar|bs) [2(ar|bs) - (as|br)] / (e_a + e_b - e_r - e_s)
+     * over the occupied a, b and virtual r, s.
+     *
+     * The integrals are transformed a batch of occupied orbitals at a time,
+     * the batches being as large as the transformation memory allows. For
+     * each batch, the first quarter (mu -> a) is done for one ket shell pair
+     * at a time, the AO integrals being read from the in core array, or
+     * computed directly if the SCF did not keep them. The remaining three
+     * quarters, and the energy, are then done for one a at a time. All the
+     * steps are run in parallel, and no four index quantity larger than a
+     * batch of (a nu|lambda sigma) is ever formed.
+     *
+     * @return the MP2 correlation energy
+     */
+    protected double computeMP2Energy() {
+        moCoefficients  = mos.getMatrix();
+        orbitalEnergies = mos.getOrbitalEnergies();
+
+        noOfBasisFunctions  = moCoefficients[0].length;
+        noOfOccupancies     = molecule.getNumberOfElectrons() / 2;
+        noOfVirtualOrbitals = mos.getRowCount() - noOfOccupancies;
+        noOfPairs = noOfBasisFunctions * (noOfBasisFunctions + 1) / 2;
+
+        if (noOfVirtualOrbitals <= 0 || noOfOccupancies <= 0) return 0.0;
+
+        aoIntegrals        = twoEI.getTwoEIntegrals();
+        shellPairs         = twoEI.getShellPairs();
+        shellPairBounds    = twoEI.getShellPairBounds();
+        shellIndices       = twoEI.getShellIndices();
+        screeningThreshold = twoEI.getScreeningThreshold();
+
+        int batchSize = getBatchSize();
+        halfTransformed = new double[batchSize][noOfPairs][noOfBasisFunctions];
+
+        SimpleParallelTaskExecuter pTaskExecuter
+                                   = new SimpleParallelTaskExecuter();
+        double mp2Energy = 0.0;
+
+        for(batchStart=0; batchStart<noOfOccupancies; batchStart=batchEnd) {
+            batchEnd = Math.min(noOfOccupancies, batchStart + batchSize);
+
+            // first quarter, (mu nu|lambda sigma) -> (a nu|lambda sigma)
+            nextShellPair = new AtomicInteger(shellPairs.size());
+
+            FirstQuarterTransformationThread fThread
+                        = new FirstQuarterTransformationThread();
+            fThread.setTaskName("FirstQuarterTransformationThread Thread");
+            fThread.setTotalItems(shellPairs.size());
+
+            pTaskExecuter.execute(fThread);
+
+            // the other quarters, and the energy
+            nextOccupied = new AtomicInteger(batchEnd);
+
+            MP2EnergyThread eThread = new MP2EnergyThread();
+            eThread.setTaskName("MP2EnergyThread Thread");
+            eThread.setTotalItems(batchEnd - batchStart);
+
+            pTaskExecuter.execute(eThread);
+
+            Iterator<SimpleParallelTask> taskList
+                                          = pTaskExecuter.getTaskList();
+            while(taskList.hasNext()) {
+                mp2Energy += ((MP2EnergyThread) taskList.next()).getEnergy();
+            } // end while
+        } // end for
+
+        halfTransformed = null;
+        aoIntegrals     = null;
+        nextShellPair   = nextOccupied = null;
+
+        return mp2Energy;
+    }
+
+    /**
+     * The number of occupied orbitals that can be transformed in one
+     * batch, within the transformation memory. Each occupied orbital in a
+     * batch takes 8 n^2 (n+1) / 2 bytes, and each thread needs its own
+     * work space, of about 8 n^3 / 2 bytes.
+     */
+    private int getBatchSize() {
+        long n = noOfBasisFunctions, nv = noOfVirtualOrbitals,
+             no = noOfOccupancies;
+        long perOccupied = 8L * noOfPairs * n;
+        long perThread   = 8L * (nv * noOfPairs + n * n + no * n + nv * nv * no
+                                 + 100L * n * n);
+        long available   = transformationMemory
+                     - Runtime.getRuntime().availableProcessors() * perThread;
+
+        return (int) Math.max(1, Math.min(no, available / perOccupied));
+    }
+
+    /**
+     * The first quarter transformation, for the ket shell pairs taken from
+     * nextShellPair till none are left. For each (lambda sigma) of a ket
+     * shell pair, the AO integrals are unpacked into a symmetric matrix
+     * I(mu, nu), which is multiplied by the MO coefficients of the batch.
+     */
+    private void transformFirstQuarter() {
+        int n = noOfBasisFunctions;
+        int c, d, cd, nc, nd, kk, ll, k, l, kl, pair, noOfKets;
+        int a, mu, nu;
+        int [] ic, id;
+        int [] ketPairs = new int[0];
+        double [][][] aoBlocks = new double[0][][];
+        double [] hRow, iRow, cRow;
+        double cMu;
+
+        while((cd = nextShellPair.decrementAndGet()) >= 0) {
+            c = (int) ((Math.sqrt(8.0*cd + 1.0) - 1.0) / 2.0);
+            while(c * (c+1) / 2 > cd) c--;
+            while((c+1) * (c+2) / 2 <= cd) c++;
+            d = cd - c * (c+1) / 2;
+
+            ic = shellIndices[c];
+            nc = ic.length;
+            id = shellIndices[d];
+            nd = id.length;
+
+            if (aoBlocks.length < nc*nd) {
+                aoBlocks = new double[nc*nd][n][n];
+                ketPairs = new int[nc*nd];
+            } // end if
+
+            // the (lambda sigma), lambda >= sigma, of this shell pair
+            noOfKets = 0;
+            for(kk=0; kk<nc; kk++) {
+                k = ic[kk];
+                for(ll=0; ll<nd; ll++) {
+                    l = id[ll];
+                    if (l > k) continue;
+
+                    ketPairs[noOfKets++] = k * (k+1) / 2+l;
+                } // end for
+            } // end for
+
+            if (aoIntegrals != null) {
+                unpackAOIntegrals(ketPairs, noOfKets, aoBlocks);
+            } else {
+                computeAOIntegrals(cd, nc, nd, ic, id, aoBlocks);
+            } // end if
+
+            // (a nu|lambda sigma) = sum_mu C(a, mu) I(mu, nu)
+            for(kl=0; kl<noOfKets; kl++) {
+                pair = ketPairs[kl];
+
+                for(a=batchStart; a<batchEnd; a++) {
+                    cRow = moCoefficients[a];
+                    hRow = halfTransformed[a-batchStart][pair];
+
+                    for(nu=0; nu<n; nu++) hRow[nu] = 0.0;
+
+                    for(mu=0; mu<n; mu++) {
+                        cMu = cRow[mu];
+                        if (cMu == 0.0) continue;
+
+                        iRow = aoBlocks[kl][mu];
+                        for(nu=0; nu<n; nu++) hRow[nu] += cMu * iRow[nu];
+                    } // end for
+                } // end for
+            } // end for
+        } // end while
+    }
+
+    /** unpack (mu nu|lambda sigma) of the given kets from the in core array */
+    private void unpackAOIntegrals(int [] ketPairs, int noOfKets,
+                                   double [][][] aoBlocks) {
+        int n = noOfBasisFunctions;
+        int kl, pair, mu, nu, ij;
+        double [][] block;
+        double v;
+
+        for(kl=0; kl<noOfKets; kl++) {
+            pair  = ketPairs[kl];
+            block = aoBlocks[kl];
+
+            for(mu=0; mu<n; mu++) {
+                for(nu=0; nu<=mu; nu++) {
+                    ij = mu * (mu+1) / 2+nu;
+                    v  = (ij >= pair)
+                           ? aoIntegrals[(int) ((long) ij * (ij+1) / 2+pair)]
+                           : aoIntegrals[(int) ((long) pair * (pair+1) / 2+ij)];
+
+                    block[mu][nu] = block[nu][mu] = v;
+                } // end for
+            } // end for
+        } // end for
+    }
+
+    /**
+     * Compute (mu nu|lambda sigma) for all the (lambda sigma) of the ket
+     * shell pair cd, from all the (Schwarz screened) bra shell pairs
+     */
+    private void computeAOIntegrals(int cd, int nc, int nd, int [] ic,
+                                    int [] id, double [][][] aoBlocks) {
+        int noOfShellPairs = shellPairs.size();
+        int a, b, ab, na, nb, ii, jj, kk, ll, i, j, k, l, idx, kl;
+        int [] ia, ib;
+        double [] integrals = new double[twoEI.getMaximumShellQuartetSize()];
+        double [][] block;
+        ShellPair cdPair = shellPairs.get(cd);
+        double cdBound = shellPairBounds[cd];
+
+        for(a=0, ab=0; ab<noOfShellPairs; a++) {
+            ia = shellIndices[a];
+            na = ia.length;
+
+            for(b=0; b<=a; b++, ab++) {
+                ib = shellIndices[b];
+                nb = ib.length;
+
+                boolean screened
+                           = shellPairBounds[ab]*cdBound < screeningThreshold;
+                if (!screened) Integrals.coulomb(shellPairs.get(ab), cdPair,
+                                                 integrals);
+
+                idx = 0;
+                for(ii=0; ii<na; ii++) {
+                  i = ia[ii];
+                  for(jj=0; jj<nb; jj++) {
+                    j = ib[jj];
+
+                    kl = 0;
+                    for(kk=0; kk<nc; kk++) {
+                      k = ic[kk];
+                      for(ll=0; ll<nd; ll++, idx++) {
+                        l = id[ll];
+                        if (l > k) continue;
+
+                        block = aoBlocks[kl++];
+                        block[i][j] = block[j][i]
+                                    = screened ? 0.0 : integrals[idx];
+                      } // end ll loop
+                    } // end kk loop
+                  } // end jj loop
+                } // end ii loop
+            } // end b loop
+        } // end a loop
+    }
+
+    /**
+     * The remaining three quarter transformations and the MP2 energy, for
+     * the occupied orbitals of the batch taken from nextOccupied till none
+     * are left. For each a:
+     * (a r|lambda sigma) = sum_nu C(r, nu) (a nu|lambda sigma), then for
+     * each r, (a r|b sigma) = sum_lambda C(b, lambda) (a r|lambda sigma)
+     * and (a r|b s) = sum_sigma (a r|b sigma) C(s, sigma).
+     *
+     * @return the contribution to the MP2 energy
+     */
+    private double transformAndComputeEnergy() {
+        int n = noOfBasisFunctions, no = noOfOccupancies,
+            nv = noOfVirtualOrbitals;
+        int a, b, r, s, pair, lambda, sigma;
+        double [][] arPairs = new double[nv][noOfPairs];
+        double [][] m = new double[n][n];
+        double [][] x = new double[no][n];
+        double [][][] arbs = new double[nv][no][nv];
+        double [] hRow, cRow, mRow, xRow, arRow, kRow;
+        double v, cbl, energy = 0.0;
+
+        while((a = nextOccupied.decrementAndGet()) >= batchStart) {
+            double [][] half = halfTransformed[a-batchStart];
+
+            // second quarter
+            for(pair=0; pair<noOfPairs; pair++) {
+                hRow = half[pair];
+
+                for(r=0; r<nv; r++) {
+                    cRow = moCoefficients[no+r];
+
+                    v = 0.0;
+                    for(sigma=0; sigma<n; sigma++) v += cRow[sigma]*hRow[sigma];
+
+                    arPairs[r][pair] = v;
+                } // end for
+            } // end for
+
+            for(r=0; r<nv; r++) {
+                // unpack (a r|lambda sigma)
+                arRow = arPairs[r];
+                for(lambda=0, pair=0; lambda<n; lambda++) {
+                    mRow = m[lambda];
+                    for(sigma=0; sigma<=lambda; sigma++, pair++) {
+                        mRow[sigma] = m[sigma][lambda] = arRow[pair];
+                    } // end for
+                } // end for
+
+                // third quarter
+                for(b=0; b<no; b++) {
+                    xRow = x[b];
+                    cRow = moCoefficients[b];
+
+                    for(sigma=0; sigma<n; sigma++) xRow[sigma] = 0.0;
+
+                    for(lambda=0; lambda<n; lambda++) {
+                        cbl = cRow[lambda];
+                        if (cbl == 0.0) continue;
+
+                        mRow = m[lambda];
+                        for(sigma=0; sigma<n; sigma++)
+                            xRow[sigma] += cbl * mRow[sigma];
+                    } // end for
+                } // end for
+
+                // fourth quarter
+                for(b=0; b<no; b++) {
+                    xRow = x[b];
+                    kRow = arbs[r][b];
+
+                    for(s=0; s<nv; s++) {
+                        cRow = moCoefficients[no+s];
+
+                        v = 0.0;
+                        for(sigma=0; sigma<n; sigma++)
+                            v += xRow[sigma] * cRow[sigma];
+
+                        kRow[s] = v;
+                    } // end for
+                } // end for
+            } // end for
+
+            // energy contribution of this a
+            double ea = orbitalEnergies[a];
+            double arbsValue, asbrValue;
+            for(b=0; b<no; b++) {
+                double eab = ea + orbitalEnergies[b];
+
+                for(r=0; r<nv; r++) {
+                    kRow = arbs[r][b];
+                    double eabr = eab - orbitalEnergies[no+r];
+
+                    for(s=0; s<nv; s++) {
+                        arbsValue = kRow[s];
+                        asbrValue = arbs[s][b][r];
+
+                        energy += arbsValue * (2.0 * arbsValue - asbrValue)
+                                  / (eabr - orbitalEnergies[no+s]);
+                    } // end for
+                } // end for
+            } // end for
+        } // end while
+
+        return energy;
+    }
+
+    /**
+     * Get the value of transformationMemory
+     *
+     * @return the value of transformationMemory, in bytes
+     */
+    public long getTransformationMemory() {
+        return transformationMemory;
+    }
+
+    /**
+     * Set the value of transformationMemory. The default is a quarter of
+     * the maximum heap size.
+     *
+     * @param transformationMemory new value of transformationMemory, in
+     *        bytes
+     */
+    public void setTransformationMemory(long transformationMemory) {
+        if (transformationMemory <= 0)
+            throw new IllegalArgumentException("Invalid transformation "
+                                     + "memory: " + transformationMemory);
+
+        this.transformationMemory = transformationMemory;
     }
     
     /**
@@ -203,5 +489,84 @@ public class MollerPlessetSCFMethod extends HartreeFockSCFMethod {
         this.mpLevel = mpLevel;
     }
 
-    
+
+    /**
+     * Does the first quarter transformation of a batch in parallel, the
+     * ket shell pairs being handed out dynamically. Each task writes to
+     * its own (lambda sigma) of the half transformed integrals, so no
+     * locking is needed.
+     */
+    protected class FirstQuarterTransformationThread
+              extends AbstractSimpleParallelTask {
+
+        public FirstQuarterTransformationThread() { }
+
+        public FirstQuarterTransformationThread(int startItem, int endItem) {
+            this.startItem = startItem;
+            this.endItem   = endItem;
+
+            setTaskName("FirstQuarterTransformationThread Thread");
+        }
+
+        /**
+         * Overridden run()
+         */
+        @Override
+        public void run() {
+            if (startItem >= endItem) return;
+
+            transformFirstQuarter();
+        }
+
+        /** Overridden init() */
+        @Override
+        public SimpleParallelTask init(int startItem, int endItem) {
+            return new FirstQuarterTransformationThread(startItem, endItem);
+        }
+    }
+
+    /**
+     * Completes the transformation of a batch, and evaluates its MP2
+     * energy in parallel, the occupied orbitals being handed out
+     * dynamically.
+     */
+    protected class MP2EnergyThread extends AbstractSimpleParallelTask {
+
+        private double energy;
+
+        public MP2EnergyThread() { }
+
+        public MP2EnergyThread(int startItem, int endItem) {
+            this.startItem = startItem;
+            this.endItem   = endItem;
+
+            setTaskName("MP2EnergyThread Thread");
+        }
+
+        /**
+         * Overridden run()
+         */
+        @Override
+        public void run() {
+            if (startItem >= endItem) return;
+
+            energy = transformAndComputeEnergy();
+        }
+
+        /** Overridden init() */
+        @Override
+        public SimpleParallelTask init(int startItem, int endItem) {
+            return new MP2EnergyThread(startItem, endItem);
+        }
+
+        /**
+         * Get the energy contribution of the occupied orbitals handled by
+         * this task
+         *
+         * @return the MP2 energy contribution
+         */
+        public double getEnergy() {
+            return energy;
+        }
+    }
 } // end of class MollerPlessetSCFMethod
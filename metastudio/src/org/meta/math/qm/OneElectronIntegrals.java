@@ -7,9 +7,14 @@
 package org.meta.math.qm;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.meta.config.impl.AtomInfo;
 
+import org.meta.math.geom.Point3D;
 import org.meta.math.qm.basis.ContractedGaussian;
+import org.meta.math.qm.basis.PackedBasisFunctions;
+import org.meta.math.qm.integral.Integrals;
+import org.meta.molecule.Atom;
 import org.meta.molecule.Molecule;
 import org.meta.parallel.AbstractSimpleParallelTask;
 import org.meta.parallel.SimpleParallelTask;
@@ -59,6 +64,22 @@ public class OneElectronIntegrals {
         return basisFunctions;
     }
     
+    /** the default threshold below which primitive pairs are neglected */
+    public static final double DEFAULT_SCREENING_THRESHOLD = 1.0e-15;
+
+    /** the threshold below which primitive pairs are neglected */
+    private double screeningThreshold = DEFAULT_SCREENING_THRESHOLD;
+
+    /** the basis functions, as flat arrays */
+    private PackedBasisFunctions packedBasis;
+
+    /** the nuclear charges and centers (in a.u.) */
+    private double [] charges;
+    private double [][] centers;
+
+    /** the next row (counting down) of the matrices to be computed */
+    private AtomicInteger nextBasisFunction;
+
     /**
      * compute the 1E integrals, form S matrix and hCore
      */
@@ -71,55 +92,123 @@ public class OneElectronIntegrals {
         this.overlap = new Overlap(noOfBasisFunctions);
         this.hCore = new HCore(noOfBasisFunctions);
                 
-        // read in the atomic numbers
-        int [] atomicNumbers = new int[molecule.getNumberOfAtoms()];
+        // read in the nuclear charges and centers
+        int noOfAtoms = molecule.getNumberOfAtoms();
         AtomInfo ai = AtomInfo.getInstance();
+
+        charges = new double[noOfAtoms];
+        centers = new double[noOfAtoms][];
         
-        for(i=0; i<atomicNumbers.length; i++) {
-            atomicNumbers[i] = ai.getAtomicNumber(
-                                     molecule.getAtom(i).getSymbol());
+        for(i=0; i<noOfAtoms; i++) {
+            Atom atom = molecule.getAtom(i);
+            Point3D center = atom.getAtomCenterInAU();
+
+            charges[i] = ai.getAtomicNumber(atom.getElementCode());
+            centers[i] = new double[] {center.getX(), center.getY(),
+                                       center.getZ()};
         } // end for
-        
+
+        packedBasis = basisFunctions.getPackedBasisFunctions();
+
+        nextBasisFunction = new AtomicInteger(noOfBasisFunctions);
+
         SimpleParallelTaskExecuter pTaskExecuter
                                    = new SimpleParallelTaskExecuter();
 
         OneElectronIntegralEvaluaterThread tThread
-                   = new OneElectronIntegralEvaluaterThread(atomicNumbers);
+                   = new OneElectronIntegralEvaluaterThread();
         tThread.setTaskName("OneElectronIntegralEvaluater Thread");
         tThread.setTotalItems(noOfBasisFunctions);
 
         pTaskExecuter.execute(tThread);
+
+        packedBasis = null;
+        centers  = null;
+        charges  = null;
+        nextBasisFunction = null;
     }
     
     /**
-     * method to actually compute 1E integrals
+     * method to actually compute 1E integrals, for the rows taken from
+     * nextBasisFunction till none are left. Only the lower triangle is
+     * evaluated, the upper one being filled in by symmetry. Primitive
+     * pairs with |c_a c_b| exp(-ab/(a+b) R_AB^2) below the screening
+     * threshold are skipped, and the Gaussian product of the others is
+     * shared by the overlap, kinetic and all the nuclear attraction terms.
      */
-    private void compute1E(int startBasisFunction, int endBasisFunction, 
-                           double [][] overlap, double [][] hCore,
-                           int [] atomicNumbers,
-                           ArrayList<ContractedGaussian> bfs) {
-        
-        int noOfBasisFunctions = bfs.size();
-        int i, j, k;
-        
-        ContractedGaussian bfi, bfj;
-        
-        // set up the S matrix and the hCore h
-        for(i=startBasisFunction; i<endBasisFunction; i++) {
-            bfi = (ContractedGaussian) bfs.get(i);
-            
-            for(j=0; j<noOfBasisFunctions; j++) {
-                bfj = (ContractedGaussian) bfs.get(j);
-                
-                overlap[i][j] = bfi.overlap(bfj);  // the overlap matrix
-                hCore[i][j] = bfi.kinetic(bfj); // KE matrix elements
-                
-                for(k=0; k<atomicNumbers.length; k++) {                    
-                    hCore[i][j] += atomicNumbers[k] * bfi.nuclear(bfj,
-                                      molecule.getAtom(k).getAtomCenterInAU());
+    private void compute1E(double [][] overlap, double [][] hCore) {
+        int i, j, ip, jp, d;
+        double [] st = new double[2];
+        double [] ai = new double[3], aj = new double[3];
+        int [] pi = new int[3], pj = new int[3];
+        double sij, hij, rABSquared, r, alpha, beta, cc;
+
+        double [] exponents = packedBasis.getExponents();
+        double [] coefficients = packedBasis.getNormalizedCoefficients();
+        double [] bfCenters = packedBasis.getCenters();
+        int [] bfPowers = packedBasis.getPowers();
+        int [] offsets = packedBasis.getPrimitiveOffsets();
+
+        while((i = nextBasisFunction.decrementAndGet()) >= 0) {
+            System.arraycopy(bfCenters, 3*i, ai, 0, 3);
+            System.arraycopy(bfPowers, 3*i, pi, 0, 3);
+
+            for(j=0; j<=i; j++) {
+                System.arraycopy(bfCenters, 3*j, aj, 0, 3);
+                System.arraycopy(bfPowers, 3*j, pj, 0, 3);
+
+                rABSquared = 0.0;
+                for(d=0; d<3; d++) {
+                    r = ai[d] - aj[d];
+                    rABSquared += r * r;
                 } // end for
+
+                sij = hij = 0.0;
+                for(ip=offsets[i]; ip<offsets[i+1]; ip++) {
+                    alpha = exponents[ip];
+
+                    for(jp=offsets[j]; jp<offsets[j+1]; jp++) {
+                        beta = exponents[jp];
+                        cc   = coefficients[ip] * coefficients[jp];
+
+                        if (Math.abs(cc) * Math.exp(-alpha * beta * rABSquared
+                                     / (alpha + beta)) < screeningThreshold)
+                            continue;
+
+                        Integrals.overlapAndKinetic(alpha, pi, ai,
+                                                    beta, pj, aj, st);
+
+                        sij += cc * st[0];
+                        hij += cc * (st[1] + Integrals.nuclearAttraction(
+                                                alpha, pi, ai, beta, pj, aj,
+                                                centers, charges));
+                    } // end for
+                } // end for
+
+                overlap[i][j] = overlap[j][i] = sij; // the overlap matrix
+                hCore[i][j]   = hCore[j][i]   = hij; // KE + nuclear terms
             } // end for
-        } // end for        
+        } // end while
+    }
+
+    /**
+     * Get the value of screeningThreshold
+     *
+     * @return the value of screeningThreshold
+     */
+    public double getScreeningThreshold() {
+        return screeningThreshold;
+    }
+
+    /**
+     * Set the value of screeningThreshold. Primitive pairs for which
+     * |c_a c_b| exp(-ab/(a+b) R_AB^2) is less than this value are neglected,
+     * from the next call to compute1E(). A value of zero turns off screening.
+     *
+     * @param screeningThreshold new value of screeningThreshold
+     */
+    public void setScreeningThreshold(double screeningThreshold) {
+        this.screeningThreshold = screeningThreshold;
     }
     
     /**
@@ -140,34 +229,27 @@ public class OneElectronIntegrals {
 
     /**
      * Class encapsulating the way to compute 1E electrons in a way 
-     * useful for utilizing multi core (processor) systems.
+     * useful for utilizing multi core (processor) systems. The rows are
+     * handed out dynamically, largest first, as the lower triangle rows
+     * are of unequal length.
      */
     protected class OneElectronIntegralEvaluaterThread 
               extends AbstractSimpleParallelTask {
         
-        private int startBasisFunction, endBasisFunction;
-        private ArrayList<ContractedGaussian> bfs;
         private double [][] overlap, hCore;
-        private int [] atomicNumbers;
 
-        public OneElectronIntegralEvaluaterThread(int [] atomicNumbers) {
-            this.atomicNumbers = atomicNumbers;
+        public OneElectronIntegralEvaluaterThread() {
         }
         
-        public OneElectronIntegralEvaluaterThread(int startBasisFunction, 
-                                           int endBasisFunction,
-                                           double [][] overlap, 
-                                           double [][] hCore,
-                                           int [] atomicNumbers,
-                                           ArrayList<ContractedGaussian> bfs) {
-            this.startBasisFunction = startBasisFunction;
-            this.endBasisFunction   = endBasisFunction;
-        
+        public OneElectronIntegralEvaluaterThread(int startItem,
+                                                  int endItem,
+                                                  double [][] overlap,
+                                                  double [][] hCore) {
+            this.startItem = startItem;
+            this.endItem   = endItem;
+
             this.overlap = overlap;
             this.hCore   = hCore;
-            this.atomicNumbers = atomicNumbers;
-            
-            this.bfs = bfs;
 
             setTaskName("OneElectronIntegralEvaluater Thread");
         }
@@ -175,9 +257,9 @@ public class OneElectronIntegrals {
         /** overridden run() */
         @Override
         public void run() {            
-            compute1E(startBasisFunction, endBasisFunction,
-                      overlap, hCore,
-                      atomicNumbers, bfs);
+            if (startItem >= endItem) return;
+
+            compute1E(overlap, hCore);
         }
 
         /** Overridden init() */
@@ -186,9 +268,7 @@ public class OneElectronIntegrals {
             return new OneElectronIntegralEvaluaterThread(
                           startItem, endItem,
                           OneElectronIntegrals.this.overlap.getMatrix(),
-                          OneElectronIntegrals.this.hCore.getMatrix(),
-                          this.atomicNumbers,
-                          basisFunctions.getBasisFunctions());
+                          OneElectronIntegrals.this.hCore.getMatrix());
         }
     } // end of class OneElectronIntegralEvaluaterThread
     
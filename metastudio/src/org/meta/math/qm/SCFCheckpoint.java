@@ -0,0 +1,446 @@
+/*
+ * SCFCheckpoint.java
+ *
+ * Created on 18/10/2026
+ */
+
+package org.meta.math.qm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import org.meta.math.Vector;
+import org.meta.math.geom.Point3D;
+import org.meta.molecule.Molecule;
+
+/**
+ * The state of a (converged, or partially converged) SCF run, from which a
+ * later SCF can be restarted: the density, the MO coefficients, the orbital
+ * energies, the DIIS subspace and, optionally, the in core two electron
+ * integrals. The basis set and the atoms are recorded, so that the
+ * checkpoint is only used for the same molecule in the same basis, and the
+ * geometry (in a.u.) as well, so that the parts that are only valid at the
+ * same geometry (the energy, the DIIS subspace and the integrals) are not
+ * used otherwise. <br>
+ *
+ * A checkpoint can be written to and read from a compact binary file.
+ * Symmetric matrices (density, Fock) are stored as their lower triangle,
+ * and the antisymmetric DIIS error matrices as their strict lower triangle.
+ *
+ * @author  V.Ganesh
+ * @version 2.0 (Part of MeTA v2.0)
+ */
+public class SCFCheckpoint {
+
+    /** the first four bytes of a checkpoint file */
+    private static final int MAGIC = 0x4D455441; // META
+
+    /** the version of the file format */
+    private static final int VERSION = 2;
+
+    private int noOfBasisFunctions;
+
+    private String basisName;
+
+    private String [] symbols;
+
+    private double energy;
+
+    private double [] coordinates;
+
+    private double [][] density;
+
+    private double [][] moCoefficients;
+
+    private double [] orbitalEnergies;
+
+    private ArrayList<Fock> diisFockMatrices;
+
+    private ArrayList<Vector> diisErrorVectors;
+
+    private double [] twoEIntegrals;
+
+    /** Creates a new (empty) instance of SCFCheckpoint */
+    public SCFCheckpoint() {
+        diisFockMatrices = new ArrayList<Fock>();
+        diisErrorVectors = new ArrayList<Vector>();
+    }
+
+    /**
+     * Creates a new instance of SCFCheckpoint from the current state of an
+     * SCF method. The DIIS subspace is not recorded, use
+     * setDIISSubspace() for that.
+     *
+     * @param scfMethod the SCF method whose state is to be saved, at least
+     *        one SCF iteration should have been done
+     */
+    public SCFCheckpoint(SCFMethod scfMethod) {
+        this();
+
+        MolecularOrbitals mos = scfMethod.getMos();
+
+        noOfBasisFunctions = mos.getRowCount();
+        basisName       = scfMethod.getOneEI().getBasisFunctions()
+                                   .getBasisName();
+        symbols         = getSymbols(scfMethod.getMolecule());
+        energy          = scfMethod.getEnergy();
+        coordinates     = getCoordinates(scfMethod.getMolecule());
+        density         = copyOf(scfMethod.getDensity().getMatrix());
+        moCoefficients  = copyOf(mos.getMatrix());
+        orbitalEnergies = mos.getOrbitalEnergies().clone();
+    }
+
+    /**
+     * The coordinates of all the atoms of a molecule, in a.u.
+     */
+    private static double [] getCoordinates(Molecule molecule) {
+        int noOfAtoms = molecule.getNumberOfAtoms();
+        double [] xyz = new double[3*noOfAtoms];
+
+        for(int i=0; i<noOfAtoms; i++) {
+            Point3D center = molecule.getAtom(i).getAtomCenterInAU();
+
+            xyz[3*i]   = center.getX();
+            xyz[3*i+1] = center.getY();
+            xyz[3*i+2] = center.getZ();
+        } // end for
+
+        return xyz;
+    }
+
+    /**
+     * The symbols of all the atoms of a molecule
+     */
+    private static String [] getSymbols(Molecule molecule) {
+        int noOfAtoms = molecule.getNumberOfAtoms();
+        String [] atomSymbols = new String[noOfAtoms];
+
+        for(int i=0; i<noOfAtoms; i++) {
+            atomSymbols[i] = molecule.getAtom(i).getSymbol();
+        } // end for
+
+        return atomSymbols;
+    }
+
+    /** a deep copy of a 2D array */
+    private static double [][] copyOf(double [][] a) {
+        double [][] copy = new double[a.length][];
+
+        for(int i=0; i<a.length; i++) copy[i] = a[i].clone();
+
+        return copy;
+    }
+
+    /**
+     * Check if this checkpoint was made for the current geometry of a
+     * molecule
+     *
+     * @param molecule the molecule to be checked
+     * @return true if the atoms are where they were at the checkpoint
+     */
+    public boolean isSameGeometry(Molecule molecule) {
+        return Arrays.equals(coordinates, getCoordinates(molecule));
+    }
+
+    /**
+     * Check if this checkpoint can be used to restart an SCF of a molecule
+     * in the given basis: the basis set, the number of basis functions and
+     * the atoms (in order) must be the same
+     *
+     * @param molecule the molecule of the SCF
+     * @param basisFunctions the basis functions of the SCF
+     * @return true if the MOs of this checkpoint can be used
+     */
+    public boolean isCompatible(Molecule molecule,
+                                BasisFunctions basisFunctions) {
+        if (moCoefficients == null || symbols == null) return false;
+
+        if (noOfBasisFunctions != basisFunctions.getBasisFunctions().size())
+            return false;
+
+        String theBasisName = basisFunctions.getBasisName();
+        if (basisName == null ? theBasisName != null
+                              : !basisName.equals(theBasisName))
+            return false;
+
+        return Arrays.equals(symbols, getSymbols(molecule));
+    }
+
+    /**
+     * Make a new MolecularOrbitals object from the saved MOs
+     *
+     * @return the saved MOs and orbital energies
+     */
+    public MolecularOrbitals getMolecularOrbitals() {
+        MolecularOrbitals mos = new MolecularOrbitals(copyOf(moCoefficients));
+
+        mos.setOrbitalEnergies(orbitalEnergies.clone());
+
+        return mos;
+    }
+
+    /**
+     * Set the DIIS subspace, the Fock matrices and the error vectors
+     * (flattened FPS - SPF matrices) of the previous iterations
+     *
+     * @param fockMatrices the Fock matrices
+     * @param errorVectors the corresponding error vectors
+     */
+    public void setDIISSubspace(ArrayList<Fock> fockMatrices,
+                                ArrayList<Vector> errorVectors) {
+        diisFockMatrices = new ArrayList<Fock>();
+        diisErrorVectors = new ArrayList<Vector>();
+
+        for(int i=0; i<fockMatrices.size(); i++) {
+            diisFockMatrices.add(new Fock(
+                                   copyOf(fockMatrices.get(i).getMatrix())));
+            diisErrorVectors.add(new Vector(
+                                   errorVectors.get(i).getVector().clone()));
+        } // end for
+    }
+
+    /**
+     * Restore the saved two electron integrals, if there are any and they
+     * were made for the current geometry, in place of recomputing them with
+     * compute2E(). The checkpoint should be compatible (see isCompatible())
+     * with the integrals.
+     *
+     * @param twoEI the integrals to be restored
+     * @param molecule the molecule of the integrals
+     * @return true if the integrals were restored
+     */
+    public boolean restoreTwoEIntegrals(TwoElectronIntegrals twoEI,
+                                        Molecule molecule) {
+        if (twoEIntegrals == null || !isSameGeometry(molecule)) return false;
+
+        twoEI.setTwoEIntegrals(twoEIntegrals);
+
+        return true;
+    }
+
+    /**
+     * Write this checkpoint to a file
+     *
+     * @param file the checkpoint file
+     * @throws IOException if the file can not be written
+     */
+    public void write(File file) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                                       new FileOutputStream(file), 1 << 16));
+
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(noOfBasisFunctions);
+            out.writeUTF(basisName == null ? "" : basisName);
+            out.writeInt(symbols.length);
+            for(String symbol : symbols) out.writeUTF(symbol);
+            out.writeDouble(energy);
+
+            writeArray(out, coordinates);
+            writeTriangle(out, density, true);
+            out.writeInt(moCoefficients.length);
+            for(double [] row : moCoefficients) writeArray(out, row);
+            writeArray(out, orbitalEnergies);
+
+            out.writeInt(diisFockMatrices.size());
+            for(int i=0; i<diisFockMatrices.size(); i++) {
+                writeTriangle(out, diisFockMatrices.get(i).getMatrix(), true);
+                writeTriangle(out, unflatten(diisErrorVectors.get(i)), false);
+            } // end for
+
+            out.writeBoolean(twoEIntegrals != null);
+            if (twoEIntegrals != null) writeArray(out, twoEIntegrals);
+        } finally {
+            out.close();
+        } // end of try .. finally block
+    }
+
+    /**
+     * Read a checkpoint from a file
+     *
+     * @param file the checkpoint file
+     * @return the checkpoint read from the file
+     * @throws IOException if the file can not be read, or is not a
+     *         checkpoint file
+     */
+    public static SCFCheckpoint read(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                                       new FileInputStream(file), 1 << 16));
+        SCFCheckpoint checkpoint = new SCFCheckpoint();
+
+        try {
+            if (in.readInt() != MAGIC)
+                throw new IOException("Not an SCF checkpoint file: " + file);
+            if (in.readInt() != VERSION)
+                throw new IOException("Unsupported SCF checkpoint version: "
+                                      + file);
+
+            int n = checkpoint.noOfBasisFunctions = in.readInt();
+            checkpoint.basisName = in.readUTF();
+            checkpoint.symbols = new String[in.readInt()];
+            for(int i=0; i<checkpoint.symbols.length; i++)
+                checkpoint.symbols[i] = in.readUTF();
+            checkpoint.energy = in.readDouble();
+
+            checkpoint.coordinates = readArray(in);
+            checkpoint.density = readTriangle(in, n, true);
+            checkpoint.moCoefficients = new double[in.readInt()][];
+            for(int i=0; i<checkpoint.moCoefficients.length; i++)
+                checkpoint.moCoefficients[i] = readArray(in);
+            checkpoint.orbitalEnergies = readArray(in);
+
+            int noOfDIISMatrices = in.readInt();
+            for(int i=0; i<noOfDIISMatrices; i++) {
+                checkpoint.diisFockMatrices.add(
+                                       new Fock(readTriangle(in, n, true)));
+                checkpoint.diisErrorVectors.add(
+                                       new Vector(new Fock(
+                                           readTriangle(in, n, false))));
+            } // end for
+
+            if (in.readBoolean()) checkpoint.twoEIntegrals = readArray(in);
+        } finally {
+            in.close();
+        } // end of try .. finally block
+
+        return checkpoint;
+    }
+
+    /** write an array, preceded by its length */
+    private static void writeArray(DataOutputStream out, double [] a)
+                                   throws IOException {
+        out.writeInt(a.length);
+        for(double v : a) out.writeDouble(v);
+    }
+
+    /** read an array written by writeArray() */
+    private static double [] readArray(DataInputStream in)
+                                       throws IOException {
+        double [] a = new double[in.readInt()];
+
+        for(int i=0; i<a.length; i++) a[i] = in.readDouble();
+
+        return a;
+    }
+
+    /**
+     * write the lower triangle of a symmetric (including the diagonal) or
+     * antisymmetric (excluding the diagonal) matrix
+     */
+    private static void writeTriangle(DataOutputStream out, double [][] a,
+                                      boolean symmetric) throws IOException {
+        for(int i=0; i<a.length; i++) {
+            for(int j=0; j<(symmetric ? i+1 : i); j++) {
+                out.writeDouble(a[i][j]);
+            } // end for
+        } // end for
+    }
+
+    /** read a matrix written by writeTriangle() */
+    private static double [][] readTriangle(DataInputStream in, int n,
+                                   boolean symmetric) throws IOException {
+        double [][] a = new double[n][n];
+
+        for(int i=0; i<n; i++) {
+            for(int j=0; j<(symmetric ? i+1 : i); j++) {
+                a[i][j] = in.readDouble();
+                a[j][i] = symmetric ? a[i][j] : -a[i][j];
+            } // end for
+        } // end for
+
+        return a;
+    }
+
+    /** a square matrix from its row wise flattened vector */
+    private double [][] unflatten(Vector vector) {
+        double [] v = vector.getVector();
+        double [][] a = new double[noOfBasisFunctions][noOfBasisFunctions];
+
+        for(int i=0, ii=0; i<noOfBasisFunctions; i++) {
+            for(int j=0; j<noOfBasisFunctions; j++) a[i][j] = v[ii++];
+        } // end for
+
+        return a;
+    }
+
+    /**
+     * Get the value of noOfBasisFunctions
+     *
+     * @return the value of noOfBasisFunctions
+     */
+    public int getNumberOfBasisFunctions() {
+        return noOfBasisFunctions;
+    }
+
+    /**
+     * Get the value of basisName
+     *
+     * @return the value of basisName
+     */
+    public String getBasisName() {
+        return basisName;
+    }
+
+    /**
+     * Get the value of energy
+     *
+     * @return the value of energy, at the checkpoint
+     */
+    public double getEnergy() {
+        return energy;
+    }
+
+    /**
+     * Get the value of density
+     *
+     * @return the value of density
+     */
+    public Density getDensity() {
+        return new Density(copyOf(density));
+    }
+
+    /**
+     * Get the Fock matrices of the DIIS subspace
+     *
+     * @return the DIIS Fock matrices, empty if none were saved
+     */
+    public ArrayList<Fock> getDIISFockMatrices() {
+        return diisFockMatrices;
+    }
+
+    /**
+     * Get the error vectors of the DIIS subspace
+     *
+     * @return the DIIS error vectors, empty if none were saved
+     */
+    public ArrayList<Vector> getDIISErrorVectors() {
+        return diisErrorVectors;
+    }
+
+    /**
+     * Get the value of twoEIntegrals
+     *
+     * @return the saved two electron integrals, or null
+     */
+    public double[] getTwoEIntegrals() {
+        return twoEIntegrals;
+    }
+
+    /**
+     * Set the value of twoEIntegrals, the in core integrals to be saved
+     * along with the checkpoint
+     *
+     * @param twoEIntegrals new value of twoEIntegrals, null for none
+     */
+    public void setTwoEIntegrals(double[] twoEIntegrals) {
+        this.twoEIntegrals = twoEIntegrals;
+    }
+} // end of class SCFCheckpoint
@@ -68,6 +68,11 @@ public abstract class SCFMethod implements OptimizerFunction {
      */
     protected int scfIteration;    
     
+    /**
+     * Holds value of property converged.
+     */
+    protected boolean converged;
+    
     /**
      * Holds value of property densityGuesser.
      */
@@ -137,7 +142,7 @@ public abstract class SCFMethod implements OptimizerFunction {
         
         for(i=0; i<noOfAtoms; i++) {
             atomicNumbers[i] = ai.getAtomicNumber(
-                                     molecule.getAtom(i).getSymbol());
+                                     molecule.getAtom(i).getElementCode());
         } // end for
         
         // and compute nuclear energy
@@ -235,6 +240,15 @@ public abstract class SCFMethod implements OptimizerFunction {
         return this.scfIteration;
     }
     
+    /**
+     * Getter for property converged.
+     * @return true if the last call to scf() met the convergence
+     *         criteria, false otherwise
+     */
+    public boolean isConverged() {
+        return this.converged;
+    }
+    
     /**
      * Getter for property molecule.
      * @return Value of property molecule.
@@ -6,14 +6,16 @@
 
 package org.meta.math.qm;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.*;
-import org.meta.math.geom.Point3D;
-import org.meta.math.Vector3D;
 import org.meta.math.qm.basis.ContractedGaussian;
-import org.meta.math.qm.basis.Power;
-import org.meta.math.qm.basis.PrimitiveGaussian;
+import org.meta.math.qm.basis.Shell;
 import org.meta.math.qm.integral.Integrals;
 import org.meta.math.qm.integral.IntegralsUtil;
+import org.meta.math.qm.integral.ShellPair;
+import org.meta.math.qm.integral.TwoElectronIntegralStore;
 import org.meta.molecule.Molecule;
 import org.meta.parallel.AbstractSimpleParallelTask;
 import org.meta.parallel.SimpleParallelTask;
@@ -29,12 +31,46 @@ public class TwoElectronIntegrals {
     
     private BasisFunctions basisFunctions;
 
-    private Molecule molecule;
-
     /**
      * Holds value of property twoEIntegrals.
      */
     private double[] twoEIntegrals;
+
+    /** Schwarz bounds sqrt((ij|ij)), indexed as i*(i+1)/2+j */
+    private double[] schwarzBounds;
+
+    /** the basis function list for which schwarzBounds were computed */
+    private ArrayList<ContractedGaussian> schwarzBoundsBasis;
+
+    /** the centered shells of the basis */
+    private ArrayList<Shell> shells;
+
+    /** basis function indices of the components of each shell */
+    private int[][] shellIndices;
+
+    /** shell pairs (I >= J) with primitive pair data, indexed I*(I+1)/2+J */
+    private ArrayList<ShellPair> shellPairs;
+
+    /** Schwarz bounds of the shell pairs, the largest component bound */
+    private double[] shellPairBounds;
+
+    /** the default threshold below which integrals are neglected */
+    public static final double DEFAULT_SCREENING_THRESHOLD = 1.0e-10;
+
+    /** the threshold below which integrals are neglected */
+    private double screeningThreshold = DEFAULT_SCREENING_THRESHOLD;
+
+    /** number of integrals skipped by screening in the last compute2E() */
+    private long noOfSkippedIntegrals;
+
+    /** the on disk store of the integrals, if stored on disk */
+    private TwoElectronIntegralStore integralStore;
+
+    /** the directory in which the integral store is created */
+    private File integralStoreDirectory;
+
+    /** error, if any, in writing to the integral store */
+    private IOException integralStoreError;
     
     /** 
      * Creates a new instance of TwoElectronIntegrals 
@@ -63,61 +99,32 @@ public class TwoElectronIntegrals {
             try {
                 compute2E();  // try to do compute 2E incore
             } catch(OutOfMemoryError e) {
-                // if no memory, resort to direct SCF
+                // if no memory, resort to disk based storage, and failing
+                // that to direct SCF
                 System.err.println("No memory for in-core integral evaluation" +
-                                   ". Switching to direct integral evaluation.");
-                System.gc();
-                this.onTheFly = true;
+                                   ". Switching to disk based integral storage.");
+                twoEIntegrals = null;
+                this.onDisk   = true;
+                compute2E();
             } // end of try catch block
         } // end if
     }
 
     /**
-     * Creates a new instance of TwoElectronIntegrals, and computes
-     * two electron intergrals using shell-pair method rather than the
-     * conventional loop over all basis functions approach. Note that, this
-     * requires the Molecule object to be passed as an argument for it to
-     * function correctly. Note that the Atom objects which are a part of
-     * Molecule object must be specially configured to have a user defined
-     * property called "basisFunctions" that is essentially a list of
-     * ContractedGaussians that are centered on the atom. If this breaks, then
-     * the code will silentely default to using the conventional way of
-     * computing the two electron intergrals.
+     * Creates a new instance of TwoElectronIntegrals. The integrals are
+     * evaluated by shell quartets, as with the other constructors, so the
+     * molecule is no longer needed; this is retained for the existing
+     * callers.
      *
-     * @param molecule
+     * @param basisFunctions the basis functions to be used
+     * @param molecule the molecule of the basis functions
      * @param onTheFly if true, the 2E integrals are not calculated and stored,
-     *        they must be calculated individually by calling 
-     *        compute2EShellPair(i,j,k,l)
+     *        they must be calculated individually by calling
+     *        compute2E(i,j,k,l)
      */
     public TwoElectronIntegrals(BasisFunctions basisFunctions,
                                 Molecule molecule, boolean onTheFly) {
-        this.basisFunctions = basisFunctions;
-        this.molecule = molecule;
-        
-        this.onTheFly = onTheFly;
-
-        // compute the 2E integrals
-        if (!onTheFly) {
-            try {
-                // first try in - core method
-                try {
-                    compute2EShellPair();  // try to use shell pair algorithm
-                } catch(Exception ignored) {
-                    System.err.println("WARNING: Using a slower algorithm" +
-                            " to compute two electron integrals. Error is: "
-                            + ignored.toString());
-                    ignored.printStackTrace();
-
-                    compute2E(); // if it doesn't succeed then fall back to normal
-                } // end if
-            } catch(OutOfMemoryError e) {
-                // if no memory, resort to direct SCF
-                System.err.println("No memory for in-core integral evaluation" +
-                                   ". Switching to direct integral evaluation.");
-                System.gc();
-                this.onTheFly = true;
-            } // end if
-        } // end if
+        this(basisFunctions, onTheFly);
     }
 
     /**
@@ -128,338 +135,282 @@ public class TwoElectronIntegrals {
      * where available.
      */
     protected void compute2E() {
+        if (onDisk) {
+            compute2EOnDisk();
+            return;
+        } // end if
+
         ArrayList<ContractedGaussian> bfs = basisFunctions.getBasisFunctions();
         
-        // allocate required memory
-        int noOfBasisFunctions = bfs.size();
-        int noOfIntegrals = noOfBasisFunctions * (noOfBasisFunctions + 1)
-                           * (noOfBasisFunctions * noOfBasisFunctions
-                              + noOfBasisFunctions + 2) / 8;
-        
-        twoEIntegrals = new double[noOfIntegrals];
+        // allocate required memory, if there is enough of it
+        if (!allocateInCore(bfs.size())) {
+            compute2EOnDisk();
+            return;
+        } // end if
         
+        // set up the Schwarz bounds used to skip negligible integrals
+        computeSchwarzBounds();
+        noOfSkippedIntegrals = 0;
+
         SimpleParallelTaskExecuter pTaskExecuter
                                    = new SimpleParallelTaskExecuter();
 
         TwoElectronIntegralEvaluaterThread tThread
                    = new TwoElectronIntegralEvaluaterThread();
         tThread.setTaskName("TwoElectronIntegralEvaluater Thread");
-        tThread.setTotalItems(noOfBasisFunctions);
+        tThread.setTotalItems(shells.size());
 
         pTaskExecuter.execute(tThread);
     }        
-    
+
     /**
-     * Actually compute the 2E integrals
+     * Allocate the in-core integral array. If the number of unique integrals
+     * does not fit in a Java array, or the array would not fit in the free
+     * heap, nothing is allocated and the disk based storage is selected
+     * instead.
+     *
+     * @param noOfBasisFunctions the number of basis functions
+     * @return true if the in-core array was allocated, false otherwise
      */
-    private void compute2E(int startBasisFunction, int endBasisFunction,
-                           ArrayList<ContractedGaussian> bfs) {
-        
-        int i, j, k, l, ij, kl, ijkl;        
-        int noOfBasisFunctions = bfs.size();
-        
-        ContractedGaussian bfi, bfj, bfk, bfl;
-        
-        // we only need i <= j, k <= l, and ij >= kl
-        for(i=startBasisFunction; i<endBasisFunction; i++) {
-            bfi = bfs.get(i);
-            
-            for(j=0; j<(i+1); j++) {
-                bfj = bfs.get(j);
-                ij = i * (i+1) / 2+j;
-                
-                for(k=0; k<noOfBasisFunctions; k++) {
-                    bfk = bfs.get(k);
-                    
-                    for(l=0; l<(k+1); l++) {
-                        bfl = bfs.get(l);
-                        
-                        kl = k * (k+1) / 2+l;
-                        if (ij >= kl) {
-                            ijkl = IntegralsUtil.ijkl2intindex(i, j, k, l);
-                            
-                            // record the 2E integrals
-                            twoEIntegrals[ijkl] = Integrals.coulomb(bfi, bfj, 
-                                                                    bfk, bfl);
-                        } // end if
-                    } // end l loop
-                } // end k loop
-            } // end of j loop
-        } // end of i loop        
-    }
-
-    /**
-     * Actually compute the 2E integrals derivatives
-     */
-    private void compute2EDerivative(int startBasisFunction, int endBasisFunction,
-                                     ArrayList<ContractedGaussian> bfs) {
-
-        int i, j, k, l, ij, kl, ijkl;
-        int noOfBasisFunctions = bfs.size();
-
-        ContractedGaussian bfi, bfj, bfk, bfl;
-
-        double [] dxTwoE = twoEDer.get(0);
-        double [] dyTwoE = twoEDer.get(1);
-        double [] dzTwoE = twoEDer.get(2);
-
-        // we only need i <= j, k <= l, and ij >= kl
-        for(i=startBasisFunction; i<endBasisFunction; i++) {
-            bfi = bfs.get(i);
-
-            for(j=0; j<(i+1); j++) {
-                bfj = bfs.get(j);
-                ij = i * (i+1) / 2+j;
-
-                for(k=0; k<noOfBasisFunctions; k++) {
-                    bfk = bfs.get(k);
-
-                    for(l=0; l<(k+1); l++) {
-                        bfl = bfs.get(l);
-
-                        kl = k * (k+1) / 2+l;
-                        if (ij >= kl) {
-                            ijkl = IntegralsUtil.ijkl2intindex(i, j, k, l);
+    private boolean allocateInCore(int noOfBasisFunctions) {
+        long n = noOfBasisFunctions;
+        long noOfIntegrals = n * (n + 1) * (n * n + n + 2) / 8;
+
+        // the old array, if any, is about to be released
+        Runtime runtime = Runtime.getRuntime();
+        long freeMemory = runtime.maxMemory() - runtime.totalMemory()
+                          + runtime.freeMemory();
+        if (twoEIntegrals != null) freeMemory += 8L * twoEIntegrals.length;
+
+        twoEIntegrals = null;
+
+        if (noOfIntegrals > Integer.MAX_VALUE
+            || 8L * noOfIntegrals > freeMemory) {
+            System.err.println("No memory for in-core integral evaluation" +
+                               " of " + noOfIntegrals + " integrals" +
+                               ". Switching to disk based integral storage.");
+            this.onDisk = true;
+
+            return false;
+        } // end if
 
-                            // record derivative of the 2E integrals
-                            Vector3D twoEDerEle
-                               = compute2EDerivativeElement(bfi, bfj, bfk, bfl);
+        twoEIntegrals = new double[(int) noOfIntegrals];
 
-                            dxTwoE[ijkl] = twoEDerEle.getI();
-                            dyTwoE[ijkl] = twoEDerEle.getJ();
-                            dzTwoE[ijkl] = twoEDerEle.getK();
-                        } // end if
-                    } // end l loop
-                } // end k loop
-            } // end of j loop
-        } // end of i loop
+        return true;
     }
 
-    /** Compute a single 2E derivative element */
-    private Vector3D compute2EDerivativeElement(ContractedGaussian bfi,
-       ContractedGaussian bfj, ContractedGaussian bfk, ContractedGaussian bfl) {
-        
-        Vector3D twoEDerEle = new Vector3D();
-        int [] paramIdx;
-        Power currentPower;
-        Point3D currentOrigin;
-        double currentAlpha;
-
-        if (bfi.getCenteredAtom().getIndex() == atomIndex) {
-            paramIdx = new int[]{4, 1, 2, 3};
-            for(PrimitiveGaussian iPG : bfi.getPrimitives()) {
-                currentOrigin = iPG.getOrigin();
-                currentPower  = iPG.getPowers();
-                currentAlpha  = iPG.getExponent();
-                for(PrimitiveGaussian jPG : bfj.getPrimitives()) {
-                    for(PrimitiveGaussian kPG : bfk.getPrimitives()) {
-                        for(PrimitiveGaussian lPG : bfl.getPrimitives()) {
-                            compute2EDerivativeElementHelper(iPG, jPG,
-                                   kPG, lPG, currentOrigin, currentPower,
-                                   currentAlpha, paramIdx, twoEDerEle);
-                        } // end for
-                    } // end for
-                } // end for
-            } // end for
-        } // end if
-
-        if (bfj.getCenteredAtom().getIndex() == atomIndex) {
-            paramIdx = new int[]{0, 4, 2, 3};
-            for(PrimitiveGaussian iPG : bfi.getPrimitives()) {
-                for(PrimitiveGaussian jPG : bfj.getPrimitives()) {
-                    currentOrigin = jPG.getOrigin();
-                    currentPower  = jPG.getPowers();
-                    currentAlpha  = jPG.getExponent();
-                    for(PrimitiveGaussian kPG : bfk.getPrimitives()) {
-                        for(PrimitiveGaussian lPG : bfl.getPrimitives()) {
-                            compute2EDerivativeElementHelper(iPG, jPG,
-                                   kPG, lPG, currentOrigin, currentPower,
-                                   currentAlpha, paramIdx, twoEDerEle);
-                        } // end for
-                    } // end for
-                } // end for
-            } // end for
-        } // end if
+    /**
+     * compute the 2E integrals, and write the ones that are not negligible
+     * to a file backed TwoElectronIntegralStore. If the store can not be
+     * written, the integrals are evaluated on the fly instead.
+     */
+    protected void compute2EOnDisk() {
+        int noOfBasisFunctions = basisFunctions.getBasisFunctions().size();
+
+        if (noOfBasisFunctions > TwoElectronIntegralStore.MAX_BASIS_FUNCTIONS)
+            throw new UnsupportedOperationException("Too many basis functions"
+                      + " for disk based integral storage: "
+                      + noOfBasisFunctions);
+
+        disposeIntegralStore();
+        twoEIntegrals = null;
+
+        // set up the Schwarz bounds used to skip negligible integrals
+        computeSchwarzBounds();
+        noOfSkippedIntegrals = 0;
+
+        try {
+            integralStore
+                    = new TwoElectronIntegralStore(integralStoreDirectory);
+            integralStoreError = null;
+
+            SimpleParallelTaskExecuter pTaskExecuter
+                                       = new SimpleParallelTaskExecuter();
+
+            TwoElectronIntegralEvaluaterThread tThread
+                       = new TwoElectronIntegralEvaluaterThread();
+            tThread.setTaskName("TwoElectronIntegralEvaluater Thread");
+            tThread.setTotalItems(shells.size());
+
+            pTaskExecuter.execute(tThread);
+
+            if (integralStoreError != null) throw integralStoreError;
+
+            integralStore.finish();
+        } catch(IOException e) {
+            // if no disk, resort to direct SCF
+            System.err.println("Unable to store integrals on disk: "
+                               + e.toString()
+                               + ". Switching to direct integral evaluation.");
+            disposeIntegralStore();
+            this.onDisk   = false;
+            this.onTheFly = true;
+        } // end of try catch block
+    }
 
-        if (bfk.getCenteredAtom().getIndex() == atomIndex) {
-            paramIdx = new int[]{0, 1, 4, 3};
-            for(PrimitiveGaussian iPG : bfi.getPrimitives()) {
-                for(PrimitiveGaussian jPG : bfj.getPrimitives()) {
-                    for(PrimitiveGaussian kPG : bfk.getPrimitives()) {
-                        currentOrigin = kPG.getOrigin();
-                        currentPower  = kPG.getPowers();
-                        currentAlpha  = kPG.getExponent();
-                        for(PrimitiveGaussian lPG : bfl.getPrimitives()) {
-                            compute2EDerivativeElementHelper(iPG, jPG,
-                                   kPG, lPG, currentOrigin, currentPower,
-                                   currentAlpha, paramIdx, twoEDerEle);
-                        } // end for
-                    } // end for
-                } // end for
-            } // end for
-        } // end if
+    /** Record an error in writing to the integral store */
+    private synchronized void setIntegralStoreError(IOException error) {
+        if (integralStoreError == null) integralStoreError = error;
+    }
 
-        if (bfl.getCenteredAtom().getIndex() == atomIndex) {
-            paramIdx = new int[]{0, 1, 2, 4};
-            for(PrimitiveGaussian iPG : bfi.getPrimitives()) {
-                for(PrimitiveGaussian jPG : bfj.getPrimitives()) {
-                    for(PrimitiveGaussian kPG : bfk.getPrimitives()) {
-                        for(PrimitiveGaussian lPG : bfl.getPrimitives()) {
-                            currentOrigin = lPG.getOrigin();
-                            currentPower  = lPG.getPowers();
-                            currentAlpha  = lPG.getExponent();
-
-                            compute2EDerivativeElementHelper(iPG, jPG,
-                                   kPG, lPG, currentOrigin, currentPower,
-                                   currentAlpha, paramIdx, twoEDerEle);
-                        } // end for
-                    } // end for
-                } // end for
-            } // end for
+    /** Release the integral store, if any */
+    private void disposeIntegralStore() {
+        if (integralStore != null) {
+            integralStore.dispose();
+            integralStore = null;
         } // end if
-
-        return twoEDerEle;
     }
+    
+    /**
+     * Actually compute the 2E integrals, one shell quartet at a time
+     */
+    private void compute2E(int startShell, int endShell) {
+        int a, b, c, d, ab, cd, i, j, k, l, ij, kl, idx;
+        int na, nb, nc, nd;
+        long skipped = 0;
+        double abBound;
+
+        Shell sa, sb, sc, sd;
+        ShellPair abPair;
+        int [] ia, ib, ic, id;
+        double [] integrals = new double[getMaximumShellQuartetSize()];
+
+        // if on disk, integrals are buffered and then appended to the store
+        TwoElectronIntegralStore store = integralStore;
+        ByteBuffer storeBuffer = (store == null) ? null : store.newBuffer();
+
+        try {
+            // we only need a >= b, c >= d, and ab >= cd
+            for(a=startShell; a<endShell; a++) {
+                sa = shells.get(a);
+                na = sa.getNumberOfShellPrimitives();
+                ia = shellIndices[a];
 
-    /** helper for computing 2E derivative */
-    private void compute2EDerivativeElementHelper(PrimitiveGaussian iPG,
-       PrimitiveGaussian jPG, PrimitiveGaussian kPG, PrimitiveGaussian lPG,
-       Point3D currentOrigin, Power currentPower, double currentAlpha,
-       int [] paramIdx, Vector3D derEle) {
+                for(b=0; b<=a; b++) {
+                    sb = shells.get(b);
+                    nb = sb.getNumberOfShellPrimitives();
+                    ib = shellIndices[b];
+                    ab = a * (a+1) / 2+b;
+                    abPair  = shellPairs.get(ab);
+                    abBound = shellPairBounds[ab];
+
+                    for(c=0; c<=a; c++) {
+                        sc = shells.get(c);
+                        nc = sc.getNumberOfShellPrimitives();
+                        ic = shellIndices[c];
+
+                        for(d=0; d<=c; d++) {
+                            cd = c * (c+1) / 2+d;
+                            if (cd > ab) break;
+
+                            sd = shells.get(d);
+                            nd = sd.getNumberOfShellPrimitives();
+
+                            // Schwarz screening: |(ab|cd)| <= Q(ab) Q(cd)
+                            if (abBound*shellPairBounds[cd]
+                                                    < screeningThreshold) {
+                                skipped += getNumberOfUniqueIntegrals(a, b,
+                                                   c, d, na, nb, nc, nd);
+                                continue;
+                            } // end if
+
+                            Integrals.coulomb(abPair, shellPairs.get(cd),
+                                              integrals);
+                            id = shellIndices[d];
+
+                            // record the symmetry unique 2E integrals
+                            idx = 0;
+                            for(i=0; i<na; i++) {
+                              for(j=0; j<nb; j++) {
+                                if (ib[j] > ia[i]) { idx += nc*nd; continue; }
+                                ij = ia[i] * (ia[i]+1) / 2+ib[j];
+
+                                for(k=0; k<nc; k++) {
+                                  for(l=0; l<nd; l++, idx++) {
+                                    if (id[l] > ic[k]) continue;
+                                    kl = ic[k] * (ic[k]+1) / 2+id[l];
+                                    if (ab == cd && kl > ij) continue;
+
+                                    if (store == null) {
+                                        twoEIntegrals[IntegralsUtil
+                                            .ijkl2intindex(ia[i], ib[j],
+                                                           ic[k], id[l])]
+                                                             = integrals[idx];
+                                    } else if (Math.abs(integrals[idx])
+                                                        >= screeningThreshold) {
+                                        store.put(storeBuffer, ia[i], ib[j],
+                                                  ic[k], id[l], integrals[idx]);
+                                    } // end if
+                                  } // end l loop
+                                } // end k loop
+                              } // end j loop
+                            } // end i loop
+                        } // end d loop
+                    } // end c loop
+                } // end b loop
+            } // end a loop
+
+            if (store != null) store.write(storeBuffer);
+        } catch(IOException e) {
+            setIntegralStoreError(e);
+        } // end of try .. catch block
+
+        addSkippedIntegrals(skipped);
+    }
 
-        int l = currentPower.getL(),
-            m = currentPower.getM(),
-            n = currentPower.getN();
-        
-        double coeff = iPG.getCoefficient()*jPG.getCoefficient()
-                       *kPG.getCoefficient()*lPG.getCoefficient();
+    /**
+     * The basis function indices of the components of a centered shell
+     *
+     * @param shell the centered shell
+     * @return basis function indices of the shell components
+     */
+    private static int [] getShellIndices(Shell shell) {
+        int n = shell.getNumberOfShellPrimitives();
+        int [] indices = new int[n];
 
-        PrimitiveGaussian xPG = new PrimitiveGaussian(currentOrigin,
-                                      new Power(l+1,m,n), currentAlpha, coeff);
-        xPG.normalize();
+        for(int i=0; i<n; i++) {
+            indices[i] = shell.getShellPrimitive(i).getIndex();
+        } // end for
 
-        PrimitiveGaussian [] pgs 
-                = new PrimitiveGaussian[]{iPG, jPG, kPG, lPG, xPG};
-        
-        double terma = Math.sqrt(currentAlpha*(2.0*l+1.0))*coeff*
-                        Integrals.coulomb(pgs[paramIdx[0]], pgs[paramIdx[1]],
-                                          pgs[paramIdx[2]], pgs[paramIdx[3]]),
-               termb = 0.0;
-
-        if (l>0) {
-            xPG.setPowers(new Power(l-1,m,n));
-            xPG.normalize();
-            termb = -2.0*l*Math.sqrt(currentAlpha/(2.*l-1))*coeff*
-                     Integrals.coulomb(pgs[paramIdx[0]], pgs[paramIdx[1]],
-                                       pgs[paramIdx[2]], pgs[paramIdx[3]]);
-        } // end if
+        return indices;
+    }
 
-        derEle.setI(derEle.getI() + terma + termb); // x component
+    /**
+     * The number of symmetry unique basis function quartets in a canonical
+     * (a >= b, c >= d, ab >= cd) shell quartet
+     */
+    static long getNumberOfUniqueIntegrals(int a, int b, int c, int d,
+                                           int na, int nb, int nc, int nd) {
+        long nab = (a == b) ? na * (na+1) / 2 : na * nb;
+        long ncd = (c == d) ? nc * (nc+1) / 2 : nc * nd;
 
-        if (m>0) {
-            xPG.setPowers(new Power(l,m-1,n));
-            xPG.normalize();
-            termb = -2.0*m*Math.sqrt(currentAlpha/(2.*m-1))*coeff*
-                     Integrals.coulomb(pgs[paramIdx[0]], pgs[paramIdx[1]],
-                                       pgs[paramIdx[2]], pgs[paramIdx[3]]);
-        } // end if
+        return ((a == c && b == d) ? nab * (nab+1) / 2 : nab * ncd);
+    }
 
-        derEle.setJ(derEle.getJ() + terma + termb); // y component
+    /**
+     * The size of the buffer needed to hold the integrals of the largest
+     * shell quartet of the current basis
+     *
+     * @return the buffer size, in number of doubles
+     */
+    public int getMaximumShellQuartetSize() {
+        int maxSize = 0;
 
-        if (n>0) {
-            xPG.setPowers(new Power(l,m,n-1));
-            xPG.normalize();
-            termb = -2.0*n*Math.sqrt(currentAlpha/(2.*n-1))*coeff*
-                     Integrals.coulomb(pgs[paramIdx[0]], pgs[paramIdx[1]],
-                                       pgs[paramIdx[2]], pgs[paramIdx[3]]);
-        } // end if
+        for(Shell shell : getShells()) {
+            maxSize = Math.max(maxSize, shell.getNumberOfShellPrimitives());
+        } // end for
 
-        derEle.setK(derEle.getK() + terma + termb); // z component
+        return maxSize * maxSize * maxSize * maxSize;
     }
 
     /**
      * compute the 2E integrals using shell pair based method, and store it in
-     * a single 1D array, in the form [ijkl].
-     *
-     * This method has been modified to take advantage of multi core systems
-     * where available.
+     * a single 1D array, in the form [ijkl]. This is now the same as
+     * compute2E(), which evaluates the integrals by shell quartets from the
+     * precomputed shell pair data.
      */
     protected void compute2EShellPair() {
-        // TODO : parallel
-
-        ArrayList<ContractedGaussian> bfs = basisFunctions.getBasisFunctions();
-
-        // allocate required memory
-        int noOfBasisFunctions = bfs.size();
-        int noOfIntegrals = noOfBasisFunctions * (noOfBasisFunctions + 1)
-                           * (noOfBasisFunctions * noOfBasisFunctions
-                              + noOfBasisFunctions + 2) / 8;
-
-        twoEIntegrals = new double[noOfIntegrals];
-        
-        int noOfAtoms = molecule.getNumberOfAtoms();
-        int a, b, c, d;
-        int i, j, k, l;
-        int naFunc, nbFunc, ncFunc, ndFunc, twoEIndx;
-        ArrayList<ContractedGaussian> aFunc, bFunc, cFunc, dFunc;
-        ContractedGaussian iaFunc, jbFunc, kcFunc, ldFunc;
-
-        // center a
-        for(a=0; a<noOfAtoms; a++) {
-            aFunc = (ArrayList<ContractedGaussian>) molecule.getAtom(a)
-                      .getUserDefinedAtomProperty("basisFunctions").getValue();
-            naFunc = aFunc.size(); 
-            // basis functions on a
-            for(i=0; i<naFunc; i++) {
-                iaFunc = aFunc.get(i);
-                
-                // center b
-                for(b=0; b<=a; b++) {
-                    bFunc = (ArrayList<ContractedGaussian>) molecule.getAtom(b)
-                      .getUserDefinedAtomProperty("basisFunctions").getValue();
-                    nbFunc = (b<a) ? bFunc.size() : i+1;
-                    // basis functions on b
-                    for(j=0; j<nbFunc; j++) {
-                        jbFunc = bFunc.get(j);
-
-                        // center c
-                        for(c=0; c<noOfAtoms; c++) {
-                            cFunc = (ArrayList<ContractedGaussian>)
-                              molecule.getAtom(c).getUserDefinedAtomProperty(
-                                                   "basisFunctions").getValue();
-                            ncFunc = cFunc.size();
-                            // basis functions on c
-                            for(k=0; k<ncFunc; k++) {
-                                kcFunc = cFunc.get(k);
-
-                                // center d
-                                for(d=0; d<=c; d++) {
-                                    dFunc = (ArrayList<ContractedGaussian>)
-                                        molecule.getAtom(d)
-                                            .getUserDefinedAtomProperty(
-                                                   "basisFunctions").getValue();
-                                    ndFunc = (d<c) ? dFunc.size() : k+1;
-                                    // basis functions on d
-                                    for(l=0; l<ndFunc; l++) {
-                                        ldFunc = dFunc.get(l);
-
-                                        twoEIndx = IntegralsUtil.ijkl2intindex(
-                                                           iaFunc.getIndex(),
-                                                           jbFunc.getIndex(),
-                                                           kcFunc.getIndex(),
-                                                           ldFunc.getIndex());
-                                        
-                                        twoEIntegrals[twoEIndx] =
-                                                compute2E(iaFunc, jbFunc,
-                                                          kcFunc, ldFunc);
-                                    } // end for (l)
-                                } // end for (d)
-                            } // end for (k)
-                        } // end for (c)
-                    }  // end for (j)
-                } // end for (b)
-            } // end for (i)
-        } // end for (a)
+        compute2E();
     }
     
     /**
@@ -488,67 +439,218 @@ public class TwoElectronIntegrals {
     }
     
     /**
-     * Getter for property twoEIntegrals.
-     * @return Value of property twoEIntegrals.
+     * Compute the Schwarz upper bounds Q(ij) = sqrt((ij|ij)) for all the
+     * basis function pairs (i >= j). These are stored in a packed 1D array
+     * indexed as i*(i+1)/2+j, and are used to skip integrals for which
+     * Q(ij)*Q(kl) falls below the screening threshold.
+     *
+     * This also sets up the shell pairs of the current basis, and their
+     * bounds (the largest Q(ij) of the components of a shell pair).
      */
-    public double[] getTwoEIntegrals() {
-        return this.twoEIntegrals;
+    protected void computeSchwarzBounds() {
+        ArrayList<ContractedGaussian> bfs = basisFunctions.getBasisFunctions();
+        int noOfBasisFunctions = bfs.size();
+
+        schwarzBounds = new double[noOfBasisFunctions
+                                   * (noOfBasisFunctions + 1) / 2];
+
+        // the shell pairs with the precomputed primitive pair data
+        shells = basisFunctions.getShellList().getCenteredShells();
+
+        int noOfShells = shells.size();
+        shellPairs = new ArrayList<ShellPair>(noOfShells*(noOfShells+1)/2);
+        shellPairBounds = new double[noOfShells*(noOfShells+1)/2];
+        shellIndices = new int[noOfShells][];
+
+        for(int a=0; a<noOfShells; a++) {
+            shellIndices[a] = getShellIndices(shells.get(a));
+
+            for(int b=0; b<=a; b++) {
+                shellPairs.add(new ShellPair(shells.get(a), shells.get(b)));
+            } // end for
+        } // end for
+
+        SimpleParallelTaskExecuter pTaskExecuter
+                                   = new SimpleParallelTaskExecuter();
+
+        SchwarzBoundsEvaluaterThread tThread
+                   = new SchwarzBoundsEvaluaterThread();
+        tThread.setTaskName("SchwarzBoundsEvaluater Thread");
+        tThread.setTotalItems(noOfShells);
+
+        pTaskExecuter.execute(tThread);
+
+        schwarzBoundsBasis = bfs;
     }
-    
+
     /**
-     * Setter for property twoEIntegrals.
-     * @param twoEIntegrals New value of property twoEIntegrals.
+     * Actually compute the Schwarz bounds, using the diagonal
+     * (ab|ab) shell quartets
      */
-    public void setTwoEIntegrals(double[] twoEIntegrals) {
-        this.twoEIntegrals = twoEIntegrals;
-    }    
+    private void computeSchwarzBounds(int startShell, int endShell) {
+        int a, b, i, j, ab, na, nb;
+        int [] ia, ib;
+        double bound, maxBound;
+        double [] integrals = new double[getMaximumShellQuartetSize()];
+
+        for(a=startShell; a<endShell; a++) {
+            ia = shellIndices[a];
+            na = ia.length;
+
+            for(b=0; b<=a; b++) {
+                ib = shellIndices[b];
+                nb = ib.length;
+                ab = a * (a+1) / 2+b;
+
+                Integrals.coulomb(shellPairs.get(ab), shellPairs.get(ab),
+                                  integrals);
+
+                maxBound = 0.0;
+                for(i=0; i<na; i++) {
+                    for(j=0; j<nb; j++) {
+                        bound = Math.sqrt(Math.abs(
+                                   integrals[((i*nb + j)*na + i)*nb + j]));
+                        maxBound = Math.max(maxBound, bound);
+
+                        if (ia[i] >= ib[j])
+                            schwarzBounds[ia[i] * (ia[i]+1) / 2+ib[j]] = bound;
+                    } // end for
+                } // end for
+
+                shellPairBounds[ab] = maxBound;
+            } // end for
+        } // end for
+    }
 
-    private int atomIndex;
-    private SCFMethod scfMethod;
-    
     /**
-     * Return the derivatives of the two electron integrals.
+     * Get the Schwarz upper bounds Q(ij) = sqrt((ij|ij)), indexed as
+     * i*(i+1)/2+j (i >= j). The bounds are (re)computed if the basis
+     * functions have changed since they were last evaluated.
      *
-     * @param atomIndex the reference atom index
-     * @param scfMethod the reference SCF method
+     * @return the packed array of Schwarz bounds
      */
-    public void compute2EDerivatives(int atomIndex, SCFMethod scfMethod) {
-        this.atomIndex = atomIndex;
-        this.scfMethod = scfMethod;
-        
-        twoEDer = new ArrayList<double []>();
-        
-        double [] dxTwoE = new double[twoEIntegrals.length];
-        double [] dyTwoE = new double[twoEIntegrals.length];
-        double [] dzTwoE = new double[twoEIntegrals.length];
+    public double [] getSchwarzBounds() {
+        if (schwarzBounds == null
+            || schwarzBoundsBasis != basisFunctions.getBasisFunctions()) {
+            computeSchwarzBounds();
+        } // end if
 
-        twoEDer.add(dxTwoE);
-        twoEDer.add(dyTwoE);
-        twoEDer.add(dzTwoE);
+        return schwarzBounds;
+    }
 
-        SimpleParallelTaskExecuter pTaskExecuter
-                                   = new SimpleParallelTaskExecuter();
+    /**
+     * Get the centered shells of the current basis
+     *
+     * @return the list of centered shells
+     */
+    public ArrayList<Shell> getShells() {
+        return basisFunctions.getShellList().getCenteredShells();
+    }
 
-        TwoElectronIntegralDerivativeEvaluaterThread tThread
-                   = new TwoElectronIntegralDerivativeEvaluaterThread();
-        tThread.setTaskName("TwoElectronIntegralDerivativeEvaluater Thread");
-        tThread.setTotalItems(basisFunctions.getBasisFunctions().size());
+    /**
+     * Get the basis function indices of the components of each of the
+     * centered shells returned by getShells()
+     *
+     * @return the basis function indices, per shell
+     */
+    public int [][] getShellIndices() {
+        getSchwarzBounds();
 
-        pTaskExecuter.execute(tThread);
+        return shellIndices;
+    }
+
+    /**
+     * Get the shell pairs (a >= b) of the current basis, indexed as
+     * a*(a+1)/2+b. These are (re)computed along with the Schwarz bounds
+     * if the basis functions have changed.
+     *
+     * @return the list of shell pairs
+     */
+    public ArrayList<ShellPair> getShellPairs() {
+        getSchwarzBounds();
+
+        return shellPairs;
+    }
+
+    /**
+     * Get the Schwarz bounds of the shell pairs (a >= b), indexed as
+     * a*(a+1)/2+b. The bound of a shell pair is the largest sqrt((ij|ij))
+     * of all its component pairs.
+     *
+     * @return the packed array of shell pair Schwarz bounds
+     */
+    public double [] getShellPairBounds() {
+        getSchwarzBounds();
+
+        return shellPairBounds;
+    }
+
+    /**
+     * Check if the integral (ij|kl) is guaranteed to be smaller than the
+     * current screening threshold, using the Schwarz inequality
+     * |(ij|kl)| <= sqrt((ij|ij)) sqrt((kl|kl)).
+     *
+     * @return true if the integral can be safely neglected
+     */
+    public boolean isNegligible(int i, int j, int k, int l) {
+        double [] bounds = getSchwarzBounds();
+        int ij = (i>j) ? i * (i+1) / 2+j : j * (j+1) / 2+i;
+        int kl = (k>l) ? k * (k+1) / 2+l : l * (l+1) / 2+k;
+
+        return (bounds[ij] * bounds[kl] < screeningThreshold);
     }
 
-    protected ArrayList<double []> twoEDer;
+    /** Add to the count of integrals skipped by screening */
+    private synchronized void addSkippedIntegrals(long skipped) {
+        noOfSkippedIntegrals += skipped;
+    }
 
     /**
-     * The currently computed list of two electron derivatives
+     * Get the number of symmetry unique integrals that were skipped by
+     * Schwarz screening in the last call to compute2E()
      *
-     * @return partial derivatives of 2E integrals, computed in previous call
-     *         to compute2EDerivatives()
+     * @return the number of skipped integrals
      */
-    public ArrayList<double []> getTwoEDer() {
-        return twoEDer;
+    public long getNumberOfSkippedIntegrals() {
+        return noOfSkippedIntegrals;
+    }
+
+    /**
+     * Get the value of screeningThreshold
+     *
+     * @return the value of screeningThreshold
+     */
+    public double getScreeningThreshold() {
+        return screeningThreshold;
+    }
+
+    /**
+     * Set the value of screeningThreshold. Integrals (ij|kl) for which
+     * sqrt((ij|ij)) sqrt((kl|kl)) is less than this value are not evaluated.
+     * A value of zero turns off screening.
+     *
+     * @param screeningThreshold new value of screeningThreshold
+     */
+    public void setScreeningThreshold(double screeningThreshold) {
+        this.screeningThreshold = screeningThreshold;
+    }
+
+    /**
+     * Getter for property twoEIntegrals.
+     * @return Value of property twoEIntegrals.
+     */
+    public double[] getTwoEIntegrals() {
+        return this.twoEIntegrals;
     }
     
+    /**
+     * Setter for property twoEIntegrals.
+     * @param twoEIntegrals New value of property twoEIntegrals.
+     */
+    public void setTwoEIntegrals(double[] twoEIntegrals) {
+        this.twoEIntegrals = twoEIntegrals;
+    }    
+
     /**
      * Class encapsulating the way to compute 2E electrons in a way 
      * useful for utilizing multi core (processor) systems.
@@ -556,18 +658,14 @@ public class TwoElectronIntegrals {
     protected class TwoElectronIntegralEvaluaterThread 
               extends AbstractSimpleParallelTask {
         
-        private int startBasisFunction, endBasisFunction;
-        private ArrayList<ContractedGaussian> bfs;
+        private int startShell, endShell;
 
         public TwoElectronIntegralEvaluaterThread() { }
         
-        public TwoElectronIntegralEvaluaterThread(int startBasisFunction, 
-                                           int endBasisFunction,
-                                           ArrayList<ContractedGaussian> bfs) {
-            this.startBasisFunction = startBasisFunction;
-            this.endBasisFunction   = endBasisFunction;
-            
-            this.bfs = bfs;
+        public TwoElectronIntegralEvaluaterThread(int startShell,
+                                                  int endShell) {
+            this.startShell = startShell;
+            this.endShell   = endShell;
             
             setTaskName("TwoElectronIntegralEvaluater Thread");
         }
@@ -577,40 +675,32 @@ public class TwoElectronIntegrals {
          */
         @Override
         public void run() {
-            compute2E(startBasisFunction, endBasisFunction, bfs);
+            compute2E(startShell, endShell);
         }
 
         /** Overridden init() */
         @Override
         public SimpleParallelTask init(int startItem, int endItem) {
-            return new TwoElectronIntegralEvaluaterThread(
-                          startItem, endItem,
-                          basisFunctions.getBasisFunctions());
+            return new TwoElectronIntegralEvaluaterThread(startItem, endItem);
         }
     } // end of class TwoElectronIntegralEvaluaterThread
 
     /**
-     * Class encapsulating the way to compute 2E electrons in a way
+     * Class encapsulating the way to compute Schwarz bounds in a way
      * useful for utilizing multi core (processor) systems.
      */
-    protected class TwoElectronIntegralDerivativeEvaluaterThread
+    protected class SchwarzBoundsEvaluaterThread
               extends AbstractSimpleParallelTask {
 
-        private int startBasisFunction, endBasisFunction;
-        private ArrayList<ContractedGaussian> bfs;
+        private int startShell, endShell;
 
-        public TwoElectronIntegralDerivativeEvaluaterThread() { }
+        public SchwarzBoundsEvaluaterThread() { }
 
-        public TwoElectronIntegralDerivativeEvaluaterThread(
-                                           int startBasisFunction,
-                                           int endBasisFunction,
-                                           ArrayList<ContractedGaussian> bfs) {
-            this.startBasisFunction = startBasisFunction;
-            this.endBasisFunction   = endBasisFunction;
+        public SchwarzBoundsEvaluaterThread(int startShell, int endShell) {
+            this.startShell = startShell;
+            this.endShell   = endShell;
 
-            this.bfs = bfs;
-            
-            setTaskName("TwoElectronIntegralDerivativeEvaluater Thread");
+            setTaskName("SchwarzBoundsEvaluater Thread");
         }
 
         /**
@@ -618,21 +708,72 @@ public class TwoElectronIntegrals {
          */
         @Override
         public void run() {
-            compute2EDerivative(startBasisFunction, endBasisFunction, bfs);
+            computeSchwarzBounds(startShell, endShell);
         }
 
         /** Overridden init() */
         @Override
         public SimpleParallelTask init(int startItem, int endItem) {
-            return new TwoElectronIntegralDerivativeEvaluaterThread(
-                          startItem, endItem,
-                          basisFunctions.getBasisFunctions());
+            return new SchwarzBoundsEvaluaterThread(startItem, endItem);
         }
-    } // end of class TwoElectronIntegralEvaluaterThread
-    
+    } // end of class SchwarzBoundsEvaluaterThread
+
     /** Calculate integrals on the fly instead of storing them in an array */
     protected boolean onTheFly;
 
+    /** Store the integrals on disk instead of in an array */
+    protected boolean onDisk;
+
+    /**
+     * Get the value of onDisk
+     *
+     * @return the value of onDisk
+     */
+    public boolean isOnDisk() {
+        return onDisk;
+    }
+
+    /**
+     * Set the value of onDisk. If true, the next call to compute2E() will
+     * write the integrals to a TwoElectronIntegralStore rather than to an
+     * array in memory.
+     *
+     * @param onDisk new value of onDisk
+     */
+    public void setOnDisk(boolean onDisk) {
+        this.onDisk = onDisk;
+
+        if (!onDisk) disposeIntegralStore();
+    }
+
+    /**
+     * Get the value of integralStore
+     *
+     * @return the integral store, null if the integrals are not on disk
+     */
+    public TwoElectronIntegralStore getIntegralStore() {
+        return integralStore;
+    }
+
+    /**
+     * Get the value of integralStoreDirectory
+     *
+     * @return the value of integralStoreDirectory
+     */
+    public File getIntegralStoreDirectory() {
+        return integralStoreDirectory;
+    }
+
+    /**
+     * Set the value of integralStoreDirectory, null (the default) to use
+     * the default temporary file directory
+     *
+     * @param integralStoreDirectory new value of integralStoreDirectory
+     */
+    public void setIntegralStoreDirectory(File integralStoreDirectory) {
+        this.integralStoreDirectory = integralStoreDirectory;
+    }
+
     /**
      * Get the value of onTheFly
      *
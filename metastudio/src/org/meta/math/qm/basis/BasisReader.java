@@ -10,7 +10,19 @@ package org.meta.math.qm.basis;
 import org.w3c.dom.*;
 
 // others
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import org.meta.common.Utility;
 import org.meta.common.resource.StringResource;
 
@@ -18,7 +30,14 @@ import org.meta.common.resource.StringResource;
  * This class provides the means to read a basis set stored in XML format
  * and convert it into appropriate datastructure representation.
  * 
- * Follows a singleton pattern.
+ * Follows a singleton pattern. <br>
+ *
+ * The basis sets read from the library are cached by name, for the life of
+ * the application or till clearCache() is called, so that each is parsed
+ * only once. A basis in the library is read from its precompiled binary
+ * form (basis_[name].bin, written by writeBinaryBasis() at build time) if
+ * that is present, else from its XML form. The cached BasisSet objects are
+ * shared, and should not be modified.
  *
  * @author  V.Ganesh
  * @version 2.0 (Part of MeTA v2.0)
@@ -26,6 +45,18 @@ import org.meta.common.resource.StringResource;
 public class BasisReader {
     
     private static WeakReference<BasisReader> _basisReader = null;
+
+    /** the basis sets read so far, keyed by basis name */
+    private static final HashMap<String, BasisSet> _basisCache
+                                            = new HashMap<String, BasisSet>();
+
+    private static boolean cachingEnabled = true;
+
+    /** the first four bytes of a binary basis file */
+    private static final int BINARY_BASIS_MAGIC = 0x4D424153; // MBAS
+
+    /** the version of the binary basis format */
+    private static final int BINARY_BASIS_VERSION = 1;
     
     private BasisSet basisSet;
     private AtomicBasis atomicBasis;
@@ -58,17 +89,59 @@ public class BasisReader {
     }
     
     /**
-     * Read a particular basis for the basis library (XML)
+     * Read a particular basis for the basis library, from the cache if it
+     * has already been read
      *
      * @param basisName the name of basis
      * @return BasisSet object, representing the requested basis set
      */
     public BasisSet readBasis(String basisName) throws Exception {
+        synchronized(_basisCache) {
+            BasisSet cachedBasis = _basisCache.get(basisName);
+
+            if (cachedBasis != null) return cachedBasis;
+        } // end of synchronized block
+
+        BasisSet theBasis = readLibraryBasis(basisName);
+
+        synchronized(_basisCache) {
+            if (cachingEnabled) _basisCache.put(basisName, theBasis);
+        } // end of synchronized block
+
+        return theBasis;
+    }
+
+    /**
+     * Read a basis from the library, in its binary form if present, else
+     * in its XML form
+     */
+    private BasisSet readLibraryBasis(String basisName) throws Exception {
         StringResource strings = StringResource.getInstance();
-        
+
+        InputStream binaryStream = getClass().getResourceAsStream(
+                strings.getBasisLibraryPath() + basisName + ".bin");
+
+        if (binaryStream != null) {
+            try {
+                return readBinaryBasis(binaryStream);
+            } finally {
+                binaryStream.close();
+            } // end of try .. finally block
+        } // end if
+
+        return readXMLBasis(basisName);
+    }
+
+    /**
+     * Read a basis from the library, in its XML form
+     */
+    private synchronized BasisSet readXMLBasis(String basisName)
+                                                         throws Exception {
+        StringResource strings = StringResource.getInstance();
+
         // read the XML config file
         Document basisDoc = Utility.parseXML(
-            getClass().getResourceAsStream(strings.getBasisLibraryPath() 
+            getClass().getResourceAsStream(strings.getBasisLibraryPath()
                                            + basisName + ".xml"));
 
         // and save the basis info. properly
@@ -77,13 +150,173 @@ public class BasisReader {
         return basisSet;
     }
 
+    /**
+     * Remove all the basis sets from the cache
+     */
+    public static void clearCache() {
+        synchronized(_basisCache) {
+            _basisCache.clear();
+        } // end of synchronized block
+    }
+
+    /**
+     * Remove a basis set from the cache, so that it is read afresh the next
+     * time
+     *
+     * @param basisName the name of basis
+     */
+    public static void removeFromCache(String basisName) {
+        synchronized(_basisCache) {
+            _basisCache.remove(basisName);
+        } // end of synchronized block
+    }
+
+    /**
+     * Get the value of cachingEnabled
+     *
+     * @return the value of cachingEnabled
+     */
+    public static boolean isCachingEnabled() {
+        synchronized(_basisCache) {
+            return cachingEnabled;
+        } // end of synchronized block
+    }
+
+    /**
+     * Set the value of cachingEnabled, disabling the cache also clears it
+     *
+     * @param cachingEnabled new value of cachingEnabled
+     */
+    public static void setCachingEnabled(boolean cachingEnabled) {
+        synchronized(_basisCache) {
+            BasisReader.cachingEnabled = cachingEnabled;
+
+            if (!cachingEnabled) _basisCache.clear();
+        } // end of synchronized block
+    }
+
+    /**
+     * Write a basis set in the compact binary form read by
+     * readBinaryBasis()
+     *
+     * @param theBasis the basis set to be written
+     * @param os the stream to write to, it is not closed
+     * @throws IOException in case of an error writing
+     */
+    public static void writeBinaryBasis(BasisSet theBasis, OutputStream os)
+                                        throws IOException {
+        DataOutputStream out = new DataOutputStream(
+                                          new BufferedOutputStream(os));
+        Collection<AtomicBasis> atomicBases = theBasis.getAtomicBases();
+
+        out.writeInt(BINARY_BASIS_MAGIC);
+        out.writeInt(BINARY_BASIS_VERSION);
+        out.writeUTF(theBasis.getName());
+        out.writeInt(atomicBases.size());
+
+        for(AtomicBasis atomicBasis : atomicBases) {
+            ArrayList<Orbital> orbitals = atomicBasis.getOrbitals();
+
+            out.writeUTF(atomicBasis.getSymbol());
+            out.writeInt(atomicBasis.getAtomicNumber());
+            out.writeInt(orbitals.size());
+
+            for(Orbital theOrbital : orbitals) {
+                ArrayList<Double> coefficients = theOrbital.getCoefficients();
+                ArrayList<Double> exponents = theOrbital.getExponents();
+
+                out.writeUTF(theOrbital.getType());
+                out.writeInt(coefficients.size());
+
+                for(int i=0; i<coefficients.size(); i++) {
+                    out.writeDouble(coefficients.get(i));
+                    out.writeDouble(exponents.get(i));
+                } // end for
+            } // end for
+        } // end for
+
+        out.flush();
+    }
+
+    /**
+     * Read a basis set written by writeBinaryBasis()
+     *
+     * @param is the stream to read from, it is not closed
+     * @return BasisSet object, representing the basis set read
+     * @throws IOException in case of an error reading, or if the stream does
+     *         not have a binary basis
+     */
+    public static BasisSet readBinaryBasis(InputStream is) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+
+        if (in.readInt() != BINARY_BASIS_MAGIC)
+            throw new IOException("Not a binary basis");
+        if (in.readInt() != BINARY_BASIS_VERSION)
+            throw new IOException("Unsupported binary basis version");
+
+        BasisSet theBasis = new BasisSet(in.readUTF());
+        int noOfAtoms = in.readInt();
+
+        for(int i=0; i<noOfAtoms; i++) {
+            AtomicBasis theAtomicBasis = new AtomicBasis(in.readUTF(),
+                                                         in.readInt());
+            int noOfOrbitals = in.readInt();
+
+            for(int j=0; j<noOfOrbitals; j++) {
+                Orbital theOrbital = new Orbital(in.readUTF());
+                int noOfEntries = in.readInt();
+
+                for(int k=0; k<noOfEntries; k++) {
+                    double coeff = in.readDouble();
+
+                    theOrbital.addEntry(coeff, in.readDouble());
+                } // end for
+
+                theAtomicBasis.addOrbital(theOrbital);
+            } // end for
+
+            theBasis.addAtomicBasis(theAtomicBasis);
+        } // end for
+
+        return theBasis;
+    }
+
+    /**
+     * Precompile basis sets of the library into their binary form, used at
+     * build time. <br>
+     * Usage: BasisReader [output directory] [basis name] ...
+     *
+     * @param args the output directory, followed by the basis names
+     */
+    public static void main(String [] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: BasisReader [output directory] "
+                               + "[basis name] ...");
+            System.exit(1);
+        } // end if
+
+        BasisReader basisReader = new BasisReader();
+
+        for(int i=1; i<args.length; i++) {
+            BasisSet theBasis = basisReader.readXMLBasis(args[i]);
+            File binaryFile = new File(args[0], "basis_" + args[i] + ".bin");
+            OutputStream os = new FileOutputStream(binaryFile);
+
+            try {
+                writeBinaryBasis(theBasis, os);
+            } finally {
+                os.close();
+            } // end of try .. finally block
+        } // end for
+    }
+
     /**
      * Read a particular basis for the basis library (XML)
      *
      * @param basisFileName the name of external basis file name
      * @return BasisSet object, representing the requested basis set
      */
-    public BasisSet readExternalBasis(String basisFileName) throws Exception {        
+    public synchronized BasisSet readExternalBasis(String basisFileName) throws Exception {        
         // read the XML config file
         Document basisDoc = Utility.parseXML(getClass().getResourceAsStream(basisFileName));
 
@@ -80,4 +80,14 @@ public class BasisSet {
         
         return basis;
     }
+
+    /**
+     * Returns all the atomic bases of this basis set, in no particular
+     * order.
+     *
+     * @return the atomic bases
+     */
+    public Collection<AtomicBasis> getAtomicBases() {
+        return basisSet.values();
+    }
 } // end of class BasisSet
@@ -11,6 +11,7 @@ import java.util.*;
 import org.meta.math.geom.Point3D;
 import org.meta.config.impl.AtomInfo;
 import org.meta.math.Vector3D;
+import org.meta.math.qm.integral.Integrals;
 import org.meta.molecule.Atom;
 import org.meta.molecule.Molecule;
 
@@ -121,8 +122,8 @@ public class ContractedGaussian {
         primitives.add(new PrimitiveGaussian(origin, powers, 
                                              exponent, coefficient));
         
-        exponents.add(new Double(exponent));
-        coefficients.add(new Double(coefficient));
+        exponents.add(exponent);
+        coefficients.add(coefficient);
     }
     
     /**
@@ -229,8 +230,7 @@ public class ContractedGaussian {
         normalization = 1.0 / Math.sqrt(this.overlap(this));
         
         for(int i=0; i<primitives.size(); i++) {
-            primNorms.add(new Double(((PrimitiveGaussian)
-                                        primitives.get(i)).getNormalization()));
+            primNorms.add(primitives.get(i).getNormalization());
         } // end for
     }
     
@@ -272,20 +272,12 @@ public class ContractedGaussian {
 
         // case 1: atomIndex is centered on this CG
         if (this.centeredAtom.getIndex() == atomIndex) {
-            for(PrimitiveGaussian jPG : cg.primitives) {
-                for(PrimitiveGaussian iPG : primitives) {
-                    overlapDerivativeHelper(iPG, jPG, origin, ovrDer);
-                } // end for
-            } // end for
+            ovrDer = ovrDer.add(overlapGradient(cg));
         } // end if
 
         // case 2: atomIndex is centered on the other CG
         if (cg.centeredAtom.getIndex() == atomIndex) {
-            for(PrimitiveGaussian iPG : primitives) {
-                for(PrimitiveGaussian jPG : cg.primitives) {
-                    overlapDerivativeHelper(jPG, iPG, cg.origin, ovrDer);
-                } // end for
-            } // end for
+            ovrDer = ovrDer.add(cg.overlapGradient(this));
         } // end if
 
         // case 3: is atomIndex is not centered on any of the CGs, then
@@ -294,61 +286,16 @@ public class ContractedGaussian {
         return ovrDer;
     }
 
-    /** helper method for overlap derivative */
-    private void overlapDerivativeHelper(PrimitiveGaussian iPG,
-                                         PrimitiveGaussian jPG,
-                                         Point3D pOrigin,
-                                         Vector3D ovrDer) {
-        int l = iPG.getPowers().getL(),
-            m = iPG.getPowers().getM(),
-            n = iPG.getPowers().getN();
-        double coeff = iPG.getCoefficient() * jPG.getCoefficient();
-        double alpha = iPG.getExponent();
-
-        PrimitiveGaussian xPG = new PrimitiveGaussian(pOrigin,
-                          new Power(l+1, m, n), coeff, alpha);
-        xPG.normalize();
-
-        double terma = Math.sqrt(alpha*(2.0*l+1.0)) * coeff
-                           * xPG.overlap(jPG);
-        double termb = 0.0;
-
-        if (l>0) {
-            xPG.setPowers(new Power(l-1, m, n));
-            xPG.normalize();
-            termb = -2.0*l*Math.sqrt(alpha/(2.0*l-1.0)) * coeff
-                        * xPG.overlap(jPG);
-        } // end if
-
-        ovrDer.setI(ovrDer.getI() + terma + termb);
-
-        xPG.setPowers(new Power(l, m+1, n));
-        xPG.normalize();
-        terma = Math.sqrt(alpha*(2.0*m+1.0)) * coeff
-                  * xPG.overlap(jPG);
-
-        if (m>0) {
-            xPG.setPowers(new Power(l, m-1, n));
-            xPG.normalize();
-            termb = -2*m*Math.sqrt(alpha/(2.0*m-1.0)) * coeff
-                        * xPG.overlap(jPG);
-        } else termb = 0.0;
-
-        ovrDer.setJ(ovrDer.getJ() + terma + termb);
-
-        xPG.setPowers(new Power(l, m, n+1));
-        xPG.normalize();
-        terma = Math.sqrt(alpha*(2.0*n+1.0)) * coeff
-                  * xPG.overlap(jPG);
-
-        if (n>0) {
-            xPG.setPowers(new Power(l, m, n-1));
-            xPG.normalize();
-            termb = -2.0 * n * Math.sqrt(alpha/(2.0*n-1.0)) * coeff
-                         * xPG.overlap(jPG);
-        } else termb = 0.0;
-
-        ovrDer.setK(ovrDer.getK() + terma + termb);
+    /**
+     * The gradient of the overlap with another ContractedGaussian, with
+     * respect to the center of this ContractedGaussian. The gradient with
+     * respect to the center of the other is cg.overlapGradient(this).
+     *
+     * @param cg the other ContractedGaussian
+     * @return partial derivatives w.r.t x, y and z of the center
+     */
+    public Vector3D overlapGradient(ContractedGaussian cg) {
+        return centerGradient(cg, OVERLAP, null);
     }
 
     /**
@@ -388,20 +335,12 @@ public class ContractedGaussian {
 
         // case 1: atomIndex is centered on this CG
         if (this.centeredAtom.getIndex() == atomIndex) {
-            for(PrimitiveGaussian jPG : cg.primitives) {
-                for(PrimitiveGaussian iPG : primitives) {
-                    kineticDerivativeHelper(iPG, jPG, origin, kder);
-                } // end for
-            } // end for
+            kder = kder.add(kineticGradient(cg));
         } // end if
 
         // case 2: atomIndex is centered on the other CG
         if (cg.centeredAtom.getIndex() == atomIndex) {
-            for(PrimitiveGaussian iPG : primitives) {
-                for(PrimitiveGaussian jPG : cg.primitives) {
-                    kineticDerivativeHelper(jPG, iPG, cg.origin, kder);
-                } // end for
-            } // end for
+            kder = kder.add(cg.kineticGradient(this));
         } // end if
 
         // case 3: is atomIndex is not centered on any of the CGs, then
@@ -410,61 +349,16 @@ public class ContractedGaussian {
         return kder;
     }
 
-    /** helper method for kinetic energy derivative */
-    private void kineticDerivativeHelper(PrimitiveGaussian iPG,
-                                         PrimitiveGaussian jPG,
-                                         Point3D pOrigin,
-                                         Vector3D kder) {
-        int l = iPG.getPowers().getL(),
-            m = iPG.getPowers().getM(),
-            n = iPG.getPowers().getN();
-        double coeff = iPG.getCoefficient() * jPG.getCoefficient();
-        double alpha = iPG.getExponent();
-
-        PrimitiveGaussian xPG = new PrimitiveGaussian(pOrigin,
-                          new Power(l+1, m, n), coeff, alpha);
-        xPG.normalize();
-
-        double terma = Math.sqrt(alpha*(2.0*l+1.0)) * coeff
-                           * xPG.kinetic(jPG);
-        double termb = 0.0;
-
-        if (l>0) {
-            xPG.setPowers(new Power(l-1, m, n));
-            xPG.normalize();
-            termb = -2.0*l*Math.sqrt(alpha/(2.0*l-1.0)) * coeff
-                        * xPG.kinetic(jPG);
-        } // end if
-
-        kder.setI(kder.getI() + terma + termb);
-
-        xPG.setPowers(new Power(l, m+1, n));
-        xPG.normalize();
-        terma = Math.sqrt(alpha*(2.0*m+1.0)) * coeff
-                  * xPG.kinetic(jPG);
-
-        if (m>0) {
-            xPG.setPowers(new Power(l, m-1, n));
-            xPG.normalize();
-            termb = -2*m*Math.sqrt(alpha/(2.0*m-1.0)) * coeff
-                        * xPG.kinetic(jPG);
-        } else termb = 0.0;
-
-        kder.setJ(kder.getJ() + terma + termb);
-
-        xPG.setPowers(new Power(l, m, n+1));
-        xPG.normalize();
-        terma = Math.sqrt(alpha*(2.0*n+1.0)) * coeff
-                  * xPG.kinetic(jPG);
-
-        if (n>0) {
-            xPG.setPowers(new Power(l, m, n-1));
-            xPG.normalize();
-            termb = -2.0 * n * Math.sqrt(alpha/(2.0*n-1.0)) * coeff
-                         * xPG.kinetic(jPG);
-        } else termb = 0.0;
-
-        kder.setK(kder.getK() + terma + termb);
+    /**
+     * The gradient of the kinetic energy matrix element with another
+     * ContractedGaussian, with respect to the center of this
+     * ContractedGaussian.
+     *
+     * @param cg the other ContractedGaussian
+     * @return partial derivatives w.r.t x, y and z of the center
+     */
+    public Vector3D kineticGradient(ContractedGaussian cg) {
+        return centerGradient(cg, KINETIC, null);
     }
 
     /**
@@ -495,7 +389,10 @@ public class ContractedGaussian {
     }
 
     /**
-     * Derivative of nuclear attraction term, with respect to an atom index
+     * Derivative of nuclear attraction term, with respect to an atom index.
+     * This includes the derivative of the basis functions centered on the
+     * atom, as well as that of the attraction to the nucleus of the atom
+     * (the latter by translational invariance).
      * 
      * @param mol the reference Molecule object
      * @param atomIndex the reference atomIndex
@@ -506,131 +403,110 @@ public class ContractedGaussian {
                                                 ContractedGaussian cg) {
         Vector3D nder = new Vector3D();
 
-        // case 1: atom index is centered on this CG
-        if (this.centeredAtom.getIndex() == atomIndex) {
-            for(PrimitiveGaussian jPG : cg.primitives) {
-                for(PrimitiveGaussian iPG : primitives) {
-                    nuclearDerivativeHelper(mol, iPG, jPG, origin, nder);
-                } // end for
-            } // end for
-        } // end if
-
-        // case 2: atomIndex is centered on the other CG
-        if (cg.centeredAtom.getIndex() == atomIndex) {
-            for(PrimitiveGaussian iPG : primitives) {
-                for(PrimitiveGaussian jPG : cg.primitives) {
-                    nuclearDerivativeHelper(mol, jPG, iPG, cg.origin, nder);
-                } // end for
-            } // end for
-        } // end if
+        boolean onThis  = (this.centeredAtom.getIndex() == atomIndex);
+        boolean onOther = (cg.centeredAtom.getIndex() == atomIndex);
+        boolean onNucleus;
+        Vector3D thisDer, otherDer;
 
-        double factor = 0.0;
-        double atno = AtomInfo.getInstance()
-                              .getAtomicNumber(centeredAtom.getSymbol());
-        for(PrimitiveGaussian iPG : primitives) {
-            for(PrimitiveGaussian jPG : cg.primitives) {
-                factor = iPG.getCoefficient() * jPG.getCoefficient() * atno;
-                nder   = nder.add(jPG.nuclearAttractionGradient(iPG,
-                           centeredAtom.getAtomCenter()).mul(factor));
-            } // end for
-        } // end for
-        
-        return nder;
-    }
-
-    /** helper method for kinetic energy derivative */
-    private void nuclearDerivativeHelper(Molecule mol,
-                                         PrimitiveGaussian iPG,
-                                         PrimitiveGaussian jPG,
-                                         Point3D pOrigin,
-                                         Vector3D nder) {
-        int l = iPG.getPowers().getL(),
-            m = iPG.getPowers().getM(),
-            n = iPG.getPowers().getN();
-        double coeff = iPG.getCoefficient() * jPG.getCoefficient();
-        double alpha = iPG.getExponent();
-
-        PrimitiveGaussian xPG = new PrimitiveGaussian(pOrigin,
-                                         new Power(l+1, m, n), coeff, alpha);
-        xPG.normalize();
-
-        double terma = 0.0;
-        
         AtomInfo ai = AtomInfo.getInstance();
         for(int i=0; i<mol.getNumberOfAtoms(); i++)  {
             Atom atom = mol.getAtom(i);
-            terma += ai.getAtomicNumber(atom.getSymbol())
-                      * Math.sqrt(alpha*(2.0*l+1.0)) * coeff
-                      * xPG.nuclear(jPG, atom.getAtomCenter());
-        } // end for
-
-        double termb = 0.0;
-
-        if (l>0) {
-            xPG.setPowers(new Power(l-1, m, n));
-            xPG.normalize();
-            
-            for(int i=0; i<mol.getNumberOfAtoms(); i++)  {
-                Atom atom = mol.getAtom(i);
-                termb += -2.0*l*ai.getAtomicNumber(atom.getSymbol())
-                          * Math.sqrt(alpha/(2.0*l-1.0)) * coeff
-                          * xPG.nuclear(jPG, atom.getAtomCenter());
-            } // end for
-        } // end if
+            onNucleus = (atom.getIndex() == atomIndex);
 
-        nder.setI(nder.getI() + terma + termb);
-
-        xPG.setPowers(new Power(l, m+1, n));
-        xPG.normalize();
-        terma = 0.0;
-        for(int i=0; i<mol.getNumberOfAtoms(); i++)  {
-            Atom atom = mol.getAtom(i);
-            terma += ai.getAtomicNumber(atom.getSymbol())
-                      * Math.sqrt(alpha*(2.0*m+1.0)) * coeff
-                      * xPG.nuclear(jPG, atom.getAtomCenter());
-        } // end for
+            if (!onThis && !onOther && !onNucleus) continue;
 
-        termb = 0.0;
+            Point3D center = atom.getAtomCenterInAU();
+            double atno = ai.getAtomicNumber(atom.getElementCode());
 
-        if (m>0) {
-            xPG.setPowers(new Power(l, m-1, n));
-            xPG.normalize();
+            thisDer  = nuclearGradient(cg, center);
+            otherDer = cg.nuclearGradient(this, center);
 
-            for(int i=0; i<mol.getNumberOfAtoms(); i++)  {
-                Atom atom = mol.getAtom(i);
-                termb += -2.0*m*ai.getAtomicNumber(atom.getSymbol())
-                          * Math.sqrt(alpha/(2.0*m-1.0)) * coeff
-                          * xPG.nuclear(jPG, atom.getAtomCenter());
-            } // end for
-        } // end if
+            if (onThis)    nder = nder.add(thisDer.mul(atno));
+            if (onOther)   nder = nder.add(otherDer.mul(atno));
+            if (onNucleus) nder = nder.add(thisDer.add(otherDer).mul(-atno));
+        } // end for
+        
+        return nder;
+    }
 
-        nder.setJ(nder.getJ() + terma + termb);
+    /**
+     * The gradient of the nuclear attraction matrix element (for a unit
+     * charge) with another ContractedGaussian, with respect to the center
+     * of this ContractedGaussian.
+     *
+     * @param cg the other ContractedGaussian
+     * @param center the center at which nuclear energy is computed
+     * @return partial derivatives w.r.t x, y and z of the center
+     */
+    public Vector3D nuclearGradient(ContractedGaussian cg, Point3D center) {
+        return centerGradient(cg, NUCLEAR, center);
+    }
 
-        xPG.setPowers(new Power(l, m, n+1));
-        xPG.normalize();
-        terma = 0.0;
-        for(int i=0; i<mol.getNumberOfAtoms(); i++)  {
-            Atom atom = mol.getAtom(i);
-            terma += ai.getAtomicNumber(atom.getSymbol())
-                      * Math.sqrt(alpha*(2.0*n+1.0)) * coeff
-                      * xPG.nuclear(jPG, atom.getAtomCenter());
-        } // end for
+    /** the one electron operators, for centerGradient() */
+    private static final int OVERLAP = 0, KINETIC = 1, NUCLEAR = 2;
 
-        termb = 0.0;
+    /**
+     * Gradient of a one electron matrix element with respect to the center
+     * of this ContractedGaussian. Differentiating a primitive w.r.t. its
+     * center raises and lowers the power: d/dAx = 2 alpha [l+1| - l [l-1|,
+     * the primitive normalizations are those of the undifferentiated
+     * primitives.
+     */
+    private Vector3D centerGradient(ContractedGaussian cg, int operator,
+                                    Point3D center) {
+        int l = powers.getL(), m = powers.getM(), n = powers.getN();
+        double gx = 0.0, gy = 0.0, gz = 0.0;
+        double alpha, twoAlpha, coeff;
 
-        if (n>0) {
-            xPG.setPowers(new Power(l, m, n-1));
-            xPG.normalize();
+        for(PrimitiveGaussian iPG : primitives) {
+            alpha    = iPG.getExponent();
+            twoAlpha = 2.0 * alpha;
 
-            for(int i=0; i<mol.getNumberOfAtoms(); i++)  {
-                Atom atom = mol.getAtom(i);
-                termb += -2.0*n*ai.getAtomicNumber(atom.getSymbol())
-                          * Math.sqrt(alpha/(2.0*n-1.0)) * coeff
-                          * xPG.nuclear(jPG, atom.getAtomCenter());
+            for(PrimitiveGaussian jPG : cg.primitives) {
+                coeff = iPG.getCoefficient() * iPG.getNormalization()
+                        * jPG.getCoefficient() * jPG.getNormalization();
+
+                gx += coeff * (twoAlpha * primitiveTerm(alpha,
+                                 new Power(l+1, m, n), jPG, operator, center)
+                               - ((l > 0) ? l * primitiveTerm(alpha,
+                                 new Power(l-1, m, n), jPG, operator, center)
+                                          : 0.0));
+                gy += coeff * (twoAlpha * primitiveTerm(alpha,
+                                 new Power(l, m+1, n), jPG, operator, center)
+                               - ((m > 0) ? m * primitiveTerm(alpha,
+                                 new Power(l, m-1, n), jPG, operator, center)
+                                          : 0.0));
+                gz += coeff * (twoAlpha * primitiveTerm(alpha,
+                                 new Power(l, m, n+1), jPG, operator, center)
+                               - ((n > 0) ? n * primitiveTerm(alpha,
+                                 new Power(l, m, n-1), jPG, operator, center)
+                                          : 0.0));
             } // end for
-        } else termb = 0.0;
+        } // end for
 
-        nder.setK(nder.getK() + terma + termb);
+        double norm = normalization * cg.normalization;
+
+        return new Vector3D(norm * gx, norm * gy, norm * gz);
+    }
+
+    /** unnormalized one electron primitive integral, for centerGradient() */
+    private double primitiveTerm(double alpha, Power power,
+                                 PrimitiveGaussian jPG, int operator,
+                                 Point3D center) {
+        switch(operator) {
+            case OVERLAP:
+                return Integrals.overlap(alpha, power, origin,
+                                         jPG.getExponent(), jPG.getPowers(),
+                                         jPG.getOrigin());
+            case KINETIC:
+                return Integrals.kinetic(alpha, power, origin,
+                                         jPG.getExponent(), jPG.getPowers(),
+                                         jPG.getOrigin());
+            default:
+                return Integrals.nuclearAttraction(origin, 1.0, power, alpha,
+                                         jPG.getOrigin(), 1.0, jPG.getPowers(),
+                                         jPG.getExponent(), center);
+        } // end of switch .. case block
     }
     
     /**
@@ -0,0 +1,232 @@
+/*
+ * PackedBasisFunctions.java
+ *
+ * Created on 18/10/2026
+ */
+
+package org.meta.math.qm.basis;
+
+import java.util.ArrayList;
+import org.meta.math.geom.Point3D;
+
+/**
+ * A compact, structure of arrays, copy of a list of basis functions for use
+ * in the inner loops of integral and grid evaluations. The
+ * ContractedGaussian and PrimitiveGaussian objects remain the primary API,
+ * this class only holds their data in flat arrays:
+ *
+ * <ul>
+ * <li> the primitives of basis function i are at indices
+ *      primitiveOffsets[i] .. primitiveOffsets[i+1]-1 of the exponents,
+ *      coefficients, primitiveNorms and normalizedCoefficients arrays </li>
+ * <li> the center and powers of basis function i are at indices 3*i .. 3*i+2
+ *      of the centers and powers arrays </li>
+ * <li> the components of centered shell s are the basis functions
+ *      shellOffsets[s] .. shellOffsets[s+1]-1 </li>
+ * </ul>
+ *
+ * The data is a snapshot, a new instance should be made if the basis
+ * functions change.
+ *
+ * @author  V.Ganesh
+ * @version 2.0 (Part of MeTA v2.0)
+ */
+public class PackedBasisFunctions {
+
+    private int noOfBasisFunctions, noOfPrimitives, noOfShells;
+
+    private int [] primitiveOffsets, shellOffsets, powers;
+
+    private double [] exponents, coefficients, primitiveNorms,
+                      normalizedCoefficients, normalizations, centers;
+
+    /**
+     * Creates a new instance of PackedBasisFunctions
+     *
+     * @param basisFunctions the (normalized) basis functions
+     * @param centeredShells the centered shells of the basis functions,
+     *        whose components should be consecutive basis functions, in
+     *        the order of the basis functions
+     */
+    public PackedBasisFunctions(ArrayList<ContractedGaussian> basisFunctions,
+                                ArrayList<Shell> centeredShells) {
+        int i, j, p, np;
+
+        noOfBasisFunctions = basisFunctions.size();
+        noOfShells = centeredShells.size();
+
+        // offsets of the primitives
+        primitiveOffsets = new int[noOfBasisFunctions+1];
+        for(i=0; i<noOfBasisFunctions; i++) {
+            primitiveOffsets[i+1] = primitiveOffsets[i]
+                           + basisFunctions.get(i).getPrimitives().size();
+        } // end for
+        noOfPrimitives = primitiveOffsets[noOfBasisFunctions];
+
+        exponents      = new double[noOfPrimitives];
+        coefficients   = new double[noOfPrimitives];
+        primitiveNorms = new double[noOfPrimitives];
+        normalizedCoefficients = new double[noOfPrimitives];
+
+        normalizations = new double[noOfBasisFunctions];
+        centers        = new double[3*noOfBasisFunctions];
+        powers         = new int[3*noOfBasisFunctions];
+
+        for(i=0; i<noOfBasisFunctions; i++) {
+            ContractedGaussian cg = basisFunctions.get(i);
+            ArrayList<PrimitiveGaussian> primitives = cg.getPrimitives();
+            Point3D origin = cg.getOrigin();
+            Power power = cg.getPowers();
+
+            normalizations[i] = cg.getNormalization();
+
+            centers[3*i]   = origin.getX();
+            centers[3*i+1] = origin.getY();
+            centers[3*i+2] = origin.getZ();
+
+            powers[3*i]   = power.getL();
+            powers[3*i+1] = power.getM();
+            powers[3*i+2] = power.getN();
+
+            np = primitives.size();
+            for(j=0, p=primitiveOffsets[i]; j<np; j++, p++) {
+                PrimitiveGaussian pg = primitives.get(j);
+
+                exponents[p]      = pg.getExponent();
+                coefficients[p]   = pg.getCoefficient();
+                primitiveNorms[p] = pg.getNormalization();
+                normalizedCoefficients[p] = normalizations[i]
+                                            * coefficients[p]
+                                            * primitiveNorms[p];
+            } // end for
+        } // end for
+
+        // offsets of the shells
+        shellOffsets = new int[noOfShells+1];
+        for(i=0; i<noOfShells; i++) {
+            Shell shell = centeredShells.get(i);
+
+            shellOffsets[i+1] = shellOffsets[i]
+                                + shell.getNumberOfShellPrimitives();
+
+            if (shell.getShellPrimitive(0) != basisFunctions.get(shellOffsets[i]))
+                throw new IllegalArgumentException("Components of shell "
+                                  + i + " are not consecutive basis functions");
+        } // end for
+    }
+
+    /**
+     * Get the number of basis functions
+     *
+     * @return the number of basis functions
+     */
+    public int getNumberOfBasisFunctions() {
+        return noOfBasisFunctions;
+    }
+
+    /**
+     * Get the total number of primitives, of all the basis functions
+     *
+     * @return the number of primitives
+     */
+    public int getNumberOfPrimitives() {
+        return noOfPrimitives;
+    }
+
+    /**
+     * Get the number of centered shells
+     *
+     * @return the number of centered shells
+     */
+    public int getNumberOfShells() {
+        return noOfShells;
+    }
+
+    /**
+     * Get the offsets of the primitives of each basis function, of length
+     * one more than the number of basis functions
+     *
+     * @return the primitive offsets
+     */
+    public int[] getPrimitiveOffsets() {
+        return primitiveOffsets;
+    }
+
+    /**
+     * Get the offsets of the first basis function of each centered shell,
+     * of length one more than the number of shells
+     *
+     * @return the shell offsets
+     */
+    public int[] getShellOffsets() {
+        return shellOffsets;
+    }
+
+    /**
+     * Get the exponents of the primitives
+     *
+     * @return the exponents
+     */
+    public double[] getExponents() {
+        return exponents;
+    }
+
+    /**
+     * Get the contraction coefficients of the primitives
+     *
+     * @return the contraction coefficients
+     */
+    public double[] getCoefficients() {
+        return coefficients;
+    }
+
+    /**
+     * Get the normalization factors of the primitives
+     *
+     * @return the primitive normalizations
+     */
+    public double[] getPrimitiveNorms() {
+        return primitiveNorms;
+    }
+
+    /**
+     * Get the products of the contracted normalization, the contraction
+     * coefficient and the primitive normalization of each primitive. A basis
+     * function is the sum of its unnormalized primitives multiplied by
+     * these.
+     *
+     * @return the normalized coefficients
+     */
+    public double[] getNormalizedCoefficients() {
+        return normalizedCoefficients;
+    }
+
+    /**
+     * Get the normalization factors of the basis functions
+     *
+     * @return the contracted normalizations
+     */
+    public double[] getNormalizations() {
+        return normalizations;
+    }
+
+    /**
+     * Get the centers (x, y, z) of the basis functions, three per basis
+     * function
+     *
+     * @return the centers, in a.u.
+     */
+    public double[] getCenters() {
+        return centers;
+    }
+
+    /**
+     * Get the powers (l, m, n) of the basis functions, three per basis
+     * function
+     *
+     * @return the powers
+     */
+    public int[] getPowers() {
+        return powers;
+    }
+} // end of class PackedBasisFunctions
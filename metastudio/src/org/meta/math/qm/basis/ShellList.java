@@ -5,6 +5,7 @@
  */
 package org.meta.math.qm.basis;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 
 /**
@@ -17,9 +18,16 @@ public class ShellList {
 
     protected HashMap<Integer, Shell> shellList;
 
+    /**
+     * shells whose components share a center, angular momentum and
+     * contraction, in the order in which their primitives were added
+     */
+    protected ArrayList<Shell> centeredShells;
+
     /** Creates a new instance of ShellList */
     public ShellList() {
         shellList = new HashMap<Integer, Shell>();
+        centeredShells = new ArrayList<Shell>();
     }
 
     /**
@@ -37,6 +45,38 @@ public class ShellList {
         } // end if
 
         theShell.addShellPrimitive(cg);
+
+        addCenteredShellPrimitive(cg);
+    }
+
+    /**
+     * Add the shell primitive to the last centered shell if it belongs to it,
+     * else start a new centered shell.
+     *
+     * @param cg the shell primitive to be added
+     */
+    private void addCenteredShellPrimitive(ContractedGaussian cg) {
+        int l = cg.getTotalAngularMomentum();
+        Shell lastShell = centeredShells.isEmpty() ? null
+                              : centeredShells.get(centeredShells.size()-1);
+
+        if (lastShell == null || lastShell.getAngularMomentum() != l
+            || lastShell.getNumberOfShellPrimitives() >= (l+1)*(l+2)/2) {
+            lastShell = new Shell(l);
+            centeredShells.add(lastShell);
+        } else {
+            ContractedGaussian first = lastShell.getShellPrimitive(0);
+
+            if (first.getCenteredAtom() != cg.getCenteredAtom()
+                || !first.getOrigin().equals(cg.getOrigin())
+                || !first.getExponents().equals(cg.getExponents())
+                || !first.getCoefficients().equals(cg.getCoefficients())) {
+                lastShell = new Shell(l);
+                centeredShells.add(lastShell);
+            } // end if
+        } // end if
+
+        lastShell.addShellPrimitive(cg);
     }
 
     /**
@@ -54,6 +94,15 @@ public class ShellList {
         // if there are no primitives left, we remove it from the list too
         if (theShell.getNumberOfShellPrimitives() == 0)
             shellList.remove(theShell.getAngularMomentum());
+
+        for(Shell centeredShell : centeredShells) {
+            centeredShell.removeShellPrimitive(cg);
+
+            if (centeredShell.getNumberOfShellPrimitives() == 0) {
+                centeredShells.remove(centeredShell);
+                break;
+            } // end if
+        } // end for
     }
 
     /**
@@ -75,4 +124,27 @@ public class ShellList {
     public int getNumberOfShells() {
         return shellList.size();
     }
+
+    /**
+     * Get the list of centered shells. The components of a centered shell
+     * are all on the same center and share the same contraction, differing
+     * only in the cartesian powers (e.g. px, py, pz). Centered shells appear
+     * in the order in which their primitives were added, so for a
+     * ShellList built from BasisFunctions the basis function indices
+     * increase monotonically across this list.
+     *
+     * @return the list of centered shells
+     */
+    public ArrayList<Shell> getCenteredShells() {
+        return centeredShells;
+    }
+
+    /**
+     * Returns the total number of centered shells recorded by this list
+     *
+     * @return number of centered shells
+     */
+    public int getNumberOfCenteredShells() {
+        return centeredShells.size();
+    }
 }
@@ -0,0 +1,131 @@
+/*
+ * BatchSCFEvent.java
+ *
+ * Created on 18/10/2026
+ */
+
+package org.meta.math.qm.event;
+
+import org.meta.math.qm.SCFMethod;
+import org.meta.molecule.Molecule;
+
+/**
+ * Represents the completion of the SCF of one molecule of a batch. The
+ * type is CONVERGED_EVENT or FAILED_CONVERGENCE_EVENT, and the current
+ * energy and iteration are those of the last SCF iteration of the
+ * molecule.
+ *
+ * @author  V.Ganesh
+ * @version 2.0 (Part of MeTA v2.0)
+ */
+public class BatchSCFEvent extends SCFEvent {
+
+    /**
+     * Holds value of property moleculeIndex.
+     */
+    private int moleculeIndex;
+
+    /**
+     * Holds value of property molecule.
+     */
+    private Molecule molecule;
+
+    /**
+     * Holds value of property scfMethod.
+     */
+    private SCFMethod scfMethod;
+
+    /**
+     * Holds value of property converged.
+     */
+    private boolean converged;
+
+    /** Creates a new instance of BatchSCFEvent */
+    public BatchSCFEvent(Object source) {
+        super(source);
+    }
+
+    /**
+     * Get the value of moleculeIndex
+     *
+     * @return the index of the molecule in the batch
+     */
+    public int getMoleculeIndex() {
+        return moleculeIndex;
+    }
+
+    /**
+     * Set the value of moleculeIndex
+     *
+     * @param moleculeIndex new value of moleculeIndex
+     */
+    public void setMoleculeIndex(int moleculeIndex) {
+        this.moleculeIndex = moleculeIndex;
+    }
+
+    /**
+     * Get the value of molecule
+     *
+     * @return the value of molecule
+     */
+    public Molecule getMolecule() {
+        return molecule;
+    }
+
+    /**
+     * Set the value of molecule
+     *
+     * @param molecule new value of molecule
+     */
+    public void setMolecule(Molecule molecule) {
+        this.molecule = molecule;
+    }
+
+    /**
+     * Get the value of scfMethod
+     *
+     * @return the SCF method of the molecule, null if it could not be set
+     *         up
+     */
+    public SCFMethod getSCFMethod() {
+        return scfMethod;
+    }
+
+    /**
+     * Set the value of scfMethod
+     *
+     * @param scfMethod new value of scfMethod
+     */
+    public void setSCFMethod(SCFMethod scfMethod) {
+        this.scfMethod = scfMethod;
+    }
+
+    /**
+     * Get the value of converged
+     *
+     * @return true if the SCF of the molecule converged
+     */
+    public boolean isConverged() {
+        return converged;
+    }
+
+    /**
+     * Set the value of converged
+     *
+     * @param converged new value of converged
+     */
+    public void setConverged(boolean converged) {
+        this.converged = converged;
+    }
+
+    /**
+     * Simple overridded toString()
+     *
+     * @return the string representation of this event
+     */
+    @Override
+    public String toString() {
+        return getMoleculeIndex() + " " + getMolecule() + " "
+               + getCurrentEnergy() + (isConverged() ? "" : " (failed)");
+    }
+} // end of class BatchSCFEvent
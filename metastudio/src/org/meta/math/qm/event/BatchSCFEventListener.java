@@ -0,0 +1,27 @@
+/*
+ * BatchSCFEventListener.java
+ *
+ * Created on 18/10/2026
+ */
+
+package org.meta.math.qm.event;
+
+/**
+ * Represents the interface for BatchSCFEvent listeners
+ *
+ * @author  V.Ganesh
+ * @version 2.0 (Part of MeTA v2.0)
+ */
+public interface BatchSCFEventListener extends java.util.EventListener {
+
+    /**
+     * The method called when the SCF of a molecule of a batch is over. The
+     * calls are serialized, but come from the worker threads, in the order
+     * in which the molecules complete.
+     *
+     * @param batchSCFEvent - the instance of BatchSCFEvent describing the
+     *        completed molecule
+     */
+    public void moleculeCompleted(BatchSCFEvent batchSCFEvent);
+
+} // end of interface BatchSCFEventListener
@@ -0,0 +1,43 @@
+/*
+ * FGammaTerm.java
+ *
+ * Created on 18/10/2026
+ */
+
+package org.meta.math.qm.integral;
+
+/**
+ * Top level interface for evaluating the Boys function F_m(x), used by the
+ * nuclear attraction and two electron integral packages.
+ *
+ * @author  V.Ganesh
+ * @version 2.0 (Part of MeTA v2.0)
+ */
+public abstract class FGammaTerm implements IntegralsPackage {
+
+    /**
+     * The Boys function F_m(x)
+     *
+     * @param m the order of the Boys function
+     * @param x the argument
+     * @return value of F_m(x)
+     */
+    public abstract double fGamma(int m, double x);
+
+    /**
+     * Evaluate all the Boys functions F_0(x) ... F_maxM(x) for the same
+     * argument. The default implementation simply calls fGamma(m, x) for
+     * each order; subclasses may provide a faster implementation using
+     * recursion relations.
+     *
+     * @param maxM the maximum order required
+     * @param x the argument
+     * @param fm the array (of size at least maxM+1) into which the values
+     *        are to be stored
+     */
+    public void fGamma(int maxM, double x, double [] fm) {
+        for(int m=0; m<=maxM; m++) {
+            fm[m] = fGamma(m, x);
+        } // end for
+    }
+}
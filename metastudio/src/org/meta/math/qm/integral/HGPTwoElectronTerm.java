@@ -11,15 +11,25 @@ import org.meta.math.geom.Point3D;
 import org.meta.math.qm.Density;
 import org.meta.math.qm.basis.ContractedGaussian;
 import org.meta.math.qm.basis.Power;
+import org.meta.math.qm.basis.Shell;
 
 /**
  * Head-Gordon/Pople scheme of evaluating two-electron integrals.
- * 
+ *
  * The code be based on
  * PyQuante (<a href="http://pyquante.sf.net"> http://pyquante.sf.net </a>).
  * See M. Head-Gordon and J. A. Pople, J. Chem. Phys. <b>89</b>, 5777 (1988)
  * for more details.
  *
+ * The vertical recurrence relation (VRR) is applied for every primitive
+ * quartet to generate the [e0|f0] integrals, which are contracted before
+ * the horizontal recurrence relation (HRR) is used to transfer angular
+ * momentum to the b and d centers. All the intermediates are held in
+ * per-thread work spaces that are sized to the largest angular momentum
+ * seen so far, so that no allocation is done per integral in steady state.
+ * Cartesian components are addressed using integer indices rather than
+ * Power objects.
+ *
  * @author  V.Ganesh
  * @version 2.0 (Part of MeTA v2.0)
  */
@@ -35,17 +45,97 @@ public class HGPTwoElectronTerm extends TwoElectronTerm {
     @Override
     public double coulomb(ContractedGaussian a, ContractedGaussian b,
                           ContractedGaussian c, ContractedGaussian d) {
-         return (a.getNormalization() * b.getNormalization()
-                 * c.getNormalization() * d.getNormalization()
-                 * contrHrr(a.getOrigin(), a.getPowers(),
-                            a.getCoefficients(), a.getExponents(), a.getPrimNorms(),
-                            b.getOrigin(), b.getPowers(),
-                            b.getCoefficients(), b.getExponents(), b.getPrimNorms(),
-                            c.getOrigin(), b.getPowers(),
-                            c.getCoefficients(), c.getExponents(), c.getPrimNorms(),
-                            d.getOrigin(), d.getPowers(),
-                            d.getCoefficients(), d.getExponents(), d.getPrimNorms()
-                            ));
+        HGPWorkSpace ws = workSpace.get();
+
+        contractedVrr(ws, a, b, c, d);
+
+        return (a.getNormalization() * b.getNormalization()
+                * c.getNormalization() * d.getNormalization()
+                * hrr(ws, a.getPowers(), b.getPowers(),
+                          c.getPowers(), d.getPowers()));
+    }
+
+    /**
+     * 2E coulomb interactions between all the components of four shells.
+     *
+     * The batched evaluation is used only if each of the shells has all its
+     * components on the same center and with the same primitive exponents,
+     * otherwise this falls back to component wise evaluation.
+     */
+    @Override
+    public void coulomb(Shell a, Shell b, Shell c, Shell d,
+                        double [] integrals) {
+        if (!isCenteredShell(a) || !isCenteredShell(b)
+            || !isCenteredShell(c) || !isCenteredShell(d)) {
+            super.coulomb(a, b, c, d, integrals);
+            return;
+        } // end if
+
+        coulomb(new ShellPair(a, b), new ShellPair(c, d), integrals);
+    }
+
+    /**
+     * 2E coulomb interactions between all the components of a shell pair
+     * quartet. The VRR intermediates are shared between all the components
+     * of the quartet, only the HRR step is done per component.
+     */
+    @Override
+    public void coulomb(ShellPair ab, ShellPair cd, double [] integrals) {
+        HGPWorkSpace ws = workSpace.get();
+
+        Shell a = ab.getFirstShell(), b = ab.getSecondShell(),
+              c = cd.getFirstShell(), d = cd.getSecondShell();
+
+        ws.setUp(a.getAngularMomentum(), b.getAngularMomentum(),
+                 c.getAngularMomentum(), d.getAngularMomentum(),
+                 ab.getFirstCenter(), ab.getSecondCenter(),
+                 cd.getFirstCenter(), cd.getSecondCenter());
+
+        double [] zeta = ab.getZeta(), px = ab.getPx(), py = ab.getPy(),
+                  pz = ab.getPz(), kab = ab.getPrefactor();
+        double [] eta  = cd.getZeta(), qx = cd.getPx(), qy = cd.getPy(),
+                  qz = cd.getPz(), kcd = cd.getPrefactor();
+        int nab = ab.getNumberOfPrimitivePairs(),
+            ncd = cd.getNumberOfPrimitivePairs();
+        int ij, kl;
+
+        for(ij=0; ij<nab; ij++) {
+            for(kl=0; kl<ncd; kl++) {
+                vrr(ws, zeta[ij], px[ij], py[ij], pz[ij],
+                    eta[kl], qx[kl], qy[kl], qz[kl], kab[ij] * kcd[kl]);
+            } // end for
+        } // end for
+
+        int na = a.getNumberOfShellPrimitives(),
+            nb = b.getNumberOfShellPrimitives(),
+            nc = c.getNumberOfShellPrimitives(),
+            nd = d.getNumberOfShellPrimitives();
+
+        double [] aScale = ws.componentScale(0, a, na),
+                  bScale = ws.componentScale(1, b, nb),
+                  cScale = ws.componentScale(2, c, nc),
+                  dScale = ws.componentScale(3, d, nd);
+
+        int i, j, k, l, idx = 0;
+        Power pi, pj, pk;
+        double ijScale, ijkScale;
+
+        for(i=0; i<na; i++) {
+            pi = a.getShellPrimitive(i).getPowers();
+            for(j=0; j<nb; j++) {
+                pj = b.getShellPrimitive(j).getPowers();
+                ijScale = aScale[i] * bScale[j];
+                for(k=0; k<nc; k++) {
+                    pk = c.getShellPrimitive(k).getPowers();
+                    ijkScale = ijScale * cScale[k];
+                    for(l=0; l<nd; l++) {
+                        integrals[idx++] = ijkScale * dScale[l]
+                               * hrr(ws, pi, pj, pk,
+                                     d.getShellPrimitive(l).getPowers());
+                    } // end for
+                } // end for
+            } // end for
+        } // end for
     }
 
     /**
@@ -57,599 +147,477 @@ public class HGPTwoElectronTerm extends TwoElectronTerm {
                     Point3D b, double bNorm, Power bPower, double bAlpha,
                     Point3D c, double cNorm, Power cPower, double cAlpha,
                     Point3D d, double dNorm, Power dPower, double dAlpha) {
-        return vrr(a, aNorm, aPower, aAlpha, b, bNorm, bAlpha,
-                   c, cNorm, cPower, cAlpha, d, dNorm, dAlpha, 0);
-    }
-    
-    /**
-     * HRR (Horizontal Recurrance Relation)
-     */
-    protected double contrHrr(Point3D a, Power aPower, ArrayList<Double> aCoeff,
-                              ArrayList<Double> aExps, ArrayList<Double> aNorms,
-                              Point3D b, Power bPower, ArrayList<Double> bCoeff,
-                              ArrayList<Double> bExps, ArrayList<Double> bNorms,
-                              Point3D c, Power cPower, ArrayList<Double> cCoeff,
-                              ArrayList<Double> cExps, ArrayList<Double> cNorms,
-                              Point3D d, Power dPower, ArrayList<Double> dCoeff,
-                              ArrayList<Double> dExps, ArrayList<Double> dNorms) {
-        int la = aPower.getL(), ma = aPower.getM(), na = aPower.getN();
-        int lb = bPower.getL(), mb = bPower.getM(), nb = bPower.getN();
-        int lc = cPower.getL(), mc = cPower.getM(), nc = cPower.getN();
-        int ld = dPower.getL(), md = dPower.getM(), nd = dPower.getN();
-
-        if (lb > 0) {
-            Power newBPower = new Power(lb-1,mb,nb);
-            return (contrHrr(a, new Power(la+1,ma,na), aCoeff, aExps, aNorms, 
-                             b, newBPower, bCoeff, bExps, bNorms,
-                             c, cPower, cCoeff, cExps, cNorms,
-                             d, dPower, dCoeff, dExps, dNorms)
-                   + (a.getX()-b.getX())
-                     * contrHrr(a, aPower, aCoeff, aExps, aNorms,
-                                b, newBPower, bCoeff, bExps, bNorms,
-                                c, cPower, cCoeff, cExps, cNorms,
-                                d, dPower, dCoeff, dExps, dNorms));
-        } else if (mb > 0) {
-            Power newBPower = new Power(lb,mb-1,nb);
-            return (contrHrr(a, new Power(la,ma+1,na), aCoeff, aExps, aNorms,
-                             b, newBPower, bCoeff, bExps, bNorms,
-                             c, cPower, cCoeff, cExps, cNorms,
-                             d, dPower, dCoeff, dExps, dNorms)
-                   + (a.getY()-b.getY())
-                     * contrHrr(a, aPower, aCoeff, aExps, aNorms,
-                                b, newBPower, bCoeff, bExps, bNorms,
-                                c, cPower, cCoeff, cExps, cNorms,
-                                d, dPower, dCoeff, dExps, dNorms));
-        } else if (nb > 0) {
-            Power newBPower = new Power(lb,mb,nb-1);
-            return (contrHrr(a, new Power(la,ma,na+1), aCoeff, aExps, aNorms,
-                             b, newBPower, bCoeff, bExps, bNorms,
-                             c, cPower, cCoeff, cExps, cNorms,
-                             d, dPower, dCoeff, dExps, dNorms)
-                   + (a.getZ()-b.getZ())
-                     * contrHrr(a, aPower, aCoeff, aExps, aNorms,
-                                b, newBPower, bCoeff, bExps, bNorms,
-                                c, cPower, cCoeff, cExps, cNorms,
-                                d, dPower, dCoeff, dExps, dNorms));
-        } else if (ld > 0) {
-            Power newDPower = new Power(ld-1,md,nd);
-            return (contrHrr(a, aPower, aCoeff, aExps, aNorms, 
-                             b, bPower, bCoeff, bExps, bNorms,
-                             c, new Power(lc+1,mc,nc), cCoeff, cExps, cNorms,
-                             d, newDPower, dCoeff, dExps, dNorms)
-                   + (c.getX()-d.getX())
-                     * contrHrr(a, aPower, aCoeff, aExps, aNorms, 
-                                b, bPower, bCoeff, bExps, bNorms,
-                                c, cPower, cCoeff, cExps, cNorms,
-                                d, newDPower, dCoeff, dExps, dNorms));
-        } else if (md > 0) {
-            Power newDPower = new Power(ld,md-1,nd);
-            return (contrHrr(a, aPower, aCoeff, aExps, aNorms,
-                             b, bPower, bCoeff, bExps, bNorms,
-                             c, new Power(lc,mc+1,nc), cCoeff, cExps, cNorms,
-                             d, newDPower, dCoeff, dExps, dNorms)
-                   + (c.getY()-d.getY())
-                     * contrHrr(a, aPower, aCoeff, aExps, aNorms,
-                                b, bPower, bCoeff, bExps, bNorms,
-                                c, cPower, cCoeff, cExps, cNorms,
-                                d, newDPower, dCoeff, dExps, dNorms));
-        } else if (nd > 0) {
-            Power newDPower = new Power(ld,md,nd-1);
-            return (contrHrr(a, aPower, aCoeff, aExps, aNorms,
-                             b, bPower, bCoeff, bExps, bNorms,
-                             c, new Power(lc,mc,nc+1), cCoeff, cExps, cNorms,
-                             d, newDPower, dCoeff, dExps, dNorms)
-                + (c.getZ()-d.getZ())
-                    * contrHrr(a, aPower, aCoeff, aExps, aNorms,
-                               b, bPower, bCoeff, bExps, bNorms,
-                               c, cPower, cCoeff, cExps, cNorms,
-                               d, newDPower, dCoeff, dExps, dNorms));
-        } // end if
-        
-        return contrVrr(a, aPower, aCoeff, aExps, aNorms,
-                        b, bCoeff, bExps, bNorms,
-                        c, cPower, cCoeff, cExps, cNorms,
-                        d, dCoeff, dExps, dNorms);
+        HGPWorkSpace ws = workSpace.get();
+
+        int la = aPower.getTotalAngularMomentum(),
+            lb = bPower.getTotalAngularMomentum(),
+            lc = cPower.getTotalAngularMomentum(),
+            ld = dPower.getTotalAngularMomentum();
+
+        ws.setUp(la, lb, lc, ld, a, b, c, d);
+
+        double zeta = aAlpha + bAlpha;
+        double eta  = cAlpha + dAlpha;
+
+        double kab = sqrt2PI / zeta * Math.exp(-aAlpha*bAlpha / zeta
+                                               * a.distanceSquaredFrom(b));
+        double kcd = sqrt2PI / eta * Math.exp(-cAlpha*dAlpha / eta
+                                              * c.distanceSquaredFrom(d));
+
+        vrr(ws, zeta, (aAlpha*a.getX() + bAlpha*b.getX()) / zeta,
+                      (aAlpha*a.getY() + bAlpha*b.getY()) / zeta,
+                      (aAlpha*a.getZ() + bAlpha*b.getZ()) / zeta,
+            eta,  (cAlpha*c.getX() + dAlpha*d.getX()) / eta,
+                  (cAlpha*c.getY() + dAlpha*d.getY()) / eta,
+                  (cAlpha*c.getZ() + dAlpha*d.getZ()) / eta,
+            aNorm*bNorm*cNorm*dNorm*kab*kcd);
+
+        return hrr(ws, aPower, bPower, cPower, dPower);
     }
 
+    private static final double sqrt2PI
+                        = Math.sqrt(2.0) * Math.pow(Math.PI, 1.25);
+
     /**
-     * VRR (Vertical Recurrance Relation) contribution
+     * Loop over all the primitive quartets of the four contracted
+     * functions and accumulate the contracted [e0|f0] integrals in the
+     * work space, with la <= |e| <= la+lb and lc <= |f| <= lc+ld.
+     * The contracted normalization of the functions is not included.
      */
-    protected double contrVrr(Point3D a, Power aPower, ArrayList<Double> aCoeff,
-                              ArrayList<Double> aExps, ArrayList<Double> aNorms,
-                              Point3D b, ArrayList<Double> bCoeff,
-                              ArrayList<Double> bExps, ArrayList<Double> bNorms,
-                              Point3D c, Power cPower, ArrayList<Double> cCoeff,
-                              ArrayList<Double> cExps, ArrayList<Double> cNorms,
-                              Point3D d, ArrayList<Double> dCoeff,
-                              ArrayList<Double> dExps, ArrayList<Double> dNorms) {
-        double value = 0.0;
-
+    private void contractedVrr(HGPWorkSpace ws,
+                               ContractedGaussian a, ContractedGaussian b,
+                               ContractedGaussian c, ContractedGaussian d) {
+        Point3D aOrigin = a.getOrigin(), bOrigin = b.getOrigin(),
+                cOrigin = c.getOrigin(), dOrigin = d.getOrigin();
+
+        ws.setUp(a.getTotalAngularMomentum(), b.getTotalAngularMomentum(),
+                 c.getTotalAngularMomentum(), d.getTotalAngularMomentum(),
+                 aOrigin, bOrigin, cOrigin, dOrigin);
+
+        ArrayList<Double> aExps  = a.getExponents(),
+                          aCoefs = a.getCoefficients(),
+                          aNorms = a.getPrimNorms();
+        ArrayList<Double> bExps  = b.getExponents(),
+                          bCoefs = b.getCoefficients(),
+                          bNorms = b.getPrimNorms();
+        ArrayList<Double> cExps  = c.getExponents(),
+                          cCoefs = c.getCoefficients(),
+                          cNorms = c.getPrimNorms();
+        ArrayList<Double> dExps  = d.getExponents(),
+                          dCoefs = d.getCoefficients(),
+                          dNorms = d.getPrimNorms();
+
+        double rab2 = aOrigin.distanceSquaredFrom(bOrigin);
+        double rcd2 = cOrigin.distanceSquaredFrom(dOrigin);
+
+        int asz = aExps.size(), bsz = bExps.size(),
+            csz = cExps.size(), dsz = dExps.size();
         int i, j, k, l;
-        double iaExp, iaCoef, iaNorm,
-               jbExp, jbCoef, jbNorm,
-               kcExp, kcCoef, kcNorm;
-        
-        for (i = 0; i < aExps.size(); i++) {
-            iaCoef = aCoeff.get(i);
+        double iaExp, jbExp, kcExp, ldExp, zeta, eta, ijFactor, kFactor;
+        double px, py, pz, qx, qy, qz;
+
+        for(i=0; i<asz; i++) {
             iaExp = aExps.get(i);
-            iaNorm = aNorms.get(i);
 
-            for (j = 0; j < bExps.size(); j++) {
-                jbCoef = bCoeff.get(j);
+            for(j=0; j<bsz; j++) {
                 jbExp = bExps.get(j);
-                jbNorm = bNorms.get(j);
-
-                for (k = 0; k < cExps.size(); k++) {
-                    kcCoef = cCoeff.get(k);
-                    kcExp = cExps.get(k);
-                    kcNorm = cNorms.get(k);
-
-                    for(l=0; l < dExps.size(); l++) {
-                        value += iaCoef * jbCoef * kcCoef * dCoeff.get(l)
-                                 * vrrWrapper(a, iaNorm, aPower, iaExp,
-                                       b, jbNorm, jbExp,
-                                       c, kcNorm, cPower, kcExp,
-                                       d, dNorms.get(l), dExps.get(l), 0);
+                zeta  = iaExp + jbExp;
+                px    = (iaExp*aOrigin.getX() + jbExp*bOrigin.getX()) / zeta;
+                py    = (iaExp*aOrigin.getY() + jbExp*bOrigin.getY()) / zeta;
+                pz    = (iaExp*aOrigin.getZ() + jbExp*bOrigin.getZ()) / zeta;
+
+                ijFactor = aCoefs.get(i) * aNorms.get(i)
+                           * bCoefs.get(j) * bNorms.get(j)
+                           * sqrt2PI / zeta
+                           * Math.exp(-iaExp*jbExp / zeta*rab2);
+
+                for(k=0; k<csz; k++) {
+                    kcExp   = cExps.get(k);
+                    kFactor = ijFactor * cCoefs.get(k) * cNorms.get(k);
+
+                    for(l=0; l<dsz; l++) {
+                        ldExp = dExps.get(l);
+                        eta   = kcExp + ldExp;
+                        qx    = (kcExp*cOrigin.getX()
+                                 + ldExp*dOrigin.getX()) / eta;
+                        qy    = (kcExp*cOrigin.getY()
+                                 + ldExp*dOrigin.getY()) / eta;
+                        qz    = (kcExp*cOrigin.getZ()
+                                 + ldExp*dOrigin.getZ()) / eta;
+
+                        vrr(ws, zeta, px, py, pz, eta, qx, qy, qz,
+                            kFactor * dCoefs.get(l) * dNorms.get(l)
+                            * sqrt2PI / eta
+                            * Math.exp(-kcExp*ldExp / eta*rcd2));
                     } // end for
                 } // end for
             } // end for
         } // end for
-        
-        return value;
-    }
-
-    private final double sqrt2PI = Math.sqrt(2.0) * Math.pow(Math.PI, 1.25);
-
-    /**
-     * VRR (Vertical Recurrance Relation)
-     */
-    protected double vrrWrapper(
-                         Point3D a, double aNorm, Power aPower, double aAlpha,
-                         Point3D b, double bNorm, double bAlpha,
-                         Point3D c, double cNorm, Power cPower, double cAlpha,
-                         Point3D d, double dNorm, double dAlpha, int m) {
-        return vrrNonRecursive(a, aNorm, aPower, aAlpha, b, bNorm, bAlpha,
-                               c, cNorm, cPower, cAlpha, d, dNorm, dAlpha, m);
     }
 
     /**
-     * VRR (Vertical Recurrance Relation)
+     * VRR (Vertical Recurrance Relation) for one primitive quartet. <br>
+     *
+     * Generates [e0|f0]^(m) for all 0 <= |e| <= la+lb, 0 <= |f| <= lc+ld
+     * from [00|00]^(m) and adds the m=0 terms with la <= |e|, lc <= |f|
+     * to the contracted integrals held in the work space.
+     *
+     * @param zeta exponent sum of the bra primitive pair
+     * @param px x coordinate of the bra Gaussian product center, P
+     * @param eta exponent sum of the ket primitive pair
+     * @param qx x coordinate of the ket Gaussian product center, Q
+     * @param prefactor product of contraction coefficients, primitive
+     *        normalizations and the K_ab, K_cd factors
      */
-    protected double vrr(Point3D a, double aNorm, Power aPower, double aAlpha,
-                         Point3D b, double bNorm, double bAlpha,
-                         Point3D c, double cNorm, Power cPower, double cAlpha,
-                         Point3D d, double dNorm, double dAlpha, int m) {
-        double val = 0.0;
-
-        Point3D p = IntegralsUtil.gaussianProductCenter(aAlpha, a, bAlpha, b);
-        Point3D q = IntegralsUtil.gaussianProductCenter(cAlpha, c, dAlpha, d);
-        double zeta = aAlpha + bAlpha;
-        double eta  = cAlpha + dAlpha;
+    private void vrr(HGPWorkSpace ws,
+                     double zeta, double px, double py, double pz,
+                     double eta, double qx, double qy, double qz,
+                     double prefactor) {
         double zetaPlusEta = zeta + eta;
         double zetaByZetaPlusEta = zeta / zetaPlusEta;
         double etaByZetaPlusEta  = eta / zetaPlusEta;
-        Point3D w = IntegralsUtil.gaussianProductCenter(zeta, p, eta, q);
-        
-        int la = aPower.getL();
-        int ma = aPower.getM();
-        int na = aPower.getN();
-        int lc = cPower.getL();
-        int mc = cPower.getM();
-        int nc = cPower.getN();
-        
-        if (nc > 0) {
-           Power newCPower = new Power(lc, mc, nc-1);
-           val = (q.getZ()-c.getZ())*vrr(a, aNorm, aPower, aAlpha,
-                                         b, bNorm, bAlpha,
-                                         c, cNorm, newCPower, cAlpha,
-                                         d, dNorm, dAlpha, m)
-               + (w.getZ()-q.getZ())*vrr(a, aNorm, aPower, aAlpha,
-                                         b, bNorm, bAlpha,
-                                         c, cNorm, newCPower, cAlpha,
-                                         d, dNorm, dAlpha, m+1);
-
-           if (nc > 1) {
-              Power newCPower1 = new Power(lc, mc, nc-2);
-              val += 0.5*(nc-1) / eta*(vrr(a, aNorm, aPower, aAlpha,
-                                           b, bNorm, bAlpha,
-                                           c, cNorm, newCPower1, cAlpha,
-                                           d, dNorm, dAlpha, m)
-                    -zetaByZetaPlusEta*vrr(a, aNorm, aPower, aAlpha,
-                                           b, bNorm, bAlpha,
-                                           c, cNorm, newCPower1, cAlpha,
-                                           d, dNorm, dAlpha, m+1));
-           } // end if
-
-           if (na > 0) {
-              val += 0.5*na/zetaPlusEta*vrr(a, aNorm, new Power(la, ma, na-1),
-                                            aAlpha,
-                                            b, bNorm, bAlpha,
-                                            c, cNorm, newCPower,
-                                            cAlpha,
-                                            d, dNorm, dAlpha, m+1);
-           } // end if
-
-           return val;
-        } else if (mc > 0) {
-            Power newCPower = new Power(lc, mc-1, nc);
-            val = (q.getY()-c.getY())*vrr(a, aNorm, aPower, aAlpha,
-                                          b, bNorm, bAlpha,
-                                          c, cNorm, newCPower, cAlpha,
-                                          d, dNorm, dAlpha, m)
-                + (w.getY()-q.getY())*vrr(a, aNorm, aPower, aAlpha,
-                                          b, bNorm, bAlpha,
-                                          c, cNorm, newCPower, cAlpha,
-                                          d, dNorm, dAlpha, m+1);
-
-            if (mc > 1) {
-               Power newCPower1 = new Power(lc, mc-2, nc);
-               val += 0.5*(mc-1)/eta*(vrr(a, aNorm, aPower, aAlpha,
-                                          b, bNorm, bAlpha,
-                                          c, cNorm, newCPower1, cAlpha,
-                                          d, dNorm, dAlpha, m)
-                   -zetaByZetaPlusEta*vrr(a, aNorm, aPower, aAlpha,
-                                          b, bNorm, bAlpha,
-                                          c, cNorm, newCPower1, cAlpha,
-                                          d, dNorm, dAlpha, m+1));
-            } // end if
 
-            if (ma > 0) {
-                val += 0.5*ma/zetaPlusEta*vrr(a, aNorm, new Power(la, ma-1, na),
-                                              aAlpha,
-                                              b, bNorm, bAlpha,
-                                              c, cNorm, newCPower,
-                                              cAlpha,
-                                              d, dNorm, dAlpha, m+1);
-            } // end if
-            
-            return val;
-        } else if (lc > 0) {
-            Power newCPower = new Power(lc-1, mc, nc);
-            val = (q.getX()-c.getX())*vrr(a, aNorm, aPower, aAlpha,
-                                          b, bNorm, bAlpha,
-                                          c, cNorm, newCPower, cAlpha,
-                                          d, dNorm, dAlpha, m)
-                + (w.getX()-q.getX())*vrr(a, aNorm, aPower, aAlpha,
-                                          b, bNorm, bAlpha,
-                                          c, cNorm, newCPower, cAlpha,
-                                          d, dNorm, dAlpha, m+1);
-
-            if (lc > 1) {
-               Power newCPower1 = new Power(lc-2, mc, nc);
-               val += 0.5*(lc-1)/eta*(vrr(a, aNorm, aPower, aAlpha,
-                                          b, bNorm, bAlpha,
-                                          c, cNorm, newCPower1, cAlpha,
-                                          d, dNorm, dAlpha, m)
-                   -zetaByZetaPlusEta*vrr(a, aNorm, aPower, aAlpha,
-                                          b, bNorm, bAlpha,
-                                          c, cNorm, newCPower1, cAlpha,
-                                          d, dNorm, dAlpha, m+1));
-            } // end if
+        double [] a = ws.a, c = ws.c, p = ws.p, q = ws.q;
+        double [] pa = ws.pa, wp = ws.wp, qc = ws.qc, wq = ws.wq;
 
-            if (la > 0) {
-                val += 0.5*la/zetaPlusEta*vrr(a, aNorm, new Power(la-1, ma, na),
-                                              aAlpha,
-                                              b, bNorm, bAlpha,
-                                              c, cNorm, newCPower,
-                                              cAlpha,
-                                              d, dNorm, dAlpha, m+1);
-            } // end if
+        p[0] = px; p[1] = py; p[2] = pz;
+        q[0] = qx; q[1] = qy; q[2] = qz;
 
-            return val;
-        } else if (na > 0) {
-            Power newAPower = new Power(la, ma, na-1);
-            val = (p.getZ()-a.getZ())*vrr(a, aNorm, newAPower, aAlpha,
-                                          b, bNorm, bAlpha,
-                                          c, cNorm, cPower, cAlpha,
-                                          d, dNorm, dAlpha, m) 
-                + (w.getZ()-p.getZ())*vrr(a, aNorm, newAPower, aAlpha,
-                                          b, bNorm, bAlpha,
-                                          c, cNorm, cPower, cAlpha,
-                                          d, dNorm, dAlpha, m+1);
-
-            if (na > 1) {
-               Power newAPower1 = new Power(la, ma, na-2);
-               val += 0.5*(na-1)/zeta*(vrr(a, aNorm, newAPower1, aAlpha,
-                                           b, bNorm, bAlpha,
-                                           c, cNorm, cPower, cAlpha,
-                                           d, dNorm, dAlpha, m)
-                     -etaByZetaPlusEta*vrr(a, aNorm, newAPower1, aAlpha,
-                                           b, bNorm, bAlpha,
-                                           c, cNorm, cPower, cAlpha,
-                                           d, dNorm, dAlpha, m+1));
-            } // end if
+        double rpq2 = 0.0, w;
+        for(int x=0; x<3; x++) {
+            w = zetaByZetaPlusEta * p[x] + etaByZetaPlusEta * q[x];
 
-            return val;
-        } else if (ma > 0) {
-            Power newAPower = new Power(la, ma-1, na);
-            val = (p.getY()-a.getY())*vrr(a, aNorm, newAPower, aAlpha,
-                                          b, aNorm, aAlpha,
-                                          c, aNorm, cPower, cAlpha,
-                                          d, aNorm, dAlpha, m)
-                + (w.getY()-p.getY())*vrr(a, aNorm, newAPower, aAlpha,
-                                          b, aNorm, aAlpha,
-                                          c, aNorm, cPower, cAlpha,
-                                          d, aNorm, dAlpha, m+1);
-
-            if (ma > 1) {
-               Power newAPower1 = new Power(la, ma-2, na);
-               val += 0.5*(ma-1)/zeta*(vrr(a, aNorm, newAPower1,
-                                           aAlpha,
-                                           b, aNorm, aAlpha,
-                                           c, aNorm, cPower, cAlpha,
-                                           d, aNorm, dAlpha, m)
-                     -etaByZetaPlusEta*vrr(a, aNorm, newAPower1,
-                                           aAlpha,
-                                           b, aNorm, aAlpha,
-                                           c, aNorm, cPower, cAlpha,
-                                           d, aNorm, dAlpha, m+1));
-            } // end if
-            
-            return val;
-        } else if (la > 0) {
-            Power newAPower = new Power(la-1, ma, na);
-            val = (p.getX()-a.getX())*vrr(a, aNorm, newAPower, aAlpha,
-                                          b, aNorm, aAlpha,
-                                          c, aNorm, cPower, cAlpha,
-                                          d, aNorm, dAlpha, m)
-                + (w.getX()-p.getX())*vrr(a, aNorm, newAPower, aAlpha,
-                                          b, aNorm, aAlpha,
-                                          c, aNorm, cPower, cAlpha,
-                                          d, aNorm, dAlpha, m+1);
-
-            if (la > 1) {
-                Power newAPower1 = new Power(la-2, ma, na);
-                val += 0.5*(la-1)/zeta*(vrr(a, aNorm, newAPower1, aAlpha,
-                                            b, aNorm, aAlpha,
-                                            c, aNorm, cPower, cAlpha,
-                                            d, aNorm, dAlpha, m)
-                      -etaByZetaPlusEta*vrr(a, aNorm, newAPower1, aAlpha,
-                                            b, aNorm, aAlpha,
-                                            c, aNorm, cPower, cAlpha,
-                                            d, aNorm, dAlpha, m+1));
+            pa[x] = p[x] - a[x];
+            wp[x] = w - p[x];
+            qc[x] = q[x] - c[x];
+            wq[x] = w - q[x];
+
+            rpq2 += (p[x] - q[x]) * (p[x] - q[x]);
+        } // end for
+
+        int laTot = ws.laTot, lcTot = ws.lcTot;
+        int mMax  = laTot + lcTot;
+        int ms    = mMax + 1;
+        int nE    = ws.nE, nF = ws.nF;
+        double [] vrrTerms = ws.vrrTerms;
+        double [] fGammaTerms = ws.fGammaTerms;
+
+        // form [00|00]^m
+        IntegralsUtil.computeFGamma(mMax, zeta*eta / zetaPlusEta*rpq2,
+                                    fGammaTerms);
+
+        double factor = prefactor / Math.sqrt(zetaPlusEta);
+        int m;
+        for(m=0; m<=mMax; m++) {
+            vrrTerms[m] = factor * fGammaTerms[m];
+        } // end for
+
+        double oneBy2Zeta = 0.5 / zeta;
+        double oneBy2Eta  = 0.5 / eta;
+        double oneBy2ZetaPlusEta = 0.5 / zetaPlusEta;
+
+        // [e0|00]^m
+        int e, f, dir, n1, ei, le, lf, mTop;
+        int base, b1, b2, b3;
+        double v, pai, wpi, qci, wqi, t1, t2;
+        for(e=1; e<nE; e++) {
+            dir  = BUILD_DIRECTION[e];
+            n1   = CARTESIAN_POWERS[dir][e] - 1;
+            mTop = mMax - CARTESIAN_L[e];
+            pai  = pa[dir];
+            wpi  = wp[dir];
+            base = e * nF * ms;
+            b1   = MINUS_ONE[dir][e] * nF * ms;
+
+            if (n1 > 0) {
+                b2 = MINUS_ONE[dir][MINUS_ONE[dir][e]] * nF * ms;
+                t1 = n1 * oneBy2Zeta;
+                t2 = t1 * etaByZetaPlusEta;
+                for(m=0; m<=mTop; m++) {
+                    vrrTerms[base+m] = pai * vrrTerms[b1+m]
+                                       + wpi * vrrTerms[b1+m+1]
+                                       + t1 * vrrTerms[b2+m]
+                                       - t2 * vrrTerms[b2+m+1];
+                } // end for
+            } else {
+                for(m=0; m<=mTop; m++) {
+                    vrrTerms[base+m] = pai * vrrTerms[b1+m]
+                                       + wpi * vrrTerms[b1+m+1];
+                } // end for
             } // end if
-            
-            return val;
-        } // end if
+        } // end for
 
-        double rab2 = a.distanceSquaredFrom(b);
-        double Kab  = sqrt2PI / zeta * Math.exp(-aAlpha*bAlpha / zeta*rab2);
-        double rcd2 = c.distanceSquaredFrom(d);
-        double Kcd  = sqrt2PI / eta * Math.exp(-cAlpha*dAlpha / eta*rcd2);
-        double rpq2 = p.distanceSquaredFrom(q);
-        double T    = zeta*eta / zetaPlusEta*rpq2;
+        // [e0|f0]^m
+        for(f=1; f<nF; f++) {
+            dir = BUILD_DIRECTION[f];
+            n1  = CARTESIAN_POWERS[dir][f] - 1;
+            lf  = CARTESIAN_L[f];
+            qci = qc[dir];
+            wqi = wq[dir];
+            int fm  = MINUS_ONE[dir][f];
+            int fmm = (n1 > 0) ? MINUS_ONE[dir][fm] : -1;
+            t1 = n1 * oneBy2Eta;
+            t2 = t1 * zetaByZetaPlusEta;
+
+            for(e=0; e<nE; e++) {
+                le   = CARTESIAN_L[e];
+                mTop = mMax - le - lf;
+                ei   = CARTESIAN_POWERS[dir][e];
+                base = (e * nF + f) * ms;
+                b1   = (e * nF + fm) * ms;
+
+                for(m=0; m<=mTop; m++) {
+                    vrrTerms[base+m] = qci * vrrTerms[b1+m]
+                                       + wqi * vrrTerms[b1+m+1];
+                } // end for
 
-        val = aNorm*bNorm*cNorm*dNorm*Kab*Kcd/Math.sqrt(zetaPlusEta)
-              * IntegralsUtil.computeFGamma(m, T);
-        return val;
-    }
+                if (n1 > 0) {
+                    b2 = (e * nF + fmm) * ms;
+                    for(m=0; m<=mTop; m++) {
+                        vrrTerms[base+m] += t1 * vrrTerms[b2+m]
+                                            - t2 * vrrTerms[b2+m+1];
+                    } // end for
+                } // end if
 
-    /**
-     * VRR (Vertical Recurrance Relation)
-     */
-    protected double vrrNonRecursive(
-                         Point3D a, double aNorm, Power aPower, double aAlpha,
-                         Point3D b, double bNorm, double bAlpha,
-                         Point3D c, double cNorm, Power cPower, double cAlpha,
-                         Point3D d, double dNorm, double dAlpha, int m) {
-
-        Point3D p = IntegralsUtil.gaussianProductCenter(aAlpha, a, bAlpha, b);
-        Point3D q = IntegralsUtil.gaussianProductCenter(cAlpha, c, dAlpha, d);
-        double zeta = aAlpha + bAlpha;
-        double eta  = cAlpha + dAlpha;
-        double zetaPlusEta = zeta + eta;
-        double zetaByZetaPlusEta = zeta / zetaPlusEta;
-        double etaByZetaPlusEta  = eta / zetaPlusEta;
-        Point3D w = IntegralsUtil.gaussianProductCenter(zeta, p, eta, q);
-
-        int la = aPower.getL();
-        int ma = aPower.getM();
-        int na = aPower.getN();
-        int lc = cPower.getL();
-        int mc = cPower.getM();
-        int nc = cPower.getN();
-
-        int mtot = la+ma+na+lc+mc+nc+m;  // total angular momentum
-
-        double [] fGammaTerms = new double[mtot+1];
-
-        int i, j, k, pp, qp, r, s, im;
-
-        double px = p.getX(), py = p.getY(), pz = p.getZ();
-        double qx = q.getX(), qy = q.getY(), qz = q.getZ();
-        double wx = w.getX(), wy = w.getY(), wz = w.getZ();
-        double xa = a.getX(), ya = a.getY(), za = a.getZ();
-        double xc = c.getX(), yc = c.getY(), zc = c.getZ();
-
-        double rab2 = a.distanceSquaredFrom(b);
-        double Kab  = sqrt2PI / zeta * Math.exp(-aAlpha*bAlpha / zeta*rab2);
-        double rcd2 = c.distanceSquaredFrom(d);
-        double Kcd  = sqrt2PI / eta * Math.exp(-cAlpha*dAlpha / eta*rcd2);
-        double rpq2 = p.distanceSquaredFrom(q);
-        double T    = zeta*eta / zetaPlusEta*rpq2;
-        
-        // form [0]^m
-        fGammaTerms[mtot] = IntegralsUtil.computeFGamma(mtot, T);
-        for(im=mtot-1; im>=0; im--)
-            fGammaTerms[im] = (2.0 * T * fGammaTerms[im+1] + Math.exp(-T))
-                                  / (2.0 * im + 1);
-
-        int maxam = 5; // la*ma*na*lc*mc*nc*mtot;
-        double [] vrrTerms = new double[187500];
-
-        for (im=0; im<mtot+1; im++)
-            vrrTerms[iindex(0, 0, 0, 0, 0, 0, im, maxam)]
-                    = aNorm*bNorm*cNorm*dNorm*Kab*Kcd
-                               / Math.sqrt(zeta+eta)*fGammaTerms[im];
-
-        // construct the other set of terms from the above [0]^m terms
-
-        // the following code breaks the recursive steps in to a series of iterations
-        for (i = 0; i < la; i++) {
-            for (im = 0; im < mtot - i; im++) {
-                vrrTerms[iindex(i+1, 0, 0, 0, 0, 0, im, maxam)] =
-                      (px - xa)
-                       * vrrTerms[iindex(i, 0, 0, 0, 0, 0, im, maxam)]
-                      + (wx - px)
-                       * vrrTerms[iindex(i, 0, 0, 0, 0, 0, im + 1, maxam)];
-
-                if (i > 0) {
-                    vrrTerms[iindex(i + 1, 0, 0, 0, 0, 0, im, maxam)] +=
-                            i / 2.0 / zeta
-                            * (vrrTerms[iindex(i - 1, 0, 0, 0, 0, 0, im, maxam)]
-                            - etaByZetaPlusEta
-                            * vrrTerms[iindex(i - 1, 0, 0, 0, 0, 0, im + 1, maxam)]);
+                if (ei > 0) {
+                    b3 = (MINUS_ONE[dir][e] * nF + fm) * ms;
+                    v  = ei * oneBy2ZetaPlusEta;
+                    for(m=0; m<=mTop; m++) {
+                        vrrTerms[base+m] += v * vrrTerms[b3+m+1];
+                    } // end for
                 } // end if
             } // end for
         } // end for
 
-        for (j = 0; j < ma; j++) {
-            for (i = 0; i < la + 1; i++) {
-                for (im = 0; im < mtot - i - j; im++) {
-                    vrrTerms[iindex(i, j + 1, 0, 0, 0, 0, im, maxam)] =
-                            (py - ya)
-                             * vrrTerms[iindex(i, j, 0, 0, 0, 0, im, maxam)]
-                            + (wy - py)
-                             * vrrTerms[iindex(i, j, 0, 0, 0, 0, im + 1, maxam)];
-
-                    if (j > 0) {
-                        vrrTerms[iindex(i, j + 1, 0, 0, 0, 0, im, maxam)] +=
-                                j / 2.0 / zeta
-                                * (vrrTerms[iindex(i, j - 1, 0, 0, 0, 0, im, maxam)]
-                                - etaByZetaPlusEta
-                                * vrrTerms[iindex(i, j - 1, 0, 0, 0, 0, im + 1, maxam)]);
-                    } // end if
-                } // end for
+        // accumulate the contracted [e0|f0]
+        double [] contractedTerms = ws.contractedTerms;
+        int eStart = ws.eStart, fStart = ws.fStart, nFc = nF - fStart;
+        int idx = 0;
+        for(e=eStart; e<nE; e++) {
+            base = (e * nF + fStart) * ms;
+            for(f=fStart; f<nF; f++) {
+                contractedTerms[idx++] += vrrTerms[base];
+                base += ms;
             } // end for
         } // end for
+    }
 
-        for (k = 0; k < na; k++) {
-            for (j = 0; j < ma + 1; j++) {
-                for (i = 0; i < la + 1; i++) {
-                    for (im = 0; im < mtot - i - j - k; im++) {
-                        vrrTerms[iindex(i, j, k + 1, 0, 0, 0, im, maxam)] =
-                                (pz - za) 
-                                * vrrTerms[iindex(i, j, k, 0, 0, 0, im, maxam)]
-                                + (wz - pz)
-                                * vrrTerms[iindex(i, j, k, 0, 0, 0, im + 1, maxam)];
-                        if (k > 0) {
-                            vrrTerms[iindex(i, j, k + 1, 0, 0, 0, im, maxam)] +=
-                                    k / 2.0 / zeta
-                                    * (vrrTerms[iindex(i, j, k - 1, 0, 0, 0, im, maxam)]
-                                    - etaByZetaPlusEta
-                                    * vrrTerms[iindex(i, j, k - 1, 0, 0, 0, im + 1, maxam)]);
-                        } // end if
-                    } // end for
+    /**
+     * HRR (Horizontal Recurrance Relation). <br>
+     *
+     * (ab|cd) is obtained from the contracted [e0|f0] integrals using the
+     * closed form of the HRR:
+     * (a,b| = sum_k C(b,k) (A-B)^(b-k) (a+k,0|, and similarly for c, d.
+     */
+    private double hrr(HGPWorkSpace ws, Power aPower, Power bPower,
+                       Power cPower, Power dPower) {
+        int ax = aPower.getL(), ay = aPower.getM(), az = aPower.getN();
+        int bx = bPower.getL(), by = bPower.getM(), bz = bPower.getN();
+        int cx = cPower.getL(), cy = cPower.getM(), cz = cPower.getN();
+        int dx = dPower.getL(), dy = dPower.getM(), dz = dPower.getN();
+
+        double [][] abPowers = ws.abPowers, cdPowers = ws.cdPowers;
+        double [] contractedTerms = ws.contractedTerms;
+        int eStart = ws.eStart, fStart = ws.fStart;
+        int nFc = ws.nF - fStart;
+
+        double value = 0.0, fxy, fxyz, gxy, gxyz, ket;
+        int kx, ky, kz, lx, ly, lz, eIdx;
+
+        for(kx=0; kx<=bx; kx++) {
+          for(ky=0; ky<=by; ky++) {
+            fxy = BINOMIAL[bx][kx] * abPowers[0][bx-kx]
+                  * BINOMIAL[by][ky] * abPowers[1][by-ky];
+            for(kz=0; kz<=bz; kz++) {
+              fxyz = fxy * BINOMIAL[bz][kz] * abPowers[2][bz-kz];
+              if (fxyz == 0.0) continue;
+
+              eIdx = (cartesianIndex(ax+kx, ay+ky, az+kz) - eStart) * nFc
+                     - fStart;
+              ket  = 0.0;
+
+              for(lx=0; lx<=dx; lx++) {
+                for(ly=0; ly<=dy; ly++) {
+                  gxy = BINOMIAL[dx][lx] * cdPowers[0][dx-lx]
+                        * BINOMIAL[dy][ly] * cdPowers[1][dy-ly];
+                  for(lz=0; lz<=dz; lz++) {
+                    gxyz = gxy * BINOMIAL[dz][lz] * cdPowers[2][dz-lz];
+
+                    ket += gxyz * contractedTerms[eIdx
+                              + cartesianIndex(cx+lx, cy+ly, cz+lz)];
+                  } // end for
                 } // end for
+              } // end for
+
+              value += fxyz * ket;
             } // end for
+          } // end for
         } // end for
 
-        for (qp = 0; qp < lc; qp++) {
-            for (k = 0; k < na + 1; k++) {
-                for (j = 0; j < ma + 1; j++) {
-                    for (i = 0; i < la + 1; i++) {
-                        for (im = 0; im < mtot - i - j - k - qp; im++) {
-                            vrrTerms[iindex(i, j, k, qp + 1, 0, 0, im, maxam)] =
-                                    (qx - xc) 
-                                    * vrrTerms[iindex(i, j, k, qp, 0, 0, im, maxam)]
-                                    + (wx - qx)
-                                    * vrrTerms[iindex(i, j, k, qp, 0, 0, im + 1, maxam)];
-                            if (qp > 0) {
-                                vrrTerms[iindex(i, j, k, qp + 1, 0, 0, im, maxam)] +=
-                                        qp / 2.0 / eta
-                                        * (vrrTerms[iindex(i, j, k, qp - 1, 0, 0, im, maxam)]
-                                        - zetaByZetaPlusEta
-                                        * vrrTerms[iindex(i, j, k, qp - 1, 0, 0, im + 1, maxam)]);
-                            } // end if
-                            if (i > 0) {
-                                vrrTerms[iindex(i, j, k, qp + 1, 0, 0, im, maxam)] +=
-                                        i / 2.0 / zetaPlusEta
-                                        * vrrTerms[iindex(i - 1, j, k, qp, 0, 0, im + 1, maxam)];
-                            } // end if
-                        } // end for
+        return value;
+    }
+
+    /** Convert the cartesian powers to a 1d index */
+    private static int cartesianIndex(int l, int m, int n) {
+        int lt = l + m + n;
+        int lr = lt - l;
+
+        return (lt * (lt+1) * (lt+2) / 6 + lr * (lr+1) / 2 + n);
+    }
+
+    /** Number of cartesian components with total power <= l */
+    private static int cartesianCount(int l) {
+        return ((l+1) * (l+2) * (l+3) / 6);
+    }
+
+    /** maximum total angular momentum, on each side, supported */
+    private static final int MAX_ANGULAR_MOMENTUM = 16;
+
+    /** total angular momentum of each cartesian index */
+    private static final int [] CARTESIAN_L;
+
+    /** the x, y and z powers of each cartesian index */
+    private static final int [][] CARTESIAN_POWERS;
+
+    /** index of the power lowered by 1 in x, y or z, -1 if not possible */
+    private static final int [][] MINUS_ONE;
+
+    /** direction along which a cartesian index is built up in the VRR */
+    private static final int [] BUILD_DIRECTION;
+
+    /** binomial coefficients */
+    private static final double [][] BINOMIAL;
+
+    static {
+        int n = cartesianCount(MAX_ANGULAR_MOMENTUM);
+
+        CARTESIAN_L      = new int[n];
+        CARTESIAN_POWERS = new int[3][n];
+        MINUS_ONE        = new int[3][n];
+        BUILD_DIRECTION  = new int[n];
+
+        int lt, l, m, idx, dir;
+        int [] pw = new int[3];
+        for(lt=0; lt<=MAX_ANGULAR_MOMENTUM; lt++) {
+            for(l=lt; l>=0; l--) {
+                for(m=lt-l; m>=0; m--) {
+                    pw[0] = l; pw[1] = m; pw[2] = lt-l-m;
+                    idx = cartesianIndex(pw[0], pw[1], pw[2]);
+
+                    CARTESIAN_L[idx] = lt;
+                    BUILD_DIRECTION[idx] = 0;
+                    for(dir=0; dir<3; dir++) {
+                        CARTESIAN_POWERS[dir][idx] = pw[dir];
+
+                        if (pw[dir] > 0) {
+                            pw[dir]--;
+                            MINUS_ONE[dir][idx] = cartesianIndex(pw[0],
+                                                          pw[1], pw[2]);
+                            pw[dir]++;
+                            BUILD_DIRECTION[idx] = dir;
+                        } else {
+                            MINUS_ONE[dir][idx] = -1;
+                        } // end if
                     } // end for
                 } // end for
             } // end for
         } // end for
 
-        for (r = 0; r < mc; r++) {
-            for (qp = 0; qp < lc + 1; qp++) {
-                for (k = 0; k < na + 1; k++) {
-                    for (j = 0; j < ma + 1; j++) {
-                        for (i = 0; i < la + 1; i++) {
-                            for (im = 0; im < mtot - i - j - k - qp - r; im++) {
-                                vrrTerms[iindex(i, j, k, qp, r + 1, 0, im, maxam)] =
-                                        (qy - yc) 
-                                        * vrrTerms[iindex(i, j, k, qp, r, 0, im, maxam)]
-                                        + (wy - qy)
-                                        * vrrTerms[iindex(i, j, k, qp, r, 0, im + 1, maxam)];
-                                if (r > 0) {
-                                    vrrTerms[iindex(i, j, k, qp, r + 1, 0, im, maxam)] +=
-                                            r / 2.0 / eta
-                                            * (vrrTerms[iindex(i, j, k, qp, r - 1, 0, im, maxam)]
-                                            - zetaByZetaPlusEta
-                                            * vrrTerms[iindex(i, j, k, qp, r - 1, 0, im + 1, maxam)]);
-                                } // end if
-                                if (j > 0) {
-                                    vrrTerms[iindex(i, j, k, qp, r + 1, 0, im, maxam)] +=
-                                            j / 2.0 / zetaPlusEta
-                                            * vrrTerms[iindex(i, j - 1, k, qp, r, 0, im + 1, maxam)];
-                                } // end if
-                            } // end for
-                        } // end for
-                    } // end for
-                } // end for
+        BINOMIAL = new double[MAX_ANGULAR_MOMENTUM+1][MAX_ANGULAR_MOMENTUM+1];
+        for(l=0; l<=MAX_ANGULAR_MOMENTUM; l++) {
+            BINOMIAL[l][0] = BINOMIAL[l][l] = 1.0;
+            for(m=1; m<l; m++) {
+                BINOMIAL[l][m] = BINOMIAL[l-1][m-1] + BINOMIAL[l-1][m];
             } // end for
         } // end for
+    }
 
-        for (s = 0; s < nc; s++) {
-            for (r = 0; r < mc + 1; r++) {
-                for (qp = 0; qp < lc + 1; qp++) {
-                    for (k = 0; k < na + 1; k++) {
-                        for (j = 0; j < ma + 1; j++) {
-                            for (i = 0; i < la + 1; i++) {
-                                for (im = 0; im < mtot-i-j-k-qp-r-s; im++) {
-                                    vrrTerms[iindex(i, j, k, qp, r, s + 1, im, maxam)] =
-                                            (qz - zc) 
-                                            * vrrTerms[iindex(i, j, k, qp, r, s, im, maxam)]
-                                            + (wz - qz)
-                                            * vrrTerms[iindex(i, j, k, qp, r, s, im + 1, maxam)];
-                                    if (s > 0) {
-                                        vrrTerms[iindex(i, j, k, qp, r, s + 1, im, maxam)] +=
-                                                s / 2.0 / eta
-                                                * (vrrTerms[iindex(i, j, k, qp, r, s - 1, im, maxam)]
-                                                - zetaByZetaPlusEta
-                                                * vrrTerms[iindex(i, j, k, qp, r, s - 1, im + 1, maxam)]);
-                                    } // end if
-                                    if (k > 0) {
-                                        vrrTerms[iindex(i, j, k, qp, r, s + 1, im, maxam)] +=
-                                                k / 2.0 / zetaPlusEta
-                                                * vrrTerms[iindex(i, j, k - 1, qp, r, s, im + 1, maxam)];
-                                    } // end if
-                                } // end for
-                            } // end for
-                        } // end for
-                    } // end for
-                } // end for
+    /** the per thread work space */
+    private static final ThreadLocal<HGPWorkSpace> workSpace
+                                         = new ThreadLocal<HGPWorkSpace>() {
+        @Override
+        protected HGPWorkSpace initialValue() {
+            return new HGPWorkSpace();
+        }
+    };
+
+    /**
+     * Scratch space used during evaluation of a (shell) quartet. The
+     * buffers only grow, and are sized for the largest angular momentum
+     * encountered by the owning thread.
+     */
+    private static class HGPWorkSpace {
+        double [] a = new double[3], b = new double[3],
+                  c = new double[3], d = new double[3];
+        double [] p = new double[3], q = new double[3];
+        double [] pa = new double[3], wp = new double[3],
+                  qc = new double[3], wq = new double[3];
+
+        double [][] abPowers = new double[3][MAX_ANGULAR_MOMENTUM+1];
+        double [][] cdPowers = new double[3][MAX_ANGULAR_MOMENTUM+1];
+
+        double [] vrrTerms        = new double[0];
+        double [] contractedTerms = new double[0];
+        double [] fGammaTerms = new double[2*MAX_ANGULAR_MOMENTUM+1];
+        double [][] scale     = new double[4][0];
+
+        int laTot, lcTot, nE, nF, eStart, fStart;
+
+        /**
+         * Set up for a new quartet with the given angular momenta and
+         * centers, and clear the contracted integrals.
+         */
+        void setUp(int la, int lb, int lc, int ld,
+                   Point3D ap, Point3D bp, Point3D cp, Point3D dp) {
+            laTot = la + lb;
+            lcTot = lc + ld;
+
+            if (laTot > MAX_ANGULAR_MOMENTUM || lcTot > MAX_ANGULAR_MOMENTUM)
+                throw new UnsupportedOperationException("Angular momentum"
+                          + " too high for HGP integrals: " + la + ", " + lb
+                          + ", " + lc + ", " + ld);
+
+            nE = cartesianCount(laTot);
+            nF = cartesianCount(lcTot);
+            eStart = cartesianCount(la-1);
+            fStart = cartesianCount(lc-1);
+
+            int vrrSize = nE * nF * (laTot + lcTot + 1);
+            if (vrrTerms.length < vrrSize) vrrTerms = new double[vrrSize];
+
+            int contractedSize = (nE - eStart) * (nF - fStart);
+            if (contractedTerms.length < contractedSize)
+                contractedTerms = new double[contractedSize];
+
+            for(int i=0; i<contractedSize; i++) contractedTerms[i] = 0.0;
+
+            a[0] = ap.getX(); a[1] = ap.getY(); a[2] = ap.getZ();
+            b[0] = bp.getX(); b[1] = bp.getY(); b[2] = bp.getZ();
+            c[0] = cp.getX(); c[1] = cp.getY(); c[2] = cp.getZ();
+            d[0] = dp.getX(); d[1] = dp.getY(); d[2] = dp.getZ();
+
+            for(int x=0; x<3; x++) {
+                abPowers[x][0] = cdPowers[x][0] = 1.0;
+                for(int k=1; k<=lb; k++)
+                    abPowers[x][k] = abPowers[x][k-1] * (a[x] - b[x]);
+                for(int k=1; k<=ld; k++)
+                    cdPowers[x][k] = cdPowers[x][k-1] * (c[x] - d[x]);
             } // end for
-        } // end for
+        }
 
-        return vrrTerms[iindex(la,ma,na,lc,mc,nc,m,maxam)];
-    }
+        /** normalization scale factors of the components of a shell */
+        double [] componentScale(int which, Shell shell, int n) {
+            if (scale[which].length < n) scale[which] = new double[n];
 
-    /* Convert the 7-dimensional indices to a 1d iindex */
-    private int iindex(int la, int ma, int na,
-                       int lc, int mc, int nc, int m, int maxam) {
-        return (la + ma * maxam + na * maxam * maxam
-                + lc * maxam * maxam * maxam
-                + nc * maxam * maxam * maxam * maxam
-                + mc * maxam * maxam * maxam * maxam * maxam 
-                + m * maxam * maxam * maxam * maxam * maxam * maxam);
+            getComponentScale(shell, scale[which]);
+
+            return scale[which];
+        }
     }
-    
+
     @Override
-    public double coulomb(ContractedGaussian a, ContractedGaussian b, 
-                          ContractedGaussian c, ContractedGaussian d, 
+    public double coulomb(ContractedGaussian a, ContractedGaussian b,
+                          ContractedGaussian c, ContractedGaussian d,
                           Density density, Matrix jMat, Matrix kMat) {
         throw new UnsupportedOperationException("Not supported yet.");
     }
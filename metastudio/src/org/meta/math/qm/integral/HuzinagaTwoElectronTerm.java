@@ -147,14 +147,17 @@ public class HuzinagaTwoElectronTerm extends TwoElectronTerm {
                    p.getZ(), a.getZ(), b.getZ(), q.getZ(), c.getZ(), d.getZ(),
                    gamma1, gamma2, delta);
 
+        // all the required F_m are evaluated in one go
+        int maxM = bx.length + by.length + bz.length - 3;
+        double [] fGamma = new double[maxM+1];
+        IntegralsUtil.computeFGamma(maxM, 0.25*radiusPQSquared/delta, fGamma);
+
         double sum = 0.0;
         int i, j, k;
         for(i=0; i<bx.length; i++) {
             for(j=0; j<by.length; j++) {
                 for(k=0; k<bz.length; k++) {
-                    sum += bx[i] * by[j] * bz[k]
-                           * IntegralsUtil.computeFGamma(
-                                            i+j+k, 0.25*radiusPQSquared/delta);
+                    sum += bx[i] * by[j] * bz[k] * fGamma[i+j+k];
                 } // end for
             } // end for
         } // end for
@@ -0,0 +1,39 @@
+/*
+ * IncompleteGammaFGammaTerm.java
+ *
+ * Created on 18/10/2026
+ */
+
+package org.meta.math.qm.integral;
+
+/**
+ * Boys function evaluated using the incomplete gamma function routines
+ * in <code>IntegralsUtil</code> (series and continued fraction
+ * representation, Numerical Recipes section 6.1).
+ *
+ * @author  V.Ganesh
+ * @version 2.0 (Part of MeTA v2.0)
+ */
+public class IncompleteGammaFGammaTerm extends FGammaTerm {
+
+    /** Creates a new instance of IncompleteGammaFGammaTerm */
+    public IncompleteGammaFGammaTerm() {
+    }
+
+    /**
+     * The Boys function F_m(x)
+     *
+     * @param m the order of the Boys function
+     * @param x the argument
+     * @return value of F_m(x)
+     */
+    @Override
+    public double fGamma(int m, double x) {
+        x = Math.max(Math.abs(x), SMALL);
+
+        return (0.5 * Math.pow(x, -m - 0.5)
+                     * IntegralsUtil.gammaIncomplete(m + 0.5, x));
+    }
+
+    private static final double SMALL = 0.00000001;
+}
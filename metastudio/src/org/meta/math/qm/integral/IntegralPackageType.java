@@ -17,5 +17,7 @@ public enum IntegralPackageType {
     ONE_ELECTRON_TERM, // one-electron term (s)
     TWO_ELECTRON_HUZINAGA, // two-electron, using Huzunaga scheme
     TWO_ELECTRON_RYS, // two-electron, using RYS polynomials
-    TWO_ELECTRON_HGP  // two-electron, using Head-Gordon/Pople scheme
+    TWO_ELECTRON_HGP, // two-electron, using Head-Gordon/Pople scheme
+    FGAMMA_INCOMPLETE_GAMMA, // Boys function, using incomplete gamma function
+    FGAMMA_TABULATED  // Boys function, using precomputed table
 }
@@ -32,6 +32,11 @@ public final class Integrals {
     private static NuclearTerm nuclearTerm;
     private static OneElectronTerm oneElectronTerm;
     private static TwoElectronTerm twoElectronTerm;
+    private static FGammaTerm fGammaTerm;
+
+    /** derivative integrals are only available with Rys quadrature */
+    private static RysTwoElectronTerm twoElectronDerivativeTerm
+                                              = new RysTwoElectronTerm();
 
     static {
         nuclearTerm = IntegralsPackageFactory.getInstance().getNuclearTerm();
@@ -39,6 +44,7 @@ public final class Integrals {
                    = IntegralsPackageFactory.getInstance().getOneElectronTerm();
         twoElectronTerm
                    = IntegralsPackageFactory.getInstance().getTwoElectronTerm();
+        fGammaTerm = IntegralsPackageFactory.getInstance().getFGammaTerm();
     }
 
     /**
@@ -50,6 +56,7 @@ public final class Integrals {
                    = IntegralsPackageFactory.getInstance().getOneElectronTerm();
         twoElectronTerm
                    = IntegralsPackageFactory.getInstance().getTwoElectronTerm();
+        fGammaTerm = IntegralsPackageFactory.getInstance().getFGammaTerm();
     }
 
     /**
@@ -91,6 +98,31 @@ public final class Integrals {
                                     
     }
 
+    /**
+     * The overlap and kinetic energy integrals of a primitive pair,
+     * evaluated together.
+     *
+     * @param values the array into which the overlap (index 0) and the
+     *        kinetic energy (index 1) integrals are stored
+     */
+    public static void overlapAndKinetic(double alpha1, int [] power1,
+                                double [] a, double alpha2, int [] power2,
+                                double [] b, double [] values) {
+        oneElectronTerm.overlapAndKinetic(alpha1, power1, a, alpha2, power2,
+                                          b, values);
+    }
+
+    /**
+     * The nuclear attraction of a primitive pair to a set of point charges
+     */
+    public static double nuclearAttraction(double alpha1, int [] power1,
+                                double [] a, double alpha2, int [] power2,
+                                double [] b, double [][] centers,
+                                double [] charges) {
+        return nuclearTerm.nuclearAttraction(alpha1, power1, a, alpha2,
+                                             power2, b, centers, charges);
+    }
+
     /**
      * The nuclear attraction gradient term
      */
@@ -102,6 +134,20 @@ public final class Integrals {
 
     }
     
+    /**
+     * The Boys function F_m(x)
+     */
+    public static double fGamma(int m, double x) {
+        return fGammaTerm.fGamma(m, x);
+    }
+
+    /**
+     * The Boys functions F_0(x) ... F_maxM(x), stored in fm
+     */
+    public static void fGamma(int maxM, double x, double [] fm) {
+        fGammaTerm.fGamma(maxM, x, fm);
+    }
+
     /**
      * 2E coulomb interactions between 4 contracted Gaussians
      */
@@ -110,6 +156,26 @@ public final class Integrals {
         return twoElectronTerm.coulomb(a, b, c, d);
     }
 
+    /**
+     * 2E coulomb interactions between all the components of a shell pair
+     * quartet, stored in integrals[((i*nb + j)*nc + k)*nd + l]
+     */
+    public static void coulomb(ShellPair ab, ShellPair cd,
+                               double [] integrals) {
+        twoElectronTerm.coulomb(ab, cd, integrals);
+    }
+
+    /**
+     * Derivatives of the 2E coulomb interactions between all the components
+     * of a shell pair quartet, with respect to the coordinates of the four
+     * centers, stored in derivatives[12*idx + 3*center + xyz]. These are
+     * always evaluated using Rys quadrature.
+     */
+    public static void coulombDerivative(ShellPair ab, ShellPair cd,
+                                         double [] derivatives) {
+        twoElectronDerivativeTerm.coulombDerivative(ab, cd, derivatives);
+    }
+
     /**
      * 2E coulomb interactions between 4 primitive Gaussians
      */
@@ -17,7 +17,8 @@ public class IntegralsPackageFactory {
     /** Private constructor */
     private IntegralsPackageFactory() {
         defaultTwoElectronIntegralPackage
-                 = IntegralPackageType.TWO_ELECTRON_HUZINAGA;
+                 = IntegralPackageType.TWO_ELECTRON_HGP;
+        defaultFGammaPackage = IntegralPackageType.FGAMMA_TABULATED;
     }
 
     private static IntegralsPackageFactory _theInstance;
@@ -92,7 +93,7 @@ public class IntegralsPackageFactory {
 
     /**
      * Get the default 2E integral package. Currently this is:
-     * TWO_ELECTRON_HUZINAGA
+     * TWO_ELECTRON_HGP
      *
      * @return the instance of 2-E integral package, if no suitable one
      *         available, then UnsupportedOperationException is thrown
@@ -128,6 +129,69 @@ public class IntegralsPackageFactory {
         Integrals.reInitPackageReference();
     }
 
+    private IncompleteGammaFGammaTerm _incompleteGammaFGammaTerm;
+    private TabulatedFGammaTerm _tabulatedFGammaTerm;
+
+    /**
+     * Request a Boys function (F_m(x)) package.
+     *
+     * @param type requests a Boys function package
+     * @return the instance of Boys function package, if no suitable one
+     *         available, then UnsupportedOperationException is thrown
+     */
+    public FGammaTerm getFGammaTerm(IntegralPackageType type) {
+        switch(type) {
+            case FGAMMA_INCOMPLETE_GAMMA:
+                if (_incompleteGammaFGammaTerm == null)
+                    _incompleteGammaFGammaTerm
+                                   = new IncompleteGammaFGammaTerm();
+                return _incompleteGammaFGammaTerm;
+            case FGAMMA_TABULATED:
+                if (_tabulatedFGammaTerm == null)
+                    _tabulatedFGammaTerm = new TabulatedFGammaTerm();
+                return _tabulatedFGammaTerm;
+            default:
+                throw new UnsupportedOperationException("No Boys function " +
+                          "package yet for: " + type);
+        } // end of switch .. case block
+    }
+
+    /**
+     * Get the default Boys function package. Currently this is:
+     * FGAMMA_TABULATED
+     *
+     * @return the instance of Boys function package, if no suitable one
+     *         available, then UnsupportedOperationException is thrown
+     */
+    public FGammaTerm getFGammaTerm() {
+        return getFGammaTerm(defaultFGammaPackage);
+    }
+
+    protected IntegralPackageType defaultFGammaPackage;
+
+    /**
+     * Get the value of defaultFGammaPackage
+     *
+     * @return the value of defaultFGammaPackage
+     */
+    public IntegralPackageType getDefaultFGammaPackage() {
+        return defaultFGammaPackage;
+    }
+
+    /**
+     * Set the value of defaultFGammaPackage
+     *
+     * @param defaultFGammaPackage new value of defaultFGammaPackage
+     */
+    public void setDefaultFGammaPackage(
+                       IntegralPackageType defaultFGammaPackage) {
+        this.defaultFGammaPackage = defaultFGammaPackage;
+
+        // change here affects the statically initilised Integral package
+        // so update reference there
+        Integrals.reInitPackageReference();
+    }
+
     /**
      * Get a requested integral package.
      *
@@ -145,6 +209,9 @@ public class IntegralsPackageFactory {
             case TWO_ELECTRON_HGP:
             case TWO_ELECTRON_RYS:
                 return getTwoElectronTerm(type);
+            case FGAMMA_INCOMPLETE_GAMMA:
+            case FGAMMA_TABULATED:
+                return getFGammaTerm(type);
             default:
                 throw new UnsupportedOperationException("No integral " +
                           "package yet for: " + type);
@@ -62,17 +62,30 @@ public final class IntegralsUtil {
             kl   = temp;
         } // end id
 
-        return (ij * (ij+1) / 2+kl);
+        // ij * (ij+1) may not fit in an int even when the index does
+        return (int) ((long) ij * (ij+1) / 2+kl);
     }
 
     /**
-     * Incomplete gamma function
+     * The Boys function F_m(x), evaluated using the currently selected
+     * FGammaTerm package (see IntegralsPackageFactory)
      */
     public static double computeFGamma(int m, double x) {
-        x = Math.max(Math.abs(x), SMALL);
+        return Integrals.fGamma(m, x);
+    }
 
-        return (0.5 * Math.pow(x, -m - 0.5)
-                     * gammaIncomplete(m + 0.5, x));
+    /**
+     * The Boys functions F_0(x) ... F_maxM(x) for the same argument,
+     * evaluated using the currently selected FGammaTerm package
+     * (see IntegralsPackageFactory)
+     *
+     * @param maxM the maximum order required
+     * @param x the argument
+     * @param fm the array (of size at least maxM+1) into which the values
+     *        are to be stored
+     */
+    public static void computeFGamma(int maxM, double x, double [] fm) {
+        Integrals.fGamma(maxM, x, fm);
     }
 
     /**
@@ -163,7 +176,6 @@ public final class IntegralsUtil {
     }
 
     // for gammp mathod
-    private static double SMALL = 0.00000001;
     private static double EPS   = 3.0e-7;
     private static double FPMIN = 1.0e-30;
 
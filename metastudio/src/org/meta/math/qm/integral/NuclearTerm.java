@@ -54,14 +54,17 @@ public class NuclearTerm implements IntegralsPackage {
                                        product.getZ() - b.getZ(),
                                        product.getZ() - c.getZ(), gamma);
 
+        // all the required F_m are evaluated in one go
+        int maxM = ax.length + ay.length + az.length - 3;
+        double [] fGamma = new double[maxM+1];
+        IntegralsUtil.computeFGamma(maxM, rCPSquared * gamma, fGamma);
+
         double sum = 0.0;
         int i, j, k;
         for(i = 0; i<ax.length; i++) {
             for(j = 0; j<ay.length; j++) {
                 for(k = 0; k<az.length; k++) {
-                    sum += ax[i] * ay[j] * az[k]
-                          * IntegralsUtil.computeFGamma(i + j + k,
-                                                        rCPSquared * gamma);
+                    sum += ax[i] * ay[j] * az[k] * fGamma[i + j + k];
                 } // end for
             } // end for
         } // end for
@@ -70,6 +73,81 @@ public class NuclearTerm implements IntegralsPackage {
                  * Math.exp(-alpha1 * alpha2 * rABSquared / gamma) * sum);
     }
 
+    /**
+     * The nuclear attraction of a pair of (unnormalized) primitives to a
+     * set of point charges, sum_C Z_C (a|1/r_C|b). The Gaussian product of
+     * the pair is formed only once for all the charges.
+     *
+     * @param alpha1 exponent of the first primitive
+     * @param power1 the powers (l, m, n) of the first primitive
+     * @param a the center (x, y, z) of the first primitive
+     * @param alpha2 exponent of the second primitive
+     * @param power2 the powers (l, m, n) of the second primitive
+     * @param b the center (x, y, z) of the second primitive
+     * @param centers the centers (x, y, z) of the charges
+     * @param charges the charges Z_C
+     * @return the nuclear attraction integral
+     */
+    public double nuclearAttraction(double alpha1, int [] power1, double [] a,
+                                    double alpha2, int [] power2, double [] b,
+                                    double [][] centers, double [] charges) {
+        double gamma = alpha1 + alpha2;
+        double [] product = new double[3];
+        double [] pa = new double[3];
+        double [] pb = new double[3];
+        double rABSquared = 0.0, rCPSquared, cp, rab;
+        int d;
+
+        for(d=0; d<3; d++) {
+            rab = a[d] - b[d];
+            rABSquared += rab * rab;
+
+            product[d] = (alpha1 * a[d] + alpha2 * b[d]) / gamma;
+            pa[d] = product[d] - a[d];
+            pb[d] = product[d] - b[d];
+        } // end for
+
+        int maxM = power1[0] + power1[1] + power1[2]
+                   + power2[0] + power2[1] + power2[2];
+        double [] fGamma = new double[maxM+1];
+        double [] ax, ay, az;
+        double sum, total = 0.0;
+        int c, i, j, k;
+
+        for(c=0; c<charges.length; c++) {
+            double [] center = centers[c];
+
+            rCPSquared = 0.0;
+            for(d=0; d<3; d++) {
+                cp = product[d] - center[d];
+                rCPSquared += cp * cp;
+            } // end for
+
+            ax = constructAArray(power1[0], power2[0], pa[0], pb[0],
+                                 product[0] - center[0], gamma);
+            ay = constructAArray(power1[1], power2[1], pa[1], pb[1],
+                                 product[1] - center[1], gamma);
+            az = constructAArray(power1[2], power2[2], pa[2], pb[2],
+                                 product[2] - center[2], gamma);
+
+            IntegralsUtil.computeFGamma(maxM, rCPSquared * gamma, fGamma);
+
+            sum = 0.0;
+            for(i = 0; i<ax.length; i++) {
+                for(j = 0; j<ay.length; j++) {
+                    for(k = 0; k<az.length; k++) {
+                        sum += ax[i] * ay[j] * az[k] * fGamma[i + j + k];
+                    } // end for
+                } // end for
+            } // end for
+
+            total += charges[c] * sum;
+        } // end for
+
+        return (-2.0 * Math.PI / gamma
+                 * Math.exp(-alpha1 * alpha2 * rABSquared / gamma) * total);
+    }
+
     /**
      * <i> "THO eq. 2.18 and 3.1 <i>
      */
@@ -98,4 +98,62 @@ public class OneElectronTerm implements IntegralsPackage {
 
         return term;
     }
+
+    /**
+     * The overlap and kinetic energy integrals of a pair of (unnormalized)
+     * primitives together, sharing the Gaussian product and the 1D
+     * overlaps between the two.
+     *
+     * @param alpha1 exponent of the first primitive
+     * @param power1 the powers (l, m, n) of the first primitive
+     * @param a the center (x, y, z) of the first primitive
+     * @param alpha2 exponent of the second primitive
+     * @param power2 the powers (l, m, n) of the second primitive
+     * @param b the center (x, y, z) of the second primitive
+     * @param values the array into which the overlap (index 0) and the
+     *        kinetic energy (index 1) integrals are stored
+     */
+    public void overlapAndKinetic(double alpha1, int [] power1, double [] a,
+                                  double alpha2, int [] power2, double [] b,
+                                  double [] values) {
+        double gamma = alpha1 + alpha2;
+        double radiusABSquared = 0.0, pa, pb, product, rab;
+        double [] s      = new double[3];
+        double [] sPlus  = new double[3];
+        double [] sMinus = new double[3];
+        int d, l2;
+
+        for(d=0; d<3; d++) {
+            rab = a[d] - b[d];
+            radiusABSquared += rab * rab;
+
+            product = (alpha1 * a[d] + alpha2 * b[d]) / gamma;
+            pa = product - a[d];
+            pb = product - b[d];
+            l2 = power2[d];
+
+            s[d]      = overlap1D(power1[d], l2, pa, pb, gamma);
+            sPlus[d]  = overlap1D(power1[d], l2+2, pa, pb, gamma);
+            sMinus[d] = (l2 > 1) ? l2 * (l2 - 1)
+                                   * overlap1D(power1[d], l2-2, pa, pb, gamma)
+                                 : 0.0;
+        } // end for
+
+        double prefactor = Math.pow(Math.PI / gamma, 1.5)
+                           * Math.exp((-alpha1 * alpha2 * radiusABSquared)
+                                      / gamma);
+        double overlap = s[0] * s[1] * s[2];
+
+        double kinetic = alpha2 * (2 * (power2[0] + power2[1] + power2[2]) + 3)
+                         * overlap
+                       - 2.0 * alpha2 * alpha2
+                         * (sPlus[0] * s[1] * s[2] + s[0] * sPlus[1] * s[2]
+                            + s[0] * s[1] * sPlus[2])
+                       - 0.5 * (sMinus[0] * s[1] * s[2]
+                                + s[0] * sMinus[1] * s[2]
+                                + s[0] * s[1] * sMinus[2]);
+
+        values[0] = prefactor * overlap;
+        values[1] = prefactor * kinetic;
+    }
 }
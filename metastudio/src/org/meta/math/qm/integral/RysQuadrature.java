@@ -0,0 +1,390 @@
+/*
+ * RysQuadrature.java
+ *
+ * Created on 18/10/2026
+ */
+
+package org.meta.math.qm.integral;
+
+/**
+ * Roots and weights of the Rys polynomials, used by the Rys quadrature
+ * two electron integral package. <br>
+ *
+ * For an order n and argument x, the n roots t_i^2 (in (0,1)) and weights
+ * w_i satisfy: sum_i w_i t_i^(2m) = F_m(x), for m = 0 .. 2n-1, where
+ * F_m(x) is the Boys function. <br>
+ *
+ * The roots and weights are tabulated as piecewise Chebyshev fits in x.
+ * The table for an order is built on first use, from the Gauss quadrature
+ * of a finely discretized Rys weight function exp(-x t^2) (Stieltjes
+ * procedure followed by Golub-Welsch). Beyond the tabulated range the
+ * asymptotic (Gauss-Hermite) form is used.
+ *
+ * @author  V.Ganesh
+ * @version 2.0 (Part of MeTA v2.0)
+ */
+public final class RysQuadrature {
+
+    /** maximum number of roots supported */
+    public static final int MAX_ROOTS = 13;
+
+    /** beyond this the asymptotic roots and weights are used */
+    private static final double MAX_TABULATED_X = 100.0;
+
+    /** the width of each interval in the table */
+    private static final double INTERVAL = 0.5;
+
+    /** the number of Chebyshev terms used per interval */
+    private static final int CHEBYSHEV_ORDER = 14;
+
+    /** number of intervals in the table */
+    private static final int NO_OF_INTERVALS
+                                  = (int) Math.round(MAX_TABULATED_X/INTERVAL);
+
+    /** number of points used to discretize the weight function */
+    private static final int NO_OF_QUADRATURE_POINTS = 160;
+
+    /** exp(-CUTOFF) is treated as zero when discretizing */
+    private static final double CUTOFF = 120.0;
+
+    /** the Gauss-Legendre points and weights on [0, 1] */
+    private static final double [] legendrePoints, legendreWeights;
+
+    /**
+     * Chebyshev coefficients, indexed as [order][((interval*2*order)
+     * + k)*CHEBYSHEV_ORDER + j], k < order for roots and k >= order
+     * for weights
+     */
+    private static final double [][] table = new double[MAX_ROOTS+1][];
+
+    /** positive Hermite roots (squared) and weights, per order */
+    private static final double [][] hermiteRoots
+                                        = new double[MAX_ROOTS+1][];
+    private static final double [][] hermiteWeights
+                                        = new double[MAX_ROOTS+1][];
+
+    static {
+        legendrePoints  = new double[NO_OF_QUADRATURE_POINTS];
+        legendreWeights = new double[NO_OF_QUADRATURE_POINTS];
+
+        gaussLegendre(NO_OF_QUADRATURE_POINTS, legendrePoints,
+                      legendreWeights);
+    }
+
+    /** No instantiation possible */
+    private RysQuadrature() {
+    }
+
+    /**
+     * Compute the Rys roots and weights.
+     *
+     * @param n the number of roots required
+     * @param x the argument, T = rho |PQ|^2
+     * @param roots the n roots (t^2) are returned in this array
+     * @param weights the n weights are returned in this array
+     */
+    public static void roots(int n, double x, double [] roots,
+                             double [] weights) {
+        if (n < 1 || n > MAX_ROOTS)
+            throw new UnsupportedOperationException("Rys quadrature with "
+                                    + n + " roots not supported");
+
+        if (x >= MAX_TABULATED_X) {
+            asymptoticRoots(n, x, roots, weights);
+            return;
+        } // end if
+
+        double [] coefficients = table[n];
+        if (coefficients == null) coefficients = makeTable(n);
+
+        int interval = (int) (x / INTERVAL);
+        double y  = 2.0 * (x - interval * INTERVAL) / INTERVAL - 1.0;
+        double y2 = 2.0 * y;
+        int base  = interval * 2 * n * CHEBYSHEV_ORDER;
+        int i, j, idx;
+        double b0, b1, b2;
+
+        // Clenshaw summation for each root and weight
+        for(i=0; i<2*n; i++) {
+            idx = base + (i+1) * CHEBYSHEV_ORDER - 1;
+            b1 = b2 = 0.0;
+            for(j=CHEBYSHEV_ORDER-1; j>0; j--) {
+                b0 = coefficients[idx--] + y2 * b1 - b2;
+                b2 = b1;
+                b1 = b0;
+            } // end for
+
+            if (i < n) roots[i] = coefficients[idx] + y * b1 - b2;
+            else       weights[i-n] = coefficients[idx] + y * b1 - b2;
+        } // end for
+    }
+
+    /**
+     * Reference evaluation of the Rys roots and weights, from the Gauss
+     * quadrature of the discretized weight function. This is used to build
+     * the tables and is much slower than roots().
+     *
+     * @param n the number of roots required
+     * @param x the argument
+     * @param roots the n roots (t^2) in ascending order
+     * @param weights the corresponding n weights
+     */
+    public static void referenceRoots(int n, double x, double [] roots,
+                                      double [] weights) {
+        int np = NO_OF_QUADRATURE_POINTS;
+        double tMax = (x > CUTOFF) ? Math.sqrt(CUTOFF / x) : 1.0;
+        double [] t2 = new double[np], w = new double[np];
+        int i, j, k;
+        double t, mu0 = 0.0;
+
+        for(i=0; i<np; i++) {
+            t     = tMax * legendrePoints[i];
+            t2[i] = t * t;
+            w[i]  = tMax * legendreWeights[i] * Math.exp(-x * t2[i]);
+            mu0  += w[i];
+        } // end for
+
+        // Stieltjes procedure with orthonormal polynomials, to get the
+        // Jacobi matrix of the discrete measure
+        double [] alpha = new double[n], beta = new double[n];
+        double [] q = new double[np], qPrev = new double[np];
+        double a, b, r, bPrev = 0.0, tmp;
+        double q0 = 1.0 / Math.sqrt(mu0);
+
+        for(i=0; i<np; i++) q[i] = q0;
+
+        for(k=0; k<n; k++) {
+            a = 0.0;
+            for(i=0; i<np; i++) a += w[i] * t2[i] * q[i] * q[i];
+            alpha[k] = a;
+
+            if (k == n-1) break;
+
+            b = 0.0;
+            for(i=0; i<np; i++) {
+                r = (t2[i] - a) * q[i] - bPrev * qPrev[i];
+                qPrev[i] = r;
+                b += w[i] * r * r;
+            } // end for
+            b = Math.sqrt(b);
+            beta[k+1] = b;
+
+            for(i=0; i<np; i++) {
+                tmp      = qPrev[i] / b;
+                qPrev[i] = q[i];
+                q[i]     = tmp;
+            } // end for
+            bPrev = b;
+        } // end for
+
+        // Golub-Welsch
+        double [] z = new double[n];
+        z[0] = 1.0;
+        double [] e = new double[n];
+        for(k=1; k<n; k++) e[k-1] = beta[k];
+        tridiagonalEigen(n, alpha, e, z);
+
+        for(k=0; k<n; k++) {
+            roots[k]   = alpha[k];
+            weights[k] = mu0 * z[k] * z[k];
+        } // end for
+
+        // sort in ascending order of roots
+        for(i=1; i<n; i++) {
+            for(j=i; j>0 && roots[j-1] > roots[j]; j--) {
+                tmp = roots[j]; roots[j] = roots[j-1]; roots[j-1] = tmp;
+                tmp = weights[j]; weights[j] = weights[j-1];
+                weights[j-1] = tmp;
+            } // end for
+        } // end for
+    }
+
+    /**
+     * Asymptotic roots and weights for large x, obtained from the Gauss
+     * Hermite quadrature with 2n points.
+     */
+    private static void asymptoticRoots(int n, double x, double [] roots,
+                                        double [] weights) {
+        double [] hRoots = hermiteRoots[n];
+        if (hRoots == null) hRoots = makeHermite(n);
+        double [] hWeights = hermiteWeights[n];
+        double sqrtX = Math.sqrt(x);
+
+        for(int i=0; i<n; i++) {
+            roots[i]   = hRoots[i] / x;
+            weights[i] = hWeights[i] / sqrtX;
+        } // end for
+    }
+
+    /** set up the Gauss-Hermite data for an order */
+    private static synchronized double [] makeHermite(int n) {
+        if (hermiteRoots[n] != null) return hermiteRoots[n];
+
+        int m = 2 * n;
+        double [] d = new double[m], e = new double[m], z = new double[m];
+        z[0] = 1.0;
+        for(int k=1; k<m; k++) e[k-1] = Math.sqrt(0.5 * k);
+        tridiagonalEigen(m, d, e, z);
+
+        double [] hRoots = new double[n], hWeights = new double[n];
+        int idx = 0;
+        for(int k=0; k<m; k++) {
+            if (d[k] > 0.0) {
+                hRoots[idx]   = d[k] * d[k];
+                hWeights[idx] = Math.sqrt(Math.PI) * z[k] * z[k];
+                idx++;
+            } // end if
+        } // end for
+
+        hermiteWeights[n] = hWeights;
+        hermiteRoots[n]   = hRoots;
+
+        return hRoots;
+    }
+
+    /** build the Chebyshev table for an order */
+    private static synchronized double [] makeTable(int n) {
+        if (table[n] != null) return table[n];
+
+        int nc = CHEBYSHEV_ORDER;
+        double [] coefficients = new double[NO_OF_INTERVALS * 2 * n * nc];
+        double [] roots = new double[n], weights = new double[n];
+        double [][] values = new double[2*n][nc];
+        double [] cosines = new double[nc * nc];
+        int interval, i, j, k, base;
+        double x, sum;
+
+        for(j=0; j<nc; j++) {
+            for(k=0; k<nc; k++) {
+                cosines[j*nc + k] = Math.cos(Math.PI * j * (k + 0.5) / nc);
+            } // end for
+        } // end for
+
+        for(interval=0; interval<NO_OF_INTERVALS; interval++) {
+            // values at the Chebyshev nodes of the interval
+            for(k=0; k<nc; k++) {
+                x = INTERVAL * (interval + 0.5 * (1.0 + cosines[nc + k]));
+                referenceRoots(n, x, roots, weights);
+
+                for(i=0; i<n; i++) {
+                    values[i][k]   = roots[i];
+                    values[n+i][k] = weights[i];
+                } // end for
+            } // end for
+
+            // and the Chebyshev coefficients
+            base = interval * 2 * n * nc;
+            for(i=0; i<2*n; i++) {
+                for(j=0; j<nc; j++) {
+                    sum = 0.0;
+                    for(k=0; k<nc; k++) sum += values[i][k] * cosines[j*nc+k];
+
+                    coefficients[base + i*nc + j]
+                                  = ((j == 0) ? 1.0 : 2.0) * sum / nc;
+                } // end for
+            } // end for
+        } // end for
+
+        table[n] = coefficients;
+
+        return coefficients;
+    }
+
+    /**
+     * Gauss-Legendre points and weights on [0, 1]
+     */
+    private static void gaussLegendre(int n, double [] points,
+                                      double [] weights) {
+        int i, j, m = (n + 1) / 2;
+        double z, z1, p1, p2, p3, pp = 0.0;
+
+        for(i=0; i<m; i++) {
+            z = Math.cos(Math.PI * (i + 0.75) / (n + 0.5));
+
+            do {
+                p1 = 1.0;
+                p2 = 0.0;
+                for(j=0; j<n; j++) {
+                    p3 = p2;
+                    p2 = p1;
+                    p1 = ((2.0*j + 1.0) * z * p2 - j * p3) / (j + 1);
+                } // end for
+
+                pp = n * (z * p1 - p2) / (z * z - 1.0);
+                z1 = z;
+                z  = z1 - p1 / pp;
+            } while (Math.abs(z - z1) > 1.0e-15);
+
+            points[i]      = 0.5 * (1.0 - z);
+            points[n-1-i]  = 0.5 * (1.0 + z);
+            weights[i]     = 1.0 / ((1.0 - z * z) * pp * pp);
+            weights[n-1-i] = weights[i];
+        } // end for
+    }
+
+    /**
+     * Eigen values of a symmetric tridiagonal matrix by the implicit QL
+     * method, along with the first components of the eigen vectors.
+     *
+     * @param n the dimension
+     * @param d the diagonal, replaced by the eigen values
+     * @param e the off diagonal in e[0..n-2], destroyed
+     * @param z should be (1, 0, ...), replaced by the first components of
+     *        the eigen vectors
+     */
+    private static void tridiagonalEigen(int n, double [] d, double [] e,
+                                         double [] z) {
+        int l, m, i, iter;
+        double s, r, p, g, f, dd, c, b;
+
+        e[n-1] = 0.0;
+        for(l=0; l<n; l++) {
+            iter = 0;
+            do {
+                for(m=l; m<n-1; m++) {
+                    dd = Math.abs(d[m]) + Math.abs(d[m+1]);
+                    if (Math.abs(e[m]) <= 1.0e-16 * dd) break;
+                } // end for
+
+                if (m != l) {
+                    if (iter++ == 60)
+                        throw new ArithmeticException("Too many iterations"
+                                           + " in Rys root evaluation");
+
+                    g = (d[l+1] - d[l]) / (2.0 * e[l]);
+                    r = Math.hypot(g, 1.0);
+                    g = d[m] - d[l] + e[l] / (g + Math.copySign(r, g));
+                    s = c = 1.0;
+                    p = 0.0;
+
+                    for(i=m-1; i>=l; i--) {
+                        f = s * e[i];
+                        b = c * e[i];
+                        e[i+1] = (r = Math.hypot(f, g));
+                        if (r == 0.0) {
+                            d[i+1] -= p;
+                            e[m] = 0.0;
+                            break;
+                        } // end if
+                        s = f / r;
+                        c = g / r;
+                        g = d[i+1] - p;
+                        r = (d[i] - g) * s + 2.0 * c * b;
+                        d[i+1] = g + (p = s * r);
+                        g = c * r - b;
+
+                        f = z[i+1];
+                        z[i+1] = s * z[i] + c * f;
+                        z[i]   = c * z[i] - s * f;
+                    } // end for
+
+                    if (r == 0.0 && i >= l) continue;
+
+                    d[l] -= p;
+                    e[l] = g;
+                    e[m] = 0.0;
+                } // end if
+            } while (m != l);
+        } // end for
+    }
+} // end of class RysQuadrature
@@ -11,12 +11,20 @@ import org.meta.math.geom.Point3D;
 import org.meta.math.qm.Density;
 import org.meta.math.qm.basis.ContractedGaussian;
 import org.meta.math.qm.basis.Power;
+import org.meta.math.qm.basis.Shell;
 
 /**
  * Two electron integrals using RYS qudrature.
  * The code be based on
  * PyQuante (<a href="http://pyquante.sf.net"> http://pyquante.sf.net </a>).
  *
+ * See M. Dupuis, J. Rys and H. F. King, J. Chem. Phys. <b>65</b>, 111
+ * (1976) for more details. For every primitive quartet, the integral is
+ * written as a sum over the n = (la+lb+lc+ld)/2 + 1 Rys roots of products
+ * of x, y and z two dimensional integrals. The 2D integrals are generated
+ * by recursion and then transferred to the b and d centers using the
+ * horizontal recurrence. The roots and weights are from RysQuadrature.
+ *
  * @author  V.Ganesh
  * @version 2.0 (Part of MeTA v2.0)
  */
@@ -25,46 +33,324 @@ public class RysTwoElectronTerm extends TwoElectronTerm {
     /** Creates an instance of RysTwoElectronTerm */
     public RysTwoElectronTerm() {
     }
- 
+
     /**
      * 2E coulomb interactions between 4 contracted Gaussians
      */
     @Override
     public double coulomb(ContractedGaussian a, ContractedGaussian b,
                           ContractedGaussian c, ContractedGaussian d) {
-         ArrayList<Double> aExps, aCoefs, aNorms,
-                              bExps, bCoefs, bNorms,
-                              cExps, cCoefs, cNorms,
-                              dExps, dCoefs, dNorms;
-         
-         aExps  = a.getExponents();
-         aCoefs = a.getCoefficients();
-         aNorms = a.getPrimNorms();
-         Point3D aOrigin  = a.getOrigin();
-         Power   aPower   = a.getPowers();
-
-         bExps  = b.getExponents();
-         bCoefs = b.getCoefficients();
-         bNorms = b.getPrimNorms();
-         Point3D bOrigin  = b.getOrigin();
-         Power   bPower   = b.getPowers();
-
-         cExps  = c.getExponents();
-         cCoefs = c.getCoefficients();
-         cNorms = c.getPrimNorms();
-         Point3D cOrigin  = c.getOrigin();
-         Power   cPower   = c.getPowers();
-
-         dExps  = d.getExponents();
-         dCoefs = d.getCoefficients();
-         dNorms = d.getPrimNorms();
-         Point3D dOrigin  = d.getOrigin();
-         Power   dPower   = d.getPowers();
-
-         // TODO: 
-         return (a.getNormalization() * b.getNormalization()
-                 * c.getNormalization() * d.getNormalization()
-                 );
+        RysWorkSpace ws = workSpace.get();
+
+        Point3D aOrigin = a.getOrigin(), bOrigin = b.getOrigin(),
+                cOrigin = c.getOrigin(), dOrigin = d.getOrigin();
+        Power aPower = a.getPowers(), bPower = b.getPowers(),
+              cPower = c.getPowers(), dPower = d.getPowers();
+
+        ws.setUp(aPower.getTotalAngularMomentum(),
+                 bPower.getTotalAngularMomentum(),
+                 cPower.getTotalAngularMomentum(),
+                 dPower.getTotalAngularMomentum(),
+                 aOrigin, bOrigin, cOrigin, dOrigin);
+
+        ArrayList<Double> aExps  = a.getExponents(),
+                          aCoefs = a.getCoefficients(),
+                          aNorms = a.getPrimNorms();
+        ArrayList<Double> bExps  = b.getExponents(),
+                          bCoefs = b.getCoefficients(),
+                          bNorms = b.getPrimNorms();
+        ArrayList<Double> cExps  = c.getExponents(),
+                          cCoefs = c.getCoefficients(),
+                          cNorms = c.getPrimNorms();
+        ArrayList<Double> dExps  = d.getExponents(),
+                          dCoefs = d.getCoefficients(),
+                          dNorms = d.getPrimNorms();
+
+        double rab2 = aOrigin.distanceSquaredFrom(bOrigin);
+        double rcd2 = cOrigin.distanceSquaredFrom(dOrigin);
+
+        int asz = aExps.size(), bsz = bExps.size(),
+            csz = cExps.size(), dsz = dExps.size();
+        int i, j, k, l;
+        double iaExp, jbExp, kcExp, ldExp, zeta, eta, ijFactor, kFactor;
+        double px, py, pz, qx, qy, qz, value = 0.0;
+
+        for(i=0; i<asz; i++) {
+            iaExp = aExps.get(i);
+
+            for(j=0; j<bsz; j++) {
+                jbExp = bExps.get(j);
+                zeta  = iaExp + jbExp;
+                px    = (iaExp*aOrigin.getX() + jbExp*bOrigin.getX()) / zeta;
+                py    = (iaExp*aOrigin.getY() + jbExp*bOrigin.getY()) / zeta;
+                pz    = (iaExp*aOrigin.getZ() + jbExp*bOrigin.getZ()) / zeta;
+
+                ijFactor = aCoefs.get(i) * aNorms.get(i)
+                           * bCoefs.get(j) * bNorms.get(j)
+                           * sqrt2PI / zeta
+                           * Math.exp(-iaExp*jbExp / zeta*rab2);
+
+                for(k=0; k<csz; k++) {
+                    kcExp   = cExps.get(k);
+                    kFactor = ijFactor * cCoefs.get(k) * cNorms.get(k);
+
+                    for(l=0; l<dsz; l++) {
+                        ldExp = dExps.get(l);
+                        eta   = kcExp + ldExp;
+                        qx    = (kcExp*cOrigin.getX()
+                                 + ldExp*dOrigin.getX()) / eta;
+                        qy    = (kcExp*cOrigin.getY()
+                                 + ldExp*dOrigin.getY()) / eta;
+                        qz    = (kcExp*cOrigin.getZ()
+                                 + ldExp*dOrigin.getZ()) / eta;
+
+                        twoDIntegrals(ws, zeta, px, py, pz, eta, qx, qy, qz,
+                                      kFactor * dCoefs.get(l) * dNorms.get(l)
+                                      * sqrt2PI / eta
+                                      * Math.exp(-kcExp*ldExp / eta*rcd2));
+
+                        value += rysSum(ws, aPower, bPower, cPower, dPower);
+                    } // end for
+                } // end for
+            } // end for
+        } // end for
+
+        return (a.getNormalization() * b.getNormalization()
+                * c.getNormalization() * d.getNormalization() * value);
+    }
+
+    /**
+     * 2E coulomb interactions between all the components of four shells.
+     * Shells that are not centered are evaluated component wise.
+     */
+    @Override
+    public void coulomb(Shell a, Shell b, Shell c, Shell d,
+                        double [] integrals) {
+        if (!isCenteredShell(a) || !isCenteredShell(b)
+            || !isCenteredShell(c) || !isCenteredShell(d)) {
+            super.coulomb(a, b, c, d, integrals);
+            return;
+        } // end if
+
+        coulomb(new ShellPair(a, b), new ShellPair(c, d), integrals);
+    }
+
+    /**
+     * 2E coulomb interactions between all the components of a shell pair
+     * quartet. The 2D integrals of a primitive quartet are shared by all
+     * the components.
+     */
+    @Override
+    public void coulomb(ShellPair ab, ShellPair cd, double [] integrals) {
+        RysWorkSpace ws = workSpace.get();
+
+        Shell a = ab.getFirstShell(), b = ab.getSecondShell(),
+              c = cd.getFirstShell(), d = cd.getSecondShell();
+
+        ws.setUp(a.getAngularMomentum(), b.getAngularMomentum(),
+                 c.getAngularMomentum(), d.getAngularMomentum(),
+                 ab.getFirstCenter(), ab.getSecondCenter(),
+                 cd.getFirstCenter(), cd.getSecondCenter());
+
+        int na = a.getNumberOfShellPrimitives(),
+            nb = b.getNumberOfShellPrimitives(),
+            nc = c.getNumberOfShellPrimitives(),
+            nd = d.getNumberOfShellPrimitives();
+        int nabcd = na * nb * nc * nd;
+        int [] offsets = ws.componentOffsets(a, b, c, d);
+
+        int i, ij, kl;
+        for(i=0; i<nabcd; i++) integrals[i] = 0.0;
+
+        double [] zeta = ab.getZeta(), px = ab.getPx(), py = ab.getPy(),
+                  pz = ab.getPz(), kab = ab.getPrefactor();
+        double [] eta  = cd.getZeta(), qx = cd.getPx(), qy = cd.getPy(),
+                  qz = cd.getPz(), kcd = cd.getPrefactor();
+        int nab = ab.getNumberOfPrimitivePairs(),
+            ncd = cd.getNumberOfPrimitivePairs();
+
+        int nRoots = ws.nRoots, gSize = ws.gSize, r, o;
+        double [] g = ws.g;
+        double sum;
+
+        for(ij=0; ij<nab; ij++) {
+            for(kl=0; kl<ncd; kl++) {
+                twoDIntegrals(ws, zeta[ij], px[ij], py[ij], pz[ij],
+                              eta[kl], qx[kl], qy[kl], qz[kl],
+                              kab[ij] * kcd[kl]);
+
+                for(i=0, o=0; i<nabcd; i++, o+=3) {
+                    int xo = offsets[o], yo = offsets[o+1] + gSize,
+                        zo = offsets[o+2] + 2*gSize;
+
+                    sum = 0.0;
+                    for(r=0; r<nRoots; r++) {
+                        sum += g[xo] * g[yo] * g[zo];
+                        xo += 3*gSize; yo += 3*gSize; zo += 3*gSize;
+                    } // end for
+
+                    integrals[i] += sum;
+                } // end for
+            } // end for
+        } // end for
+
+        double [] aScale = ws.componentScale(0, a, na),
+                  bScale = ws.componentScale(1, b, nb),
+                  cScale = ws.componentScale(2, c, nc),
+                  dScale = ws.componentScale(3, d, nd);
+
+        int j, k, l, idx = 0;
+        for(i=0; i<na; i++) {
+            for(j=0; j<nb; j++) {
+                for(k=0; k<nc; k++) {
+                    for(l=0; l<nd; l++) {
+                        integrals[idx++] *= aScale[i] * bScale[j]
+                                            * cScale[k] * dScale[l];
+                    } // end for
+                } // end for
+            } // end for
+        } // end for
+    }
+
+    /**
+     * Derivatives of the 2E coulomb interactions between all the components
+     * of a shell pair quartet (ab|cd), with respect to the x, y and z
+     * coordinates of each of the four centers. The derivative of
+     * (a_i b_j | c_k d_l) with respect to coordinate x of center t (0 for a,
+     * 1 for b, 2 for c and 3 for d) is stored in derivatives[12*idx + 3*t + x],
+     * where idx is the index of the integral as in
+     * coulomb(ShellPair, ShellPair, double[]).
+     *
+     * Differentiating a primitive with respect to its center raises and
+     * lowers its angular momentum: d/dAx = 2 alpha_a [a+1x| - ax [a-1x|.
+     * So the 2D integrals are formed with la, lb and lc one higher (but only
+     * as many roots as needed for the total angular momentum + 1), and the
+     * derivatives of the x, y and z 2D integrals are contracted with the
+     * other two, root by root. The derivatives for d follow from
+     * translational invariance.
+     *
+     * @param ab the bra shell pair
+     * @param cd the ket shell pair
+     * @param derivatives the derivatives, should be at least twelve times
+     *        the size of the shell quartet
+     */
+    public void coulombDerivative(ShellPair ab, ShellPair cd,
+                                  double [] derivatives) {
+        RysWorkSpace ws = workSpace.get();
+
+        Shell a = ab.getFirstShell(), b = ab.getSecondShell(),
+              c = cd.getFirstShell(), d = cd.getSecondShell();
+        int la = a.getAngularMomentum(), lb = b.getAngularMomentum(),
+            lc = c.getAngularMomentum(), ld = d.getAngularMomentum();
+
+        ws.setUp(la+1, lb+1, lc+1, ld,
+                 ab.getFirstCenter(), ab.getSecondCenter(),
+                 cd.getFirstCenter(), cd.getSecondCenter());
+        ws.nRoots = (la + lb + lc + ld + 1) / 2 + 1;
+
+        int na = a.getNumberOfShellPrimitives(),
+            nb = b.getNumberOfShellPrimitives(),
+            nc = c.getNumberOfShellPrimitives(),
+            nd = d.getNumberOfShellPrimitives();
+        int nabcd = na * nb * nc * nd;
+        int [] offsets = ws.componentOffsets(a, b, c, d);
+        int [] powers  = ws.componentPowers(a, b, c, d);
+
+        int i, ij, kl;
+        for(i=0; i<12*nabcd; i++) derivatives[i] = 0.0;
+
+        double [] zeta = ab.getZeta(), px = ab.getPx(), py = ab.getPy(),
+                  pz = ab.getPz(), kab = ab.getPrefactor();
+        double [] eta  = cd.getZeta(), qx = cd.getPx(), qy = cd.getPy(),
+                  qz = cd.getPz(), kcd = cd.getPrefactor();
+        double [] aExps = ab.getFirstExponents(),
+                  bExps = ab.getSecondExponents(),
+                  cExps = cd.getFirstExponents();
+        int nab = ab.getNumberOfPrimitivePairs(),
+            ncd = cd.getNumberOfPrimitivePairs();
+
+        int nRoots = ws.nRoots, gSize = ws.gSize;
+        double [] g = ws.g;
+
+        // strides in the G table for raising ax, bx and cx by one
+        int [] strides = new int[] { (lb+2) * (lc+2) * (ld+1),
+                                     (lc+2) * (ld+1), ld+1 };
+        double [] twoExps = new double[3];
+        double [] dg = new double[9];
+        int r, o, t, x, p, base, go, stride;
+        double gx, gy, gz, v;
+
+        for(ij=0; ij<nab; ij++) {
+            twoExps[0] = 2.0 * aExps[ij];
+            twoExps[1] = 2.0 * bExps[ij];
+
+            for(kl=0; kl<ncd; kl++) {
+                twoExps[2] = 2.0 * cExps[kl];
+
+                twoDIntegrals(ws, zeta[ij], px[ij], py[ij], pz[ij],
+                              eta[kl], qx[kl], qy[kl], qz[kl],
+                              kab[ij] * kcd[kl]);
+
+                for(i=0, o=0; i<nabcd; i++, o+=3) {
+                    base = 12 * i;
+
+                    for(r=0; r<nRoots; r++) {
+                        go = r * 3 * gSize;
+                        gx = g[go + offsets[o]];
+                        gy = g[go + gSize + offsets[o+1]];
+                        gz = g[go + 2*gSize + offsets[o+2]];
+
+                        // derivative 2D integrals, dg[3*t + x] for
+                        // center t and direction x
+                        for(t=0; t<3; t++) {
+                            stride = strides[t];
+
+                            for(x=0; x<3; x++) {
+                                go = (r*3 + x) * gSize + offsets[o+x];
+                                p  = powers[9*i + 3*t + x];
+
+                                v = twoExps[t] * g[go + stride];
+                                if (p > 0) v -= p * g[go - stride];
+
+                                dg[3*t + x] = v;
+                            } // end for
+                        } // end for
+
+                        for(t=0; t<3; t++) {
+                            derivatives[base + 3*t]     += dg[3*t] * gy * gz;
+                            derivatives[base + 3*t + 1] += gx * dg[3*t+1] * gz;
+                            derivatives[base + 3*t + 2] += gx * gy * dg[3*t+2];
+                        } // end for
+                    } // end for
+                } // end for
+            } // end for
+        } // end for
+
+        double [] aScale = ws.componentScale(0, a, na),
+                  bScale = ws.componentScale(1, b, nb),
+                  cScale = ws.componentScale(2, c, nc),
+                  dScale = ws.componentScale(3, d, nd);
+
+        int j, k, l, idx = 0;
+        double scale;
+        for(i=0; i<na; i++) {
+            for(j=0; j<nb; j++) {
+                for(k=0; k<nc; k++) {
+                    for(l=0; l<nd; l++, idx+=12) {
+                        scale = aScale[i] * bScale[j] * cScale[k] * dScale[l];
+
+                        for(x=0; x<3; x++) {
+                            derivatives[idx + x]     *= scale;
+                            derivatives[idx + 3 + x] *= scale;
+                            derivatives[idx + 6 + x] *= scale;
+                            derivatives[idx + 9 + x] = -(derivatives[idx + x]
+                                                   + derivatives[idx + 3 + x]
+                                                   + derivatives[idx + 6 + x]);
+                        } // end for
+                    } // end for
+                } // end for
+            } // end for
+        } // end for
     }
 
     /**
@@ -76,12 +362,351 @@ public class RysTwoElectronTerm extends TwoElectronTerm {
                     Point3D b, double bNorm, Power bPower, double bAlpha,
                     Point3D c, double cNorm, Power cPower, double cAlpha,
                     Point3D d, double dNorm, Power dPower, double dAlpha) {
-        throw new UnsupportedOperationException("Not supported yet.");
+        RysWorkSpace ws = workSpace.get();
+
+        ws.setUp(aPower.getTotalAngularMomentum(),
+                 bPower.getTotalAngularMomentum(),
+                 cPower.getTotalAngularMomentum(),
+                 dPower.getTotalAngularMomentum(), a, b, c, d);
+
+        double zeta = aAlpha + bAlpha;
+        double eta  = cAlpha + dAlpha;
+
+        double kab = sqrt2PI / zeta * Math.exp(-aAlpha*bAlpha / zeta
+                                               * a.distanceSquaredFrom(b));
+        double kcd = sqrt2PI / eta * Math.exp(-cAlpha*dAlpha / eta
+                                              * c.distanceSquaredFrom(d));
+
+        twoDIntegrals(ws, zeta, (aAlpha*a.getX() + bAlpha*b.getX()) / zeta,
+                                (aAlpha*a.getY() + bAlpha*b.getY()) / zeta,
+                                (aAlpha*a.getZ() + bAlpha*b.getZ()) / zeta,
+                      eta,  (cAlpha*c.getX() + dAlpha*d.getX()) / eta,
+                            (cAlpha*c.getY() + dAlpha*d.getY()) / eta,
+                            (cAlpha*c.getZ() + dAlpha*d.getZ()) / eta,
+                      aNorm*bNorm*cNorm*dNorm*kab*kcd);
+
+        return rysSum(ws, aPower, bPower, cPower, dPower);
+    }
+
+    private static final double sqrt2PI
+                        = Math.sqrt(2.0) * Math.pow(Math.PI, 1.25);
+
+    /**
+     * Form the 2D integrals for one primitive quartet, for all the roots,
+     * and transfer them to the b and d centers. The weights (including the
+     * prefactor) are folded into the x integrals.
+     *
+     * @param prefactor product of contraction coefficients, primitive
+     *        normalizations and the K_ab, K_cd factors
+     */
+    private void twoDIntegrals(RysWorkSpace ws,
+                               double zeta, double px, double py, double pz,
+                               double eta, double qx, double qy, double qz,
+                               double prefactor) {
+        double zetaPlusEta = zeta + eta;
+        double zetaByZetaPlusEta = zeta / zetaPlusEta;
+        double etaByZetaPlusEta  = eta / zetaPlusEta;
+
+        double [] a = ws.a, c = ws.c, p = ws.p, q = ws.q;
+        double [] pa = ws.pa, wp = ws.wp, qc = ws.qc, wq = ws.wq;
+
+        p[0] = px; p[1] = py; p[2] = pz;
+        q[0] = qx; q[1] = qy; q[2] = qz;
+
+        double rpq2 = 0.0, w;
+        for(int x=0; x<3; x++) {
+            w = zetaByZetaPlusEta * p[x] + etaByZetaPlusEta * q[x];
+
+            pa[x] = p[x] - a[x];
+            wp[x] = w - p[x];
+            qc[x] = q[x] - c[x];
+            wq[x] = w - q[x];
+
+            rpq2 += (p[x] - q[x]) * (p[x] - q[x]);
+        } // end for
+
+        int nRoots = ws.nRoots;
+        double [] roots = ws.roots, weights = ws.weights;
+
+        RysQuadrature.roots(nRoots, zeta*eta / zetaPlusEta*rpq2,
+                            roots, weights);
+
+        double factor = prefactor / Math.sqrt(zetaPlusEta);
+
+        int laTot = ws.laTot, lcTot = ws.lcTot, nf = lcTot + 1;
+        int la = ws.la, lb = ws.lb, lc = ws.lc, ld = ws.ld;
+        int gSize = ws.gSize;
+        double [] i2d = ws.i2d, g = ws.g;
+        double [][] abPowers = ws.abPowers, cdPowers = ws.cdPowers;
+        double u, b00, b10, b01, c00, d00, v, fb, gb;
+        int r, x, e, f, gBase, ax, bx, cx, dx, k, l, idx;
+
+        for(r=0; r<nRoots; r++) {
+            u   = roots[r];
+            b00 = 0.5 * u / zetaPlusEta;
+            b10 = 0.5 * (1.0 - etaByZetaPlusEta * u) / zeta;
+            b01 = 0.5 * (1.0 - zetaByZetaPlusEta * u) / eta;
+
+            for(x=0; x<3; x++) {
+                c00 = pa[x] + u * wp[x];
+                d00 = qc[x] + u * wq[x];
+
+                // I(e, 0)
+                i2d[0] = (x == 0) ? factor * weights[r] : 1.0;
+                if (laTot > 0) i2d[nf] = c00 * i2d[0];
+                for(e=1; e<laTot; e++) {
+                    i2d[(e+1)*nf] = c00 * i2d[e*nf] + e * b10 * i2d[(e-1)*nf];
+                } // end for
+
+                // I(e, f)
+                for(f=0; f<lcTot; f++) {
+                    i2d[f+1] = d00 * i2d[f]
+                               + ((f > 0) ? f * b01 * i2d[f-1] : 0.0);
+
+                    for(e=1; e<=laTot; e++) {
+                        v = d00 * i2d[e*nf+f] + e * b00 * i2d[(e-1)*nf+f];
+                        if (f > 0) v += f * b01 * i2d[e*nf+f-1];
+
+                        i2d[e*nf+f+1] = v;
+                    } // end for
+                } // end for
+
+                // HRR, to get G(ax, bx, cx, dx)
+                gBase = (r*3 + x) * gSize;
+                idx   = gBase;
+                for(ax=0; ax<=la; ax++) {
+                  for(bx=0; bx<=lb; bx++) {
+                    for(cx=0; cx<=lc; cx++) {
+                      for(dx=0; dx<=ld; dx++) {
+                        v = 0.0;
+                        for(k=0; k<=bx; k++) {
+                          fb = BINOMIAL[bx][k] * abPowers[x][bx-k];
+                          gb = 0.0;
+                          for(l=0; l<=dx; l++) {
+                            gb += BINOMIAL[dx][l] * cdPowers[x][dx-l]
+                                  * i2d[(ax+k)*nf + cx+l];
+                          } // end for
+                          v += fb * gb;
+                        } // end for
+
+                        g[idx++] = v;
+                      } // end for
+                    } // end for
+                  } // end for
+                } // end for
+            } // end for
+        } // end for
+    }
+
+    /**
+     * Sum over the roots of the product of x, y and z 2D integrals for a
+     * given component quartet
+     */
+    private double rysSum(RysWorkSpace ws, Power aPower, Power bPower,
+                          Power cPower, Power dPower) {
+        int gSize = ws.gSize;
+        int xo = ws.gIndex(aPower.getL(), bPower.getL(),
+                           cPower.getL(), dPower.getL());
+        int yo = ws.gIndex(aPower.getM(), bPower.getM(),
+                           cPower.getM(), dPower.getM()) + gSize;
+        int zo = ws.gIndex(aPower.getN(), bPower.getN(),
+                           cPower.getN(), dPower.getN()) + 2*gSize;
+        double [] g = ws.g;
+        double sum = 0.0;
+
+        for(int r=0; r<ws.nRoots; r++) {
+            sum += g[xo] * g[yo] * g[zo];
+            xo += 3*gSize; yo += 3*gSize; zo += 3*gSize;
+        } // end for
+
+        return sum;
+    }
+
+    /** binomial coefficients */
+    private static final double [][] BINOMIAL;
+
+    /** maximum angular momentum of a single function */
+    private static final int MAX_ANGULAR_MOMENTUM = 12;
+
+    static {
+        int n = 2*MAX_ANGULAR_MOMENTUM + 1;
+
+        BINOMIAL = new double[n][n];
+        for(int l=0; l<n; l++) {
+            BINOMIAL[l][0] = BINOMIAL[l][l] = 1.0;
+            for(int m=1; m<l; m++) {
+                BINOMIAL[l][m] = BINOMIAL[l-1][m-1] + BINOMIAL[l-1][m];
+            } // end for
+        } // end for
+    }
+
+    /** the per thread work space */
+    private static final ThreadLocal<RysWorkSpace> workSpace
+                                         = new ThreadLocal<RysWorkSpace>() {
+        @Override
+        protected RysWorkSpace initialValue() {
+            return new RysWorkSpace();
+        }
+    };
+
+    /**
+     * Scratch space used during evaluation of a (shell) quartet. The
+     * buffers only grow, and are sized for the largest angular momentum
+     * encountered by the owning thread.
+     */
+    private static class RysWorkSpace {
+        double [] a = new double[3], b = new double[3],
+                  c = new double[3], d = new double[3];
+        double [] p = new double[3], q = new double[3];
+        double [] pa = new double[3], wp = new double[3],
+                  qc = new double[3], wq = new double[3];
+
+        double [][] abPowers = new double[3][MAX_ANGULAR_MOMENTUM+1];
+        double [][] cdPowers = new double[3][MAX_ANGULAR_MOMENTUM+1];
+
+        double [] roots   = new double[RysQuadrature.MAX_ROOTS];
+        double [] weights = new double[RysQuadrature.MAX_ROOTS];
+
+        double [] i2d = new double[0], g = new double[0];
+        double [][] scale = new double[4][0];
+        int [] offsets = new int[0], powers = new int[0];
+
+        int la, lb, lc, ld, laTot, lcTot, nRoots, gSize;
+
+        /**
+         * Set up for a new quartet with the given angular momenta and
+         * centers.
+         */
+        void setUp(int la, int lb, int lc, int ld,
+                   Point3D ap, Point3D bp, Point3D cp, Point3D dp) {
+            if (la > MAX_ANGULAR_MOMENTUM || lb > MAX_ANGULAR_MOMENTUM
+                || lc > MAX_ANGULAR_MOMENTUM || ld > MAX_ANGULAR_MOMENTUM)
+                throw new UnsupportedOperationException("Angular momentum"
+                          + " too high for Rys integrals: " + la + ", " + lb
+                          + ", " + lc + ", " + ld);
+
+            this.la = la; this.lb = lb; this.lc = lc; this.ld = ld;
+            laTot  = la + lb;
+            lcTot  = lc + ld;
+            nRoots = (laTot + lcTot) / 2 + 1;
+            gSize  = (la+1) * (lb+1) * (lc+1) * (ld+1);
+
+            int i2dSize = (laTot + 1) * (lcTot + 1);
+            if (i2d.length < i2dSize) i2d = new double[i2dSize];
+
+            int gTotal = 3 * gSize * nRoots;
+            if (g.length < gTotal) g = new double[gTotal];
+
+            a[0] = ap.getX(); a[1] = ap.getY(); a[2] = ap.getZ();
+            b[0] = bp.getX(); b[1] = bp.getY(); b[2] = bp.getZ();
+            c[0] = cp.getX(); c[1] = cp.getY(); c[2] = cp.getZ();
+            d[0] = dp.getX(); d[1] = dp.getY(); d[2] = dp.getZ();
+
+            for(int x=0; x<3; x++) {
+                abPowers[x][0] = cdPowers[x][0] = 1.0;
+                for(int k=1; k<=lb; k++)
+                    abPowers[x][k] = abPowers[x][k-1] * (a[x] - b[x]);
+                for(int k=1; k<=ld; k++)
+                    cdPowers[x][k] = cdPowers[x][k-1] * (c[x] - d[x]);
+            } // end for
+        }
+
+        /** index into the G table of the first root, for the x direction */
+        int gIndex(int ax, int bx, int cx, int dx) {
+            return (((ax * (lb+1) + bx) * (lc+1) + cx) * (ld+1) + dx);
+        }
+
+        /**
+         * Offsets into the G table for the x, y and z integrals of each
+         * component quartet
+         */
+        int [] componentOffsets(Shell sa, Shell sb, Shell sc, Shell sd) {
+            int na = sa.getNumberOfShellPrimitives(),
+                nb = sb.getNumberOfShellPrimitives(),
+                nc = sc.getNumberOfShellPrimitives(),
+                nd = sd.getNumberOfShellPrimitives();
+            int size = 3 * na * nb * nc * nd;
+
+            if (offsets.length < size) offsets = new int[size];
+
+            int i, j, k, l, o = 0;
+            Power pa, pb, pc, pd;
+            for(i=0; i<na; i++) {
+                pa = sa.getShellPrimitive(i).getPowers();
+                for(j=0; j<nb; j++) {
+                    pb = sb.getShellPrimitive(j).getPowers();
+                    for(k=0; k<nc; k++) {
+                        pc = sc.getShellPrimitive(k).getPowers();
+                        for(l=0; l<nd; l++) {
+                            pd = sd.getShellPrimitive(l).getPowers();
+
+                            offsets[o++] = gIndex(pa.getL(), pb.getL(),
+                                                  pc.getL(), pd.getL());
+                            offsets[o++] = gIndex(pa.getM(), pb.getM(),
+                                                  pc.getM(), pd.getM());
+                            offsets[o++] = gIndex(pa.getN(), pb.getN(),
+                                                  pc.getN(), pd.getN());
+                        } // end for
+                    } // end for
+                } // end for
+            } // end for
+
+            return offsets;
+        }
+
+        /**
+         * The x, y and z powers of the a, b and c functions of each
+         * component quartet (the powers of d are not needed for
+         * derivatives), in the same order as componentOffsets()
+         */
+        int [] componentPowers(Shell sa, Shell sb, Shell sc, Shell sd) {
+            int na = sa.getNumberOfShellPrimitives(),
+                nb = sb.getNumberOfShellPrimitives(),
+                nc = sc.getNumberOfShellPrimitives(),
+                nd = sd.getNumberOfShellPrimitives();
+            int size = 9 * na * nb * nc * nd;
+
+            if (powers.length < size) powers = new int[size];
+
+            int i, j, k, l, o = 0;
+            Power pa, pb, pc;
+            for(i=0; i<na; i++) {
+                pa = sa.getShellPrimitive(i).getPowers();
+                for(j=0; j<nb; j++) {
+                    pb = sb.getShellPrimitive(j).getPowers();
+                    for(k=0; k<nc; k++) {
+                        pc = sc.getShellPrimitive(k).getPowers();
+                        for(l=0; l<nd; l++) {
+                            powers[o++] = pa.getL();
+                            powers[o++] = pa.getM();
+                            powers[o++] = pa.getN();
+                            powers[o++] = pb.getL();
+                            powers[o++] = pb.getM();
+                            powers[o++] = pb.getN();
+                            powers[o++] = pc.getL();
+                            powers[o++] = pc.getM();
+                            powers[o++] = pc.getN();
+                        } // end for
+                    } // end for
+                } // end for
+            } // end for
+
+            return powers;
+        }
+
+        /** normalization scale factors of the components of a shell */
+        double [] componentScale(int which, Shell shell, int n) {
+            if (scale[which].length < n) scale[which] = new double[n];
+
+            getComponentScale(shell, scale[which]);
+
+            return scale[which];
+        }
     }
 
     @Override
-    public double coulomb(ContractedGaussian a, ContractedGaussian b, 
-                          ContractedGaussian c, ContractedGaussian d, 
+    public double coulomb(ContractedGaussian a, ContractedGaussian b,
+                          ContractedGaussian c, ContractedGaussian d,
                           Density density, Matrix jMat, Matrix kMat) {
         throw new UnsupportedOperationException("Not supported yet.");
     }
@@ -0,0 +1,226 @@
+/*
+ * ShellPair.java
+ *
+ * Created on 18/10/2026
+ */
+
+package org.meta.math.qm.integral;
+
+import java.util.ArrayList;
+import org.meta.math.geom.Point3D;
+import org.meta.math.qm.basis.ContractedGaussian;
+import org.meta.math.qm.basis.Shell;
+
+/**
+ * A pair of centered shells (a|b) along with the primitive pair data that
+ * is shared by all cartesian components of the pair: the exponent sums
+ * zeta = alpha_a + alpha_b, the Gaussian product centers P and the
+ * prefactors c_a N_a c_b N_b sqrt(2) pi^(5/4) / zeta exp(-alpha_a alpha_b
+ * / zeta |AB|^2). The individual exponents are kept for derivative
+ * integrals. The contraction coefficients and primitive normalizations
+ * are those of the first component of each shell.
+ *
+ * Shell pairs are computed once per basis and then reused for every shell
+ * quartet in which they appear.
+ *
+ * @author  V.Ganesh
+ * @version 2.0 (Part of MeTA v2.0)
+ */
+public class ShellPair {
+
+    private Shell firstShell, secondShell;
+
+    private Point3D firstCenter, secondCenter;
+
+    private int noOfPrimitivePairs;
+
+    private double [] zeta, px, py, pz, prefactor;
+
+    private double [] firstExponents, secondExponents;
+
+    private static final double sqrt2PI
+                        = Math.sqrt(2.0) * Math.pow(Math.PI, 1.25);
+
+    /**
+     * Creates a new instance of ShellPair
+     *
+     * @param firstShell the first (a) centered shell
+     * @param secondShell the second (b) centered shell
+     */
+    public ShellPair(Shell firstShell, Shell secondShell) {
+        this.firstShell  = firstShell;
+        this.secondShell = secondShell;
+
+        ContractedGaussian a = firstShell.getShellPrimitive(0);
+        ContractedGaussian b = secondShell.getShellPrimitive(0);
+
+        firstCenter  = a.getOrigin();
+        secondCenter = b.getOrigin();
+
+        ArrayList<Double> aExps  = a.getExponents(),
+                          aCoefs = a.getCoefficients(),
+                          aNorms = a.getPrimNorms();
+        ArrayList<Double> bExps  = b.getExponents(),
+                          bCoefs = b.getCoefficients(),
+                          bNorms = b.getPrimNorms();
+
+        int asz = aExps.size(), bsz = bExps.size();
+
+        noOfPrimitivePairs = asz * bsz;
+        zeta      = new double[noOfPrimitivePairs];
+        px        = new double[noOfPrimitivePairs];
+        py        = new double[noOfPrimitivePairs];
+        pz        = new double[noOfPrimitivePairs];
+        prefactor = new double[noOfPrimitivePairs];
+
+        firstExponents  = new double[noOfPrimitivePairs];
+        secondExponents = new double[noOfPrimitivePairs];
+
+        double rab2 = firstCenter.distanceSquaredFrom(secondCenter);
+        double iaExp, jbExp, z;
+        int i, j, ij = 0;
+
+        for(i=0; i<asz; i++) {
+            iaExp = aExps.get(i);
+
+            for(j=0; j<bsz; j++) {
+                jbExp = bExps.get(j);
+                z     = iaExp + jbExp;
+
+                zeta[ij] = z;
+                firstExponents[ij]  = iaExp;
+                secondExponents[ij] = jbExp;
+                px[ij]   = (iaExp*firstCenter.getX()
+                            + jbExp*secondCenter.getX()) / z;
+                py[ij]   = (iaExp*firstCenter.getY()
+                            + jbExp*secondCenter.getY()) / z;
+                pz[ij]   = (iaExp*firstCenter.getZ()
+                            + jbExp*secondCenter.getZ()) / z;
+
+                prefactor[ij] = aCoefs.get(i) * aNorms.get(i)
+                                * bCoefs.get(j) * bNorms.get(j)
+                                * sqrt2PI / z * Math.exp(-iaExp*jbExp/z*rab2);
+                ij++;
+            } // end for
+        } // end for
+    }
+
+    /**
+     * Get the value of firstShell
+     *
+     * @return the value of firstShell
+     */
+    public Shell getFirstShell() {
+        return firstShell;
+    }
+
+    /**
+     * Get the value of secondShell
+     *
+     * @return the value of secondShell
+     */
+    public Shell getSecondShell() {
+        return secondShell;
+    }
+
+    /**
+     * Get the value of firstCenter
+     *
+     * @return the value of firstCenter
+     */
+    public Point3D getFirstCenter() {
+        return firstCenter;
+    }
+
+    /**
+     * Get the value of secondCenter
+     *
+     * @return the value of secondCenter
+     */
+    public Point3D getSecondCenter() {
+        return secondCenter;
+    }
+
+    /**
+     * Get the number of primitive pairs
+     *
+     * @return the number of primitive pairs
+     */
+    public int getNumberOfPrimitivePairs() {
+        return noOfPrimitivePairs;
+    }
+
+    /**
+     * Get the exponent sums of the primitive pairs
+     *
+     * @return the exponent sums, zeta
+     */
+    public double [] getZeta() {
+        return zeta;
+    }
+
+    /**
+     * Get the exponents of the first (a) primitive of the primitive pairs
+     *
+     * @return the exponents alpha_a
+     */
+    public double [] getFirstExponents() {
+        return firstExponents;
+    }
+
+    /**
+     * Get the exponents of the second (b) primitive of the primitive pairs
+     *
+     * @return the exponents alpha_b
+     */
+    public double [] getSecondExponents() {
+        return secondExponents;
+    }
+
+    /**
+     * Get the x coordinates of the Gaussian product centers
+     *
+     * @return x coordinates of P
+     */
+    public double [] getPx() {
+        return px;
+    }
+
+    /**
+     * Get the y coordinates of the Gaussian product centers
+     *
+     * @return y coordinates of P
+     */
+    public double [] getPy() {
+        return py;
+    }
+
+    /**
+     * Get the z coordinates of the Gaussian product centers
+     *
+     * @return z coordinates of P
+     */
+    public double [] getPz() {
+        return pz;
+    }
+
+    /**
+     * Get the primitive pair prefactors, including the contraction
+     * coefficients and primitive normalizations of the first components
+     *
+     * @return the primitive pair prefactors
+     */
+    public double [] getPrefactor() {
+        return prefactor;
+    }
+
+    /**
+     * Get the number of cartesian component pairs in this shell pair
+     *
+     * @return the number of component pairs
+     */
+    public int getNumberOfComponentPairs() {
+        return firstShell.getNumberOfShellPrimitives()
+               * secondShell.getNumberOfShellPrimitives();
+    }
+} // end of class ShellPair
@@ -0,0 +1,188 @@
+/*
+ * TabulatedFGammaTerm.java
+ *
+ * Created on 18/10/2026
+ */
+
+package org.meta.math.qm.integral;
+
+/**
+ * Boys function evaluated from a precomputed table. <br>
+ *
+ * F_m(x) is tabulated on a uniform grid for 0 <= x < MAX_TABULATED_X, and
+ * evaluated between grid points using a Taylor expansion about the
+ * nearest grid point, making use of F_m'(x) = -F_(m+1)(x). Multiple orders
+ * for the same argument are obtained by downward recursion from the
+ * highest one. For x >= MAX_TABULATED_X the asymptotic form of F_0(x)
+ * followed by upward recursion is used.
+ *
+ * The table itself is built using the (always convergent) series
+ * representation of F_m(x), and agrees with it to about 1e-14 relative
+ * accuracy over the whole range.
+ *
+ * @author  V.Ganesh
+ * @version 2.0 (Part of MeTA v2.0)
+ */
+public class TabulatedFGammaTerm extends FGammaTerm {
+
+    /** the highest order for which the table is used */
+    public static final int MAX_TABULATED_M = 32;
+
+    /** the argument beyond which the asymptotic form is used */
+    public static final double MAX_TABULATED_X = 40.0;
+
+    private static final double GRID_SPACING = 0.05;
+    private static final double INVERSE_GRID_SPACING = 1.0 / GRID_SPACING;
+    private static final int TAYLOR_ORDER = 6;
+
+    private static final double SQRT_PI = Math.sqrt(Math.PI);
+
+    /** the table, [gridPoint][m] */
+    private double [][] table;
+
+    /** 1/k! for the Taylor expansion */
+    private double [] inverseFactorials;
+
+    /** Creates a new instance of TabulatedFGammaTerm */
+    public TabulatedFGammaTerm() {
+        int noOfGridPoints = (int) Math.round(MAX_TABULATED_X
+                                              * INVERSE_GRID_SPACING) + 1;
+        int noOfOrders     = MAX_TABULATED_M + TAYLOR_ORDER + 1;
+
+        table = new double[noOfGridPoints][noOfOrders];
+
+        for(int i=0; i<noOfGridPoints; i++) {
+            seriesFGamma(noOfOrders-1, i*GRID_SPACING, table[i]);
+        } // end for
+
+        inverseFactorials = new double[TAYLOR_ORDER + 1];
+        inverseFactorials[0] = 1.0;
+        for(int k=1; k<=TAYLOR_ORDER; k++) {
+            inverseFactorials[k] = inverseFactorials[k-1] / k;
+        } // end for
+    }
+
+    /**
+     * The Boys function F_m(x)
+     *
+     * @param m the order of the Boys function
+     * @param x the argument
+     * @return value of F_m(x)
+     */
+    @Override
+    public double fGamma(int m, double x) {
+        x = Math.abs(x);
+
+        if (m > MAX_TABULATED_M) {
+            double [] fm = new double[m+1];
+
+            seriesFGamma(m, x, fm);
+            return fm[m];
+        } // end if
+
+        if (x >= MAX_TABULATED_X) {
+            double f = 0.5 * SQRT_PI / Math.sqrt(x);
+
+            if (m == 0) return f;
+
+            double expX = Math.exp(-x);
+            double twoXInv = 0.5 / x;
+
+            for(int i=0; i<m; i++) {
+                f = ((2*i+1) * f - expX) * twoXInv;
+            } // end for
+
+            return f;
+        } // end if
+
+        return taylorFGamma(m, x);
+    }
+
+    /**
+     * Evaluate all the Boys functions F_0(x) ... F_maxM(x) for the same
+     * argument, using a single table lookup followed by downward recursion.
+     *
+     * @param maxM the maximum order required
+     * @param x the argument
+     * @param fm the array (of size at least maxM+1) into which the values
+     *        are to be stored
+     */
+    @Override
+    public void fGamma(int maxM, double x, double [] fm) {
+        x = Math.abs(x);
+
+        if (maxM > MAX_TABULATED_M) {
+            seriesFGamma(maxM, x, fm);
+            return;
+        } // end if
+
+        double expX = Math.exp(-x);
+
+        if (x >= MAX_TABULATED_X) {
+            double twoXInv = 0.5 / x;
+
+            fm[0] = 0.5 * SQRT_PI / Math.sqrt(x);
+            for(int m=0; m<maxM; m++) {
+                fm[m+1] = ((2*m+1) * fm[m] - expX) * twoXInv;
+            } // end for
+
+            return;
+        } // end if
+
+        double twoX = 2.0 * x;
+
+        fm[maxM] = taylorFGamma(maxM, x);
+        for(int m=maxM-1; m>=0; m--) {
+            fm[m] = (twoX * fm[m+1] + expX) / (2*m+1);
+        } // end for
+    }
+
+    /** Taylor expansion about the nearest grid point, 0 <= x < MAX_X */
+    private double taylorFGamma(int m, double x) {
+        int gridPoint = (int) (x * INVERSE_GRID_SPACING + 0.5);
+        double dx = gridPoint * GRID_SPACING - x;
+        double [] row = table[gridPoint];
+
+        double f = row[m + TAYLOR_ORDER] * inverseFactorials[TAYLOR_ORDER];
+        for(int k=TAYLOR_ORDER-1; k>=0; k--) {
+            f = f * dx + row[m + k] * inverseFactorials[k];
+        } // end for
+
+        return f;
+    }
+
+    /**
+     * Reference evaluation of F_0(x) ... F_maxM(x) using the series
+     * F_m(x) = exp(-x) sum_k (2x)^k / ((2m+1)(2m+3)...(2m+2k+1)),
+     * followed by downward recursion. This converges for all x, and as all
+     * the terms are positive there is no loss of precision, but it is slow
+     * for large x.
+     *
+     * @param maxM the maximum order required
+     * @param x the argument (x >= 0)
+     * @param fm the array (of size at least maxM+1) into which the values
+     *        are to be stored
+     */
+    public static void seriesFGamma(int maxM, double x, double [] fm) {
+        double twoX = 2.0 * x;
+        double term = 1.0 / (2*maxM + 1);
+        double sum  = term;
+
+        for(int k=1; k<MAX_SERIES_ITERATION; k++) {
+            term *= twoX / (2*maxM + 2*k + 1);
+            sum  += term;
+
+            if (term < sum * SERIES_EPS) break;
+        } // end for
+
+        double expX = Math.exp(-x);
+
+        fm[maxM] = expX * sum;
+        for(int m=maxM-1; m>=0; m--) {
+            fm[m] = (twoX * fm[m+1] + expX) / (2*m+1);
+        } // end for
+    }
+
+    private static final double SERIES_EPS = 1.0e-17;
+    private static final int MAX_SERIES_ITERATION = 1000;
+}
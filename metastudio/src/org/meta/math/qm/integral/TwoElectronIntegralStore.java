@@ -0,0 +1,225 @@
+/*
+ * TwoElectronIntegralStore.java
+ *
+ * Created on 18/10/2026
+ */
+
+package org.meta.math.qm.integral;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A file backed store of two electron integrals, used for conventional
+ * SCF when the integrals do not fit in memory.
+ *
+ * Each integral is stored as a 16 byte record: the basis function indices
+ * i, j, k and l packed as 16 bit fields of a long, followed by the value.
+ * Records are appended in blocks (by any number of threads, each using its
+ * own buffer obtained from newBuffer()), and once all are written the file
+ * is mapped as a set of read only segments that can be streamed over
+ * sequentially, and concurrently.
+ *
+ * @author  V.Ganesh
+ * @version 2.0 (Part of MeTA v2.0)
+ */
+public class TwoElectronIntegralStore {
+
+    /** size of a single integral record in bytes */
+    public static final int RECORD_SIZE = 16;
+
+    /** largest number of basis functions that can be labelled */
+    public static final int MAX_BASIS_FUNCTIONS = 0xFFFF;
+
+    /** size of the write buffers, in bytes */
+    private static final int BUFFER_SIZE = RECORD_SIZE * (1 << 16);
+
+    /** size of a mapped segment, in bytes */
+    private static final int SEGMENT_SIZE = RECORD_SIZE * (1 << 21);
+
+    private File storeFile;
+
+    private RandomAccessFile storeRandomAccessFile;
+
+    private FileChannel storeChannel;
+
+    private long noOfIntegrals;
+
+    private MappedByteBuffer [] segments;
+
+    /**
+     * Creates a new instance of TwoElectronIntegralStore, backed by a new
+     * temporary file
+     *
+     * @param directory the directory in which the store file is created,
+     *        null for the default temporary file directory
+     * @throws IOException if the store file can not be created
+     */
+    public TwoElectronIntegralStore(File directory) throws IOException {
+        storeFile = File.createTempFile("meta-2e-", ".ints", directory);
+        storeFile.deleteOnExit();
+
+        storeRandomAccessFile = new RandomAccessFile(storeFile, "rw");
+        storeChannel  = storeRandomAccessFile.getChannel();
+        noOfIntegrals = 0;
+    }
+
+    /**
+     * Pack the basis function indices of an integral into a label
+     *
+     * @return the packed label
+     */
+    public static long packLabel(int i, int j, int k, int l) {
+        return (((long) i) << 48) | (((long) j) << 32)
+               | (((long) k) << 16) | ((long) l);
+    }
+
+    /** @return the index i of a packed label */
+    public static int getI(long label) {
+        return (int) (label >>> 48);
+    }
+
+    /** @return the index j of a packed label */
+    public static int getJ(long label) {
+        return (int) ((label >>> 32) & MAX_BASIS_FUNCTIONS);
+    }
+
+    /** @return the index k of a packed label */
+    public static int getK(long label) {
+        return (int) ((label >>> 16) & MAX_BASIS_FUNCTIONS);
+    }
+
+    /** @return the index l of a packed label */
+    public static int getL(long label) {
+        return (int) (label & MAX_BASIS_FUNCTIONS);
+    }
+
+    /**
+     * Allocate a new buffer, for use by a single writer, into which integral
+     * records can be put and then appended to the store using write()
+     *
+     * @return a new (empty) write buffer
+     */
+    public ByteBuffer newBuffer() {
+        return ByteBuffer.allocateDirect(BUFFER_SIZE)
+                         .order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Put an integral record in a write buffer, appending the buffer to the
+     * store first if it is full.
+     *
+     * @param buffer the write buffer, obtained from newBuffer()
+     * @param i the first index
+     * @param j the second index
+     * @param k the third index
+     * @param l the fourth index
+     * @param value the value of integral (ij|kl)
+     * @throws IOException if the buffer can not be written
+     */
+    public void put(ByteBuffer buffer, int i, int j, int k, int l,
+                    double value) throws IOException {
+        if (buffer.remaining() < RECORD_SIZE) write(buffer);
+
+        buffer.putLong(packLabel(i, j, k, l));
+        buffer.putDouble(value);
+    }
+
+    /**
+     * Append the contents of a write buffer to the store, and clear it
+     *
+     * @param buffer the write buffer, obtained from newBuffer()
+     * @throws IOException if the buffer can not be written
+     */
+    public synchronized void write(ByteBuffer buffer) throws IOException {
+        if (segments != null)
+            throw new IllegalStateException("Integral store is read only");
+
+        buffer.flip();
+        noOfIntegrals += buffer.remaining() / RECORD_SIZE;
+
+        while(buffer.hasRemaining()) storeChannel.write(buffer);
+
+        buffer.clear();
+    }
+
+    /**
+     * Mark the end of writing, and map the store for reading
+     *
+     * @throws IOException if the store can not be mapped
+     */
+    public synchronized void finish() throws IOException {
+        long size = storeChannel.size();
+        int noOfSegments = (int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+
+        segments = new MappedByteBuffer[noOfSegments];
+        for(int i=0; i<noOfSegments; i++) {
+            long position = (long) i * SEGMENT_SIZE;
+
+            segments[i] = storeChannel.map(FileChannel.MapMode.READ_ONLY,
+                              position, Math.min(SEGMENT_SIZE, size-position));
+        } // end for
+    }
+
+    /**
+     * Get the number of mapped segments
+     *
+     * @return the number of segments, available after finish()
+     */
+    public int getNumberOfSegments() {
+        return segments.length;
+    }
+
+    /**
+     * Get a segment of the store for reading. Each call returns an
+     * independent view, so that segments can be read by many threads.
+     *
+     * @param segment the segment index
+     * @return a buffer positioned at the first record of the segment
+     */
+    public ByteBuffer getSegment(int segment) {
+        return segments[segment].duplicate().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Get the number of integrals in the store
+     *
+     * @return the number of integrals
+     */
+    public long getNumberOfIntegrals() {
+        return noOfIntegrals;
+    }
+
+    /**
+     * Get the file backing this store
+     *
+     * @return the store file
+     */
+    public File getStoreFile() {
+        return storeFile;
+    }
+
+    /**
+     * Close the store and remove the backing file. Note that the file may
+     * only go away on exit on systems that do not allow deletion of mapped
+     * files.
+     */
+    public synchronized void dispose() {
+        segments = null;
+
+        try {
+            storeChannel.close();
+            storeRandomAccessFile.close();
+        } catch (IOException ignored) {
+            System.err.println("Unable to close integral store: "
+                               + ignored.toString());
+        } // end of try .. catch block
+
+        storeFile.delete();
+    }
+} // end of class TwoElectronIntegralStore
@@ -5,11 +5,13 @@
 
 package org.meta.math.qm.integral;
 
+import java.util.ArrayList;
 import org.meta.math.Matrix;
 import org.meta.math.geom.Point3D;
 import org.meta.math.qm.Density;
 import org.meta.math.qm.basis.ContractedGaussian;
 import org.meta.math.qm.basis.Power;
+import org.meta.math.qm.basis.Shell;
 
 /**
  * Top level interface for evaluating a 2E-integral term.
@@ -25,6 +27,51 @@ public abstract class TwoElectronTerm implements IntegralsPackage {
     public abstract double coulomb(ContractedGaussian a, ContractedGaussian b,
                                    ContractedGaussian c, ContractedGaussian d);
 
+    /**
+     * 2E coulomb interactions between all the components of four shells.
+     * The integral (a_i b_j | c_k d_l) is stored in
+     * integrals[((i*nb + j)*nc + k)*nd + l], where nb, nc, nd are the number
+     * of components in shells b, c and d respectively.
+     *
+     * The default implementation evaluates each component quartet
+     * separately, packages that can share intermediates across a shell
+     * quartet should override this.
+     */
+    public void coulomb(Shell a, Shell b, Shell c, Shell d,
+                        double [] integrals) {
+        int na = a.getNumberOfShellPrimitives(),
+            nb = b.getNumberOfShellPrimitives(),
+            nc = c.getNumberOfShellPrimitives(),
+            nd = d.getNumberOfShellPrimitives();
+        int i, j, k, l, idx = 0;
+
+        for(i=0; i<na; i++) {
+            for(j=0; j<nb; j++) {
+                for(k=0; k<nc; k++) {
+                    for(l=0; l<nd; l++) {
+                        integrals[idx++] = coulomb(a.getShellPrimitive(i),
+                                                   b.getShellPrimitive(j),
+                                                   c.getShellPrimitive(k),
+                                                   d.getShellPrimitive(l));
+                    } // end for
+                } // end for
+            } // end for
+        } // end for
+    }
+
+    /**
+     * 2E coulomb interactions between all the components of a shell pair
+     * quartet (ab|cd). The layout of the integrals is the same as for
+     * coulomb(Shell, Shell, Shell, Shell, double[]).
+     *
+     * The default implementation ignores the precomputed primitive pair
+     * data, packages that can use it should override this.
+     */
+    public void coulomb(ShellPair ab, ShellPair cd, double [] integrals) {
+        coulomb(ab.getFirstShell(), ab.getSecondShell(),
+                cd.getFirstShell(), cd.getSecondShell(), integrals);
+    }
+
     /** The column repulsion term between four centered Gaussians */
     public abstract double coulombRepulsion(
                     Point3D a, double aNorm, Power aPower, double aAlpha,
@@ -41,4 +88,63 @@ public abstract class TwoElectronTerm implements IntegralsPackage {
                                    Density density, 
                                    Matrix jMat, Matrix kMat);
 
+    /**
+     * Check if all the components of the shell are centered at the same
+     * point and share the same contraction, so that they may be
+     * evaluated together using common primitive data.
+     *
+     * @param shell the shell to be checked
+     * @return true if this is a centered shell
+     */
+    protected static boolean isCenteredShell(Shell shell) {
+        int n = shell.getNumberOfShellPrimitives();
+        if (n == 0) return false;
+
+        ContractedGaussian first = shell.getShellPrimitive(0);
+        Point3D origin = first.getOrigin();
+        ArrayList<Double> exps  = first.getExponents();
+        ArrayList<Double> coefs = first.getCoefficients();
+        int l = first.getTotalAngularMomentum();
+
+        for(int i=1; i<n; i++) {
+            ContractedGaussian cg = shell.getShellPrimitive(i);
+
+            if (cg.getTotalAngularMomentum() != l) return false;
+            if (cg.getExponents() != exps && !cg.getExponents().equals(exps))
+                return false;
+            if (cg.getCoefficients() != coefs
+                && !cg.getCoefficients().equals(coefs))
+                return false;
+            if (!cg.getOrigin().equals(origin)) return false;
+        } // end for
+
+        return true;
+    }
+
+    /**
+     * Scale factors that take the normalization of the first component
+     * of a centered shell to the normalization of each of its components.
+     * The first factor is the contracted normalization of the first
+     * component. Primitive data of a shell (as in ShellPair) carry the
+     * primitive normalizations of the first component, so an integral over
+     * the components is obtained by multiplying with these factors.
+     *
+     * @param shell the centered shell
+     * @param scale the scale factors, should be at least as long as the
+     *        number of components in the shell
+     */
+    protected static void getComponentScale(Shell shell, double [] scale) {
+        int n = shell.getNumberOfShellPrimitives();
+        ContractedGaussian first = shell.getShellPrimitive(0);
+        double firstNorm = first.getNormalization()
+                           * first.getPrimNorms().get(0);
+
+        scale[0] = first.getNormalization();
+        for(int i=1; i<n; i++) {
+            ContractedGaussian cg = shell.getShellPrimitive(i);
+
+            scale[i] = cg.getNormalization() * cg.getPrimNorms().get(0)
+                       / firstNorm * scale[0];
+        } // end for
+    }
 }
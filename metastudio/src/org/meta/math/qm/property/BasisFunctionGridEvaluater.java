@@ -0,0 +1,280 @@
+/*
+ * BasisFunctionGridEvaluater.java
+ *
+ * Created on 18/10/2026
+ */
+
+package org.meta.math.qm.property;
+
+import org.meta.math.geom.Point3D;
+import org.meta.math.qm.basis.PackedBasisFunctions;
+
+/**
+ * Evaluates the amplitudes of the basis functions over a block of points
+ * at a time. Only the shells whose radial extent (the distance beyond
+ * which their amplitude is below a cutoff) reaches the bounding sphere of
+ * the block are evaluated, and the radial part of a shell is shared by
+ * all of its components. <br>
+ * An instance holds the buffers for one block, and should be used by a
+ * single thread only.
+ *
+ * @author  V.Ganesh
+ * @version 2.0 (Part of MeTA v2.0)
+ */
+public class BasisFunctionGridEvaluater {
+
+    /** the default cutoff below which amplitudes are neglected */
+    public static final double DEFAULT_CUTOFF = 1.0e-10;
+
+    /** the largest number of points in a block */
+    private int blockSize;
+
+    private PackedBasisFunctions basis;
+
+    /** the radial extent of each centered shell */
+    private double [] shellExtents;
+
+    /** indices of the basis functions evaluated for the current block */
+    private int [] activeBasisFunctions;
+    private int noOfActiveBasisFunctions;
+
+    /** amplitudes of the active basis functions, [active index][point] */
+    private double [][] amplitudes;
+
+    /** work space: exponentials of the primitives of a shell at a point */
+    private double [] primitiveExponentials;
+
+    /**
+     * Creates a new instance of BasisFunctionGridEvaluater
+     *
+     * @param basis the basis functions to be evaluated
+     * @param blockSize the largest number of points in a block
+     * @param cutoff the amplitude below which a shell is not evaluated
+     */
+    public BasisFunctionGridEvaluater(PackedBasisFunctions basis,
+                                      int blockSize, double cutoff) {
+        this.basis     = basis;
+        this.blockSize = blockSize;
+
+        int nbf = basis.getNumberOfBasisFunctions();
+        int [] offsets = basis.getPrimitiveOffsets();
+        int maxPrimitives = 0;
+
+        for(int i=0; i<nbf; i++) {
+            maxPrimitives = Math.max(maxPrimitives, offsets[i+1]-offsets[i]);
+        } // end for
+
+        activeBasisFunctions  = new int[nbf];
+        amplitudes            = new double[nbf][blockSize];
+        primitiveExponentials = new double[maxPrimitives];
+
+        computeShellExtents(cutoff);
+    }
+
+    /**
+     * Find the extent of each shell, the radius beyond which
+     * sum_p |c_p| r^l exp(-a_p r^2) (an upper bound of the amplitudes of
+     * its components) stays below the cutoff
+     */
+    private void computeShellExtents(double cutoff) {
+        int noOfShells = basis.getNumberOfShells();
+        int [] shellOffsets = basis.getShellOffsets();
+        int [] offsets = basis.getPrimitiveOffsets();
+        int [] powers = basis.getPowers();
+        double [] exponents = basis.getExponents();
+        double [] coefficients = basis.getNormalizedCoefficients();
+
+        shellExtents = new double[noOfShells];
+
+        for(int s=0; s<noOfShells; s++) {
+            int first = shellOffsets[s], last = shellOffsets[s+1];
+            int l = powers[3*first] + powers[3*first+1] + powers[3*first+2];
+            int np = offsets[first+1] - offsets[first];
+            double [] c = new double[np];
+            double [] a = new double[np];
+            double minExponent = Double.MAX_VALUE;
+
+            for(int p=0; p<np; p++) {
+                a[p] = exponents[offsets[first]+p];
+                minExponent = Math.min(minExponent, a[p]);
+
+                for(int k=first; k<last; k++) {
+                    c[p] = Math.max(c[p],
+                                    Math.abs(coefficients[offsets[k]+p]));
+                } // end for
+            } // end for
+
+            // the bound decreases beyond the peak of the most diffuse term
+            double low  = Math.sqrt(l / (2.0 * minExponent));
+            double high = Math.max(low, 1.0);
+
+            if (radialBound(low, l, a, c) < cutoff) {
+                shellExtents[s] = low;
+                continue;
+            } // end if
+
+            while(radialBound(high, l, a, c) >= cutoff) high *= 2.0;
+
+            for(int iter=0; iter<50; iter++) {
+                double mid = 0.5 * (low + high);
+
+                if (radialBound(mid, l, a, c) < cutoff) high = mid;
+                else                                    low  = mid;
+            } // end for
+
+            shellExtents[s] = high;
+        } // end for
+    }
+
+    /** sum_p c_p r^l exp(-a_p r^2) */
+    private static double radialBound(double r, int l, double [] a,
+                                      double [] c) {
+        double sum = 0.0;
+
+        for(int p=0; p<a.length; p++) sum += c[p] * Math.exp(-a[p] * r * r);
+
+        return sum * Math.pow(r, l);
+    }
+
+    /**
+     * Evaluate the amplitudes of the basis functions that reach the block
+     * of points startPoint .. endPoint-1, which should be at most blockSize
+     * points. The amplitudes of point startPoint+i are stored at index i.
+     *
+     * @param points the points, in a.u.
+     * @param startPoint the first point of the block
+     * @param endPoint one past the last point of the block
+     * @return the number of basis functions evaluated
+     */
+    public int evaluate(Point3D [] points, int startPoint, int endPoint) {
+        int np = endPoint - startPoint;
+        int i, k, p, q, s;
+
+        if (np > blockSize)
+            throw new IllegalArgumentException("Block of " + np
+                               + " points is larger than " + blockSize);
+
+        // the bounding sphere of the block
+        double xmin, ymin, zmin, xmax, ymax, zmax;
+        xmin = ymin = zmin = Double.MAX_VALUE;
+        xmax = ymax = zmax = -Double.MAX_VALUE;
+
+        for(i=startPoint; i<endPoint; i++) {
+            Point3D point = points[i];
+
+            xmin = Math.min(xmin, point.getX()); xmax = Math.max(xmax, point.getX());
+            ymin = Math.min(ymin, point.getY()); ymax = Math.max(ymax, point.getY());
+            zmin = Math.min(zmin, point.getZ()); zmax = Math.max(zmax, point.getZ());
+        } // end for
+
+        double cx = 0.5 * (xmin + xmax), cy = 0.5 * (ymin + ymax),
+               cz = 0.5 * (zmin + zmax);
+        double radius = 0.5 * Math.sqrt((xmax-xmin) * (xmax-xmin)
+                                        + (ymax-ymin) * (ymax-ymin)
+                                        + (zmax-zmin) * (zmax-zmin));
+
+        int noOfShells = basis.getNumberOfShells();
+        int [] shellOffsets = basis.getShellOffsets();
+        int [] offsets = basis.getPrimitiveOffsets();
+        int [] powers = basis.getPowers();
+        double [] centers = basis.getCenters();
+        double [] exponents = basis.getExponents();
+        double [] coefficients = basis.getNormalizedCoefficients();
+
+        noOfActiveBasisFunctions = 0;
+
+        for(s=0; s<noOfShells; s++) {
+            int first = shellOffsets[s], last = shellOffsets[s+1];
+            double ax = centers[3*first], ay = centers[3*first+1],
+                   az = centers[3*first+2];
+            double dx = ax - cx, dy = ay - cy, dz = az - cz;
+            double reach = shellExtents[s] + radius;
+
+            if (dx*dx + dy*dy + dz*dz > reach*reach) continue;
+
+            int firstActive = noOfActiveBasisFunctions;
+            int primitiveStart = offsets[first];
+            int noOfPrimitives = offsets[first+1] - primitiveStart;
+
+            for(k=first; k<last; k++) {
+                activeBasisFunctions[noOfActiveBasisFunctions++] = k;
+            } // end for
+
+            for(i=0; i<np; i++) {
+                Point3D point = points[startPoint+i];
+                dx = point.getX() - ax;
+                dy = point.getY() - ay;
+                dz = point.getZ() - az;
+
+                double r2 = dx*dx + dy*dy + dz*dz;
+
+                for(q=0; q<noOfPrimitives; q++) {
+                    primitiveExponentials[q]
+                            = Math.exp(-exponents[primitiveStart+q] * r2);
+                } // end for
+
+                for(k=first, p=firstActive; k<last; k++, p++) {
+                    double radial = 0.0;
+                    int kOffset = offsets[k];
+
+                    for(q=0; q<noOfPrimitives; q++) {
+                        radial += coefficients[kOffset+q]
+                                  * primitiveExponentials[q];
+                    } // end for
+
+                    amplitudes[p][i] = radial * power(dx, powers[3*k])
+                                              * power(dy, powers[3*k+1])
+                                              * power(dz, powers[3*k+2]);
+                } // end for
+            } // end for
+        } // end for
+
+        return noOfActiveBasisFunctions;
+    }
+
+    /** x^n for small non negative n */
+    private static double power(double x, int n) {
+        double value = 1.0;
+
+        for(int i=0; i<n; i++) value *= x;
+
+        return value;
+    }
+
+    /**
+     * Get the indices of the basis functions evaluated for the last block,
+     * the first getNumberOfActiveBasisFunctions() entries are valid
+     *
+     * @return the active basis function indices
+     */
+    public int[] getActiveBasisFunctions() {
+        return activeBasisFunctions;
+    }
+
+    /**
+     * Get the number of basis functions evaluated for the last block
+     *
+     * @return the number of active basis functions
+     */
+    public int getNumberOfActiveBasisFunctions() {
+        return noOfActiveBasisFunctions;
+    }
+
+    /**
+     * Get the amplitudes of the last block, indexed [active index][point]
+     *
+     * @return the amplitudes of the active basis functions
+     */
+    public double[][] getAmplitudes() {
+        return amplitudes;
+    }
+
+    /**
+     * Get the value of blockSize
+     *
+     * @return the value of blockSize
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+} // end of class BasisFunctionGridEvaluater
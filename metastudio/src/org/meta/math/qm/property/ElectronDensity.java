@@ -13,6 +13,7 @@ import org.meta.math.qm.BasisFunctions;
 import org.meta.math.qm.Density;
 import org.meta.math.qm.SCFMethod;
 import org.meta.math.qm.basis.ContractedGaussian;
+import org.meta.math.qm.basis.PackedBasisFunctions;
 
 /**
  * Computes electron density on specified points for a Molecule.
@@ -28,14 +29,16 @@ public class ElectronDensity extends OneElectronProperty {
 
     private double[][] dm;    
 
+    private PackedBasisFunctions packedBasis;
+
+    /** the block evaluaters, one per thread */
+    private ThreadLocal<BlockWorkSpace> workSpace;
+
     /** Creates a new instance of ElectronDensity */
     public ElectronDensity(SCFMethod scfMethod) {
-        super(scfMethod);
-
-        bfs = scfMethod.getOneEI().getBasisFunctions().getBasisFunctions();
-        nbf = bfs.size();
+        this(scfMethod.getOneEI().getBasisFunctions(), scfMethod.getDensity());
 
-        dm = scfMethod.getDensity().getMatrix();        
+        this.scfMethod = scfMethod;
     }
 
     /** Creates a new instance of ElectronDensity */
@@ -44,6 +47,14 @@ public class ElectronDensity extends OneElectronProperty {
         this.nbf = this.bfs.size();
 
         this.dm = den.getMatrix();
+
+        this.packedBasis = bfs.getPackedBasisFunctions();
+        this.workSpace   = new ThreadLocal<BlockWorkSpace>() {
+            @Override
+            protected BlockWorkSpace initialValue() {
+                return new BlockWorkSpace();
+            }
+        };
     }
 
     /**
@@ -76,4 +87,62 @@ public class ElectronDensity extends OneElectronProperty {
         // 2.0 represents double occupancy
         return 2.0 * density;
     }
+
+    /**
+     * Computes the electron density on a block of points, evaluating only
+     * the basis functions that reach the block. The density is
+     * 2 sum_kl D(k, l) phi_k phi_l, the inner sum being done for all the
+     * points of the block at a time, and over the lower triangle of D.
+     *
+     * @param points the points of interest
+     * @param startPoint the first point of the block
+     * @param endPoint one past the last point of the block
+     * @param fValues the array into which the values are to be stored
+     */
+    @Override
+    protected void compute(Point3D [] points, int startPoint, int endPoint,
+                           double [] fValues) {
+        BlockWorkSpace ws = workSpace.get();
+        BasisFunctionGridEvaluater evaluater = ws.evaluater;
+        int np = endPoint - startPoint;
+        int k, l, i;
+        double dkl;
+
+        int nActive = evaluater.evaluate(points, startPoint, endPoint);
+        int [] active = evaluater.getActiveBasisFunctions();
+        double [][] amp = evaluater.getAmplitudes();
+        double [] x = ws.x, density = ws.density, dRow, ampK, ampL;
+
+        for(i=0; i<np; i++) density[i] = 0.0;
+
+        for(k=0; k<nActive; k++) {
+            dRow = dm[active[k]];
+            ampK = amp[k];
+
+            dkl = 0.5 * dRow[active[k]];
+            for(i=0; i<np; i++) x[i] = dkl * ampK[i];
+
+            for(l=0; l<k; l++) {
+                dkl = dRow[active[l]];
+                if (dkl == 0.0) continue;
+
+                ampL = amp[l];
+                for(i=0; i<np; i++) x[i] += dkl * ampL[i];
+            } // end for
+
+            for(i=0; i<np; i++) density[i] += x[i] * ampK[i];
+        } // end for
+
+        // 4.0 = 2.0 for the double occupancy, times 2.0 for the triangle
+        for(i=0; i<np; i++) fValues[startPoint+i] = 4.0 * density[i];
+    }
+
+    /** per thread buffers for compute() over a block of points */
+    private class BlockWorkSpace {
+        BasisFunctionGridEvaluater evaluater
+             = new BasisFunctionGridEvaluater(packedBasis, POINT_BLOCK_SIZE,
+                                     BasisFunctionGridEvaluater.DEFAULT_CUTOFF);
+        double [] x       = new double[POINT_BLOCK_SIZE];
+        double [] density = new double[POINT_BLOCK_SIZE];
+    }
 }
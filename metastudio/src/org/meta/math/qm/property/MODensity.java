@@ -12,6 +12,7 @@ import org.meta.math.qm.BasisFunctions;
 import org.meta.math.qm.MolecularOrbitals;
 import org.meta.math.qm.SCFMethod;
 import org.meta.math.qm.basis.ContractedGaussian;
+import org.meta.math.qm.basis.PackedBasisFunctions;
 import org.meta.molecule.Molecule;
 
 /**
@@ -29,6 +30,11 @@ public class MODensity extends OneElectronProperty {
     
     private ArrayList<ContractedGaussian> bfs;
 
+    private PackedBasisFunctions packedBasis;
+
+    /** the block evaluaters, one per thread */
+    private ThreadLocal<BasisFunctionGridEvaluater> evaluater;
+
     /** Creates a new instance of MODensity */
     public MODensity(SCFMethod scfMethod) {
         super(scfMethod);
@@ -39,6 +45,8 @@ public class MODensity extends OneElectronProperty {
         mos = scfMethod.getMos().getCoefficients();
 
         monumber = scfMethod.getMolecule().getNumberOfElectrons()/2;
+
+        initEvaluater(scfMethod.getOneEI().getBasisFunctions());
     }
 
     /** Creates a new instance of MODensity */
@@ -56,6 +64,8 @@ public class MODensity extends OneElectronProperty {
         this.nbf = this.bfs.size();
         this.mos = mos.getCoefficients();
         this.monumber = molecule.getNumberOfElectrons()/2;
+
+        initEvaluater(bfs);
     }
 
     /** Creates a new instance of MODensity */
@@ -66,6 +76,21 @@ public class MODensity extends OneElectronProperty {
         this.nbf = this.bfs.size();
         this.mos = mos.getCoefficients();
         this.monumber = monumber;
+
+        initEvaluater(bfs);
+    }
+
+    /** set up the per thread block evaluaters */
+    private void initEvaluater(BasisFunctions bfs) {
+        packedBasis = bfs.getPackedBasisFunctions();
+        evaluater   = new ThreadLocal<BasisFunctionGridEvaluater>() {
+            @Override
+            protected BasisFunctionGridEvaluater initialValue() {
+                return new BasisFunctionGridEvaluater(packedBasis,
+                                     POINT_BLOCK_SIZE,
+                                     BasisFunctionGridEvaluater.DEFAULT_CUTOFF);
+            }
+        };
     }
 
     /**
@@ -100,4 +125,44 @@ public class MODensity extends OneElectronProperty {
         
         return moden;
     }
+
+    /**
+     * Computes the MO density on a block of points, evaluating only the
+     * basis functions that reach the block. The MO is accumulated for all
+     * the points of the block at a time.
+     *
+     * @param points the points of interest
+     * @param startPoint the first point of the block
+     * @param endPoint one past the last point of the block
+     * @param fValues the array into which the values are to be stored
+     */
+    @Override
+    protected void compute(Point3D [] points, int startPoint, int endPoint,
+                           double [] fValues) {
+        BasisFunctionGridEvaluater ev = evaluater.get();
+        int np = endPoint - startPoint;
+        int k, i;
+        double ck, mo;
+        double [] ampK;
+
+        int nActive = ev.evaluate(points, startPoint, endPoint);
+        int [] active = ev.getActiveBasisFunctions();
+        double [][] amp = ev.getAmplitudes();
+        double [] coefficients = mos[monumber];
+
+        for(i=0; i<np; i++) fValues[startPoint+i] = 0.0;
+
+        for(k=0; k<nActive; k++) {
+            ck = coefficients[active[k]];
+            if (ck == 0.0) continue;
+
+            ampK = amp[k];
+            for(i=0; i<np; i++) fValues[startPoint+i] += ck * ampK[i];
+        } // end for
+
+        for(i=startPoint; i<endPoint; i++) {
+            mo = fValues[i];
+            fValues[i] = mo * mo;
+        } // end for
+    }
 }
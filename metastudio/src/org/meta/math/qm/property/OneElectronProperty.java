@@ -6,6 +6,7 @@
 
 package org.meta.math.qm.property;
 
+import java.util.concurrent.atomic.AtomicInteger;
 import org.meta.math.geom.Point3D;
 import org.meta.common.Utility;
 import org.meta.math.qm.SCFMethod;
@@ -64,19 +65,28 @@ public abstract class OneElectronProperty {
      */
     public abstract double compute(Point3D point);
 
+    /** the number of points handed out to a thread at a time */
+    protected static final int POINT_BLOCK_SIZE = 128;
+
     /**
      * Computes the one electron property on the specified points and returns its
      * value at the specified points. <br>
      * Note that the unit of Point3D object must be a.u. No attempt is made
-     * to verify this.
+     * to verify this. <br>
+     * The points are handed out to the threads in blocks of (at most)
+     * POINT_BLOCK_SIZE consecutive points, see compute(Point3D[], int, int,
+     * double[]).
      *
      * @param points the points of interest
      * @return the values of this property at each of the point 
      */
     public double [] compute(Point3D [] points) {
         double [] fValues = new double[points.length];
+        int noOfBlocks = (points.length + POINT_BLOCK_SIZE - 1)
+                         / POINT_BLOCK_SIZE;
 
-        SimpleParallelTask spt = new ComputeOverPoints(points, fValues);
+        SimpleParallelTask spt = new ComputeOverPoints(points, fValues,
+                                          new AtomicInteger(noOfBlocks));
         SimpleParallelTaskExecuter spte = new SimpleParallelTaskExecuter();
 
         spte.execute(spt);
@@ -84,24 +94,49 @@ public abstract class OneElectronProperty {
         return fValues;
     }
 
-    /** Parallel task description to compute the property over a set of points */
+    /**
+     * Computes the one electron property on a block of consecutive points,
+     * which are generally close to each other (as for a GridProperty). The
+     * default implementation calls compute(Point3D) for each point,
+     * subclasses may override this to share work among the points.
+     *
+     * @param points the points of interest
+     * @param startPoint the first point of the block
+     * @param endPoint one past the last point of the block
+     * @param fValues the array into which the values are to be stored, at
+     *        the same index as the points
+     */
+    protected void compute(Point3D [] points, int startPoint, int endPoint,
+                           double [] fValues) {
+        for(int i=startPoint; i<endPoint; i++)
+            fValues[i] = compute(points[i]);
+    }
+
+    /**
+     * Parallel task description to compute the property over a set of points,
+     * the blocks of points being taken from nextBlock till none are left
+     */
     private class ComputeOverPoints extends AbstractSimpleParallelTask {
 
         private Point3D [] points;
         private double [] fValues;
+        private AtomicInteger nextBlock;
 
-        public ComputeOverPoints(Point3D [] points, double [] fValues) {
-            this.points  = points;
-            this.fValues = fValues;
+        public ComputeOverPoints(Point3D [] points, double [] fValues,
+                                 AtomicInteger nextBlock) {
+            this.points    = points;
+            this.fValues   = fValues;
+            this.nextBlock = nextBlock;
 
             setTaskName("OneElectron property computation thread for: "
                         + OneElectronProperty.class.toString());
-            setTotalItems(points.length);
+            setTotalItems(nextBlock.get());
         }
 
         @Override
         public SimpleParallelTask init(int startItem, int endItem) {
-            ComputeOverPoints cop = new ComputeOverPoints(points, fValues);
+            ComputeOverPoints cop = new ComputeOverPoints(points, fValues,
+                                                          nextBlock);
 
             cop.startItem = startItem;
             cop.endItem   = endItem;
@@ -111,8 +146,15 @@ public abstract class OneElectronProperty {
 
         @Override
         public void run() {
-            for(int i=startItem; i<endItem; i++)
-                fValues[i] = compute(points[i]);
+            if (startItem >= endItem) return;
+
+            int block, startPoint;
+            while((block = nextBlock.decrementAndGet()) >= 0) {
+                startPoint = block * POINT_BLOCK_SIZE;
+
+                compute(points, startPoint, Math.min(points.length,
+                            startPoint + POINT_BLOCK_SIZE), fValues);
+            } // end while
         }
     }
 
@@ -8,6 +8,7 @@ package org.meta.molecule;
 import java.util.*;
 import org.meta.common.Units;
 import org.meta.common.Utility;
+import org.meta.config.impl.AtomInfo;
 import org.meta.math.geom.Point3D;
 
 /**
@@ -20,6 +21,9 @@ public class Atom implements Cloneable {
     /** Holds value of property symbol. */
     private String symbol;
 
+    /** the element code of the symbol, see AtomInfo.getElementCode() */
+    private int elementCode;
+
     /** Holds value of property charge. */
     private double charge;
 
@@ -33,6 +37,15 @@ public class Atom implements Cloneable {
      */
     private Hashtable<Integer, BondType> connectedList;
 
+    /**
+     * The bond graph of the molecule, if the connections of this atom are
+     * held there instead of in connectedList (which is then null).
+     */
+    private volatile BondGraph bondGraph;
+
+    /** the index of this atom in bondGraph */
+    private int bondGraphIndex;
+
     /**
      * Holds information on the ZMatrix representation of this atom in the
      * molecule. This can either contain zero, one, two or three entries 
@@ -84,6 +97,7 @@ public class Atom implements Cloneable {
             Hashtable<Integer, BondType> connectedList,
             ArrayList<ZMatrixItem> zMatrixElement, int atomIndex) {
         this.symbol = Utility.capitalise(symbol.toLowerCase());
+        this.elementCode = AtomInfo.getElementCode(this.symbol);
         this.charge = charge;
         this.index = atomIndex;
         this.atomCenter = atomCenter;
@@ -118,6 +132,17 @@ public class Atom implements Cloneable {
      */
     public void setSymbol(String symbol) {
         this.symbol = symbol;
+        this.elementCode = AtomInfo.getElementCode(symbol);
+    }
+
+    /**
+     * Get the value of elementCode, with which the properties of this atom
+     * can be looked up from AtomInfo without using the symbol
+     *
+     * @return the value of elementCode
+     */
+    public int getElementCode() {
+        return elementCode;
     }
 
     /** Getter for property charge.
@@ -210,7 +235,7 @@ public class Atom implements Cloneable {
      */
     public String toExtendedString() {
         return symbol + " " + charge + " " + atomCenter.toString()
-                + " " + connectedList.toString();
+                + " " + getConnections().toString();
     }
 
     /** overloaded equals() method
@@ -260,14 +285,11 @@ public class Atom implements Cloneable {
         Hashtable<Integer, BondType> theClonedConnection
                                      = new Hashtable<Integer, BondType>();
 
-        Enumeration<Integer> keys = connectedList.keys();
-        Integer key;
-
-        while (keys.hasMoreElements()) {
-            key = keys.nextElement();
-            theClonedConnection.put(new Integer(key.intValue()),
-                    connectedList.get(key));
-        } // end while
+        for(Map.Entry<Integer, BondType> connection
+                                         : getConnections().entrySet()) {
+            theClonedConnection.put(new Integer(connection.getKey()),
+                    connection.getValue());
+        } // end for
 
         ArrayList<ZMatrixItem> theColonedZMatrixElement
                                  = new ArrayList<ZMatrixItem>();
@@ -292,6 +314,8 @@ public class Atom implements Cloneable {
      * @param bondType the bond type
      */
     public void addConnection(int atomIndex, BondType bondType) {
+        detachBondGraph();
+
         Integer key = new Integer(atomIndex);
 
         if (bondType.equals(BondType.NO_BOND) && connectedList.containsKey(key)) {
@@ -308,21 +332,28 @@ public class Atom implements Cloneable {
      * @param atomIndex the index of atom to be disconnected
      */
     public void removeConnection(int atomIndex) {
+        detachBondGraph();
+
         connectedList.remove(new Integer(atomIndex));
     }
 
     /**
      * remove all the connections to this atom
      */
-    public void removeAllConnections() {
-        connectedList = new Hashtable<Integer, BondType>();
+    public synchronized void removeAllConnections() {
+        setConnectedList(new Hashtable<Integer, BondType>());
     }
 
-    /** Getter for property connectedList.
+    /** Getter for property connectedList. If the connections of this atom
+     * are held in a bond graph, they are first moved to a table of its 
+     * own, as the table may be modified. Use getConnections() if the
+     * connections are only to be read.
      * @return Value of property connectedList.
      *
      */
     public Hashtable<Integer, BondType> getConnectedList() {
+        detachBondGraph();
+
         return this.connectedList;
     }
 
@@ -330,8 +361,96 @@ public class Atom implements Cloneable {
      * @param connectedList New value of property connectedList.
      *
      */
-    public void setConnectedList(Hashtable<Integer, BondType> connectedList) {
+    public synchronized void setConnectedList(
+                                   Hashtable<Integer, BondType> connectedList) {
         this.connectedList = connectedList;
+
+        if (bondGraph != null) {
+            bondGraph.markStale();
+            bondGraph = null;
+        } // end if
+    }
+
+    /**
+     * Hold the connections of this atom in a bond graph, in place of its
+     * own table. Meant to be used by implementations of Molecule, when
+     * committing bonds in bulk.
+     *
+     * @param bondGraph the bond graph of the molecule
+     * @param bondGraphIndex the index of this atom in the bond graph
+     */
+    public synchronized void setBondGraph(BondGraph bondGraph,
+                                          int bondGraphIndex) {
+        this.bondGraphIndex = bondGraphIndex;
+        this.bondGraph      = bondGraph;
+        this.connectedList  = null;
+    }
+
+    /**
+     * Get the bond graph holding the connections of this atom
+     *
+     * @return the bond graph, or null if this atom has its own table
+     */
+    public BondGraph getBondGraph() {
+        return bondGraph;
+    }
+
+    /**
+     * move the connections held in the bond graph (if any) to a table of
+     * this atom, before they are edited
+     */
+    private synchronized void detachBondGraph() {
+        BondGraph graph = bondGraph;
+
+        if (graph == null) return;
+
+        connectedList = graph.getConnectedList(bondGraphIndex);
+        graph.markStale();
+        bondGraph = null;
+    }
+
+    /**
+     * Get the connections of this atom, atom index to bond type, only to
+     * be read. Unlike getConnectedList(), connections held in a bond graph
+     * stay there; the returned map is a view of the graph (or of the table
+     * of this atom) and can not be modified.
+     *
+     * @return a read only map of the connections of this atom
+     */
+    public Map<Integer, BondType> getConnections() {
+        BondGraph graph = bondGraph;
+
+        return (graph != null) ? graph.getConnections(bondGraphIndex)
+                               : Collections.unmodifiableMap(connectedList);
+    }
+
+    /**
+     * copy the connections of this atom in to the arrays of a bond graph
+     *
+     * @return the position after the last connection copied
+     */
+    int copyConnections(int [] neighbours, byte [] bondTypes, int offset) {
+        BondGraph graph = bondGraph;
+
+        if (graph != null) {
+            int [] graphOffsets = graph.getOffsets();
+            int from = graphOffsets[bondGraphIndex];
+            int length = graphOffsets[bondGraphIndex+1] - from;
+
+            System.arraycopy(graph.getNeighbours(), from,
+                             neighbours, offset, length);
+            System.arraycopy(graph.getBondTypes(), from,
+                             bondTypes, offset, length);
+
+            return offset + length;
+        } // end if
+
+        for(Map.Entry<Integer, BondType> connection : connectedList.entrySet()) {
+            neighbours[offset] = connection.getKey();
+            bondTypes[offset++] = BondGraph.toCode(connection.getValue());
+        } // end for
+
+        return offset;
     }
 
     /**
@@ -342,6 +461,10 @@ public class Atom implements Cloneable {
      *         status.
      */
     public boolean isConnected(int atomIndex) {
+        BondGraph graph = bondGraph;
+
+        if (graph != null) return graph.isConnected(bondGraphIndex, atomIndex);
+
         return (connectedList.containsKey(new Integer(atomIndex)));
     }
 
@@ -352,6 +475,10 @@ public class Atom implements Cloneable {
      * @return BondType - type of bonding.
      */
     public BondType getConnectivity(int atomIndex) {
+        BondGraph graph = bondGraph;
+
+        if (graph != null) return graph.getBondType(bondGraphIndex, atomIndex);
+
         if (isConnected(atomIndex)) {
             return (BondType) connectedList.get(new Integer(atomIndex));
         } else {
@@ -364,6 +491,22 @@ public class Atom implements Cloneable {
      */
     public int getNumberOfStrongBonds() {
         int bonds = 0;
+        BondGraph graph = bondGraph;
+
+        if (graph != null) {
+            int [] offsets = graph.getOffsets();
+            byte [] bondTypes = graph.getBondTypes();
+
+            for(int k=offsets[bondGraphIndex]; k<offsets[bondGraphIndex+1];
+                k++) {
+                if (BondGraph.toBondType(bondTypes[k]).isStrongBond()) {
+                    bonds++;
+                } // end if
+            } // end for
+
+            return bonds;
+        } // end if
+
         Iterator<BondType> connectedListIter = connectedList.values().iterator();
         while (connectedListIter.hasNext()) {
             BondType bond = connectedListIter.next();
@@ -380,6 +523,21 @@ public class Atom implements Cloneable {
      */
     public double getSumOfBondOrders() {
         double sumBondOrders = 0;
+        BondGraph graph = bondGraph;
+
+        if (graph != null) {
+            int [] offsets = graph.getOffsets();
+            byte [] bondTypes = graph.getBondTypes();
+
+            for(int k=offsets[bondGraphIndex]; k<offsets[bondGraphIndex+1];
+                k++) {
+                sumBondOrders += BondGraph.toBondType(bondTypes[k])
+                                          .getBondOrder();
+            } // end for
+
+            return sumBondOrders;
+        } // end if
+
         Iterator<BondType> connectedListIter = connectedList.values().iterator();
         while (connectedListIter.hasNext()) {
             BondType bond = connectedListIter.next();
@@ -394,6 +552,23 @@ public class Atom implements Cloneable {
      */
     public int getNumberOfDoubleBonds() {
         int doubleBonds = 0;
+        BondGraph graph = bondGraph;
+
+        if (graph != null) {
+            int [] offsets = graph.getOffsets();
+            byte [] bondTypes = graph.getBondTypes();
+            byte doubleBond = BondGraph.toCode(BondType.DOUBLE_BOND);
+
+            for(int k=offsets[bondGraphIndex]; k<offsets[bondGraphIndex+1];
+                k++) {
+                if (bondTypes[k] == doubleBond) {
+                    doubleBonds++;
+                } // end if
+            } // end for
+
+            return doubleBonds;
+        } // end if
+
         Iterator<BondType> connectedListIter = connectedList.values().iterator();
         while (connectedListIter.hasNext()) {
             BondType bond = connectedListIter.next();
@@ -409,6 +584,24 @@ public class Atom implements Cloneable {
      * @return true if this atom participates in a resonant bond structure
      */
     public boolean hasResonantBonds() {
+        BondGraph graph = bondGraph;
+
+        if (graph != null) {
+            int [] offsets = graph.getOffsets();
+            byte [] bondTypes = graph.getBondTypes();
+            byte aromaticBond = BondGraph.toCode(BondType.AROMATIC_BOND);
+            byte amideBond = BondGraph.toCode(BondType.AMIDE_BOND);
+
+            for(int k=offsets[bondGraphIndex]; k<offsets[bondGraphIndex+1];
+                k++) {
+                if (bondTypes[k] == aromaticBond || bondTypes[k] == amideBond) {
+                    return true;
+                } // end if
+            } // end for
+
+            return false;
+        } // end if
+
         Iterator<Integer> connectedAtomsIter = connectedList.keySet().iterator();
         while (connectedAtomsIter.hasNext()) {
             Integer connectedIndex = connectedAtomsIter.next();
@@ -426,6 +619,10 @@ public class Atom implements Cloneable {
      * @return the degree of connectivity of this atom
      */
     public int getDegree() {
+        BondGraph graph = bondGraph;
+
+        if (graph != null) return graph.getDegree(bondGraphIndex);
+
         return connectedList.size();
     }
 
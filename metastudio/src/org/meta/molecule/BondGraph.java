@@ -0,0 +1,579 @@
+/*
+ * BondGraph.java
+ *
+ * Created on 18/10/2026
+ */
+
+package org.meta.molecule;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A compact, immutable store of all the bonds of a molecule, in the
+ * compressed sparse row form: the neighbours of atom i (in ascending order)
+ * are at getNeighbours()[getOffsets()[i] .. getOffsets()[i+1]-1], with the
+ * corresponding bond types (BondType ordinals) in getBondTypes(). Every
+ * bond is stored in both directions. <br>
+ *
+ * The atoms of a molecule may hold their connections in a bond graph
+ * instead of their own tables (see Molecule.commitBonds()). An atom whose
+ * connections are edited on their own gets a table of its own again, and
+ * the graph is then marked stale, as it no longer describes the
+ * molecule. <br>
+ *
+ * Bond graphs are made with a Builder, which records bond edits and
+ * applies them over an existing graph.
+ *
+ * @author  V.Ganesh
+ * @version 2.0 (Part of MeTA v2.0)
+ */
+public class BondGraph {
+
+    /** the bond types, indexed by their ordinals */
+    private static final BondType [] BOND_TYPES = BondType.values();
+
+    private int noOfAtoms;
+
+    private int [] offsets;
+
+    private int [] neighbours;
+
+    private byte [] bondTypes;
+
+    /** has any atom using this graph been edited on its own? */
+    private volatile boolean stale;
+
+    /** Creates a new instance of BondGraph */
+    private BondGraph(int noOfAtoms, int [] offsets, int [] neighbours,
+                      byte [] bondTypes) {
+        this.noOfAtoms  = noOfAtoms;
+        this.offsets    = offsets;
+        this.neighbours = neighbours;
+        this.bondTypes  = bondTypes;
+    }
+
+    /**
+     * Make a bond graph from the current connections of the atoms of a
+     * molecule. The atoms are only read, they keep their connections where
+     * they are.
+     *
+     * @param molecule the molecule whose bonds are needed
+     * @return a new bond graph of the molecule
+     */
+    public static BondGraph fromMolecule(Molecule molecule) {
+        int n = molecule.getNumberOfAtoms();
+        int [] offsets = new int[n+1];
+
+        for(int i=0; i<n; i++) {
+            offsets[i+1] = offsets[i] + molecule.getAtom(i).getDegree();
+        } // end for
+
+        int [] neighbours = new int[offsets[n]];
+        byte [] bondTypes = new byte[offsets[n]];
+
+        for(int i=0; i<n; i++) {
+            int k = molecule.getAtom(i).copyConnections(neighbours, bondTypes,
+                                                        offsets[i]);
+
+            sortNeighbours(neighbours, bondTypes, offsets[i], k);
+        } // end for
+
+        return new BondGraph(n, offsets, neighbours, bondTypes);
+    }
+
+    /** sort a range of neighbours, along with their bond types */
+    private static void sortNeighbours(int [] neighbours, byte [] bondTypes,
+                                       int from, int to) {
+        for(int i=from+1; i<to; i++) {
+            int neighbour = neighbours[i];
+            byte bondType = bondTypes[i];
+            int j = i - 1;
+
+            while(j >= from && neighbours[j] > neighbour) {
+                neighbours[j+1] = neighbours[j];
+                bondTypes[j+1]  = bondTypes[j];
+                j--;
+            } // end while
+
+            neighbours[j+1] = neighbour;
+            bondTypes[j+1]  = bondType;
+        } // end for
+    }
+
+    /**
+     * The code of a bond type, as stored in getBondTypes()
+     *
+     * @param bondType the bond type
+     * @return the code of the bond type
+     */
+    public static byte toCode(BondType bondType) {
+        return (byte) bondType.ordinal();
+    }
+
+    /**
+     * The bond type of a code stored in getBondTypes()
+     *
+     * @param code the code of the bond type
+     * @return the bond type
+     */
+    public static BondType toBondType(byte code) {
+        return BOND_TYPES[code];
+    }
+
+    /**
+     * The position of a bond in getNeighbours() and getBondTypes()
+     *
+     * @param atomIndex1 the first atom
+     * @param atomIndex2 the second atom
+     * @return the position of the bond, or -1 if the atoms are not bonded
+     */
+    public int indexOf(int atomIndex1, int atomIndex2) {
+        if (atomIndex1 < 0 || atomIndex1 >= noOfAtoms) return -1;
+
+        int k = Arrays.binarySearch(neighbours, offsets[atomIndex1],
+                                    offsets[atomIndex1+1], atomIndex2);
+
+        return (k < 0) ? -1 : k;
+    }
+
+    /**
+     * Check if two atoms are bonded
+     *
+     * @param atomIndex1 the first atom
+     * @param atomIndex2 the second atom
+     * @return true if there is a bond (of any type) between them
+     */
+    public boolean isConnected(int atomIndex1, int atomIndex2) {
+        return indexOf(atomIndex1, atomIndex2) >= 0;
+    }
+
+    /**
+     * Get the bond type between two atoms
+     *
+     * @param atomIndex1 the first atom
+     * @param atomIndex2 the second atom
+     * @return the bond type, NO_BOND if they are not bonded
+     */
+    public BondType getBondType(int atomIndex1, int atomIndex2) {
+        int k = indexOf(atomIndex1, atomIndex2);
+
+        return (k < 0) ? BondType.NO_BOND : BOND_TYPES[bondTypes[k]];
+    }
+
+    /**
+     * Get the number of atoms bonded to an atom
+     *
+     * @param atomIndex the atom
+     * @return the degree of the atom
+     */
+    public int getDegree(int atomIndex) {
+        if (atomIndex < 0 || atomIndex >= noOfAtoms) return 0;
+
+        return offsets[atomIndex+1] - offsets[atomIndex];
+    }
+
+    /**
+     * Make a table of the connections of an atom, in the form used by
+     * Atom.getConnectedList()
+     *
+     * @param atomIndex the atom
+     * @return a new table of the connections, atom index to bond type
+     */
+    public Hashtable<Integer, BondType> getConnectedList(int atomIndex) {
+        int degree = getDegree(atomIndex);
+        Hashtable<Integer, BondType> connectedList
+                         = new Hashtable<Integer, BondType>(Math.max(1, degree));
+
+        for(int k=offsets[atomIndex]; k<offsets[atomIndex]+degree; k++) {
+            connectedList.put(neighbours[k], BOND_TYPES[bondTypes[k]]);
+        } // end for
+
+        return connectedList;
+    }
+
+    /**
+     * Get a read only view of the connections of an atom, atom index to
+     * bond type, in ascending order of the atom index. Unlike
+     * getConnectedList(), nothing is copied.
+     *
+     * @param atomIndex the atom
+     * @return a read only map of the connections of the atom
+     */
+    public Map<Integer, BondType> getConnections(int atomIndex) {
+        return new Connections(atomIndex);
+    }
+
+    /**
+     * Get the value of noOfAtoms
+     *
+     * @return the value of noOfAtoms
+     */
+    public int getNumberOfAtoms() {
+        return noOfAtoms;
+    }
+
+    /**
+     * Get the number of bonds, each counted once
+     *
+     * @return the number of bonds
+     */
+    public int getNumberOfBonds() {
+        return offsets[noOfAtoms] / 2;
+    }
+
+    /**
+     * Get the offsets of the neighbours of each atom, noOfAtoms+1 entries.
+     * The array should not be modified.
+     *
+     * @return the neighbour offsets
+     */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * Get the neighbours of all the atoms, one after the other. The array
+     * should not be modified.
+     *
+     * @return the neighbours
+     */
+    public int[] getNeighbours() {
+        return neighbours;
+    }
+
+    /**
+     * Get the bond types (codes) matching getNeighbours(). The array should
+     * not be modified.
+     *
+     * @return the bond type codes
+     */
+    public byte[] getBondTypes() {
+        return bondTypes;
+    }
+
+    /**
+     * Check if this graph is stale, that is some atom using it has been
+     * edited on its own since
+     *
+     * @return true if this graph no longer describes its molecule
+     */
+    public boolean isStale() {
+        return stale;
+    }
+
+    /** mark this graph as stale */
+    void markStale() {
+        stale = true;
+    }
+
+    /**
+     * The read only view of the connections of an atom, backed by the
+     * arrays of this graph
+     */
+    private class Connections extends AbstractMap<Integer, BondType> {
+        private int atomIndex;
+        private int from, to;
+
+        /** Creates a new instance of Connections */
+        public Connections(int atomIndex) {
+            this.atomIndex = atomIndex;
+
+            if (atomIndex >= 0 && atomIndex < noOfAtoms) {
+                from = offsets[atomIndex];
+                to   = offsets[atomIndex+1];
+            } // end if
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return (key instanceof Integer)
+                    && indexOf(atomIndex, (Integer) key) >= 0;
+        }
+
+        @Override
+        public BondType get(Object key) {
+            if (!(key instanceof Integer)) return null;
+
+            int k = indexOf(atomIndex, (Integer) key);
+
+            return (k < 0) ? null : BOND_TYPES[bondTypes[k]];
+        }
+
+        @Override
+        public Set<Map.Entry<Integer, BondType>> entrySet() {
+            return new AbstractSet<Map.Entry<Integer, BondType>>() {
+                @Override
+                public int size() {
+                    return to - from;
+                }
+
+                @Override
+                public Iterator<Map.Entry<Integer, BondType>> iterator() {
+                    return new ConnectionIterator<Map.Entry<Integer, BondType>>(
+                                                                   from, to) {
+                        @Override
+                        protected Map.Entry<Integer, BondType> get(int k) {
+                            return new AbstractMap.SimpleImmutableEntry
+                                     <Integer, BondType>(neighbours[k],
+                                                 BOND_TYPES[bondTypes[k]]);
+                        }
+                    };
+                }
+            };
+        }
+
+        @Override
+        public Set<Integer> keySet() {
+            return new AbstractSet<Integer>() {
+                @Override
+                public int size() {
+                    return to - from;
+                }
+
+                @Override
+                public boolean contains(Object key) {
+                    return containsKey(key);
+                }
+
+                @Override
+                public Iterator<Integer> iterator() {
+                    return new ConnectionIterator<Integer>(from, to) {
+                        @Override
+                        protected Integer get(int k) {
+                            return neighbours[k];
+                        }
+                    };
+                }
+            };
+        }
+    } // end of class Connections
+
+    /** a read only iterator over a range of the connections */
+    private static abstract class ConnectionIterator<E>
+                                  implements Iterator<E> {
+        private int k, to;
+
+        /** Creates a new instance of ConnectionIterator */
+        public ConnectionIterator(int from, int to) {
+            this.k  = from;
+            this.to = to;
+        }
+
+        /** the element of connection k */
+        protected abstract E get(int k);
+
+        @Override
+        public boolean hasNext() {
+            return k < to;
+        }
+
+        @Override
+        public E next() {
+            if (k >= to) throw new NoSuchElementException();
+
+            return get(k++);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Bond graphs are "
+                                                    + "read only");
+        }
+    } // end of class ConnectionIterator
+
+    /**
+     * A mutable list of bond edits, each like a call to
+     * Molecule.setBondType() (NO_BOND removes the bond), from which a new
+     * bond graph can be made. Later edits of the same atom pair override
+     * the earlier ones.
+     */
+    public static class Builder {
+        private int [] atomIndices;
+        private byte [] editBondTypes;
+        private int noOfEdits;
+
+        /** Creates a new instance of Builder */
+        public Builder() {
+            atomIndices   = new int[32];
+            editBondTypes = new byte[16];
+        }
+
+        /**
+         * Record a bond edit
+         *
+         * @param atomIndex1 the first atom
+         * @param atomIndex2 the second atom
+         * @param bondType the new bond type, NO_BOND to remove the bond
+         */
+        public void setBondType(int atomIndex1, int atomIndex2,
+                                BondType bondType) {
+            if (noOfEdits == editBondTypes.length) {
+                atomIndices   = Arrays.copyOf(atomIndices, 4*noOfEdits);
+                editBondTypes = Arrays.copyOf(editBondTypes, 2*noOfEdits);
+            } // end if
+
+            atomIndices[2*noOfEdits]   = atomIndex1;
+            atomIndices[2*noOfEdits+1] = atomIndex2;
+            editBondTypes[noOfEdits++] = toCode(bondType);
+        }
+
+        /**
+         * Record all the edits of another builder, after the ones of this
+         *
+         * @param builder the builder whose edits are to be added
+         */
+        public void addAll(Builder builder) {
+            for(int i=0; i<builder.noOfEdits; i++) {
+                setBondType(builder.atomIndices[2*i],
+                            builder.atomIndices[2*i+1],
+                            BOND_TYPES[builder.editBondTypes[i]]);
+            } // end for
+        }
+
+        /**
+         * Get the value of noOfEdits
+         *
+         * @return the number of edits recorded
+         */
+        public int getNumberOfEdits() {
+            return noOfEdits;
+        }
+
+        /**
+         * Get the first atom of an edit
+         *
+         * @param edit the edit number
+         * @return the first atom index
+         */
+        public int getAtomIndex1(int edit) {
+            return atomIndices[2*edit];
+        }
+
+        /**
+         * Get the second atom of an edit
+         *
+         * @param edit the edit number
+         * @return the second atom index
+         */
+        public int getAtomIndex2(int edit) {
+            return atomIndices[2*edit+1];
+        }
+
+        /**
+         * Get the bond type of an edit
+         *
+         * @param edit the edit number
+         * @return the bond type
+         */
+        public BondType getBondType(int edit) {
+            return BOND_TYPES[editBondTypes[edit]];
+        }
+
+        /** forget all the edits */
+        public void clear() {
+            noOfEdits = 0;
+        }
+
+        /**
+         * Make a bond graph by applying the edits over an existing graph
+         *
+         * @param base the graph to be edited (which is left unchanged),
+         *        null for one without any bonds
+         * @param noOfAtoms the number of atoms of the new graph, at least
+         *        that of base, and more than any atom index edited
+         * @return the new bond graph
+         */
+        public BondGraph build(BondGraph base, int noOfAtoms) {
+            int i, k;
+
+            // each atom gets its bonds in base followed by its edits, each
+            // entry tagged with its sequence number so that the last of
+            // the entries for an atom pair can be found after sorting
+            int [] counts = new int[noOfAtoms+1];
+
+            if (base != null) {
+                for(i=0; i<base.noOfAtoms; i++) {
+                    counts[i+1] = base.offsets[i+1] - base.offsets[i];
+                } // end for
+            } // end if
+
+            for(k=0; k<noOfEdits; k++) {
+                counts[atomIndices[2*k]+1]++;
+                counts[atomIndices[2*k+1]+1]++;
+            } // end for
+
+            for(i=0; i<noOfAtoms; i++) counts[i+1] += counts[i];
+
+            int [] fill = Arrays.copyOf(counts, noOfAtoms);
+            long [] entries = new long[counts[noOfAtoms]];
+            byte [] entryTypes = new byte[entries.length];
+            int seq = 0;
+
+            if (base != null) {
+                for(i=0; i<base.noOfAtoms; i++) {
+                    for(k=base.offsets[i]; k<base.offsets[i+1]; k++) {
+                        entryTypes[seq] = base.bondTypes[k];
+                        entries[fill[i]++] = entry(base.neighbours[k], seq++);
+                    } // end for
+                } // end for
+            } // end if
+
+            for(k=0; k<noOfEdits; k++) {
+                int a1 = atomIndices[2*k], a2 = atomIndices[2*k+1];
+
+                entryTypes[seq] = editBondTypes[k];
+                entries[fill[a1]++] = entry(a2, seq++);
+                entryTypes[seq] = editBondTypes[k];
+                entries[fill[a2]++] = entry(a1, seq++);
+            } // end for
+
+            // keep the last entry of each pair, unless it removes the bond
+            byte noBond = toCode(BondType.NO_BOND);
+            int [] offsets = new int[noOfAtoms+1];
+            int [] neighbours = new int[entries.length];
+            byte [] bondTypes = new byte[entries.length];
+            int count = 0;
+
+            for(i=0; i<noOfAtoms; i++) {
+                Arrays.sort(entries, counts[i], counts[i+1]);
+
+                for(k=counts[i]; k<counts[i+1]; k++) {
+                    int neighbour = (int) (entries[k] >>> 32);
+
+                    if (k+1 < counts[i+1]
+                        && (int) (entries[k+1] >>> 32) == neighbour) continue;
+
+                    byte bondType = entryTypes[(int) entries[k]];
+
+                    if (bondType == noBond) continue;
+
+                    neighbours[count] = neighbour;
+                    bondTypes[count++] = bondType;
+                } // end for
+
+                offsets[i+1] = count;
+            } // end for
+
+            return new BondGraph(noOfAtoms, offsets,
+                                 Arrays.copyOf(neighbours, count),
+                                 Arrays.copyOf(bondTypes, count));
+        }
+
+        /** a sortable entry, the neighbour followed by the sequence */
+        private static long entry(int neighbour, int seq) {
+            return ((long) neighbour << 32) | seq;
+        }
+    } // end of class Builder
+} // end of class BondGraph
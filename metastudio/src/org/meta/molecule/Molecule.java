@@ -291,6 +291,38 @@ public abstract class Molecule {
      *         atomIndex2, false otherwise.
      */
     public abstract boolean isStronglyBonded(int atomIndex1, int atomIndex2);
+
+    /**
+     * Get all the bonds of this molecule as a compact bond graph. The
+     * graph is a snapshot, it does not follow later changes to the bonds.
+     *
+     * @return the bond graph of this molecule
+     */
+    public BondGraph getBondGraph() {
+        return BondGraph.fromMolecule(this);
+    }
+
+    /**
+     * Apply a number of bond edits at once, as if by setBondType() for each
+     * of them in order, but with only one (BONDS_MODIFIED) change event
+     * fired for all of them.
+     *
+     * @param bonds the bond edits to be applied
+     */
+    public void commitBonds(BondGraph.Builder bonds) {
+        boolean listenersEnabled = enableListeners;
+
+        disableListeners();
+        for(int i=0; i<bonds.getNumberOfEdits(); i++) {
+            setBondType(bonds.getAtomIndex1(i), bonds.getAtomIndex2(i),
+                        bonds.getBondType(i));
+        } // end for
+        enableListeners = listenersEnabled;
+
+        MoleculeStateChangeEvent msce = new MoleculeStateChangeEvent(this);
+        msce.setEventType(MoleculeStateChangeEvent.BONDS_MODIFIED);
+        fireMoleculeStateChangeListenerMoleculeChanged(msce);
+    }
     
     /**
      * Do a breadth first traversal of the the molecular graph starting
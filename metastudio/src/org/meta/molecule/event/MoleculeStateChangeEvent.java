@@ -46,6 +46,9 @@ public class MoleculeStateChangeEvent extends java.util.EventObject {
 
     /** event to just say that refresh with the current state of molecule */
     public static final int REFRESH_EVENT = 9;
+
+    /** a number of bonds were modified (or removed) at once */
+    public static final int BONDS_MODIFIED = 10;
     
     /** there was a major modification in the molecule structure */
     public static final int MAJOR_MODIFICATION = 100;
@@ -31,7 +31,7 @@ public class BitMol {
        int nAtms = mol.getNumberOfAtoms();
        for(int idx=0; idx<nAtms; idx++) {
            Atom atm = mol.getAtom(idx);
-           Set<Integer> conn = atm.getConnectedList().keySet();
+           Set<Integer> conn = atm.getConnections().keySet();
            for(Integer connAtom : conn) {
                BondType bond = atm.getConnectivity(connAtom);
            } // end for
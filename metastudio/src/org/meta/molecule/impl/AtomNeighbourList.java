@@ -0,0 +1,231 @@
+/*
+ * AtomNeighbourList.java
+ *
+ * Created on 18/10/2026
+ */
+
+package org.meta.molecule.impl;
+
+import java.util.Arrays;
+import org.meta.math.geom.Point3D;
+import org.meta.molecule.Molecule;
+
+/**
+ * The list of atom pairs of a molecule that are close enough to be
+ * bonded, found with a uniform grid of cells (a cell list) in linear time
+ * rather than by checking all the pairs. <br>
+ *
+ * The atoms are binned into cubic cells no smaller than the cutoff, so
+ * every pair whose separation along each of X, Y and Z is within the
+ * cutoff lies in the same or adjacent cells. The list may also contain
+ * some pairs farther apart than that, which the caller is expected to
+ * filter out with its own distance check. <br>
+ *
+ * The neighbours j &lt; i of atom i are stored in ascending order at
+ * getNeighbours()[getNeighbourOffsets()[i] .. getNeighbourOffsets()[i+1]-1],
+ * so that pairs are visited in the same order as the usual
+ * <code>for i / for j&lt;i</code> loop.
+ *
+ * @author  V.Ganesh
+ * @version 2.0 (Part of MeTA v2.0)
+ */
+public class AtomNeighbourList {
+
+    /** the most cells per atom, larger (sparser) boxes get larger cells */
+    private static final int MAX_CELLS_PER_ATOM = 4;
+
+    private int noOfAtoms;
+
+    private double cutoff;
+
+    /** the atom centers the list was built for, x, y, z of each atom */
+    private double [] coordinates;
+
+    private int [] neighbourOffsets;
+
+    private int [] neighbours;
+
+    /**
+     * Creates a new instance of AtomNeighbourList
+     *
+     * @param molecule the molecule whose close pairs are to be listed
+     * @param cutoff the largest separation (along each axis) of a pair
+     *        to be listed, in angstroms
+     */
+    public AtomNeighbourList(Molecule molecule, double cutoff) {
+        this.cutoff = cutoff;
+        this.coordinates = getCoordinates(molecule);
+        this.noOfAtoms = coordinates.length / 3;
+
+        buildList();
+    }
+
+    /** the atom centers of a molecule, x, y, z of each atom */
+    private static double [] getCoordinates(Molecule molecule) {
+        int n = molecule.getNumberOfAtoms();
+        double [] xyz = new double[3*n];
+
+        for(int i=0; i<n; i++) {
+            Point3D center = molecule.getAtom(i).getAtomCenter();
+
+            xyz[3*i]   = center.getX();
+            xyz[3*i+1] = center.getY();
+            xyz[3*i+2] = center.getZ();
+        } // end for
+
+        return xyz;
+    }
+
+    /**
+     * bin the atoms in cells, and collect the neighbours from the
+     * surrounding cells of each atom
+     */
+    private void buildList() {
+        neighbourOffsets = new int[noOfAtoms+1];
+        neighbours = new int[Math.max(16, 8*noOfAtoms)];
+
+        if (noOfAtoms == 0) return;
+
+        int i, j, k;
+        double xmin, ymin, zmin, xmax, ymax, zmax;
+
+        xmin = ymin = zmin = Double.MAX_VALUE;
+        xmax = ymax = zmax = -Double.MAX_VALUE;
+
+        for(i=0; i<noOfAtoms; i++) {
+            xmin = Math.min(xmin, coordinates[3*i]);
+            xmax = Math.max(xmax, coordinates[3*i]);
+            ymin = Math.min(ymin, coordinates[3*i+1]);
+            ymax = Math.max(ymax, coordinates[3*i+1]);
+            zmin = Math.min(zmin, coordinates[3*i+2]);
+            zmax = Math.max(zmax, coordinates[3*i+2]);
+        } // end for
+
+        // the cells should not outnumber the atoms by much, else grow them
+        // (slightly larger than the cutoff, against round off at the edges)
+        double cellSize = Math.max(cutoff, 1.0e-3) * (1.0 + 1.0e-9);
+        long nx, ny, nz;
+
+        while(true) {
+            nx = (long) ((xmax - xmin) / cellSize) + 1;
+            ny = (long) ((ymax - ymin) / cellSize) + 1;
+            nz = (long) ((zmax - zmin) / cellSize) + 1;
+
+            if (nx * ny * nz <= (long) MAX_CELLS_PER_ATOM * noOfAtoms) break;
+
+            cellSize *= 1.5;
+        } // end while
+
+        int noOfCells = (int) (nx * ny * nz);
+        int [] atomCells = new int[noOfAtoms];
+        int [] cellOffsets = new int[noOfCells+1];
+        int [] cellAtoms = new int[noOfAtoms];
+
+        for(i=0; i<noOfAtoms; i++) {
+            int cx = Math.min((int) ((coordinates[3*i]   - xmin) / cellSize),
+                              (int) nx-1);
+            int cy = Math.min((int) ((coordinates[3*i+1] - ymin) / cellSize),
+                              (int) ny-1);
+            int cz = Math.min((int) ((coordinates[3*i+2] - zmin) / cellSize),
+                              (int) nz-1);
+
+            atomCells[i] = (int) ((cx * ny + cy) * nz + cz);
+            cellOffsets[atomCells[i]+1]++;
+        } // end for
+
+        // atoms sorted by cell, each cell in ascending atom order
+        for(i=0; i<noOfCells; i++) cellOffsets[i+1] += cellOffsets[i];
+
+        int [] fill = Arrays.copyOf(cellOffsets, noOfCells);
+
+        for(i=0; i<noOfAtoms; i++) cellAtoms[fill[atomCells[i]]++] = i;
+
+        int count = 0;
+
+        for(i=0; i<noOfAtoms; i++) {
+            int cell = atomCells[i];
+            int cz = (int) (cell % nz);
+            int cy = (int) ((cell / nz) % ny);
+            int cx = (int) (cell / (nz * ny));
+            int first = count;
+
+            for(int ix=Math.max(0, cx-1); ix<=Math.min(nx-1, cx+1); ix++) {
+              for(int iy=Math.max(0, cy-1); iy<=Math.min(ny-1, cy+1); iy++) {
+                for(int iz=Math.max(0, cz-1); iz<=Math.min(nz-1, cz+1); iz++) {
+                    int c = (int) ((ix * ny + iy) * nz + iz);
+
+                    for(k=cellOffsets[c]; k<cellOffsets[c+1]; k++) {
+                        j = cellAtoms[k];
+
+                        if (j >= i) break;
+
+                        if (count == neighbours.length) {
+                            neighbours = Arrays.copyOf(neighbours,
+                                                       2*neighbours.length);
+                        } // end if
+
+                        neighbours[count++] = j;
+                    } // end for
+                } // end for
+              } // end for
+            } // end for
+
+            Arrays.sort(neighbours, first, count);
+            neighbourOffsets[i+1] = count;
+        } // end for
+    }
+
+    /**
+     * Check if this list is still valid for a molecule, that is the
+     * molecule has the same atoms at the same places as the one for which
+     * the list was built.
+     *
+     * @param molecule the molecule to be checked
+     * @param cutoff the cutoff the list should have been made with
+     * @return true if the list can be used for the molecule
+     */
+    public boolean isValidFor(Molecule molecule, double cutoff) {
+        if (this.cutoff != cutoff
+            || molecule.getNumberOfAtoms() != noOfAtoms) return false;
+
+        return Arrays.equals(coordinates, getCoordinates(molecule));
+    }
+
+    /**
+     * Get the value of noOfAtoms
+     *
+     * @return the value of noOfAtoms
+     */
+    public int getNumberOfAtoms() {
+        return noOfAtoms;
+    }
+
+    /**
+     * Get the value of cutoff
+     *
+     * @return the value of cutoff, in angstroms
+     */
+    public double getCutoff() {
+        return cutoff;
+    }
+
+    /**
+     * Get the offsets of the neighbours of each atom in getNeighbours(),
+     * noOfAtoms+1 entries
+     *
+     * @return the neighbour offsets
+     */
+    public int[] getNeighbourOffsets() {
+        return neighbourOffsets;
+    }
+
+    /**
+     * Get the neighbours (of lower index) of all the atoms, one after the
+     * other
+     *
+     * @return the neighbours, valid up to getNeighbourOffsets()[noOfAtoms]
+     */
+    public int[] getNeighbours() {
+        return neighbours;
+    }
+} // end of class AtomNeighbourList
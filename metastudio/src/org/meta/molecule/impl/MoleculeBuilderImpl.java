@@ -13,6 +13,7 @@ import org.meta.config.impl.AtomInfo;
 import org.meta.math.MathUtil;
 import org.meta.math.Vector3D;
 import org.meta.molecule.Atom;
+import org.meta.molecule.BondGraph;
 import org.meta.molecule.BondType;
 import org.meta.molecule.CommonUserDefinedMolecularPropertyNames;
 import org.meta.molecule.Molecule;
@@ -54,6 +55,9 @@ public class MoleculeBuilderImpl extends MoleculeBuilder {
     /** The bond formation tolerance */
     public static final double BOND_RADIUS_CHECK = 4.0; // angstroms
     
+    /** the element code of hydrogen, which forms no multiple bonds */
+    protected static final int HYDROGEN = AtomInfo.getElementCode("H");
+    
     /** other private variables */
     
     protected AtomInfo atomInfo;
@@ -72,6 +76,9 @@ public class MoleculeBuilderImpl extends MoleculeBuilder {
     private Vector3D axis1, axis2, vectorFrom1To2, vectorFrom2To1;
     
     protected MoleculeBuildEvent mbEvent;        
+
+    /** the close atom pairs of the last molecule, shared by all passes */
+    private AtomNeighbourList lastNeighbourList;
     
     /** Creates a new instance of MoleculeBuilderImpl */
     public MoleculeBuilderImpl() {
@@ -140,18 +147,26 @@ public class MoleculeBuilderImpl extends MoleculeBuilder {
         covalentRadius = new double[noOfAtoms];
         
         int i, j;        
-        String symbol;
+        int elementCode;
         
         for(i=0; i<noOfAtoms; i++) {
-            symbol = molecule.getAtom(i).getSymbol();
+            elementCode = molecule.getAtom(i).getElementCode();
             
-            covalentRadius[i] = atomInfo.getCovalentRadius(symbol);            
+            covalentRadius[i] = atomInfo.getCovalentRadius(elementCode);            
         } // end for
         
         // now since we have cached the entries, we run the loop over
         // the atoms to identify their bonding info
         Point3D atomCenter1, atomCenter2;
         Atom a1, a2;
+        // only the pairs in the neighbouring cells need to be checked
+        AtomNeighbourList neighbourList = getNeighbourList(molecule);
+        int [] neighbourOffsets = neighbourList.getNeighbourOffsets();
+        int [] neighbours = neighbourList.getNeighbours();
+        int k;
+
+        // the bonds are collected, and committed to the molecule at once
+        BondGraph.Builder bonds = new BondGraph.Builder();
         
         for(i=0; i<noOfAtoms; i++) {
             a1 = molecule.getAtom(i);
@@ -159,7 +174,8 @@ public class MoleculeBuilderImpl extends MoleculeBuilder {
             
             // >>> This is the place where defaultValency needs to be checked
             // >>> for a1
-            for(j=0; j<i; j++) {
+            for(k=neighbourOffsets[i]; k<neighbourOffsets[i+1]; k++) {
+                j  = neighbours[k];
                 a2 = molecule.getAtom(j);
                 atomCenter2 = a2.getAtomCenter();                
                 
@@ -168,12 +184,14 @@ public class MoleculeBuilderImpl extends MoleculeBuilder {
                     covalentRadiusSum = covalentRadius[i] + covalentRadius[j];
                     
                     if (isSingleBondPresent()) {
-                        molecule.setBondType(i, j, BondType.SINGLE_BOND);
+                        bonds.setBondType(i, j, BondType.SINGLE_BOND);
                         molecule.incrementNumberOfSingleBonds();
                     } // end if
                 } // end if
             } // end for
         } // end for                
+
+        molecule.commitBonds(bonds);
         
         // try to free up some memory
         covalentRadius = null;        
@@ -228,15 +246,15 @@ public class MoleculeBuilderImpl extends MoleculeBuilder {
         dblBndOverlaps = new double[noOfAtoms];        
         
         int i, j;        
-        String symbol;
+        int elementCode;
         
         for(i=0; i<noOfAtoms; i++) {
-            symbol = molecule.getAtom(i).getSymbol();
+            elementCode = molecule.getAtom(i).getElementCode();
             
-            covalentRadius[i] = atomInfo.getCovalentRadius(symbol);
-            vdwRadius[i]      = atomInfo.getVdwRadius(symbol);
-            weakBondAngle[i]  = atomInfo.getWeakBondAngle(symbol);
-            dblBndOverlaps[i] = atomInfo.getDoubleBondOverlap(symbol);
+            covalentRadius[i] = atomInfo.getCovalentRadius(elementCode);
+            vdwRadius[i]      = atomInfo.getVdwRadius(elementCode);
+            weakBondAngle[i]  = atomInfo.getWeakBondAngle(elementCode);
+            dblBndOverlaps[i] = atomInfo.getDoubleBondOverlap(elementCode);
         } // end for
         
         mbEvent.setEventDescription("Done with initial setup.");
@@ -248,6 +266,14 @@ public class MoleculeBuilderImpl extends MoleculeBuilder {
         // the atoms to identify their bonding info
         Point3D atomCenter1, atomCenter2;
         Atom a1, a2;
+        // only the pairs in the neighbouring cells need to be checked
+        AtomNeighbourList neighbourList = getNeighbourList(molecule);
+        int [] neighbourOffsets = neighbourList.getNeighbourOffsets();
+        int [] neighbours = neighbourList.getNeighbours();
+        int k;
+
+        // the bonds are collected, and committed to the molecule at once
+        BondGraph.Builder bonds = new BondGraph.Builder();
         
         for(i=0; i<noOfAtoms; i++) {
             a1 = molecule.getAtom(i);
@@ -255,7 +281,8 @@ public class MoleculeBuilderImpl extends MoleculeBuilder {
             
             // >>> This is the place where defaultValency needs to be checked
             // >>> for a1
-            for(j=0; j<i; j++) {
+            for(k=neighbourOffsets[i]; k<neighbourOffsets[i+1]; k++) {
+                j  = neighbours[k];
                 a2 = molecule.getAtom(j);
                 atomCenter2 = a2.getAtomCenter();                
                 
@@ -267,7 +294,7 @@ public class MoleculeBuilderImpl extends MoleculeBuilder {
                     vdwRadiusSum = vdwRadius[i] + vdwRadius[j];
                     covalentRadiusSum = covalentRadius[i] + covalentRadius[j];
                     if (isWeekBondPresent() && (!isSingleBondPresent())) { // weak bond?
-                      molecule.setBondType(i, j, BondType.WEAK_BOND);
+                      bonds.setBondType(i, j, BondType.WEAK_BOND);
                     } else {
                       if (isSingleBondPresent()) { 
                           doubleBondOverlap = 
@@ -277,18 +304,18 @@ public class MoleculeBuilderImpl extends MoleculeBuilder {
                                      : dblBndOverlaps[j])
                                  : dblBndOverlaps[i]);
                                  
-                          if (!(a1.getSymbol().equals("H") 
-                                 || a2.getSymbol().equals("H")) 
+                          if (!(a1.getElementCode() == HYDROGEN 
+                                 || a2.getElementCode() == HYDROGEN) 
                               && isDoubleBondPresent()) {
                              if (isTripleBondPresent()) { // triple bond
-                               molecule.setBondType(i, j, BondType.TRIPLE_BOND);
+                               bonds.setBondType(i, j, BondType.TRIPLE_BOND);
                                molecule.incrementNumberOfMultipleBonds();
                              } else { // double bond
-                               molecule.setBondType(i, j, BondType.DOUBLE_BOND);
+                               bonds.setBondType(i, j, BondType.DOUBLE_BOND);
                                molecule.incrementNumberOfMultipleBonds();
                              } // end if
                           } else { // single bond
-                              molecule.setBondType(i, j, BondType.SINGLE_BOND);
+                              bonds.setBondType(i, j, BondType.SINGLE_BOND);
                               molecule.incrementNumberOfSingleBonds();
                           } // end if
                       } // end if
@@ -296,6 +323,8 @@ public class MoleculeBuilderImpl extends MoleculeBuilder {
                 } // end if
             } // end for
         } // end for
+
+        molecule.commitBonds(bonds);
         
         mbEvent.setEventDescription("Connectivity build.");
         fireMoleculeBuildListenerBuildEvent(mbEvent);
@@ -365,16 +394,16 @@ public class MoleculeBuilderImpl extends MoleculeBuilder {
         weakBondAngle  = new double[noOfAtomsToFormConnectivity];
         dblBndOverlaps = new double[noOfAtomsToFormConnectivity];
         
-        String symbol;
+        int elementCode;
 
         for(Integer atomIndex : atomIndices) {
             try {
-                symbol = molecule.getAtom(atomIndex).getSymbol();
+                elementCode = molecule.getAtom(atomIndex).getElementCode();
 
-                covalentRadius[atomIndex] = atomInfo.getCovalentRadius(symbol);
-                vdwRadius[atomIndex]      = atomInfo.getVdwRadius(symbol);
-                weakBondAngle[atomIndex]  = atomInfo.getWeakBondAngle(symbol);
-                dblBndOverlaps[atomIndex] = atomInfo.getDoubleBondOverlap(symbol);
+                covalentRadius[atomIndex] = atomInfo.getCovalentRadius(elementCode);
+                vdwRadius[atomIndex]      = atomInfo.getVdwRadius(elementCode);
+                weakBondAngle[atomIndex]  = atomInfo.getWeakBondAngle(elementCode);
+                dblBndOverlaps[atomIndex] = atomInfo.getDoubleBondOverlap(elementCode);
             } catch(Exception ignored) { }
         } // end for
 
@@ -418,8 +447,8 @@ public class MoleculeBuilderImpl extends MoleculeBuilder {
                                          : dblBndOverlaps[j])
                                      : dblBndOverlaps[i]);
 
-                              if (!(a1.getSymbol().equals("H")
-                                     || a2.getSymbol().equals("H"))
+                              if (!(a1.getElementCode() == HYDROGEN
+                                     || a2.getElementCode() == HYDROGEN)
                                   && isDoubleBondPresent()) {
                                  if (isTripleBondPresent()) { // triple bond
                                    molecule.setBondType(i, j, BondType.TRIPLE_BOND);
@@ -490,14 +519,14 @@ public class MoleculeBuilderImpl extends MoleculeBuilder {
         weakBondAngle  = new double[noOfAtoms];
 
         int i, j;
-        String symbol;
+        int elementCode;
 
         for(i=0; i<noOfAtoms; i++) {
-            symbol = molecule.getAtom(i).getSymbol();
+            elementCode = molecule.getAtom(i).getElementCode();
 
-            covalentRadius[i] = atomInfo.getCovalentRadius(symbol);
-            vdwRadius[i]      = atomInfo.getVdwRadius(symbol);
-            weakBondAngle[i]  = atomInfo.getWeakBondAngle(symbol);
+            covalentRadius[i] = atomInfo.getCovalentRadius(elementCode);
+            vdwRadius[i]      = atomInfo.getVdwRadius(elementCode);
+            weakBondAngle[i]  = atomInfo.getWeakBondAngle(elementCode);
         } // end for
 
         mbEvent.setEventDescription("Done with initial setup.");
@@ -509,6 +538,14 @@ public class MoleculeBuilderImpl extends MoleculeBuilder {
         // the atoms to identify their bonding info
         Point3D atomCenter1, atomCenter2;
         Atom a1, a2;
+        // only the pairs in the neighbouring cells need to be checked
+        AtomNeighbourList neighbourList = getNeighbourList(molecule);
+        int [] neighbourOffsets = neighbourList.getNeighbourOffsets();
+        int [] neighbours = neighbourList.getNeighbours();
+        int k;
+
+        // the bonds are collected, and committed to the molecule at once
+        BondGraph.Builder bonds = new BondGraph.Builder();
 
         for(i=0; i<noOfAtoms; i++) {
             a1 = molecule.getAtom(i);
@@ -516,7 +553,8 @@ public class MoleculeBuilderImpl extends MoleculeBuilder {
 
             // >>> This is the place where defaultValency needs to be checked
             // >>> for a1
-            for(j=0; j<i; j++) {
+            for(k=neighbourOffsets[i]; k<neighbourOffsets[i+1]; k++) {
+                j  = neighbours[k];
                 a2 = molecule.getAtom(j);
                 atomCenter2 = a2.getAtomCenter();
 
@@ -528,12 +566,14 @@ public class MoleculeBuilderImpl extends MoleculeBuilder {
                     vdwRadiusSum = vdwRadius[i] + vdwRadius[j];
                     covalentRadiusSum = covalentRadius[i] + covalentRadius[j];
                     if (isWeekBondPresent() && (!isSingleBondPresent())) { // weak bond?
-                      molecule.setBondType(i, j, BondType.WEAK_BOND);
+                      bonds.setBondType(i, j, BondType.WEAK_BOND);
                     } // end if
                 } // end if
             } // end for
         } // end for
 
+        molecule.commitBonds(bonds);
+
         mbEvent.setEventDescription("Connectivity build.");
         fireMoleculeBuildListenerBuildEvent(mbEvent);
         mbEvent.setPercentCompletion(0.75);
@@ -583,13 +623,13 @@ public class MoleculeBuilderImpl extends MoleculeBuilder {
         dblBndOverlaps = new double[noOfAtoms];
 
         int i, j;
-        String symbol;
+        int elementCode;
 
         for(i=0; i<noOfAtoms; i++) {
-            symbol = molecule.getAtom(i).getSymbol();
+            elementCode = molecule.getAtom(i).getElementCode();
 
-            covalentRadius[i] = atomInfo.getCovalentRadius(symbol);
-            dblBndOverlaps[i] = atomInfo.getDoubleBondOverlap(symbol);
+            covalentRadius[i] = atomInfo.getCovalentRadius(elementCode);
+            dblBndOverlaps[i] = atomInfo.getDoubleBondOverlap(elementCode);
         } // end for
 
         mbEvent.setEventDescription("Done with initial setup.");
@@ -601,6 +641,14 @@ public class MoleculeBuilderImpl extends MoleculeBuilder {
         // the atoms to identify their bonding info
         Point3D atomCenter1, atomCenter2;
         Atom a1, a2;
+        // only the pairs in the neighbouring cells need to be checked
+        AtomNeighbourList neighbourList = getNeighbourList(molecule);
+        int [] neighbourOffsets = neighbourList.getNeighbourOffsets();
+        int [] neighbours = neighbourList.getNeighbours();
+        int k;
+
+        // the bonds are collected, and committed to the molecule at once
+        BondGraph.Builder bonds = new BondGraph.Builder();
 
         for(i=0; i<noOfAtoms; i++) {
             a1 = molecule.getAtom(i);
@@ -608,7 +656,8 @@ public class MoleculeBuilderImpl extends MoleculeBuilder {
 
             // >>> This is the place where defaultValency needs to be checked
             // >>> for a1
-            for(j=0; j<i; j++) {
+            for(k=neighbourOffsets[i]; k<neighbourOffsets[i+1]; k++) {
+                j  = neighbours[k];
                 a2 = molecule.getAtom(j);
                 atomCenter2 = a2.getAtomCenter();
 
@@ -624,14 +673,14 @@ public class MoleculeBuilderImpl extends MoleculeBuilder {
                                  : dblBndOverlaps[j])
                              : dblBndOverlaps[i]);
 
-                      if (!(a1.getSymbol().equals("H")
-                             || a2.getSymbol().equals("H"))
+                      if (!(a1.getElementCode() == HYDROGEN
+                             || a2.getElementCode() == HYDROGEN)
                           && isDoubleBondPresent()) {
                          if (isTripleBondPresent()) { // triple bond
-                           molecule.setBondType(i, j, BondType.TRIPLE_BOND);
+                           bonds.setBondType(i, j, BondType.TRIPLE_BOND);
                            molecule.incrementNumberOfMultipleBonds();
                          } else { // double bond
-                           molecule.setBondType(i, j, BondType.DOUBLE_BOND);
+                           bonds.setBondType(i, j, BondType.DOUBLE_BOND);
                            molecule.incrementNumberOfMultipleBonds();
                          } // end if
                       } // end if
@@ -640,6 +689,8 @@ public class MoleculeBuilderImpl extends MoleculeBuilder {
             } // end for
         } // end for
 
+        molecule.commitBonds(bonds);
+
         mbEvent.setEventDescription("Connectivity build.");
         fireMoleculeBuildListenerBuildEvent(mbEvent);
         mbEvent.setPercentCompletion(0.75);
@@ -674,27 +725,27 @@ public class MoleculeBuilderImpl extends MoleculeBuilder {
      */
     @Override
     public boolean canFormBond(Atom a1, Atom a2, BondType bondtype) {
-        String a1Symbol = a1.getSymbol();
-        String a2Symbol = a2.getSymbol();
+        int a1Element = a1.getElementCode();
+        int a2Element = a2.getElementCode();
         
-        if (a1.getDegree() + 1 > atomInfo.getDefaultValency(a1Symbol)) 
+        if (a1.getDegree() + 1 > atomInfo.getDefaultValency(a1Element)) 
             return false;
         
         if (!canFormBond(a1.getAtomCenter(), a2.getAtomCenter())) return false;                
         
-        covalentRadiusSum = atomInfo.getCovalentRadius(a1Symbol) 
-                            + atomInfo.getCovalentRadius(a2Symbol);
-        vdwRadiusSum      = atomInfo.getVdwRadius(a1Symbol)
-                            + atomInfo.getVdwRadius(a2Symbol);
+        covalentRadiusSum = atomInfo.getCovalentRadius(a1Element) 
+                            + atomInfo.getCovalentRadius(a2Element);
+        vdwRadiusSum      = atomInfo.getVdwRadius(a1Element)
+                            + atomInfo.getVdwRadius(a2Element);
         
         if (bondtype.equals(BondType.SINGLE_BOND)) return isSingleBondPresent();
         if (bondtype.equals(BondType.DOUBLE_BOND)) { 
             doubleBondOverlap = 
-                        ((atomInfo.getDoubleBondOverlap(a1Symbol) == 0.0) ? 
-                             (atomInfo.getDoubleBondOverlap(a2Symbol) == 0.0 ? 
+                        ((atomInfo.getDoubleBondOverlap(a1Element) == 0.0) ? 
+                             (atomInfo.getDoubleBondOverlap(a2Element) == 0.0 ? 
                                  DOUBLE_BOND_OVERLAP_PERCENTAGE
-                                 : atomInfo.getDoubleBondOverlap(a2Symbol))
-                             : atomInfo.getDoubleBondOverlap(a1Symbol));
+                                 : atomInfo.getDoubleBondOverlap(a2Element))
+                             : atomInfo.getDoubleBondOverlap(a1Element));
             return (isSingleBondPresent() && isDoubleBondPresent());
         } // end if
         if (bondtype.equals(BondType.TRIPLE_BOND))
@@ -704,6 +755,42 @@ public class MoleculeBuilderImpl extends MoleculeBuilder {
         return false;
     }
     
+    /**
+     * Get the list of atom pairs of a molecule that are close enough to be
+     * bonded, by any of the criteria in this class. The list is made once
+     * and shared by the bond detection passes, until the atoms of the
+     * molecule move or change.
+     *
+     * @param molecule the molecule whose close pairs are needed
+     * @return the neighbour list of the molecule
+     */
+    protected AtomNeighbourList getNeighbourList(Molecule molecule) {
+        int noOfAtoms = molecule.getNumberOfAtoms();
+        double maxCovalentRadius = 0.0, maxVdwRadius = 0.0;
+        int elementCode;
+
+        for(int i=0; i<noOfAtoms; i++) {
+            elementCode = molecule.getAtom(i).getElementCode();
+
+            maxCovalentRadius = Math.max(maxCovalentRadius,
+                                         atomInfo.getCovalentRadius(elementCode));
+            maxVdwRadius      = Math.max(maxVdwRadius,
+                                         atomInfo.getVdwRadius(elementCode));
+        } // end for
+
+        // no bond is possible beyond these, or beyond BOND_RADIUS_CHECK
+        double cutoff = Math.min(BOND_RADIUS_CHECK, Math.max(
+                       2.0 * maxCovalentRadius + COVALENT_BOND_TOLERANCE,
+                       2.0 * maxVdwRadius - WEAK_BOND_TOLERANCE_LOWER));
+
+        if (lastNeighbourList == null
+            || !lastNeighbourList.isValidFor(molecule, cutoff)) {
+            lastNeighbourList = new AtomNeighbourList(molecule, cutoff);
+        } // end if
+
+        return lastNeighbourList;
+    }
+
     /**
      * A method that smartly calculates the distance between two points
      * by taking in to cognizance the separation along X, Y and Z coordinates.
@@ -771,37 +858,38 @@ public class MoleculeBuilderImpl extends MoleculeBuilder {
     protected void confirmWeakBonds() {
         int noOfAtoms = molecule.getNumberOfAtoms();
         
-        int i, j;
-        Object connectedAtom;
-        Hashtable connectedList;
-        Enumeration connectedAtoms;
+        int i, j, k;
+        BondGraph bondGraph = molecule.getBondGraph();
+        int [] offsets = bondGraph.getOffsets();
+        int [] neighbours = bondGraph.getNeighbours();
+        byte [] bondTypes = bondGraph.getBondTypes();
+        byte weakBond = BondGraph.toCode(BondType.WEAK_BOND);
+        BondGraph.Builder removedBonds = new BondGraph.Builder();
                 
         // check for each weak bond, and verify its correctness by
         // checking for proper orientation
         for(i=0; i<noOfAtoms; i++) {
-            connectedList  = molecule.getAtom(i).getConnectedList();
-            connectedAtoms = connectedList.keys();
-            
-            while(connectedAtoms.hasMoreElements()) {
-              connectedAtom = connectedAtoms.nextElement();
-               
+            for(k=offsets[i]; k<offsets[i+1]; k++) {
               // if weak bond is present ... need to evaluate it!
-              if (connectedList.get(connectedAtom).equals(BondType.WEAK_BOND)) {
-                  j = ((Integer) connectedAtom).intValue();
+              if (bondTypes[k] == weakBond) {
+                  j = neighbours[k];
                                    
                   if (!isOrientedProperly(i, j)) {
                       // well .. no bonding verifiable, so remove it!
-                      // i hope this does not cause some inconsistency with
-                      // the DS !!??
-                      molecule.removeBondBetween(i, j);                      
+                      // (all at once, after the checks)
+                      removedBonds.setBondType(i, j, BondType.NO_BOND);
                   } else {
                       // yes, we have a weak bond here
                       molecule.incrementNumberOfWeakBonds();
                   } // end if
               }
-            } // end while
+            } // end for
         } // end for
 
+        if (removedBonds.getNumberOfEdits() > 0) {
+            molecule.commitBonds(removedBonds);
+        } // end if
+
         // put a marker on what is detected
         molecule.setCommonUserDefinedProperty(
            CommonUserDefinedMolecularPropertyNames.WEAK_BOND_DETECTED, true);
@@ -844,8 +932,7 @@ public class MoleculeBuilderImpl extends MoleculeBuilder {
         atom1 = molecule.getAtom(atomIndex1);
         atom2 = molecule.getAtom(atomIndex2);
         
-        if ((atom1.getConnectedList().size() == 0)
-            || (atom2.getConnectedList().size() == 0)) {
+        if ((atom1.getDegree() == 0) || (atom2.getDegree() == 0)) {
             return true;
         } // end if
         
@@ -899,20 +986,22 @@ public class MoleculeBuilderImpl extends MoleculeBuilder {
      * @return Vector3D - representing the axis !
      */
     protected Vector3D computeAxis(Atom atom, int atomIndex) {
-        Hashtable connectedList    = atom.getConnectedList();
-        Enumeration connectedAtoms = connectedList.keys();
+        BondGraph bondGraph = molecule.getBondGraph();
+        int [] offsets      = bondGraph.getOffsets();
+        int [] neighbours   = bondGraph.getNeighbours();
+        byte [] bondTypes   = bondGraph.getBondTypes();
         int connectedAtom;
         
         Vector3D axis = Vector3D.NULL_VECTOR;
         
-        while(connectedAtoms.hasMoreElements()) {
-            connectedAtom = ((Integer) connectedAtoms.nextElement()).intValue();
+        for(int k=offsets[atomIndex]; k<offsets[atomIndex+1]; k++) {
+            connectedAtom = neighbours[k];
             
-            if (molecule.isStronglyBonded(atomIndex, connectedAtom)) {                
+            if (BondGraph.toBondType(bondTypes[k]).isStrongBond()) {                
                 axis = axis.add(atom.getAtomCenter().sub(
                               molecule.getAtom(connectedAtom).getAtomCenter()));
             } // end if
-        } // end while               
+        } // end for               
         
         return axis.normalize();
     }
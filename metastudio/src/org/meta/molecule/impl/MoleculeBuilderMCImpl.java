@@ -6,8 +6,11 @@
 
 package org.meta.molecule.impl;
 
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.meta.math.geom.Point3D;
 import org.meta.molecule.Atom;
+import org.meta.molecule.BondGraph;
 import org.meta.molecule.BondType;
 import org.meta.molecule.CommonUserDefinedMolecularPropertyNames;
 import org.meta.molecule.Molecule;
@@ -36,6 +39,12 @@ public class MoleculeBuilderMCImpl extends MoleculeBuilderImpl {
      * <code>PARALLEL_THRESHOLD</code> atoms to handle.
      */
     public static final int PARALLEL_THRESHOLD = 3;
+
+    /** the least number of candidate pairs in a block of atoms */
+    public static final int MIN_PAIRS_PER_BLOCK = 4096;
+
+    /** the number of blocks of atoms, per processor, for load balancing */
+    public static final int BLOCKS_PER_PROCESSOR = 8;
     
     /** Creates a new instance of MoleculeBuilderMCImpl */
     public MoleculeBuilderMCImpl() {
@@ -96,15 +105,15 @@ public class MoleculeBuilderMCImpl extends MoleculeBuilderImpl {
         dblBndOverlaps = new double[noOfAtoms];        
         
         int i;        
-        String symbol;
+        int elementCode;
         
         for(i=0; i<noOfAtoms; i++) {
-            symbol = molecule.getAtom(i).getSymbol();
+            elementCode = molecule.getAtom(i).getElementCode();
             
-            covalentRadius[i] = atomInfo.getCovalentRadius(symbol);
-            vdwRadius[i]      = atomInfo.getVdwRadius(symbol);
-            weakBondAngle[i]  = atomInfo.getWeakBondAngle(symbol);
-            dblBndOverlaps[i] = atomInfo.getDoubleBondOverlap(symbol);
+            covalentRadius[i] = atomInfo.getCovalentRadius(elementCode);
+            vdwRadius[i]      = atomInfo.getVdwRadius(elementCode);
+            weakBondAngle[i]  = atomInfo.getWeakBondAngle(elementCode);
+            dblBndOverlaps[i] = atomInfo.getDoubleBondOverlap(elementCode);
         } // end for
         
         mbEvent.setEventDescription("Done with initial setup.");
@@ -112,15 +121,22 @@ public class MoleculeBuilderMCImpl extends MoleculeBuilderImpl {
         mbEvent.setPercentCompletion(0.05);
         fireMoleculeBuildListenerBuildEvent(mbEvent);                
         
+        // the candidate pairs are handed out in blocks to the threads, which
+        // collect the bonds of each block separately
+        BondBlocks bondBlocks = new BondBlocks(getNeighbourList(molecule));
+
         SimpleParallelTaskExecuter pTaskExecuter
                                    = new SimpleParallelTaskExecuter();
 
         MoleculeBuilderThread tThread
-                   = new MoleculeBuilderThread(molecule);
+                   = new MoleculeBuilderThread(molecule, bondBlocks);
         tThread.setTaskName("MoleculeBuilder Thread");
-        tThread.setTotalItems(molecule.getNumberOfAtoms());
+        tThread.setTotalItems(bondBlocks.getNumberOfBlocks());
 
         pTaskExecuter.execute(tThread);
+
+        // then commit them at once, in the order of the blocks
+        bondBlocks.commitBonds(molecule);
         
         // and then do the rest of the stuff in the usual way ...
         mbEvent.setEventDescription("Connectivity build.");
@@ -172,7 +188,7 @@ public class MoleculeBuilderMCImpl extends MoleculeBuilderImpl {
     public void makeSimpleConnectivity(Molecule molecule) {
         // and also check if we have sufficient atoms to really "reap" benifit
         if (molecule.getNumberOfAtoms() <= PARALLEL_THRESHOLD) {
-            super.makeConnectivity(molecule);
+            super.makeSimpleConnectivity(molecule);
 
             return;
         } // end if
@@ -200,24 +216,31 @@ public class MoleculeBuilderMCImpl extends MoleculeBuilderImpl {
         covalentRadius = new double[noOfAtoms];
 
         int i;
-        String symbol;
+        int elementCode;
 
         for(i=0; i<noOfAtoms; i++) {
-            symbol = molecule.getAtom(i).getSymbol();
+            elementCode = molecule.getAtom(i).getElementCode();
 
-            covalentRadius[i] = atomInfo.getCovalentRadius(symbol);
+            covalentRadius[i] = atomInfo.getCovalentRadius(elementCode);
         } // end for
 
+        // the candidate pairs are handed out in blocks to the threads, which
+        // collect the bonds of each block separately
+        BondBlocks bondBlocks = new BondBlocks(getNeighbourList(molecule));
+
         SimpleParallelTaskExecuter pTaskExecuter
                                    = new SimpleParallelTaskExecuter();
 
         SimpleMoleculeBuilderThread tThread
-                   = new SimpleMoleculeBuilderThread(molecule);
+                   = new SimpleMoleculeBuilderThread(molecule, bondBlocks);
         tThread.setTaskName("SimpleMoleculeBuilder Thread");
-        tThread.setTotalItems(molecule.getNumberOfAtoms());
+        tThread.setTotalItems(bondBlocks.getNumberOfBlocks());
 
         pTaskExecuter.execute(tThread);
 
+        // then commit them at once, in the order of the blocks
+        bondBlocks.commitBonds(molecule);
+
         // and then do the rest of the stuff in the usual way ...
         mbEvent.setEventDescription("Connectivity build.");
         fireMoleculeBuildListenerBuildEvent(mbEvent);
@@ -235,25 +258,190 @@ public class MoleculeBuilderMCImpl extends MoleculeBuilderImpl {
         molecule.enableListeners(); // enable the listeners
     }
     
+    /**
+     * The blocks of atoms, with about the same number of candidate pairs
+     * each, in which the threads look for bonds. A thread takes up the
+     * next free block as soon as it is done with one, so that no thread is
+     * held up by the denser parts of the molecule. The bonds of each block
+     * are kept apart and committed in the order of the blocks, so the
+     * result does not depend on the threads and is the same as that of the
+     * serial builder.
+     */
+    protected static class BondBlocks {
+        private AtomNeighbourList neighbourList;
+        private int noOfBlocks;
+        private int [] blockStarts;
+        private BondGraph.Builder [] bonds;
+        private int [] singleBonds, multipleBonds;
+        private AtomicInteger nextBlock;
+
+        public BondBlocks(AtomNeighbourList neighbourList) {
+            this.neighbourList = neighbourList;
+
+            int noOfAtoms = neighbourList.getNumberOfAtoms();
+            int [] neighbourOffsets = neighbourList.getNeighbourOffsets();
+            int pairsPerBlock = Math.max(MIN_PAIRS_PER_BLOCK,
+                    neighbourOffsets[noOfAtoms] / (BLOCKS_PER_PROCESSOR
+                              * Runtime.getRuntime().availableProcessors()));
+            int pairs = 0;
+
+            blockStarts = new int[noOfAtoms+1];
+            noOfBlocks  = 0;
+
+            for(int i=0; i<noOfAtoms; i++) {
+                if (i == 0 || pairs >= pairsPerBlock) {
+                    blockStarts[noOfBlocks++] = i;
+                    pairs = 0;
+                } // end if
+
+                pairs += neighbourOffsets[i+1] - neighbourOffsets[i];
+            } // end for
+
+            blockStarts[noOfBlocks] = noOfAtoms;
+            blockStarts = Arrays.copyOf(blockStarts, noOfBlocks+1);
+
+            bonds         = new BondGraph.Builder[noOfBlocks];
+            singleBonds   = new int[noOfBlocks];
+            multipleBonds = new int[noOfBlocks];
+            nextBlock     = new AtomicInteger(0);
+        }
+
+        /**
+         * Take up the next block that is not yet taken by any thread
+         *
+         * @return the index of the block, or -1 if all are taken
+         */
+        public int nextBlock() {
+            int block = nextBlock.getAndIncrement();
+
+            if (block >= noOfBlocks) return -1;
+
+            bonds[block] = new BondGraph.Builder();
+
+            return block;
+        }
+
+        /**
+         * Get the bonds found in a block, to which the thread working on
+         * it adds
+         *
+         * @param block the index of the block
+         * @return the bonds of the block
+         */
+        public BondGraph.Builder getBonds(int block) {
+            return bonds[block];
+        }
+
+        /**
+         * Count a single bond found in a block
+         *
+         * @param block the index of the block
+         */
+        public void incrementNumberOfSingleBonds(int block) {
+            singleBonds[block]++;
+        }
+
+        /**
+         * Count a double or triple bond found in a block
+         *
+         * @param block the index of the block
+         */
+        public void incrementNumberOfMultipleBonds(int block) {
+            multipleBonds[block]++;
+        }
+
+        /**
+         * Commit the bonds found in all the blocks to the molecule, once
+         * all the threads are done.
+         *
+         * @param molecule the molecule whose connectivity is being built
+         */
+        public void commitBonds(Molecule molecule) {
+            BondGraph.Builder allBonds = new BondGraph.Builder();
+            int noOfSingleBonds = 0, noOfMultipleBonds = 0;
+
+            for(int block=0; block<noOfBlocks; block++) {
+                if (bonds[block] == null) continue;
+
+                allBonds.addAll(bonds[block]);
+                bonds[block] = null;
+
+                noOfSingleBonds   += singleBonds[block];
+                noOfMultipleBonds += multipleBonds[block];
+            } // end for
+
+            molecule.commitBonds(allBonds);
+
+            molecule.setNumberOfSingleBonds(
+                      molecule.getNumberOfSingleBonds() + noOfSingleBonds);
+            molecule.setNumberOfMultipleBonds(
+                      molecule.getNumberOfMultipleBonds() + noOfMultipleBonds);
+        }
+
+        /**
+         * Get the value of neighbourList
+         *
+         * @return the value of neighbourList
+         */
+        public AtomNeighbourList getNeighbourList() {
+            return neighbourList;
+        }
+
+        /**
+         * Get the value of noOfBlocks
+         *
+         * @return the value of noOfBlocks
+         */
+        public int getNumberOfBlocks() {
+            return noOfBlocks;
+        }
+
+        /**
+         * Get the index of the first atom of a block
+         *
+         * @param block the index of the block
+         * @return the first atom of the block
+         */
+        public int getBlockStart(int block) {
+            return blockStarts[block];
+        }
+
+        /**
+         * Get the index of the atom past the last atom of a block
+         *
+         * @param block the index of the block
+         * @return the end of the block
+         */
+        public int getBlockEnd(int block) {
+            return blockStarts[block+1];
+        }
+    } // end of class BondBlocks
+
     /**
      * The molecule builder Thread ... that does the actual job of
-     * partially building the connectivity of Molecule (for makeConnectivity())
+     * partially building the connectivity of Molecule (for makeConnectivity()).
+     * It keeps on taking up blocks of atoms till there are none left, so the
+     * range of items it is initialised with only decides how many of these
+     * threads are run.
      */
     protected class MoleculeBuilderThread extends AbstractSimpleParallelTask {
         private Molecule molecule;
-        private int startAtomIndex, endAtomIndex, i, j;
+        private BondBlocks bondBlocks;
+        private int i, j;
         private double vdwRadiusSum, covalentRadiusSum, doubleBondOverlap,
                        distance, x, y, z;
 
-        public MoleculeBuilderThread(Molecule molecule) {
-            this.molecule = molecule;
+        public MoleculeBuilderThread(Molecule molecule, BondBlocks bondBlocks) {
+            this.molecule   = molecule;
+            this.bondBlocks = bondBlocks;
         }
         
-        public MoleculeBuilderThread(Molecule molecule, 
-                                     int startAtomIndex, int endAtomIndex) {
-           this.molecule       = molecule;
-           this.startAtomIndex = startAtomIndex;
-           this.endAtomIndex   = endAtomIndex;
+        public MoleculeBuilderThread(Molecule molecule, BondBlocks bondBlocks,
+                                     int startItem, int endItem) {
+           this.molecule   = molecule;
+           this.bondBlocks = bondBlocks;
+           this.startItem  = startItem;
+           this.endItem    = endItem;
            
            setTaskName("MoleculeBuilder Thread");
         }
@@ -261,16 +449,35 @@ public class MoleculeBuilderMCImpl extends MoleculeBuilderImpl {
         /** overriden run() */
         @Override
         public void run() {
+            int block;
+
+            while((block = bondBlocks.nextBlock()) >= 0) {
+                findBonds(block);
+            } // end while
+        }
+
+        /**
+         * find the bonds of the atoms in a block, with the ones of lower
+         * index
+         */
+        private void findBonds(int block) {
             Point3D atomCenter1, atomCenter2;
             Atom a1, a2;
-
-            for(i=startAtomIndex; i<endAtomIndex; i++) {
+            AtomNeighbourList neighbourList = bondBlocks.getNeighbourList();
+            int [] neighbourOffsets = neighbourList.getNeighbourOffsets();
+            int [] neighbours = neighbourList.getNeighbours();
+            int k;
+            BondGraph.Builder bonds = bondBlocks.getBonds(block);
+            int endAtomIndex = bondBlocks.getBlockEnd(block);
+
+            for(i=bondBlocks.getBlockStart(block); i<endAtomIndex; i++) {
                 a1 = molecule.getAtom(i);
                 atomCenter1 = a1.getAtomCenter();            
 
                 // >>> This is the place where defaultValency needs to be checked
                 // >>> for a1
-                for(j=0; j<i; j++) {
+                for(k=neighbourOffsets[i]; k<neighbourOffsets[i+1]; k++) {
+                    j  = neighbours[k];
                     a2 = molecule.getAtom(j);
                     atomCenter2 = a2.getAtomCenter();                
 
@@ -282,7 +489,7 @@ public class MoleculeBuilderMCImpl extends MoleculeBuilderImpl {
                         vdwRadiusSum = vdwRadius[i] + vdwRadius[j];
                         covalentRadiusSum = covalentRadius[i] + covalentRadius[j];
                         if (isWeekBondPresent() && (!isSingleBondPresent())) { // weak bond?
-                          molecule.setBondType(i, j, BondType.WEAK_BOND);
+                          bonds.setBondType(i, j, BondType.WEAK_BOND);
                         } else {
                           if (isSingleBondPresent()) { 
                               doubleBondOverlap = 
@@ -292,19 +499,19 @@ public class MoleculeBuilderMCImpl extends MoleculeBuilderImpl {
                                          : dblBndOverlaps[j])
                                      : dblBndOverlaps[i]);
 
-                              if (!(a1.getSymbol().equals("H") 
-                                     || a2.getSymbol().equals("H")) 
+                              if (!(a1.getElementCode() == HYDROGEN
+                                     || a2.getElementCode() == HYDROGEN)
                                   && isDoubleBondPresent()) {
                                  if (isTripleBondPresent()) { // triple bond
-                                   molecule.setBondType(i, j, BondType.TRIPLE_BOND);
-                                   molecule.incrementNumberOfMultipleBonds();
+                                   bonds.setBondType(i, j, BondType.TRIPLE_BOND);
+                                   bondBlocks.incrementNumberOfMultipleBonds(block);
                                  } else { // double bond
-                                   molecule.setBondType(i, j, BondType.DOUBLE_BOND);
-                                   molecule.incrementNumberOfMultipleBonds();
+                                   bonds.setBondType(i, j, BondType.DOUBLE_BOND);
+                                   bondBlocks.incrementNumberOfMultipleBonds(block);
                                  } // end if
                               } else { // single bond
-                                  molecule.setBondType(i, j, BondType.SINGLE_BOND);
-                                  molecule.incrementNumberOfSingleBonds();
+                                  bonds.setBondType(i, j, BondType.SINGLE_BOND);
+                                  bondBlocks.incrementNumberOfSingleBonds(block);
                               } // end if
                           } // end if
                         } // end if
@@ -316,7 +523,8 @@ public class MoleculeBuilderMCImpl extends MoleculeBuilderImpl {
         /** Overridden init() */
         @Override
         public SimpleParallelTask init(int startItem, int endItem) {
-            return new MoleculeBuilderThread(molecule, startItem, endItem);
+            return new MoleculeBuilderThread(molecule, bondBlocks,
+                                             startItem, endItem);
         }
 
         // the following methods are duplicated for thread security reasons.
@@ -389,18 +597,23 @@ public class MoleculeBuilderMCImpl extends MoleculeBuilderImpl {
      */
     protected class SimpleMoleculeBuilderThread extends AbstractSimpleParallelTask {
         private Molecule molecule;
-        private int startAtomIndex, endAtomIndex, i, j;
+        private BondBlocks bondBlocks;
+        private int i, j;
         private double covalentRadiusSum, distance, x, y, z;
 
-        public SimpleMoleculeBuilderThread(Molecule molecule) {
-            this.molecule = molecule;
+        public SimpleMoleculeBuilderThread(Molecule molecule,
+                                           BondBlocks bondBlocks) {
+            this.molecule   = molecule;
+            this.bondBlocks = bondBlocks;
         }
 
         public SimpleMoleculeBuilderThread(Molecule molecule,
-                                     int startAtomIndex, int endAtomIndex) {
-           this.molecule       = molecule;
-           this.startAtomIndex = startAtomIndex;
-           this.endAtomIndex   = endAtomIndex;
+                                           BondBlocks bondBlocks,
+                                           int startItem, int endItem) {
+           this.molecule   = molecule;
+           this.bondBlocks = bondBlocks;
+           this.startItem  = startItem;
+           this.endItem    = endItem;
            
            setTaskName("MoleculeBuilder Thread");
         }
@@ -408,26 +621,42 @@ public class MoleculeBuilderMCImpl extends MoleculeBuilderImpl {
         /** overriden run() */
         @Override
         public void run() {
+            int block;
+
+            while((block = bondBlocks.nextBlock()) >= 0) {
+                findBonds(block);
+            } // end while
+        }
+
+        /**
+         * find the single bonds of the atoms in a block, with the ones of
+         * lower index
+         */
+        private void findBonds(int block) {
             Point3D atomCenter1, atomCenter2;
-            Atom a1, a2;
+            AtomNeighbourList neighbourList = bondBlocks.getNeighbourList();
+            int [] neighbourOffsets = neighbourList.getNeighbourOffsets();
+            int [] neighbours = neighbourList.getNeighbours();
+            int k;
+            BondGraph.Builder bonds = bondBlocks.getBonds(block);
+            int endAtomIndex = bondBlocks.getBlockEnd(block);
 
-            for(i=startAtomIndex; i<endAtomIndex; i++) {
-                a1 = molecule.getAtom(i);
-                atomCenter1 = a1.getAtomCenter();
+            for(i=bondBlocks.getBlockStart(block); i<endAtomIndex; i++) {
+                atomCenter1 = molecule.getAtom(i).getAtomCenter();
 
                 // >>> This is the place where defaultValency needs to be checked
                 // >>> for a1
-                for(j=0; j<i; j++) {
-                    a2 = molecule.getAtom(j);
-                    atomCenter2 = a2.getAtomCenter();
+                for(k=neighbourOffsets[i]; k<neighbourOffsets[i+1]; k++) {
+                    j = neighbours[k];
+                    atomCenter2 = molecule.getAtom(j).getAtomCenter();
 
                     // we only identify single bonds here
                     if (canFormBond(atomCenter1, atomCenter2)) {
                         covalentRadiusSum = covalentRadius[i] + covalentRadius[j];
 
                         if (isSingleBondPresent()) {
-                            molecule.setBondType(i, j, BondType.SINGLE_BOND);
-                            molecule.incrementNumberOfSingleBonds();
+                            bonds.setBondType(i, j, BondType.SINGLE_BOND);
+                            bondBlocks.incrementNumberOfSingleBonds(block);
                         } // end if
                     } // end if
                 }
@@ -470,7 +699,8 @@ public class MoleculeBuilderMCImpl extends MoleculeBuilderImpl {
         /** Overridden init() */
         @Override
         public SimpleParallelTask init(int startItem, int endItem) {
-            return new SimpleMoleculeBuilderThread(molecule, startItem, endItem);
+            return new SimpleMoleculeBuilderThread(molecule, bondBlocks,
+                                                   startItem, endItem);
         }
     } // end of class SimpleMoleculeBuilderThread
 
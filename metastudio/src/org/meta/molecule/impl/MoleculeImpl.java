@@ -18,6 +18,7 @@ import org.meta.fragmentor.FragmentGoodnessProbeFactory;
 import org.meta.fragmentor.FragmentationScheme;
 import org.meta.fragmentor.FragmentationSchemeFactory;
 import org.meta.molecule.Atom;
+import org.meta.molecule.BondGraph;
 import org.meta.molecule.BondType;
 import org.meta.molecule.MolecularFormula;
 import org.meta.molecule.Molecule;
@@ -53,6 +54,9 @@ public class MoleculeImpl extends Molecule {
     private SpecialStructureRecognizer defaultSSR;
     
     private FragmentationScheme defaultFragmentationScheme;
+
+    /** the bonds last committed, held by the atoms */
+    private BondGraph bondGraph;
     
     /** Creates a new instance of MoleculeImpl */
     public MoleculeImpl() {
@@ -109,16 +113,17 @@ public class MoleculeImpl extends Molecule {
     @Override
     public void addAtom(Atom atom) {
         atomList.add(atom);
+        bondGraph = null;
         
         // adjust the molecular weight, and center of mass
-        double mass = atomInfo.getAtomicWeight(atom.getSymbol());
+        double mass = atomInfo.getAtomicWeight(atom.getElementCode());
         molecularMass += mass;
         centerOfMass.setX(centerOfMass.getX() + (mass * atom.getX()));
         centerOfMass.setY(centerOfMass.getY() + (mass * atom.getY()));
         centerOfMass.setZ(centerOfMass.getZ() + (mass * atom.getZ()));
         
         // and numberOfElectrons
-        numberOfElectrons += atomInfo.getAtomicNumber(atom.getSymbol());
+        numberOfElectrons += atomInfo.getAtomicNumber(atom.getElementCode());
         
         // fire the change event 
         stateChanged = true;
@@ -138,17 +143,18 @@ public class MoleculeImpl extends Molecule {
         Atom atom = (Atom) atomList.get(atomIndex);
                 
         // adjust the molecular weight and COM
-        double mass = atomInfo.getAtomicWeight(atom.getSymbol());
+        double mass = atomInfo.getAtomicWeight(atom.getElementCode());
         molecularMass -= mass;
         centerOfMass.setX(centerOfMass.getX() - (mass * atom.getX()));
         centerOfMass.setY(centerOfMass.getY() - (mass * atom.getY()));
         centerOfMass.setZ(centerOfMass.getZ() - (mass * atom.getZ()));
         
         // and numberOfElectrons
-        numberOfElectrons -= atomInfo.getAtomicNumber(atom.getSymbol());
+        numberOfElectrons -= atomInfo.getAtomicNumber(atom.getElementCode());
         
         // remove the atom
         atomList.remove(atomIndex);
+        bondGraph = null;
         
         // then reindex the atoms
         Iterator atoms = atomList.iterator();
@@ -285,6 +291,7 @@ public class MoleculeImpl extends Molecule {
     @Override
     public void setAtom(int atomIndex, Atom atom) {
         atomList.set(atomIndex, atom);
+        bondGraph = null;
     }
     
     /** 
@@ -522,6 +529,47 @@ public class MoleculeImpl extends Molecule {
         fireMoleculeStateChangeListenerMoleculeChanged(msce);        
     }   
     
+    /**
+     * Get all the bonds of this molecule as a compact bond graph. The
+     * graph last committed is returned as long as no bond or atom has been
+     * changed since, else a new one is made.
+     *
+     * @return the bond graph of this molecule
+     */
+    @Override
+    public BondGraph getBondGraph() {
+        BondGraph graph = bondGraph;
+
+        if (graph != null && !graph.isStale()) return graph;
+
+        return BondGraph.fromMolecule(this);
+    }
+
+    /**
+     * Apply a number of bond edits at once, as if by setBondType() for each
+     * of them in order, but with only one (BONDS_MODIFIED) change event
+     * fired for all of them. The resulting bonds of all the atoms are held
+     * in one bond graph, rather than in tables of each atom.
+     *
+     * @param bonds the bond edits to be applied
+     */
+    @Override
+    public void commitBonds(BondGraph.Builder bonds) {
+        int noOfAtoms = atomList.size();
+        BondGraph graph = bonds.build(getBondGraph(), noOfAtoms);
+
+        for(int i=0; i<noOfAtoms; i++) {
+            atomList.get(i).setBondGraph(graph, i);
+        } // end for
+
+        bondGraph = graph;
+
+        msce.setEventType(MoleculeStateChangeEvent.BONDS_MODIFIED);
+        msce.setAtom1(null);
+        msce.setAtom2(null);
+        fireMoleculeStateChangeListenerMoleculeChanged(msce);
+    }
+
     /**
      * Method to remove the bond between an atom pair
      *
@@ -739,7 +787,7 @@ public class MoleculeImpl extends Molecule {
 
             atom.setAtomCenter(new Point3D(x, y, z));
 
-            double mass = atomInfo.getAtomicWeight(atom.getSymbol());
+            double mass = atomInfo.getAtomicWeight(atom.getElementCode());
             centerOfMass.setX(centerOfMass.getX() + (mass * x));
             centerOfMass.setY(centerOfMass.getY() + (mass * y));
             centerOfMass.setZ(centerOfMass.getZ() + (mass * z));
@@ -813,11 +861,11 @@ public class MoleculeImpl extends Molecule {
         
         if (recursionLevel == 4) return;
                 
-        Enumeration<Integer> connectList = atomList.get(atomIndex)
-                                          .getConnectedList().keys();
+        Iterator<Integer> connectList = atomList.get(atomIndex)
+                                  .getConnections().keySet().iterator();
         
-        while(connectList.hasMoreElements()) {
-            Integer toVisit = connectList.nextElement();
+        while(connectList.hasNext()) {
+            Integer toVisit = connectList.next();
             
             // visited already? then cycle
             if (visited.contains(toVisit)) continue;                        
@@ -850,12 +898,12 @@ public class MoleculeImpl extends Molecule {
 
               visited.add(toVisit);
 
-              Hashtable<Integer, BondType> connedAtoms
-                                  = atomList.get(toVisit).getConnectedList();
-              Enumeration<Integer> connectList = connedAtoms.keys();
+              Map<Integer, BondType> connedAtoms
+                                  = atomList.get(toVisit).getConnections();
+              Iterator<Integer> connectList = connedAtoms.keySet().iterator();
 
-              while(connectList.hasMoreElements()) {
-                Integer visitThis = connectList.nextElement();
+              while(connectList.hasNext()) {
+                Integer visitThis = connectList.next();
 
                 // if already visited dont worry much
                 if (visited.contains(visitThis)) continue;
@@ -876,15 +924,16 @@ public class MoleculeImpl extends Molecule {
     private void traverseAndRecordBFS(int atomIndex, 
                                       ArrayList<Integer> visited) {
         LinkedList<Integer> queue = new LinkedList<Integer>();
-        Enumeration<Integer> connectList;
+        Iterator<Integer> connectList;
         
         // do a BFS
         while(true) {
             // traverse through its branches
-            connectList = atomList.get(atomIndex).getConnectedList().keys();
+            connectList = atomList.get(atomIndex).getConnections().keySet()
+                                                               .iterator();
 
-            while(connectList.hasMoreElements()) {
-                Integer toVisit = connectList.nextElement();
+            while(connectList.hasNext()) {
+                Integer toVisit = connectList.next();
 
                 // visited already? then cycle
                 if (visited.contains(toVisit)) continue;
@@ -913,10 +962,11 @@ public class MoleculeImpl extends Molecule {
         int noOfAtoms = atomList.size();
         
         for(int i=0; i<noOfAtoms; i++) {
-            connectList = atomList.get(i).getConnectedList().keys();
+            connectList = atomList.get(i).getConnections().keySet()
+                                                          .iterator();
 
-            while(connectList.hasMoreElements()) {
-                Integer toVisit = connectList.nextElement();               
+            while(connectList.hasNext()) {
+                Integer toVisit = connectList.next();               
                 
                 // visited already? then cycle
                 if (visited.contains(toVisit)) continue;
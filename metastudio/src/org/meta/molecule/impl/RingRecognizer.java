@@ -10,15 +10,21 @@ import java.util.*;
 
 import org.meta.math.Vector3D;
 import org.meta.math.MathUtil;
-import org.meta.molecule.AtomGroup;
 import org.meta.molecule.AtomGroupList;
+import org.meta.molecule.BondGraph;
+import org.meta.molecule.BondType;
 import org.meta.molecule.Molecule;
 import org.meta.molecule.SpecialStructureRecognizer;
 
 
 /**
  * Detects and records cycles in a molecular graph along with the type
- * of the cycle (planar / non-planar)
+ * of the cycle (planar / non-planar). <br>
+ *
+ * The cycles are found as the smallest set of smallest rings (SSSR), with
+ * breadth first searches over int arrays rather than recursion, so long 
+ * chains and large molecules (polymers, proteins) are handled in time
+ * nearly linear in the number of atoms.
  *
  * @author  V.Ganesh
  * @version 2.0 (Part of MeTA v2.0)
@@ -28,14 +34,8 @@ public class RingRecognizer implements SpecialStructureRecognizer {
     /** we do not consider rings bigger than these, they may be cut ? */
     public static final int  DEFAULT_MAX_RING_SIZE = 15;
     
-    /** unprocessed vertex */
-    protected static final byte WHITE = (byte) 0; 
-    
-    /** the vertex and its children are being processed */
-    protected static final byte GRAY  = (byte) 1; 
-    
-    /** the vertex is processed completely */
-    protected static final byte BLACK = (byte) 2;                
+    /** rings up to this size are looked for first, then larger ones */
+    protected static final int INITIAL_RING_SIZE_LIMIT = 8;
     
     /** the list of atoms is stored here */
     private AtomGroupList theRings;
@@ -48,9 +48,14 @@ public class RingRecognizer implements SpecialStructureRecognizer {
      */
     private int maxRingSize;
     
-    /** for handling graph traversal and cycle detection */
-    private byte [] color;
-    private int  [] parent;
+    /** the strong bonds of the atoms that may be in rings, in CSR form */
+    private int [] offsets, neighbours;
+    
+    /** the index of each atom in its ring system */
+    private int [] localIndex;
+    
+    /** the current ring system : its atoms, and their bonds in CSR form */
+    private int [] ringAtoms, ringOffsets, ringNeighbours, bondIndex;
     
     /** to make this available to all methods of this object */
     private Molecule theMolecule;
@@ -63,14 +68,17 @@ public class RingRecognizer implements SpecialStructureRecognizer {
         
     /** 
      * This method detects presence of cycles in the molecular
-     * graph and record this information in a object of AtomGroupList.
+     * graph and record this information in a object of AtomGroupList. <br>
+     *
+     * The rings recorded are the smallest set of smallest rings (SSSR) of
+     * the strongly bonded atoms, up to maxRingSize atoms each, with the
+     * atoms of each ring in the order they are bonded.
      *
      * @param molecule The molecule object reference.
      */    
     @Override
     public void recognizeAndRecord(Molecule molecule) {
         int i;
-        int noOfAtoms = molecule.getNumberOfAtoms();
         
         // the molecule object .. to be seen by all methods
         this.theMolecule = molecule;
@@ -78,24 +86,39 @@ public class RingRecognizer implements SpecialStructureRecognizer {
         // the ring list
         theRings = new AtomGroupListImpl();
         
-        // init the algo. data structures
-        color  = new byte[noOfAtoms];
-        parent = new int[noOfAtoms];
+        // only the atoms that are part of some cycle need to be looked at
+        makeCyclicGraph();
         
-        for(i=0; i<noOfAtoms; i++) {
-            color[i]  = WHITE;
-            parent[i] = -1;
-        } // end for
+        // now find the rings of each ring system
+        int noOfAtoms = molecule.getNumberOfAtoms();
+        localIndex = new int[noOfAtoms];
+        boolean [] inRingSystem = new boolean[noOfAtoms];
+        int [] queue = new int[noOfAtoms];
+        int head, tail, v, k;
         
-        // now start the algo.
         for(i=0; i<noOfAtoms; i++) {
-            if (color[i] == WHITE) {
-                traverseAndRecordRing(i);
-            } // end if
+            if (offsets[i] == offsets[i+1] || inRingSystem[i]) continue;
+            
+            // the atoms connected to i, in breadth first order
+            head = tail = 0;
+            queue[tail++] = i;
+            inRingSystem[i] = true;
+            
+            while(head < tail) {
+                v = queue[head++];
+                
+                for(k=offsets[v]; k<offsets[v+1]; k++) {
+                    if (!inRingSystem[neighbours[k]]) {
+                        inRingSystem[neighbours[k]] = true;
+                        queue[tail++] = neighbours[k];
+                    } // end if
+                } // end for
+            } // end while
+            
+            recordRings(Arrays.copyOf(queue, tail));
         } // end for
         
-        // remove the subset rings
-        removeSubsets(); 
+        offsets = neighbours = localIndex = null;
         
         // and finally set the planarity of the rings detected
         for(i=0; i<theRings.getSize(); i++) {
@@ -103,78 +126,345 @@ public class RingRecognizer implements SpecialStructureRecognizer {
         } // end for                
     }
     
-    /** 
-     * traverseAndRecordRing() - do a dept first traversal, in the process
-     * make a spanning tree and detect the occurance of a tree.
+    /**
+     * Make the graph of the strong bonds, leaving out the atoms that cannot
+     * be in a ring (the ones left with less than two bonds, once the
+     * chains ending in them are removed).
+     */
+    protected void makeCyclicGraph() {
+        int noOfAtoms = theMolecule.getNumberOfAtoms();
+        BondGraph bondGraph = theMolecule.getBondGraph();
+        int [] bondOffsets = bondGraph.getOffsets();
+        int [] bondNeighbours = bondGraph.getNeighbours();
+        byte [] bondTypes = bondGraph.getBondTypes();
+        int i, k;
+        
+        boolean [] strongBond = new boolean[BondType.values().length];
+        
+        for(BondType bondType : BondType.values()) {
+            strongBond[BondGraph.toCode(bondType)] = bondType.isStrongBond();
+        } // end for
+        
+        // the number of strong bonds of each atom
+        int [] degree = new int[noOfAtoms];
+        
+        for(i=0; i<noOfAtoms; i++) {
+            for(k=bondOffsets[i]; k<bondOffsets[i+1]; k++) {
+                if (strongBond[bondTypes[k]]) degree[i]++;
+            } // end for
+        } // end for
+        
+        // peel off the chains, starting from their ends
+        boolean [] removed = new boolean[noOfAtoms];
+        int [] queue = new int[noOfAtoms];
+        int head = 0, tail = 0, v, w;
+        
+        for(i=0; i<noOfAtoms; i++) {
+            if (degree[i] < 2) {
+                removed[i] = true;
+                queue[tail++] = i;
+            } // end if
+        } // end for
+        
+        while(head < tail) {
+            v = queue[head++];
+            
+            for(k=bondOffsets[v]; k<bondOffsets[v+1]; k++) {
+                w = bondNeighbours[k];
+                
+                if (!strongBond[bondTypes[k]] || removed[w]) continue;
+                
+                if (--degree[w] < 2) {
+                    removed[w] = true;
+                    queue[tail++] = w;
+                } // end if
+            } // end for
+        } // end while
+        
+        // and keep the strong bonds between the rest
+        offsets = new int[noOfAtoms+1];
+        
+        for(i=0; i<noOfAtoms; i++) {
+            offsets[i+1] = offsets[i] + (removed[i] ? 0 : degree[i]);
+        } // end for
+        
+        neighbours = new int[offsets[noOfAtoms]];
+        
+        for(i=0; i<noOfAtoms; i++) {
+            if (removed[i]) continue;
+            
+            int count = offsets[i];
+            
+            for(k=bondOffsets[i]; k<bondOffsets[i+1]; k++) {
+                if (strongBond[bondTypes[k]] && !removed[bondNeighbours[k]]) {
+                    neighbours[count++] = bondNeighbours[k];
+                } // end if
+            } // end for
+        } // end for
+    }
+    
+    /**
+     * Find and record the smallest set of smallest rings of one ring
+     * system (a connected set of atoms of the cyclic graph). <br>
+     *
+     * A breadth first search from every atom gives the candidate rings,
+     * made of the shortest paths from the atom to the two ends of a bond
+     * that meet only at the atom. Taken in the order of their size, a
+     * candidate is kept if its bonds are not a sum (modulo 2) of the bonds
+     * of the rings already kept, that is if it is not made up of the
+     * smaller rings. This stops once there are as many rings as
+     * independent cycles in the ring system.
      *
-     * @param v - the starting vector for traversal   
+     * @param atoms the atoms of the ring system
      */
-    protected void traverseAndRecordRing(int v) {
-        color[v] = GRAY;  // this vertex is to be processed now
+    protected void recordRings(int [] atoms) {
+        int noOfAtoms = atoms.length;
+        int i, j, k, v, w;
         
-        Hashtable connectedList = theMolecule.getAtom(v).getConnectedList();
-        Enumeration atoms       = connectedList.keys();
-        int atomIndex;
+        // number the atoms and bonds of this ring system from 0
+        for(i=0; i<noOfAtoms; i++) localIndex[atoms[i]] = i;
         
-        // traverse the strongly connected ones only
-        while(atoms.hasMoreElements()) {
-            atomIndex = ((Integer) atoms.nextElement()).intValue();
+        ringAtoms = atoms;
+        ringOffsets = new int[noOfAtoms+1];
+        
+        for(i=0; i<noOfAtoms; i++) {
+            ringOffsets[i+1] = ringOffsets[i]
+                               + offsets[atoms[i]+1] - offsets[atoms[i]];
+        } // end for
+        
+        ringNeighbours = new int[ringOffsets[noOfAtoms]];
+        bondIndex = new int[ringOffsets[noOfAtoms]];
+        int noOfBonds = 0;
+        
+        for(v=0; v<noOfAtoms; v++) {
+            k = ringOffsets[v];
             
-            if (theMolecule.isStronglyBonded(atomIndex, v)) {
-                if (color[atomIndex] == WHITE) {   // not yet traversed?
-                    parent[atomIndex] = v;
-                    traverseAndRecordRing(atomIndex); // recursive call
-                } else if (color[atomIndex] == BLACK) { // found a ring!
-                    Ring theRing = new Ring();
+            for(j=offsets[atoms[v]]; j<offsets[atoms[v]+1]; j++, k++) {
+                w = localIndex[neighbours[j]];
+                ringNeighbours[k] = w;
+                
+                if (v < w) {
+                    bondIndex[k] = noOfBonds++;
+                } else {
+                    // already numbered from the other end
+                    for(i=ringOffsets[w]; ringNeighbours[i]!=v; i++);
                     
-                    theRing.addAtomIndex(atomIndex);
+                    bondIndex[k] = bondIndex[i];
+                } // end if
+            } // end for
+        } // end for
+        
+        // the number of independent cycles
+        int noOfCycles = noOfBonds - noOfAtoms + 1;
+        
+        ArrayList<int []> rings = new ArrayList<int []>();
+        
+        // most rings are small, so look for the small ones first, and
+        // for the larger ones only if some cycles are still left out
+        int ringSizeLimit = Math.min(INITIAL_RING_SIZE_LIMIT, maxRingSize);
+        
+        while(noOfCycles > 0) {
+            ArrayList<int []> candidateBonds = new ArrayList<int []>();
+            ArrayList<int []> candidateAtoms = new ArrayList<int []>();
+            
+            findCandidateRings(ringSizeLimit, candidateBonds, candidateAtoms);
+            
+            rings.clear();
+            
+            // then pick the smallest rings that are independent of each
+            // other, by elimination on the bond sets : each ring kept is
+            // reduced to a distinct lowest bond, not in any ring kept 
+            // after it
+            int [][] basis = new int[noOfBonds][];
+            int [] reduced;
+            
+            for(int size=3; size<=ringSizeLimit 
+                            && rings.size()<noOfCycles; size++) {
+                for(i=0; i<candidateAtoms.size() 
+                         && rings.size()<noOfCycles; i++) {
+                    if (candidateAtoms.get(i).length != size) continue;
                     
-                    int vertex = atomIndex;
+                    reduced = candidateBonds.get(i);
                     
-                    // record the cycle
-                    while(true) {
-                        vertex = parent[vertex];
-                        
-                        if (vertex == -1) { 
-                            break;
-                        } else if (vertex == v) {
-                            theRing.addAtomIndex(vertex);
-                            break;
+                    for(j=0; j<reduced.length; ) {
+                        if (basis[reduced[j]] != null) {
+                            // the bonds before j are not in this one
+                            reduced = symmetricDifference(reduced, 
+                                                          basis[reduced[j]]);
                         } else {
-                            theRing.addAtomIndex(vertex);
+                            j++;
                         } // end if
-                    } // end while  
+                    } // end for
                     
-                    // record the ring
-                    theRings.addGroup(theRing);
-                } // end if
-            } // end if
+                    // made up of the smaller ones?
+                    if (reduced.length == 0) continue;
+                    
+                    basis[reduced[0]] = reduced;
+                    rings.add(candidateAtoms.get(i));
+                } // end for
+            } // end for
+            
+            if (rings.size() == noOfCycles 
+                || ringSizeLimit >= maxRingSize) break;
+            
+            ringSizeLimit = Math.min(ringSizeLimit + 2, maxRingSize);
         } // end while
         
-        // this node has been completely traversed, if we hit this node again
-        // we have a cycle!
-        color[v] = BLACK;
+        // record the rings
+        // (independent, so never the same as another ring, and need not 
+        // be checked with the others in addGroup())
+        for(int [] ring : rings) {
+            Ring theRing = new Ring();
+            
+            for(int atomIndex : ring) theRing.addAtomIndex(atomIndex);
+            
+            theRings.getGroupList().add(theRing);
+        } // end for
+        
+        ringAtoms = ringOffsets = ringNeighbours = bondIndex = null;
     }
     
     /**
-     * remove subsets of rings
+     * Find the candidate rings of the current ring system, up to a given
+     * size. A breadth first search is made from each atom r, and each bond
+     * v-w that is not in the search tree, with the tree paths from r to v 
+     * and w meeting only at r, closes a ring. Each ring is recorded only
+     * once, even if found from many atoms.
+     *
+     * @param ringSizeLimit the largest ring to look for
+     * @param candidateBonds the bonds of the rings found are added here,
+     *        in ascending order
+     * @param candidateAtoms the atoms (molecule indices) of the rings found
+     *        are added here, in the order they are bonded
      */
-    protected void removeSubsets() {
-        ArrayList theList = theRings.getGroupList();        
-        Ring r1;
+    protected void findCandidateRings(int ringSizeLimit, 
+                                      ArrayList<int []> candidateBonds,
+                                      ArrayList<int []> candidateAtoms) {
+        int noOfAtoms = ringAtoms.length;
+        HashSet<RingBonds> candidates = new HashSet<RingBonds>();
+        
+        int [] dist       = new int[noOfAtoms];
+        int [] parent     = new int[noOfAtoms];
+        int [] parentBond = new int[noOfAtoms];
+        int [] branch     = new int[noOfAtoms];
+        int [] queue      = new int[noOfAtoms];
+        int i, k, v, w, x, pos, head, tail, ringSize;
+        int maxDepth = ringSizeLimit / 2;
+        
+        Arrays.fill(dist, -1);
         
-        for(int i=0; i<theList.size(); i++) {
-            r1 = (Ring) theList.get(i);
+        for(int r=0; r<noOfAtoms; r++) {
+            head = tail = 0;
+            queue[tail++] = r;
+            dist[r]   = 0;
+            parent[r] = branch[r] = -1;
             
-            for(int j=0; j<theList.size(); j++) {
-                if (i == j) continue;
+            while(head < tail) {
+                v = queue[head++];
                 
-                // this does all the job!, no head ache
-                if (r1.intersect((AtomGroup) theList.get(j))) break;
-            } // end for
+                for(k=ringOffsets[v]; k<ringOffsets[v+1]; k++) {
+                    w = ringNeighbours[k];
+                    
+                    if (dist[w] < 0) {
+                        // no ring within ringSizeLimit can go farther
+                        if (dist[v] == maxDepth) continue;
+                        
+                        dist[w]       = dist[v] + 1;
+                        parent[w]     = v;
+                        parentBond[w] = bondIndex[k];
+                        branch[w]     = (v == r) ? w : branch[v];
+                        queue[tail++] = w;
+                        
+                        continue;
+                    } // end if
+                    
+                    ringSize = dist[v] + dist[w] + 1;
+                    
+                    if (((dist[w] == dist[v] && v < w)
+                         || (dist[w] == dist[v] + 1 && parent[w] != v))
+                        && branch[v] != branch[w]
+                        && ringSize <= ringSizeLimit) {
+                        // the paths to v and w, and the bond v-w make a ring
+                        int [] bonds = new int[ringSize];
+                        
+                        pos = 0;
+                        bonds[pos++] = bondIndex[k];
+                        for(x=v; x!=r; x=parent[x]) bonds[pos++] = parentBond[x];
+                        for(x=w; x!=r; x=parent[x]) bonds[pos++] = parentBond[x];
+                        
+                        Arrays.sort(bonds);
+                        
+                        if (!candidates.add(new RingBonds(bonds))) continue;
+                        
+                        // r .. v, then w .. back to r
+                        int [] atoms = new int[ringSize];
+                        
+                        for(x=v, pos=dist[v]; pos>=0; x=parent[x], pos--) {
+                            atoms[pos] = ringAtoms[x];
+                        } // end for
+                        for(x=w, pos=dist[v]+1; x!=r; x=parent[x], pos++) {
+                            atoms[pos] = ringAtoms[x];
+                        } // end for
+                        
+                        candidateBonds.add(bonds);
+                        candidateAtoms.add(atoms);
+                    } // end if
+                } // end for
+            } // end while
+            
+            for(i=0; i<tail; i++) dist[queue[i]] = -1;
         } // end for
     }
     
+    /**
+     * The symmetric difference (sum modulo 2) of two ascending lists of
+     * bonds, as an ascending list
+     */
+    private static int [] symmetricDifference(int [] a, int [] b) {
+        int [] c = new int[a.length + b.length];
+        int i = 0, j = 0, k = 0;
+        
+        while(i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                c[k++] = a[i++];
+            } else if (a[i] > b[j]) {
+                c[k++] = b[j++];
+            } else {
+                i++; j++;
+            } // end if
+        } // end while
+        
+        while(i < a.length) c[k++] = a[i++];
+        while(j < b.length) c[k++] = b[j++];
+        
+        return Arrays.copyOf(c, k);
+    }
+    
+    /**
+     * The set of bonds of a ring, as an ascending list of bond indices. A
+     * sparse bit set, as the rings are small compared to the ring systems.
+     */
+    private static class RingBonds {
+        private int [] bonds;
+        private int hashCode;
+        
+        public RingBonds(int [] bonds) {
+            this.bonds    = bonds;
+            this.hashCode = Arrays.hashCode(bonds);
+        }
+        
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            return (obj instanceof RingBonds)
+                   && Arrays.equals(bonds, ((RingBonds) obj).bonds);
+        }
+    } // end of class RingBonds
+    
     /**
      * Sets the planarity flag of the ring. <br>
      * To determine the planarity of a ring we make few assumptions: <br>
@@ -7,8 +7,8 @@
 package org.meta.net.impl.service.talk;
 
 import java.io.*;
-import java.util.Enumeration;
-import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Map;
 import org.meta.math.geom.Point3D;
 import org.meta.common.Utility;
 import org.meta.molecule.Atom;
@@ -66,12 +66,12 @@ public class MoleculeTalkObject extends TalkObject
                 out.writeDouble(atom.getCharge());
                 
                 // connectivity
-                Hashtable<Integer, BondType> conn = atom.getConnectedList();
+                Map<Integer, BondType> conn = atom.getConnections();
                 
                 out.writeInt(conn.size());
-                Enumeration<Integer> bonds = conn.keys();
+                Iterator<Integer> bonds = conn.keySet().iterator();
                 for(int j=0; j<conn.size(); j++) {
-                    Integer bond = bonds.nextElement();
+                    Integer bond = bonds.next();
                     
                     out.writeInt(bond);
                     out.writeObject(conn.get(bond));
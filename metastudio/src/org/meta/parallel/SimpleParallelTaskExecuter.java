@@ -7,10 +7,25 @@ package org.meta.parallel;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A simple framework for execution of tasks in parallel on a shared
- * memory system.
+ * memory system. <br>
+ *
+ * The tasks are run on a pool of worker threads (one per processor) shared
+ * by all the executers, rather than on new threads for each execute(). The
+ * calling thread runs the first task itself, and then any task that no
+ * worker has picked up yet, so executers may be used from the workers
+ * (nested) as well. The number of tasks an execute() is split into can be
+ * limited for all executers created on a thread with
+ * setLocalParallelism(), for example to run independent jobs one per
+ * processor.
  * 
  * @author  V.Ganesh
  * @version 2.0 (Part of MeTA v2.0)
@@ -19,12 +34,77 @@ public class SimpleParallelTaskExecuter {
 
     protected int noOfProcessors;
 
-    private ArrayList<Thread> parallelTasks;
     private ArrayList<SimpleParallelTask> pTaskList;
+
+    /** the worker threads shared by all executers */
+    private static ExecutorService _sharedPool;
+
+    /** the number of tasks for executers created on a thread, 0 for all */
+    private static final ThreadLocal<Integer> localParallelism
+                                              = new ThreadLocal<Integer>() {
+        @Override
+        protected Integer initialValue() {
+            return 0;
+        }
+    };
     
     /** Creates a new instance of SimpleParallelTaskExecuter */
     public SimpleParallelTaskExecuter() {
-        noOfProcessors = Runtime.getRuntime().availableProcessors();
+        int parallelism = localParallelism.get();
+
+        noOfProcessors = (parallelism > 0) ? parallelism
+                             : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Get the shared pool of worker threads, created on first use. The
+     * workers are daemon threads, so they do not keep the application
+     * alive.
+     *
+     * @return the shared pool
+     */
+    public static synchronized ExecutorService getSharedPool() {
+        if (_sharedPool == null) {
+            final AtomicInteger threadNumber = new AtomicInteger(0);
+
+            _sharedPool = Executors.newFixedThreadPool(
+                            Runtime.getRuntime().availableProcessors(),
+                            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread worker = new Thread(r,
+                                       "SimpleParallelTaskExecuter worker "
+                                       + threadNumber.incrementAndGet());
+                    worker.setDaemon(true);
+
+                    return worker;
+                }
+            });
+        } // end if
+
+        return _sharedPool;
+    }
+
+    /**
+     * Get the number of tasks into which executers created on the current
+     * thread split the work
+     *
+     * @return the local parallelism, 0 for one task per processor
+     */
+    public static int getLocalParallelism() {
+        return localParallelism.get();
+    }
+
+    /**
+     * Set the number of tasks into which executers created on the current
+     * thread split the work. With 1, the tasks are run on the calling
+     * thread itself.
+     *
+     * @param parallelism the local parallelism, 0 for one task per
+     *        processor
+     */
+    public static void setLocalParallelism(int parallelism) {
+        localParallelism.set(Math.max(0, parallelism));
     }
 
     /**
@@ -34,8 +114,7 @@ public class SimpleParallelTaskExecuter {
      */
     public void execute(SimpleParallelTask pTask) {
         // init lists
-        parallelTasks = new ArrayList<Thread>(noOfProcessors);
-        pTaskList     = new ArrayList<SimpleParallelTask>(noOfProcessors);
+        pTaskList = new ArrayList<SimpleParallelTask>(noOfProcessors);
 
         // init items to distribute
         int totalItems           = pTask.getTotalItems();
@@ -59,29 +138,52 @@ public class SimpleParallelTaskExecuter {
             curIndx = end;
         } // end for
 
-        // then package them as threads, and start executing them
+        // then hand all but the first to the workers, and run the first
+        ArrayList<FutureTask<Object>> futureTasks
+                          = new ArrayList<FutureTask<Object>>(noOfProcessors);
+
         for(i=0; i<noOfProcessors; i++) {
             SimpleParallelTask spTask = pTaskList.get(i);
             spTask.setTotalItems(pTask.getTotalItems());
             spTask.setTaskName(pTask.getTaskName());
-            
-            Thread pTaskThread = new Thread(spTask);
-            pTaskThread.setName(spTask.getTaskName());
-            pTaskThread.start();
 
-            parallelTasks.add(pTaskThread);
+            // every task is run, even one without items, as the callers
+            // reduce over the results of all the tasks in the list
+            if (i == 0) continue;
+
+            FutureTask<Object> futureTask
+                                     = new FutureTask<Object>(spTask, null);
+            getSharedPool().execute(futureTask);
+            futureTasks.add(futureTask);
+        } // end for
+
+        try {
+            pTaskList.get(0).run();
+        } catch (Exception ignored) {
+            System.err.println("Error from SimpleParallelTaskExecuter : "
+                               + ignored.toString());
+            ignored.printStackTrace();
+        } // end of try .. catch block
+
+        // run the ones not yet picked up by a worker (this does nothing
+        // for the others), then wait for them to be completed
+        for(FutureTask<Object> futureTask : futureTasks) {
+            futureTask.run();
         } // end for
 
-        // then wait for them to be completed
-        for(Thread pTaskThread : parallelTasks) {
+        for(FutureTask<Object> futureTask : futureTasks) {
             try {
-                pTaskThread.join();
-            } catch (Exception ignored) {
+                futureTask.get();
+            } catch (ExecutionException ignored) {
+                System.err.println("Error from SimpleParallelTaskExecuter : "
+                                   + ignored.getCause().toString());
+                ignored.getCause().printStackTrace();
+            } catch (InterruptedException ignored) {
                 System.err.println("Error from SimpleParallelTaskExecuter : "
                                    + ignored.toString());
-                ignored.printStackTrace();
+                Thread.currentThread().interrupt();
             } // end of try .. catch block
-        }
+        } // end for
     }
 
     /**
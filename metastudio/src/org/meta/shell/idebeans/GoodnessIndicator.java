@@ -280,7 +280,7 @@ public class GoodnessIndicator extends JPanel {
         
         for(int i=0; i<referenceMolecule.getNumberOfAtoms(); i++) {
             if (excludePendents) {
-                if (referenceMolecule.getAtom(i).getConnectedList().size() == 1)
+                if (referenceMolecule.getAtom(i).getDegree() == 1)
                     continue;
             } // end if
             
@@ -834,14 +834,14 @@ public class MoleculeViewerFindTool extends JPanel {
                 Molecule molecule = targetScene.getMolecule();
                 int atomIndex = ((Integer) indexStack.peek()).intValue();
                 
-                Hashtable<Integer, BondType> conns = molecule.getAtom(atomIndex)
-                                                            .getConnectedList();
+                Map<Integer, BondType> conns = molecule.getAtom(atomIndex)
+                                                            .getConnections();
                 
                 // pump the conneceted atoms into the indexStack so that they
                 // are also braught to the center stage
-                Enumeration<Integer> connAtms = conns.keys();
-                while(connAtms.hasMoreElements())
-                    indexStack.push(connAtms.nextElement());
+                Iterator<Integer> connAtms = conns.keySet().iterator();
+                while(connAtms.hasNext())
+                    indexStack.push(connAtms.next());
                 
                 // and the do the informing
                 String message = "";
@@ -7,7 +7,7 @@
 package org.meta.shell.idebeans.editors.impl.moleculeditor;
 
 import java.awt.Color;
-import java.util.Hashtable;
+import java.util.Map;
 import org.meta.math.geom.Point3D;
 import org.meta.molecule.BondType;
 import org.meta.shell.idebeans.viewers.impl.moleculeviewer.AngleTracker;
@@ -41,8 +41,8 @@ public class AngleHelper extends MoleculeEditorCommandHelper {
             
         if (nearestAtom == null) return;
         
-        Hashtable<Integer, BondType> connList 
-                                    = nearestAtom.getAtom().getConnectedList();            
+        Map<Integer, BondType> connList 
+                                    = nearestAtom.getAtom().getConnections();            
         Point3D p1 
               = mecd.getTransformedPoint(moleculeScene, referenceX, referenceY);
         
@@ -52,7 +52,8 @@ public class AngleHelper extends MoleculeEditorCommandHelper {
 
             angleTracker = new AngleTracker(
                  moleculeScene.getMolecule().getAtom(
-                            connList.keys().nextElement()).getAtomCenter(),
+                            connList.keySet().iterator().next())
+                            .getAtomCenter(),
                  nearestAtom.getAtom().getAtomCenter(), p1);
 
             angleTracker.setTransform(moleculeScene.getTransform());
@@ -136,7 +136,7 @@ public class VdwGridPropertyGenerator implements GridPropertyGenerator,
             
             for (i = 0; i < molecule.getNumberOfAtoms(); i++) {
                 Atom atom = molecule.getAtom(i);
-                double vdwRadius = ai.getVdwRadius(atom.getSymbol());
+                double vdwRadius = ai.getVdwRadius(atom.getElementCode());
                 Point3D atomCenter = atom.getAtomCenter();
                 
                 for (x = startIndex; x < endIndex; x++) {
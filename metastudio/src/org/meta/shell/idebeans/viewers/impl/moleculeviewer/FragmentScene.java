@@ -87,7 +87,7 @@ public class FragmentScene extends AbstractScene {
         fragmentScreenBonds = new ArrayList<FragmentScreenBond>();
         
         Iterator<FragmentAtom> fragmentAtoms = fragment.getFragmentAtoms();
-        Hashtable<Integer, BondType> connList;
+        Map<Integer, BondType> connList;
         FragmentAtom fragmentAtom;
         int idx, i=0;
         
@@ -99,7 +99,7 @@ public class FragmentScene extends AbstractScene {
         } // end while
                 
         for(ScreenAtom screenAtom : screenAtoms) {
-            connList = screenAtom.getAtom().getConnectedList();
+            connList = screenAtom.getAtom().getConnections();
 
             for(int connectedIndex : connList.keySet()) {
                 idx = fragment.getIndexOfAtom(
@@ -177,8 +177,8 @@ public class MoleculeScene extends AbstractScene
         
         // and the bonds between them!
         ScreenAtom  screenAtom;
-        Hashtable<Integer, BondType> connList;
-        Enumeration<Integer> connAtoms;
+        Map<Integer, BondType> connList;
+        Iterator<Integer> connAtoms;
         Integer theIndex;
         int index;
         ScreenBond screenBond;
@@ -189,11 +189,11 @@ public class MoleculeScene extends AbstractScene
         for(int i=0; i<noOfAtoms; i++) {
             zBuffer[i] = i;
             screenAtom = screenAtoms.get(i);
-            connList   = screenAtom.getAtom().getConnectedList();
-            connAtoms  = connList.keys();
+            connList   = screenAtom.getAtom().getConnections();
+            connAtoms  = connList.keySet().iterator();
             
-            while(connAtoms.hasMoreElements()) {
-                theIndex = connAtoms.nextElement();
+            while(connAtoms.hasNext()) {
+                theIndex = connAtoms.next();
                 index    = theIndex.intValue();
                 
                 if (i > index) continue;
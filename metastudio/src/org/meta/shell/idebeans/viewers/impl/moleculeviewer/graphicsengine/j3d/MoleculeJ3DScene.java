@@ -8,9 +8,8 @@ package org.meta.shell.idebeans.viewers.impl.moleculeviewer.graphicsengine.j3d;
 import org.meta.shell.idebeans.viewers.impl.moleculeviewer.graphicsengine.surfaces.PropertyScene;
 import org.meta.shell.idebeans.viewers.impl.moleculeviewer.*;
 import java.util.ArrayList;
-import java.util.Enumeration;
-import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.Map;
 import javax.media.j3d.TransformGroup;
 import org.meta.common.Utility;
 import org.meta.molecule.Atom;
@@ -89,8 +88,8 @@ public class MoleculeJ3DScene extends MoleculeScene {
         
         // and the bonds between them!
         ScreenAtomJ3D  screenAtom;
-        Hashtable<Integer, BondType> connList;
-        Enumeration<Integer> connAtoms;
+        Map<Integer, BondType> connList;
+        Iterator<Integer> connAtoms;
         Integer theIndex;
         int index;
         ScreenBondJ3D screenBond;
@@ -98,11 +97,11 @@ public class MoleculeJ3DScene extends MoleculeScene {
         for(int i=0; i<noOfAtoms; i++) {
             zBuffer[i] = i;
             screenAtom = screenAtomsJ3D.get(i);
-            connList   = screenAtom.getAtom().getConnectedList();
-            connAtoms  = connList.keys();
+            connList   = screenAtom.getAtom().getConnections();
+            connAtoms  = connList.keySet().iterator();
             
-            while(connAtoms.hasMoreElements()) {
-                theIndex = connAtoms.nextElement();
+            while(connAtoms.hasNext()) {
+                theIndex = connAtoms.next();
                 index    = theIndex.intValue();
                 
                 if (i > index) continue;
@@ -9,9 +9,8 @@ package org.meta.workspace.impl;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Enumeration;
-import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.Map;
 import org.meta.common.Utility;
 import org.meta.common.resource.StringResource;
 import org.meta.fragment.Fragment;
@@ -173,12 +172,12 @@ public class MoleculeItem extends WorkspaceItem
                                 + "\"> \n").getBytes());
                 
                 // now write the connectivity
-                Hashtable connectedList = atom.getConnectedList();
-                Enumeration keys = connectedList.keys();
+                Map connectedList = atom.getConnections();
+                Iterator keys = connectedList.keySet().iterator();
                 
                 fos.write("\t\t<connectedList>\n".getBytes());
-                while(keys.hasMoreElements()) {
-                    Integer ci = (Integer) keys.nextElement();
+                while(keys.hasNext()) {
+                    Integer ci = (Integer) keys.next();
                     
                     fos.write(("\t\t\t<ca index=\"" + ci + "\""
                               + " bondType=\"" + connectedList.get(ci) 